@@ -0,0 +1,145 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.codec.ZBinaryCodec;
+import org.gibello.zql.statement.ZStatement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary codec benchmark: cost of storing and loading 1000 parsed statements with the binary codec, with Java serialization, and by
+ * parsing their SQL again.<br>
+ * Run main() to get the time and the allocation rate (gc profiler) of each, and the size of each form.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZBinaryCodecBenchmark {
+
+    private static final int SIZE = 1000;
+
+    private List<ZStatement> statements;
+
+    private String sql;
+
+    private byte[] binary;
+
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws ParseException, IOException {
+        this.sql = script();
+        this.statements = new ZqlParser(this.sql).readStatements();
+        this.binary = ZBinaryCodec.encodeStatements(this.statements);
+        this.serialized = serialize(this.statements);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return ZBinaryCodec.encodeStatements(this.statements);
+    }
+
+    @Benchmark
+    public List<ZStatement> decodeBinary() {
+        return ZBinaryCodec.decodeStatements(ByteBuffer.wrap(this.binary));
+    }
+
+    @Benchmark
+    public byte[] encodeSerialization() throws IOException {
+        return serialize(this.statements);
+    }
+
+    @Benchmark
+    public Object decodeSerialization() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(this.serialized))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public List<ZStatement> reparse() throws ParseException {
+        return new ZqlParser(this.sql).readStatements();
+    }
+
+    private static byte[] serialize(final List<ZStatement> statements) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new ArrayList<>(statements));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String script() {
+        final StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < SIZE; i++) {
+            switch (i % 4) {
+                case 0:
+                    sql.append("select a, b, max(c) total from num n where a > ").append(i)
+                            .append(" and b like 'x%' group by a, b order by a desc;\n");
+                    break;
+                case 1:
+                    sql.append("insert into num (a, b, c) values (").append(i).append(", 'value ").append(i).append("', null);\n");
+                    break;
+                case 2:
+                    sql.append("update num set b = b + 1, c = 'y' where a between ").append(i).append(" and ").append(i + 10)
+                            .append(";\n");
+                    break;
+                default:
+                    sql.append("delete from num where a in (select a from other where c = ").append(i).append(");\n");
+                    break;
+            }
+        }
+        return sql.toString();
+    }
+
+    public static void main(final String[] args) throws RunnerException, ParseException, IOException {
+        final Options options = new OptionsBuilder().include(ZBinaryCodecBenchmark.class.getSimpleName()).addProfiler("gc").build();
+        new Runner(options).run();
+
+        final String sql = script();
+        final List<ZStatement> statements = new ZqlParser(sql).readStatements();
+        System.out.printf("Size of %d statements: SQL %d chars, binary %d bytes, serialized %d bytes%n", SIZE, sql.length(),
+                ZBinaryCodec.encodeStatements(statements).length, serialize(statements).length);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.optimize.ZCanonicalizer;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZFreezer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Canonicalizer benchmark: cost of looking up 1000 queries in a cache keyed by the parsed statement, and by its canonical form.
+ * The queries are 10 conditions, each written in 100 different orders of their operands.<br>
+ * Run main() to get the time and the allocation rate (gc profiler) of each; the hit rate of each cache is printed at setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZCanonicalizerBenchmark {
+
+    private static final int QUERIES = 1000;
+
+    private static final int CONDITIONS = 10;
+
+    private ZStatement[] statements;
+
+    private final Map<ZStatement, Integer> parsedCache = new HashMap<>();
+
+    private final Map<ZStatement, Integer> canonicalCache = new HashMap<>();
+
+    @Setup
+    public void setUp() throws ParseException {
+        this.statements = new ZStatement[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            this.statements[i] = new ZqlParser(query(i % CONDITIONS, i / CONDITIONS)).readStatement();
+        }
+        int parsedHits = 0;
+        int canonicalHits = 0;
+        for (final ZStatement statement : this.statements) {
+            parsedHits += this.parsedCache.put(ZFreezer.freeze(statement), 0) == null ? 0 : 1;
+            canonicalHits += this.canonicalCache.put(ZCanonicalizer.key(statement), 0) == null ? 0 : 1;
+        }
+        System.out.println("Hits: " + parsedHits + " parsed, " + canonicalHits + " canonical, out of " + QUERIES);
+    }
+
+    /**
+     * Write a condition with its operands in one of 100 orders.
+     *
+     * @param condition the condition.
+     * @param order     the order.
+     * @return the query.
+     */
+    private static String query(final int condition, final int order) {
+        final String[] terms = {"a = " + condition, "b < " + (condition + 1) + " * c", "d in (1, 2, " + (condition + 3) + ")",
+                "e + 1 >= 2"};
+        final String[] mirrored = {condition + " = a", "c * " + (condition + 1) + " > b", "d in (" + (condition + 3) + ", 2, 1)",
+                "2 <= 1 + e"};
+        final StringBuilder sql = new StringBuilder("select a, b from num where ");
+        for (int i = 0; i < terms.length; i++) {
+            final int term = (i + order) % terms.length;
+            sql.append(i == 0 ? "" : " and ").append((order >> (term + 2) & 1) == 0 ? terms[term] : mirrored[term]);
+        }
+        return sql.append(';').toString();
+    }
+
+    @Benchmark
+    public int lookupParsed() {
+        int hits = 0;
+        for (final ZStatement statement : this.statements) {
+            hits += this.parsedCache.containsKey(ZFreezer.freeze(statement)) ? 1 : 0;
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int lookupCanonical() {
+        int hits = 0;
+        for (final ZStatement statement : this.statements) {
+            hits += this.canonicalCache.containsKey(ZCanonicalizer.key(statement)) ? 1 : 0;
+        }
+        return hits;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(ZCanonicalizerBenchmark.class.getSimpleName()).addProfiler("gc").build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.alias.ZSelectItem;
+import org.gibello.zql.data.ZEval;
+import org.gibello.zql.data.ZTuple;
+import org.gibello.zql.optimize.ZCommonSubexpressions;
+import org.gibello.zql.query.ZQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common sub-expressions benchmark: cost of evaluating a query whose SELECT items and WHERE clause repeat sub-expressions over 10000
+ * tuples shaped like num.db, as parsed and with the repeated sub-expressions computed once per row, and cost of the analysis
+ * itself.<br>
+ * Run main() to get the time and the allocation rate (gc profiler) of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZCommonSubexpressionsBenchmark {
+
+    private static final int ROWS = 10000;
+
+    private static final String QUERY = "select (a * b + c) * (d - e), (a * b + c) / 2, d - e from num "
+            + "where (a * b + c) * (d - e) > 10 and a * b + c > 3 or d - e < 0;";
+
+    private ZTuple[] tuples;
+
+    private ZQuery parsed;
+
+    private ZCommonSubexpressions shared;
+
+    @Setup
+    public void setUp() throws ParseException {
+        this.tuples = new ZTuple[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            this.tuples[i] = new ZTuple("a,b,c,d,e");
+            this.tuples[i].setRow((i % 5) + "," + (i % 7) + "," + (i % 3) + "," + (i % 11) + "," + (i % 13));
+        }
+        this.parsed = (ZQuery) new ZqlParser(QUERY).readStatement();
+        this.shared = ZCommonSubexpressions.of(this.parsed);
+        System.out.println("Evaluations saved per matching row: " + this.shared.getSavedEvaluationsPerRow());
+    }
+
+    @Benchmark
+    public double evalParsed() throws SQLException {
+        return this.run(new ZEval(), this.parsed);
+    }
+
+    @Benchmark
+    public double evalShared() throws SQLException {
+        return this.run(this.shared.newEvaluator(null), this.shared.getQuery());
+    }
+
+    @Benchmark
+    public ZCommonSubexpressions analyze() {
+        return ZCommonSubexpressions.of(this.parsed);
+    }
+
+    private double run(final ZEval eval, final ZQuery query) throws SQLException {
+        double sum = 0;
+        for (final ZTuple tuple : this.tuples) {
+            if (eval.eval(tuple, query.getWhere())) {
+                for (final Object item : query.getSelect()) {
+                    sum += (Double) eval.evalExpValue(tuple, ((ZSelectItem) item).getExpression());
+                }
+            }
+        }
+        return sum;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(ZCommonSubexpressionsBenchmark.class.getSimpleName()).addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.data.ZEval;
+import org.gibello.zql.data.ZTuple;
+import org.gibello.zql.expression.ZExp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluator benchmark: cost of evaluating a WHERE clause over 10000 tuples shaped like num.db (five numeric columns a to e), for
+ * comparisons, BETWEEN and IN, and arithmetic.<br>
+ * Run main() to get the time and the allocation rate (gc profiler) of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZEvalBenchmark {
+
+    private static final int ROWS = 10000;
+
+    @Param({"a = 1 and b > 2 or c <= 3 and d <> e",
+            "a between 2 and 4 and b not in (1, 3, 5, 7)",
+            "a + b * 2 >= c - d / 2"})
+    private String where;
+
+    private final ZEval eval = new ZEval();
+
+    private ZTuple[] tuples;
+
+    private ZExp exp;
+
+    @Setup
+    public void setUp() throws ParseException {
+        this.tuples = new ZTuple[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            this.tuples[i] = new ZTuple("a,b,c,d,e");
+            this.tuples[i].setRow((i % 5) + "," + (i % 7) + "," + (i % 3) + "," + (i % 11) + "," + (i % 13));
+        }
+        this.exp = new ZqlParser(this.where).readExpression();
+    }
+
+    @Benchmark
+    public int eval() throws SQLException {
+        int matches = 0;
+        for (final ZTuple tuple : this.tuples) {
+            if (this.eval.eval(tuple, this.exp)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(ZEvalBenchmark.class.getSimpleName()).addProfiler("gc").build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZFreezer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Freeze benchmark: cost of freezing a parsed statement, compared with parsing it.<br>
+ * Run main() to also print the heap retained per statement, with and without freezing, for a few thousand statements kept in memory
+ * (as in a parse cache).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZFreezeBenchmark {
+
+    private static final String[] STATEMENTS = {
+            "select a, b, c + d * 2 from num n, app.other o where a = 1 and (b > 2 or c like 'x%') order by a;",
+            "insert into num (a, b, c) values (1, 'two', 3);",
+            "update num set a = a + 1, b = 'x' where c in (1, 2, 3);",
+            "select count(*), max(b) from num where a in (select a from other where b = 2) group by c having count(*) > 1;",
+            "delete from num where a = 1 and b is not null;"};
+
+    private static final int RETAINED = 20000;
+
+    private final ZqlParser parser = new ZqlParser();
+
+    private int next;
+
+    @Benchmark
+    public ZStatement parse() throws ParseException {
+        this.parser.initParser(STATEMENTS[this.next++ % STATEMENTS.length]);
+        return this.parser.readStatement();
+    }
+
+    @Benchmark
+    public ZStatement parseAndFreeze() throws ParseException {
+        return ZFreezer.freeze(this.parse());
+    }
+
+    private static long retained(final boolean freeze) throws ParseException {
+        final ZqlParser parser = new ZqlParser();
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final ZStatement[] statements = new ZStatement[RETAINED];
+        System.gc();
+        final long before = memory.getHeapMemoryUsage().getUsed();
+        for (int i = 0; i < RETAINED; i++) {
+            parser.initParser(STATEMENTS[i % STATEMENTS.length]);
+            final ZStatement statement = parser.readStatement();
+            statements[i] = freeze ? ZFreezer.freeze(statement) : statement;
+        }
+        System.gc();
+        final long after = memory.getHeapMemoryUsage().getUsed();
+        if (statements[RETAINED - 1] == null) {
+            throw new IllegalStateException();
+        }
+        return (after - before) / RETAINED;
+    }
+
+    public static void main(final String[] args) throws RunnerException, ParseException {
+        final Options options = new OptionsBuilder().include(ZFreezeBenchmark.class.getSimpleName()).addProfiler("gc").build();
+        new Runner(options).run();
+
+        retained(false);
+        retained(true);
+        System.out.printf("Retained heap per statement: parsed %d bytes, frozen %d bytes%n", retained(false), retained(true));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.utils.ZFreezer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Structural hash benchmark: hashCode() and equals() of a WHERE clause nested 200 levels deep, parsed (the hash is computed on each
+ * call) and frozen (the hash is kept), with trees from separate parses.<br>
+ * Run main() to get the time and the allocation rate (gc profiler) of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZStructuralHashBenchmark {
+
+    private static final int DEPTH = 200;
+
+    private ZExp parsed;
+
+    private ZExp parsedCopy;
+
+    private ZExp frozen;
+
+    private ZExp frozenCopy;
+
+    private ZExp frozenOther;
+
+    @Setup
+    public void setUp() throws ParseException {
+        this.parsed = parse(0);
+        this.parsedCopy = parse(0);
+        this.frozen = ZFreezer.freeze(parse(0));
+        this.frozenCopy = ZFreezer.freeze(parse(0));
+        this.frozenOther = ZFreezer.freeze(parse(1));
+    }
+
+    private static ZExp parse(final int last) throws ParseException {
+        final StringBuilder sql = new StringBuilder("a = 0");
+        for (int i = 1; i < DEPTH; i++) {
+            sql.append(i % 2 == 0 ? " and (b" : " or (c").append(" > ").append(i);
+        }
+        sql.append(" or d = ").append(last);
+        for (int i = 1; i < DEPTH; i++) {
+            sql.append(')');
+        }
+        return new ZqlParser(sql.toString()).readExpression();
+    }
+
+    @Benchmark
+    public int hashParsed() {
+        return this.parsed.hashCode();
+    }
+
+    @Benchmark
+    public int hashFrozen() {
+        return this.frozen.hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsParsed() {
+        return this.parsed.equals(this.parsedCopy);
+    }
+
+    @Benchmark
+    public boolean equalsFrozen() {
+        return this.frozen.equals(this.frozenCopy);
+    }
+
+    @Benchmark
+    public boolean equalsFrozenDifferent() {
+        return this.frozen.equals(this.frozenOther);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(ZStructuralHashBenchmark.class.getSimpleName()).addProfiler("gc").build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.unparse.ZUnparser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unparser benchmark: cost of writing a parsed statement back to SQL, as a String (toString()) and into a reused buffer, for a
+ * 10000 row INSERT and for a deeply nested WHERE clause.<br>
+ * Run main() to get the time and the allocation rate (gc profiler) of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZUnparserBenchmark {
+
+    private static final int SIZE = 10000;
+
+    @Param({"insert", "nested"})
+    private String shape;
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    private final ZUnparser unparser = new ZUnparser(this.buffer);
+
+    private ZStatement statement;
+
+    @Setup
+    public void setUp() throws ParseException {
+        final StringBuilder sql = new StringBuilder();
+        if ("insert".equals(this.shape)) {
+            sql.append("insert into num (a) values (0");
+            for (int i = 1; i < SIZE; i++) {
+                sql.append(", 'value ").append(i).append('\'');
+            }
+            sql.append(");");
+        } else {
+            sql.append("select * from num where a = 0");
+            for (int i = 1; i < SIZE / 50; i++) {
+                sql.append(i % 2 == 0 ? " and (b" : " or (c").append(" > ").append(i);
+            }
+            for (int i = 1; i < SIZE / 50; i++) {
+                sql.append(')');
+            }
+            sql.append(';');
+        }
+        this.statement = new ZqlParser(sql.toString()).readStatement();
+    }
+
+    @Benchmark
+    public int toStringLength() {
+        return this.statement.toString().length();
+    }
+
+    @Benchmark
+    public int unparse() throws IOException {
+        this.buffer.setLength(0);
+        this.unparser.unparse(this.statement);
+        return this.buffer.length();
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(ZUnparserBenchmark.class.getSimpleName()).addProfiler("gc").build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input benchmark: cost of parsing a String through an InputStream (String to bytes and back to chars), through a Reader and directly
+ * from the CharSequence.<br>
+ * Run main() to get the time and the allocation rate (gc profiler) of each input, for a single statement and for a script.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZqlCharStreamBenchmark {
+
+    private static final String STATEMENT = "select a, b, c + d * 2 from num n where a = 1 and (b > 2 or c like 'x%') and d in (1, 2, 3) order by a;";
+
+    @Param({"1", "100"})
+    private int statements;
+
+    private final ZqlParser parser = new ZqlParser();
+
+    private String sql;
+
+    @Setup
+    public void setUp() {
+        final StringBuilder script = new StringBuilder();
+        for (int i = 0; i < this.statements; i++) {
+            script.append(STATEMENT).append('\n');
+        }
+        this.sql = script.toString();
+    }
+
+    @Benchmark
+    public List<ZStatement> inputStream() throws ParseException {
+        this.parser.initParser(new ByteArrayInputStream(this.sql.getBytes()));
+        return this.parser.readStatements();
+    }
+
+    @Benchmark
+    public List<ZStatement> reader() throws ParseException {
+        this.parser.initParser(new StringReader(this.sql));
+        return this.parser.readStatements();
+    }
+
+    @Benchmark
+    public List<ZStatement> charSequence() throws ParseException {
+        this.parser.initParser(this.sql);
+        return this.parser.readStatements();
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(ZqlCharStreamBenchmark.class.getSimpleName()).addProfiler("gc").build();
+        new Runner(options).run();
+    }
+}
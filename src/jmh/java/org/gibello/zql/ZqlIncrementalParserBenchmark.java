@@ -0,0 +1,87 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental parser benchmark: cost of a one character edit in the middle of a 10000 statement script, re-parsed incrementally,
+ * compared with a full parse of the script.<br>
+ * Run main() to get the time and the allocation rate (gc profiler) of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZqlIncrementalParserBenchmark {
+
+    private static final int STATEMENTS = 10000;
+
+    private final ZqlIncrementalParser parser = new ZqlIncrementalParser();
+
+    private ZqlParsedScript script;
+
+    private int edited;
+
+    @Setup
+    public void setUp() {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < STATEMENTS; i++) {
+            if (i == STATEMENTS / 2) {
+                this.edited = text.length() + "select a, b from num where a = ".length();
+            }
+            text.append("select a, b from num where a = 1 and b like 'x%';\n");
+        }
+        this.script = this.parser.parse(text.toString());
+    }
+
+    @Benchmark
+    public ZqlParsedScript fullParse() {
+        return this.parser.parse(this.script.getText());
+    }
+
+    @Benchmark
+    public ZqlParsedScript edit() {
+        final char digit = this.script.getText().charAt(this.edited) == '1' ? '2' : '1';
+        this.script = this.parser.reparse(this.script, this.edited, this.edited + 1, String.valueOf(digit));
+        return this.script;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(ZqlIncrementalParserBenchmark.class.getSimpleName()).addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
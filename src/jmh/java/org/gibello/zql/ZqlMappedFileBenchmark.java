@@ -0,0 +1,148 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File input benchmark: parse time of a large script read through a FileInputStream and through a MappedFileCharStream.<br>
+ * The statements are consumed one at a time, so the heap only holds what the input path itself needs. Run main() to also print the
+ * peak heap used by each path; use "-p megabytes=1024" for a 1 GB script.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx256m"})
+public class ZqlMappedFileBenchmark {
+
+    private static final String STATEMENT = "select a, b, c + d * 2 from num n where a = 1 and (b > 2 or c like 'x%') and d in (1, 2, 3) order by a;\n";
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    @Param({"64"})
+    private int megabytes;
+
+    private File script;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.script = createScript(this.megabytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.script.delete();
+    }
+
+    @Benchmark
+    public long inputStream() throws IOException, ParseException {
+        return count(new ZqlParser(new DataInputStream(new FileInputStream(this.script))));
+    }
+
+    @Benchmark
+    public long mappedFile() throws IOException, ParseException {
+        return count(new ZqlParser(this.script));
+    }
+
+    private static long count(final ZqlParser parser) throws ParseException {
+        long statements = 0;
+        final ZqlStatementIterator iterator = parser.iterateStatements();
+        while (iterator.hasNext()) {
+            iterator.next();
+            statements++;
+        }
+        return statements;
+    }
+
+    private static File createScript(final int megabytes) throws IOException {
+        final File file = File.createTempFile("zql-benchmark", ".sql");
+        final byte[] statement = STATEMENT.getBytes("US-ASCII");
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            for (long written = 0; written < megabytes * MEGABYTE; written += statement.length) {
+                out.write(statement);
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+                pool.resetPeakUsage();
+            }
+        }
+        return peak;
+    }
+
+    public static void main(final String[] args) throws RunnerException, IOException, ParseException {
+        final Options options = new OptionsBuilder().include(ZqlMappedFileBenchmark.class.getSimpleName()).addProfiler("gc").build();
+        new Runner(options).run();
+
+        final int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        final File file = createScript(megabytes);
+        try {
+            System.gc();
+            peakHeap();
+            count(new ZqlParser(new DataInputStream(new FileInputStream(file))));
+            final long inputStreamPeak = peakHeap();
+            System.gc();
+            peakHeap();
+            count(new ZqlParser(file));
+            final long mappedPeak = peakHeap();
+            System.out.printf("Peak heap for a %d MB script: inputStream %d KB, mappedFile %d KB%n", megabytes, inputStreamPeak / 1024,
+                    mappedPeak / 1024);
+        } finally {
+            file.delete();
+        }
+    }
+}
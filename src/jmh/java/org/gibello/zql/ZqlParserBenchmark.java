@@ -0,0 +1,151 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.statement.ZStatement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parser benchmark: throughput of readStatement(), readStatements() and readExpression() over representative workloads. It is the
+ * reference to check that a grammar or AST change does not make parsing slower.<br>
+ * The workloads are:
+ * <ul>
+ * <li>simpleSelect: a short query with a simple WHERE clause;</li>
+ * <li>nestedWhere: a WHERE clause with boolean expressions nested 32 levels deep;</li>
+ * <li>hugeInList: an IN list of 1000 numbers;</li>
+ * <li>insert: an insert of one row (readStatements() reads a script of 100 inserts, one per row);</li>
+ * <li>subqueries: a query with subqueries nested in its WHERE clause.</li>
+ * </ul>
+ * readStatements() reads a script of 100 statements of the workload, readExpression() reads the WHERE clause of the workload (the
+ * values of the insert). readStatementsWithRecovery() reads the script with readStatements(List), to compare the cost of the
+ * error-recovering mode with the plain one.<br>
+ * Run main() to get the throughput and the allocation rate (gc profiler) of each workload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZqlParserBenchmark {
+
+    private static final int SCRIPT_STATEMENTS = 100;
+
+    @Param({"simpleSelect", "nestedWhere", "hugeInList", "insert", "subqueries"})
+    private String workload;
+
+    private final ZqlParser parser = new ZqlParser();
+
+    private String statement;
+
+    private String script;
+
+    private String expression;
+
+    private final List<ZqlDiagnostic> diagnostics = new ArrayList<ZqlDiagnostic>();
+
+    @Setup
+    public void setUp() {
+        final StringBuilder b = new StringBuilder();
+        if ("simpleSelect".equals(this.workload)) {
+            this.expression = "a = 1 and b like 'x%'";
+            this.statement = "select a, b, c from num where " + this.expression + ";";
+        } else if ("nestedWhere".equals(this.workload)) {
+            for (int i = 0; i < 32; i++) {
+                b.append("(c").append(i).append(" = ").append(i).append(i % 2 == 0 ? " and " : " or ");
+            }
+            b.append("d > 0");
+            for (int i = 0; i < 32; i++) {
+                b.append(')');
+            }
+            this.expression = b.toString();
+            this.statement = "select a from num where " + this.expression + ";";
+        } else if ("hugeInList".equals(this.workload)) {
+            b.append("a in (");
+            for (int i = 0; i < 1000; i++) {
+                b.append(i == 0 ? "" : ", ").append(i);
+            }
+            this.expression = b.append(')').toString();
+            this.statement = "select a from num where " + this.expression + ";";
+        } else if ("insert".equals(this.workload)) {
+            this.expression = "(42, 'name', 3.5 * 2, :bind, null)";
+            this.statement = "insert into num (a, b, c, d, e) values " + this.expression + ";";
+        } else if ("subqueries".equals(this.workload)) {
+            this.expression = "a in (select a from other o where o.b = n.b and exists (select 1 from third t where t.c = o.c "
+                    + "and t.d in (select d from fourth where e > 10))) and b = (select max(b) from other)";
+            this.statement = "select n.a, n.b from num n where " + this.expression + ";";
+        } else {
+            throw new IllegalArgumentException(this.workload);
+        }
+
+        final StringBuilder s = new StringBuilder();
+        for (int i = 0; i < SCRIPT_STATEMENTS; i++) {
+            s.append(this.statement).append('\n');
+        }
+        this.script = s.toString();
+    }
+
+    @Benchmark
+    public ZStatement readStatement() throws ParseException {
+        this.parser.initParser(this.statement);
+        return this.parser.readStatement();
+    }
+
+    @Benchmark
+    public List<ZStatement> readStatements() throws ParseException {
+        this.parser.initParser(this.script);
+        return this.parser.readStatements();
+    }
+
+    @Benchmark
+    public List<ZStatement> readStatementsWithRecovery() throws ParseException {
+        this.diagnostics.clear();
+        this.parser.initParser(this.script);
+        return this.parser.readStatements(this.diagnostics);
+    }
+
+    @Benchmark
+    public ZExp readExpression() throws ParseException {
+        this.parser.initParser(this.expression);
+        return this.parser.readExpression();
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(ZqlParserBenchmark.class.getSimpleName()).addProfiler("gc").build();
+        new Runner(options).run();
+    }
+}
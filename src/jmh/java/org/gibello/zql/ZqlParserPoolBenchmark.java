@@ -0,0 +1,90 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention benchmark: parse throughput of a shared, synchronized parser, of a fresh parser per statement and of a ZqlParserPool.<br>
+ * Run main() to measure all three strategies from 1 thread up to the number of available processors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZqlParserPoolBenchmark {
+
+    private static final String SQL = "select a, b, c + d * 2 from num n where a = 1 and (b > 2 or c like 'x%') and d in (1, 2, 3) order by a;";
+
+    private final ZqlParser shared = new ZqlParser();
+
+    private final ZqlParserPool pool = new ZqlParserPool(Runtime.getRuntime().availableProcessors());
+
+    @Benchmark
+    public ZStatement sharedParser() throws ParseException {
+        synchronized (this.shared) {
+            this.shared.initParser(SQL);
+            return this.shared.readStatement();
+        }
+    }
+
+    @Benchmark
+    public ZStatement parserPerStatement() throws ParseException {
+        return new ZqlParser(SQL).readStatement();
+    }
+
+    @Benchmark
+    public ZStatement pooledParser() throws ParseException {
+        return this.pool.parse(SQL);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final StringBuilder report = new StringBuilder(String.format("%-60s %8s %14s%n", "Benchmark", "Threads", "ops/ms"));
+        for (int threads = 1; threads <= cores; threads = threads < cores && threads * 2 > cores ? cores : threads * 2) {
+            final Options options = new OptionsBuilder().include(ZqlParserPoolBenchmark.class.getSimpleName()).threads(threads).build();
+            final Collection<RunResult> results = new Runner(options).run();
+            for (final RunResult result : results) {
+                report.append(String.format("%-60s %8d %14.3f%n", result.getParams().getBenchmark(), threads, result.getPrimaryResult().getScore()));
+            }
+            if (threads == cores) {
+                break;
+            }
+        }
+        System.out.print(report);
+    }
+}
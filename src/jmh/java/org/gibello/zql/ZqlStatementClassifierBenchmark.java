@@ -0,0 +1,72 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classifier benchmark: cost of finding the kind and the tables of a statement from its tokens, compared with a full parse.<br>
+ * Run main() to get the time and the allocation rate (gc profiler) of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZqlStatementClassifierBenchmark {
+
+    private static final String STATEMENT = "select a, b, c + d * 2 from num n, app.other o where a = 1 and (b > 2 or c like 'x%') "
+            + "and d in (select d from third where e = 3) order by a;";
+
+    private final ZqlParser parser = new ZqlParser();
+
+    private final ZqlStatementClassifier classifier = new ZqlStatementClassifier();
+
+    @Benchmark
+    public ZStatement parse() throws ParseException {
+        this.parser.initParser(STATEMENT);
+        return this.parser.readStatement();
+    }
+
+    @Benchmark
+    public ZqlStatementInfo classify() throws ParseException {
+        return this.classifier.classify(STATEMENT);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(ZqlStatementClassifierBenchmark.class.getSimpleName()).addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import java.io.IOException;
+
+/**
+ * CharSequenceCharStream: a CharStream reading directly from a CharSequence (String, StringBuilder, CharBuffer...).<br>
+ * Nothing is copied: characters are read from the sequence itself, and only the token images are created as Strings.<br>
+ * Line and column numbers follow the rules of the JavaCC SimpleCharStream (tabs expand to the next multiple of 8). They are only
+ * computed when asked for, by scanning forward from the beginning of the previous token.
+ */
+public class CharSequenceCharStream implements OffsetCharStream {
+
+    /**
+     * The tab size used to compute column numbers.
+     */
+    private static final int TAB_SIZE = 8;
+
+    /**
+     * The source of characters.
+     */
+    private CharSequence text;
+
+    /**
+     * Index of the first character to read.
+     */
+    private int start;
+
+    /**
+     * Index after the last character to read.
+     */
+    private int end;
+
+    /**
+     * Line of the first character.
+     */
+    private int startLine;
+
+    /**
+     * Column of the first character.
+     */
+    private int startColumn;
+
+    /**
+     * Index of the last character returned by readChar(), start - 1 before the first read.
+     */
+    private int pos;
+
+    /**
+     * Index of the first character of the current token.
+     */
+    private int tokenBegin;
+
+    /**
+     * Index of the last character whose position is known, start - 1 if none.
+     */
+    private int trackPos;
+
+    /**
+     * Line of the character at trackPos.
+     */
+    private int trackLine;
+
+    /**
+     * Column of the character at trackPos.
+     */
+    private int trackColumn;
+
+    /**
+     * Whether the character at trackPos is a carriage return.
+     */
+    private boolean trackCR;
+
+    /**
+     * Whether the character at trackPos is a line feed.
+     */
+    private boolean trackLF;
+
+    /**
+     * Index of the last token beginning whose position is known, start - 1 if none.
+     */
+    private int markPos;
+
+    /**
+     * Line of the character at markPos.
+     */
+    private int markLine;
+
+    /**
+     * Column of the character at markPos.
+     */
+    private int markColumn;
+
+    /**
+     * Whether the character at markPos is a carriage return.
+     */
+    private boolean markCR;
+
+    /**
+     * Whether the character at markPos is a line feed.
+     */
+    private boolean markLF;
+
+    /**
+     * Create a stream on a whole character sequence, starting at line 1, column 1.
+     *
+     * @param text the source of characters.
+     */
+    public CharSequenceCharStream(final CharSequence text) {
+        this(text, 0, text.length(), 1, 1);
+    }
+
+    /**
+     * Create a stream on a region of a character sequence.
+     *
+     * @param text        the source of characters.
+     * @param start       index of the first character to read.
+     * @param end         index after the last character to read.
+     * @param startLine   the line of the first character.
+     * @param startColumn the column of the first character.
+     */
+    public CharSequenceCharStream(final CharSequence text, final int start, final int end, final int startLine,
+            final int startColumn) {
+        this.ReInit(text, start, end, startLine, startColumn);
+    }
+
+    /**
+     * Re-initialize the stream on a whole character sequence.
+     *
+     * @param newText the source of characters.
+     */
+    public void ReInit(final CharSequence newText) {
+        this.ReInit(newText, 0, newText.length(), 1, 1);
+    }
+
+    /**
+     * Re-initialize the stream on a region of a character sequence.
+     *
+     * @param newText        the source of characters.
+     * @param newStart       index of the first character to read.
+     * @param newEnd         index after the last character to read.
+     * @param newStartLine   the line of the first character.
+     * @param newStartColumn the column of the first character.
+     */
+    public void ReInit(final CharSequence newText, final int newStart, final int newEnd, final int newStartLine,
+            final int newStartColumn) {
+        if (newStart < 0 || newEnd > newText.length() || newStart > newEnd) {
+            throw new IndexOutOfBoundsException("start " + newStart + ", end " + newEnd + ", length " + newText.length());
+        }
+        this.text = newText;
+        this.start = newStart;
+        this.end = newEnd;
+        this.startLine = newStartLine;
+        this.startColumn = newStartColumn;
+        this.pos = newStart - 1;
+        this.tokenBegin = newStart;
+        this.resetTracker();
+    }
+
+    @Override
+    public char BeginToken() throws IOException {
+        if (this.pos + 1 >= this.end) {
+            this.tokenBegin = this.pos;
+            throw new IOException();
+        }
+        this.tokenBegin = ++this.pos;
+        return this.text.charAt(this.pos);
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        if (this.pos + 1 >= this.end) {
+            throw new IOException();
+        }
+        return this.text.charAt(++this.pos);
+    }
+
+    @Override
+    public void backup(final int amount) {
+        this.pos -= amount;
+    }
+
+    @Override
+    public String GetImage() {
+        return this.text.subSequence(this.tokenBegin, this.pos + 1).toString();
+    }
+
+    @Override
+    public char[] GetSuffix(final int len) {
+        final char[] suffix = new char[len];
+        final int from = this.pos - len + 1;
+        for (int i = 0; i < len; i++) {
+            suffix[i] = this.text.charAt(from + i);
+        }
+        return suffix;
+    }
+
+    @Override
+    public void Done() {
+        this.text = null;
+    }
+
+    @Override
+    @Deprecated
+    public int getColumn() {
+        return this.getEndColumn();
+    }
+
+    @Override
+    @Deprecated
+    public int getLine() {
+        return this.getEndLine();
+    }
+
+    @Override
+    public int getEndColumn() {
+        this.trackTo(this.pos);
+        return this.trackColumn;
+    }
+
+    @Override
+    public int getEndLine() {
+        this.trackTo(this.pos);
+        return this.trackLine;
+    }
+
+    @Override
+    public int getBeginColumn() {
+        this.trackToBegin();
+        return this.trackColumn;
+    }
+
+    @Override
+    public int getBeginLine() {
+        this.trackToBegin();
+        return this.trackLine;
+    }
+
+    /**
+     * The offsets are indexes in the character sequence.
+     */
+    @Override
+    public long getBeginOffset() {
+        return this.tokenBegin;
+    }
+
+    @Override
+    public long getEndOffset() {
+        return this.pos + 1;
+    }
+
+    /**
+     * Forget all known positions.
+     */
+    private void resetTracker() {
+        this.trackPos = this.start - 1;
+        this.trackLine = this.startLine;
+        this.trackColumn = this.startColumn - 1;
+        this.trackCR = false;
+        this.trackLF = false;
+        this.markPos = this.trackPos;
+        this.markLine = this.trackLine;
+        this.markColumn = this.trackColumn;
+        this.markCR = false;
+        this.markLF = false;
+    }
+
+    /**
+     * Compute the line and column of the first character of the current token, and remember them.
+     */
+    private void trackToBegin() {
+        this.trackTo(this.tokenBegin);
+        this.markPos = this.trackPos;
+        this.markLine = this.trackLine;
+        this.markColumn = this.trackColumn;
+        this.markCR = this.trackCR;
+        this.markLF = this.trackLF;
+    }
+
+    /**
+     * Compute the line and column of a character.
+     *
+     * @param index index of the character, start - 1 for the position before the first character.
+     */
+    private void trackTo(final int index) {
+        if (index < this.trackPos) {
+            // Tokens are read forward, so this only happens for the beginning of a token asked after its end (a lexical error
+            // reports its end first): rescan from the last token beginning, not from the start of the text.
+            if (this.markPos <= index) {
+                this.trackPos = this.markPos;
+                this.trackLine = this.markLine;
+                this.trackColumn = this.markColumn;
+                this.trackCR = this.markCR;
+                this.trackLF = this.markLF;
+            } else {
+                this.resetTracker();
+            }
+        }
+        while (this.trackPos < index) {
+            final char c = this.text.charAt(++this.trackPos);
+            this.trackColumn++;
+
+            if (this.trackLF) {
+                this.trackLF = false;
+                this.trackColumn = 1;
+                this.trackLine++;
+            } else if (this.trackCR) {
+                this.trackCR = false;
+                if (c == '\n') {
+                    this.trackLF = true;
+                } else {
+                    this.trackColumn = 1;
+                    this.trackLine++;
+                }
+            }
+
+            switch (c) {
+                case '\r':
+                    this.trackCR = true;
+                    break;
+                case '\n':
+                    this.trackLF = true;
+                    break;
+                case '\t':
+                    this.trackColumn--;
+                    this.trackColumn += TAB_SIZE - (this.trackColumn % TAB_SIZE);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
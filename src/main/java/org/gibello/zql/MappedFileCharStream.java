@@ -0,0 +1,262 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * MappedFileCharStream: a CharStream over a memory-mapped UTF-8 (or ASCII) file.<br>
+ * The file is mapped region by region and decoded straight into the token buffer of ReaderCharStream: there is no intermediate byte or
+ * char buffer on the heap, and the heap used does not depend on the size of the file. ASCII characters are copied as is, other
+ * characters are decoded from UTF-8 (malformed sequences are replaced by U+FFFD).<br>
+ * The file is closed when the end of the file is reached, or by close().
+ */
+public class MappedFileCharStream extends ReaderCharStream {
+
+    /**
+     * The size of the regions of the file mapped at once.
+     */
+    private static final long REGION_SIZE = 1L << 28;
+
+    /**
+     * The decoder reading the file.
+     */
+    private final MappedUtf8Reader decoder;
+
+    /**
+     * Map a file.
+     *
+     * @param file the UTF-8 encoded SQL file.
+     * @throws IOException if the file can not be opened or mapped.
+     */
+    public MappedFileCharStream(final File file) throws IOException {
+        this(new MappedUtf8Reader(file, REGION_SIZE));
+    }
+
+    /**
+     * Map a file, with a given region size (used by the tests to cross region boundaries).
+     *
+     * @param file       the UTF-8 encoded SQL file.
+     * @param regionSize the size of the regions of the file mapped at once.
+     * @throws IOException if the file can not be opened or mapped.
+     */
+    MappedFileCharStream(final File file, final long regionSize) throws IOException {
+        this(new MappedUtf8Reader(file, regionSize));
+    }
+
+    /**
+     * Create the stream on its decoder.
+     *
+     * @param decoder the decoder reading the file.
+     */
+    private MappedFileCharStream(final MappedUtf8Reader decoder) {
+        super(decoder);
+        this.decoder = decoder;
+    }
+
+    /**
+     * Close the file before the end of the file is reached.
+     *
+     * @throws IOException if the file can not be closed.
+     */
+    public void close() throws IOException {
+        this.decoder.close();
+    }
+
+    /**
+     * A reader decoding UTF-8 from successive mapped regions of a file.
+     */
+    private static final class MappedUtf8Reader extends Reader {
+
+        /**
+         * The longest UTF-8 sequence.
+         */
+        private static final int MAX_SEQUENCE = 4;
+
+        /**
+         * The Unicode replacement character, for malformed input.
+         */
+        private static final char REPLACEMENT = '\uFFFD';
+
+        /**
+         * The file.
+         */
+        private final RandomAccessFile file;
+
+        /**
+         * The channel of the file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * The size of the file.
+         */
+        private final long size;
+
+        /**
+         * The size of the regions mapped at once.
+         */
+        private final long regionSize;
+
+        /**
+         * The current region.
+         */
+        private MappedByteBuffer region;
+
+        /**
+         * The offset in the file of the current region.
+         */
+        private long regionOffset;
+
+        /**
+         * The low surrogate of a supplementary character, when there was no room for it in the last read.
+         */
+        private char pendingLowSurrogate;
+
+        /**
+         * Open and map the beginning of a file.
+         *
+         * @param path       the file.
+         * @param regionSize the size of the regions mapped at once.
+         * @throws IOException if the file can not be opened or mapped.
+         */
+        MappedUtf8Reader(final File path, final long regionSize) throws IOException {
+            this.file = new RandomAccessFile(path, "r");
+            this.regionSize = regionSize;
+            try {
+                this.channel = this.file.getChannel();
+                this.size = this.channel.size();
+                this.map(0);
+            } catch (final IOException | RuntimeException e) {
+                this.file.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n = off;
+            final int limit = off + len;
+            if (this.pendingLowSurrogate != 0) {
+                cbuf[n++] = this.pendingLowSurrogate;
+                this.pendingLowSurrogate = 0;
+            }
+            while (n < limit) {
+                MappedByteBuffer bytes = this.region;
+                if (bytes.remaining() < MAX_SEQUENCE && this.regionOffset + bytes.limit() < this.size) {
+                    // A character may span the end of the region: map the next region from here.
+                    this.map(this.regionOffset + bytes.position());
+                    bytes = this.region;
+                }
+                if (!bytes.hasRemaining()) {
+                    break;
+                }
+                if (bytes.get(bytes.position()) < 0) {
+                    n = this.decode(bytes, cbuf, n, limit);
+                    continue;
+                }
+                // ASCII fast path
+                final int ascii = Math.min(limit - n, bytes.remaining());
+                for (int i = 0; i < ascii; i++) {
+                    final byte b = bytes.get();
+                    if (b < 0) {
+                        bytes.position(bytes.position() - 1);
+                        break;
+                    }
+                    cbuf[n++] = (char) b;
+                }
+            }
+            return n == off ? -1 : n - off;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.region = null;
+            this.file.close();
+        }
+
+        /**
+         * Decode one multi-byte character.
+         *
+         * @param bytes the current region, positioned on the first byte of the character.
+         * @param cbuf  the destination.
+         * @param n     the index of the destination.
+         * @param limit the end of the destination.
+         * @return the next index of the destination.
+         */
+        private int decode(final MappedByteBuffer bytes, final char[] cbuf, final int n, final int limit) {
+            final int b0 = bytes.get() & 0xFF;
+            final int length;
+            int cp;
+            if ((b0 & 0xE0) == 0xC0) {
+                length = 2;
+                cp = b0 & 0x1F;
+            } else if ((b0 & 0xF0) == 0xE0) {
+                length = 3;
+                cp = b0 & 0x0F;
+            } else if ((b0 & 0xF8) == 0xF0) {
+                length = MAX_SEQUENCE;
+                cp = b0 & 0x07;
+            } else {
+                cbuf[n] = REPLACEMENT;
+                return n + 1;
+            }
+            for (int i = 1; i < length; i++) {
+                if (!bytes.hasRemaining() || (bytes.get(bytes.position()) & 0xC0) != 0x80) {
+                    cbuf[n] = REPLACEMENT;
+                    return n + 1;
+                }
+                cp = (cp << 6) | (bytes.get() & 0x3F);
+            }
+            if (Character.isBmpCodePoint(cp)) {
+                cbuf[n] = (char) cp;
+                return n + 1;
+            }
+            if (!Character.isValidCodePoint(cp)) {
+                cbuf[n] = REPLACEMENT;
+                return n + 1;
+            }
+            cbuf[n] = Character.highSurrogate(cp);
+            if (n + 1 < limit) {
+                cbuf[n + 1] = Character.lowSurrogate(cp);
+                return n + 2;
+            }
+            this.pendingLowSurrogate = Character.lowSurrogate(cp);
+            return n + 1;
+        }
+
+        /**
+         * Map the region of the file starting at a given offset.
+         *
+         * @param offset the offset in the file.
+         * @throws IOException if the region can not be mapped.
+         */
+        private void map(final long offset) throws IOException {
+            this.regionOffset = offset;
+            this.region = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(this.regionSize, this.size - offset));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+/**
+ * OffsetCharStream: a CharStream that knows the offset of its characters in the input.<br>
+ * The token manager copies these offsets into each token (see OffsetToken).
+ */
+public interface OffsetCharStream extends CharStream {
+
+    /**
+     * Get the offset in the input of the first character of the current token.
+     *
+     * @return the offset of the first character of the current token.
+     */
+    long getBeginOffset();
+
+    /**
+     * Get the offset in the input after the last character of the current token.
+     *
+     * @return the offset after the last character of the current token.
+     */
+    long getEndOffset();
+
+}
@@ -0,0 +1,43 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import java.io.Serializable;
+
+/**
+ * OffsetToken: the base class of the generated Token class, holding the character offsets of the token in the input.<br>
+ * The offsets are only set when the parser reads from an OffsetCharStream, they are -1 otherwise.
+ */
+public class OffsetToken implements Serializable {
+
+    /**
+     * The serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The offset of the first character of the token.
+     */
+    public long beginOffset = -1;
+
+    /**
+     * The offset after the last character of the token.
+     */
+    public long endOffset = -1;
+
+}
@@ -0,0 +1,410 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * ReaderCharStream: a buffered CharStream that reads its characters from a java.io.Reader.<br>
+ * The buffer only has to hold the token being scanned: when it is full, the characters of the previous tokens are dropped and the
+ * current token is moved to the start of the buffer. The buffer only grows for tokens longer than the buffer itself.<br>
+ * Line and column numbers follow the rules of the JavaCC SimpleCharStream (tabs expand to the next multiple of 8).
+ */
+public class ReaderCharStream implements OffsetCharStream {
+
+    /**
+     * The initial buffer size.
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    /**
+     * The tab size used to compute column numbers.
+     */
+    private static final int TAB_SIZE = 8;
+
+    /**
+     * The source of characters.
+     */
+    private Reader reader;
+
+    /**
+     * The characters read from the source and not yet dropped.
+     */
+    private char[] buffer;
+
+    /**
+     * The line of each buffered character.
+     */
+    private int[] bufLine;
+
+    /**
+     * The column of each buffered character.
+     */
+    private int[] bufColumn;
+
+    /**
+     * Index of the last character returned by readChar().
+     */
+    private int bufpos;
+
+    /**
+     * Index of the first character of the current token, -1 while a new token is being started.
+     */
+    private int tokenBegin;
+
+    /**
+     * Number of valid characters in the buffer.
+     */
+    private int maxNextCharInd;
+
+    /**
+     * Number of characters backed up, that readChar() will return again.
+     */
+    private int inBuf;
+
+    /**
+     * Offset in the input of the first character of the buffer.
+     */
+    private long bufferOffset;
+
+    /**
+     * Line of the last character read from the source.
+     */
+    private int line;
+
+    /**
+     * Column of the last character read from the source.
+     */
+    private int column;
+
+    /**
+     * Whether the last character read from the source is a carriage return.
+     */
+    private boolean prevCharIsCR;
+
+    /**
+     * Whether the last character read from the source is a line feed.
+     */
+    private boolean prevCharIsLF;
+
+    /**
+     * Whether the source is exhausted.
+     */
+    private boolean eof;
+
+    /**
+     * Create a stream on a reader, starting at line 1, column 1.
+     *
+     * @param reader the source of characters.
+     */
+    public ReaderCharStream(final Reader reader) {
+        this(reader, 1, 1);
+    }
+
+    /**
+     * Create a stream on a reader whose first character is at the given position.
+     *
+     * @param reader      the source of characters.
+     * @param startLine   the line of the first character.
+     * @param startColumn the column of the first character.
+     */
+    public ReaderCharStream(final Reader reader, final int startLine, final int startColumn) {
+        this(reader, 0, startLine, startColumn);
+    }
+
+    /**
+     * Create a stream on a reader that has already been read up to a given offset (for instance to resume reading a script).
+     *
+     * @param reader      the source of characters.
+     * @param startOffset the offset in the input of the first character read from the reader.
+     * @param startLine   the line of the first character.
+     * @param startColumn the column of the first character.
+     */
+    public ReaderCharStream(final Reader reader, final long startOffset, final int startLine, final int startColumn) {
+        this.ReInit(reader, startOffset, startLine, startColumn);
+    }
+
+    /**
+     * Re-initialize the stream on a new reader, keeping the buffers.
+     *
+     * @param newReader the source of characters.
+     */
+    public void ReInit(final Reader newReader) {
+        this.ReInit(newReader, 1, 1);
+    }
+
+    /**
+     * Re-initialize the stream on a new reader whose first character is at the given position, keeping the buffers.
+     *
+     * @param newReader   the source of characters.
+     * @param startLine   the line of the first character.
+     * @param startColumn the column of the first character.
+     */
+    public void ReInit(final Reader newReader, final int startLine, final int startColumn) {
+        this.ReInit(newReader, 0, startLine, startColumn);
+    }
+
+    /**
+     * Re-initialize the stream on a reader that has already been read up to a given offset, keeping the buffers.
+     *
+     * @param newReader   the source of characters.
+     * @param startOffset the offset in the input of the first character read from the reader.
+     * @param startLine   the line of the first character.
+     * @param startColumn the column of the first character.
+     */
+    public void ReInit(final Reader newReader, final long startOffset, final int startLine, final int startColumn) {
+        if (this.buffer == null) {
+            this.buffer = new char[DEFAULT_BUFFER_SIZE];
+            this.bufLine = new int[DEFAULT_BUFFER_SIZE];
+            this.bufColumn = new int[DEFAULT_BUFFER_SIZE];
+        }
+        this.reader = newReader;
+        this.bufferOffset = startOffset;
+        this.line = startLine;
+        this.column = startColumn - 1;
+        this.prevCharIsCR = false;
+        this.prevCharIsLF = false;
+        this.bufpos = -1;
+        this.tokenBegin = 0;
+        this.maxNextCharInd = 0;
+        this.inBuf = 0;
+        this.eof = false;
+    }
+
+    @Override
+    public char BeginToken() throws IOException {
+        this.tokenBegin = -1;
+        final char c = this.readChar();
+        this.tokenBegin = this.bufpos;
+        return c;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        if (this.inBuf > 0) {
+            --this.inBuf;
+            return this.buffer[++this.bufpos];
+        }
+
+        if (++this.bufpos >= this.maxNextCharInd) {
+            this.fillBuffer();
+        }
+
+        final char c = this.buffer[this.bufpos];
+        this.updateLineColumn(c);
+        return c;
+    }
+
+    @Override
+    public void backup(final int amount) {
+        this.inBuf += amount;
+        this.bufpos -= amount;
+    }
+
+    @Override
+    public String GetImage() {
+        return new String(this.buffer, this.tokenBegin, this.bufpos - this.tokenBegin + 1);
+    }
+
+    @Override
+    public char[] GetSuffix(final int len) {
+        final char[] suffix = new char[len];
+        System.arraycopy(this.buffer, this.bufpos - len + 1, suffix, 0, len);
+        return suffix;
+    }
+
+    @Override
+    public void Done() {
+        this.buffer = null;
+        this.bufLine = null;
+        this.bufColumn = null;
+    }
+
+    @Override
+    @Deprecated
+    public int getColumn() {
+        return this.getEndColumn();
+    }
+
+    @Override
+    @Deprecated
+    public int getLine() {
+        return this.getEndLine();
+    }
+
+    @Override
+    public int getEndColumn() {
+        return this.bufpos < 0 ? this.column : this.bufColumn[this.bufpos];
+    }
+
+    @Override
+    public int getEndLine() {
+        return this.bufpos < 0 ? this.line : this.bufLine[this.bufpos];
+    }
+
+    @Override
+    public int getBeginColumn() {
+        return this.tokenBegin < 0 ? this.column : this.bufColumn[this.tokenBegin];
+    }
+
+    @Override
+    public int getBeginLine() {
+        return this.tokenBegin < 0 ? this.line : this.bufLine[this.tokenBegin];
+    }
+
+    @Override
+    public long getBeginOffset() {
+        return this.bufferOffset + (this.tokenBegin < 0 ? this.bufpos + 1 : this.tokenBegin);
+    }
+
+    @Override
+    public long getEndOffset() {
+        return this.bufferOffset + this.bufpos + 1;
+    }
+
+    /**
+     * Read more characters from the source, making room in the buffer first if needed.
+     *
+     * @throws IOException at the end of the source (as expected by the token manager), or if the source fails.
+     */
+    private void fillBuffer() throws IOException {
+        if (this.eof) {
+            this.endOfInput();
+        }
+
+        if (this.maxNextCharInd == this.buffer.length) {
+            // Nothing before the current token (or before the character being read) can be backed up to.
+            final int keep = this.tokenBegin < 0 ? this.bufpos : this.tokenBegin;
+            if (keep > 0) {
+                this.shift(keep);
+            } else {
+                this.expand();
+            }
+        }
+
+        final int read;
+        try {
+            read = this.reader.read(this.buffer, this.maxNextCharInd, this.buffer.length - this.maxNextCharInd);
+        } catch (final IOException e) {
+            this.undoRead();
+            throw e;
+        }
+        if (read == -1) {
+            this.eof = true;
+            this.reader.close();
+            this.endOfInput();
+        }
+        this.maxNextCharInd += read;
+    }
+
+    /**
+     * Signal the end of the input, leaving the stream on its last character.
+     *
+     * @throws IOException always.
+     */
+    private void endOfInput() throws IOException {
+        this.undoRead();
+        throw new IOException();
+    }
+
+    /**
+     * Cancel the pending readChar().
+     */
+    private void undoRead() {
+        --this.bufpos;
+        if (this.tokenBegin == -1) {
+            this.tokenBegin = this.bufpos;
+        }
+    }
+
+    /**
+     * Drop the first characters of the buffer.
+     *
+     * @param count the number of characters to drop.
+     */
+    private void shift(final int count) {
+        final int remaining = this.maxNextCharInd - count;
+        System.arraycopy(this.buffer, count, this.buffer, 0, remaining);
+        System.arraycopy(this.bufLine, count, this.bufLine, 0, remaining);
+        System.arraycopy(this.bufColumn, count, this.bufColumn, 0, remaining);
+        this.maxNextCharInd = remaining;
+        this.bufferOffset += count;
+        this.bufpos -= count;
+        if (this.tokenBegin >= 0) {
+            this.tokenBegin -= count;
+        }
+    }
+
+    /**
+     * Double the buffer size, for a token that does not fit in the buffer.
+     */
+    private void expand() {
+        final int size = this.buffer.length * 2;
+        final char[] newBuffer = new char[size];
+        final int[] newBufLine = new int[size];
+        final int[] newBufColumn = new int[size];
+        System.arraycopy(this.buffer, 0, newBuffer, 0, this.maxNextCharInd);
+        System.arraycopy(this.bufLine, 0, newBufLine, 0, this.maxNextCharInd);
+        System.arraycopy(this.bufColumn, 0, newBufColumn, 0, this.maxNextCharInd);
+        this.buffer = newBuffer;
+        this.bufLine = newBufLine;
+        this.bufColumn = newBufColumn;
+    }
+
+    /**
+     * Compute the position of a character read from the source for the first time.
+     *
+     * @param c the character.
+     */
+    private void updateLineColumn(final char c) {
+        this.column++;
+
+        if (this.prevCharIsLF) {
+            this.prevCharIsLF = false;
+            this.column = 1;
+            this.line++;
+        } else if (this.prevCharIsCR) {
+            this.prevCharIsCR = false;
+            if (c == '\n') {
+                this.prevCharIsLF = true;
+            } else {
+                this.column = 1;
+                this.line++;
+            }
+        }
+
+        switch (c) {
+            case '\r':
+                this.prevCharIsCR = true;
+                break;
+            case '\n':
+                this.prevCharIsLF = true;
+                break;
+            case '\t':
+                this.column--;
+                this.column += TAB_SIZE - (this.column % TAB_SIZE);
+                break;
+            default:
+                break;
+        }
+
+        this.bufLine[this.bufpos] = this.line;
+        this.bufColumn[this.bufpos] = this.column;
+    }
+}
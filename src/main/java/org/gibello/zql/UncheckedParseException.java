@@ -0,0 +1,44 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+/**
+ * UncheckedParseException: wraps a ParseException where a checked exception can not be thrown (for instance in an Iterator).
+ */
+public class UncheckedParseException extends RuntimeException {
+
+    /**
+     * The serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Wrap a parse exception.
+     *
+     * @param cause the parse exception.
+     */
+    public UncheckedParseException(final ParseException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public ParseException getCause() {
+        return (ParseException) super.getCause();
+    }
+
+}
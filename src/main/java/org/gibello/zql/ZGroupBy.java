@@ -18,9 +18,13 @@
 package org.gibello.zql;
 
 import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.unparse.ZUnparser;
+import org.gibello.zql.utils.ZFreezer;
+import org.gibello.zql.utils.ZNodeList;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * ZGroupBy: an SQL GROUP BY...HAVING clause.
@@ -45,6 +49,16 @@ public class ZGroupBy implements Serializable {
      */
     private ZExp having = null;
 
+    /**
+     * Whether the GROUP BY clause is frozen (read-only).
+     */
+    private boolean frozen = false;
+
+    /**
+     * The structural hash, kept once the clause is frozen, 0 if it is not known.
+     */
+    private transient int hash;
+
     /**
      * Create a GROUP BY given a set of Expressions.
      *
@@ -78,21 +92,64 @@ public class ZGroupBy implements Serializable {
      * @param having An SQL Expression (the HAVING clause)
      */
     public void setHaving(final ZExp having) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.having = having;
     }
 
+    /**
+     * Make this GROUP BY clause compact and read-only (see ZFreezer).
+     *
+     * @return this GROUP BY clause.
+     */
+    public ZGroupBy freeze() {
+        if (!this.frozen) {
+            if (this.groupBy != null) {
+                this.groupBy = ZNodeList.freeze(this.groupBy);
+            }
+            this.having = ZFreezer.freeze(this.having);
+            this.frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * Check whether this GROUP BY clause is frozen.
+     *
+     * @return whether it is read-only.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
     @Override
     public String toString() {
-        final StringBuilder buf = new StringBuilder("group by ");
+        return ZUnparser.render(this);
+    }
 
-        // buf.append(groupby_.toString());
-        buf.append(this.groupBy.get(0).toString());
-        for (int i = 1; i < this.groupBy.size(); i++) {
-            buf.append(", ").append(this.groupBy.get(i).toString());
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ZGroupBy that = (ZGroupBy) o;
+        if (this.frozen && that.frozen && this.hashCode() != that.hashCode()) {
+            return false;
         }
-        if (this.having != null) {
-            buf.append(" having ").append(this.having.toString());
+        return ZNodeList.equal(this.groupBy, that.groupBy) && Objects.equals(this.having, that.having);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = this.hash;
+        if (result == 0) {
+            result = 31 * ZNodeList.hash(this.groupBy) + Objects.hashCode(this.having);
+            if (this.frozen) {
+                this.hash = result;
+            }
         }
-        return buf.toString();
+        return result;
     }
 }
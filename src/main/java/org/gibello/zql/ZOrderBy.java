@@ -18,8 +18,11 @@
 package org.gibello.zql;
 
 import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.unparse.ZUnparser;
+import org.gibello.zql.utils.ZFreezer;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 /**
  * An SQL query ORDER BY clause.
@@ -44,6 +47,16 @@ public class ZOrderBy implements Serializable {
      */
     private boolean ascending = true;
 
+    /**
+     * Whether the ORDER BY item is frozen (read-only).
+     */
+    private boolean frozen = false;
+
+    /**
+     * The structural hash, kept once the item is frozen, 0 if it is not known.
+     */
+    private transient int hash;
+
     /**
      * Constructor.
      *
@@ -68,6 +81,7 @@ public class ZOrderBy implements Serializable {
      * @param ascending true for ascending order, false for descending order.
      */
     public void setAscOrder(final boolean ascending) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.ascending = ascending;
     }
 
@@ -80,15 +94,57 @@ public class ZOrderBy implements Serializable {
         return this.expression;
     }
 
+    /**
+     * Make this ORDER BY item compact and read-only (see ZFreezer).
+     *
+     * @return this ORDER BY item.
+     */
+    public ZOrderBy freeze() {
+        if (!this.frozen) {
+            this.expression = ZFreezer.freeze(this.expression);
+            this.frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * Check whether this ORDER BY item is frozen.
+     *
+     * @return whether it is read-only.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
     @Override
     public String toString() {
-        String ascending;
+        return ZUnparser.render(this);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ZOrderBy that = (ZOrderBy) o;
+        if (this.frozen && that.frozen && this.hashCode() != that.hashCode()) {
+            return false;
+        }
+        return this.ascending == that.ascending && Objects.equals(this.expression, that.expression);
+    }
 
-        if (this.ascending) {
-            ascending = "ASC";
-        } else {
-            ascending = "DESC";
+    @Override
+    public int hashCode() {
+        int result = this.hash;
+        if (result == 0) {
+            result = 31 * Objects.hashCode(this.expression) + (this.ascending ? 1 : 0);
+            if (this.frozen) {
+                this.hash = result;
+            }
         }
-        return this.expression.toString() + " " + ascending;
+        return result;
     }
 }
@@ -0,0 +1,201 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ZqlDiagnostic: a statement that could not be parsed by ZqlParser.readStatements(List), and why.<br>
+ * The offsets are character offsets in the input (-1 if the input stream does not know them); lines and columns start at 1.
+ */
+public final class ZqlDiagnostic {
+
+    /**
+     * Offset of the first character of the failed statement.
+     */
+    private final long statementOffset;
+
+    /**
+     * Offset of the first character of the error.
+     */
+    private final long offset;
+
+    /**
+     * Line of the error.
+     */
+    private final int line;
+
+    /**
+     * Column of the error.
+     */
+    private final int column;
+
+    /**
+     * The token found at the error, null if unknown.
+     */
+    private final String encountered;
+
+    /**
+     * The tokens the parser expected at the error.
+     */
+    private final List<String> expected;
+
+    /**
+     * Whether the error is a lexical error.
+     */
+    private final boolean lexical;
+
+    /**
+     * The error message.
+     */
+    private final String message;
+
+    /**
+     * Create a diagnostic.
+     *
+     * @param statementOffset offset of the first character of the failed statement.
+     * @param offset          offset of the first character of the error.
+     * @param line            line of the error.
+     * @param column          column of the error.
+     * @param encountered     the token found at the error, null if unknown.
+     * @param expected        the tokens the parser expected at the error.
+     * @param lexical         whether the error is a lexical error.
+     * @param message         the error message.
+     */
+    ZqlDiagnostic(final long statementOffset, final long offset, final int line, final int column, final String encountered,
+            final List<String> expected, final boolean lexical, final String message) {
+        this.statementOffset = statementOffset;
+        this.offset = offset;
+        this.line = line;
+        this.column = column;
+        this.encountered = encountered;
+        this.expected = expected;
+        this.lexical = lexical;
+        this.message = message;
+    }
+
+    /**
+     * Create the diagnostic of a syntax error.
+     *
+     * @param statementOffset offset of the first character of the failed statement.
+     * @param lastToken       the last token read without error.
+     * @param e               the error.
+     * @return the diagnostic.
+     */
+    static ZqlDiagnostic syntaxError(final long statementOffset, final Token lastToken, final ParseException e) {
+        final List<String> expected;
+        if (e.expectedTokenSequences == null) {
+            expected = Collections.emptyList();
+        } else {
+            final List<String> sequences = new ArrayList<String>(e.expectedTokenSequences.length);
+            for (final int[] sequence : e.expectedTokenSequences) {
+                final StringBuilder b = new StringBuilder();
+                for (int i = 0; i < sequence.length; i++) {
+                    b.append(i == 0 ? "" : " ").append(e.tokenImage[sequence[i]]);
+                }
+                sequences.add(b.toString());
+            }
+            expected = Collections.unmodifiableList(sequences);
+        }
+
+        // The parser throws its own errors (an undefined function...) after the faulty token
+        final Token at = e.currentToken != null && e.currentToken.next != null ? e.currentToken.next : lastToken;
+        return new ZqlDiagnostic(statementOffset, at.beginOffset, at.beginLine, at.beginColumn,
+                at.kind == ZqlJJParserConstants.EOF ? "<EOF>" : at.image, expected, false, e.getMessage());
+    }
+
+    /**
+     * Get the offset of the first character of the failed statement.
+     *
+     * @return the offset.
+     */
+    public long getStatementOffset() {
+        return this.statementOffset;
+    }
+
+    /**
+     * Get the offset of the first character of the error.
+     *
+     * @return the offset.
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Get the line of the error.
+     *
+     * @return the line.
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Get the column of the error.
+     *
+     * @return the column.
+     */
+    public int getColumn() {
+        return this.column;
+    }
+
+    /**
+     * Get the token found at the error.
+     *
+     * @return the token image, "&lt;EOF&gt;" at the end of the input, null for a lexical error.
+     */
+    public String getEncountered() {
+        return this.encountered;
+    }
+
+    /**
+     * Get the tokens the parser expected at the error, as in the messages of the parser ("\"FROM\"", "&lt;S_IDENTIFIER&gt;"...).
+     *
+     * @return the expected tokens (sequences of tokens separated by spaces), empty for errors reported by the grammar actions
+     * (an undefined function...) and for lexical errors.
+     */
+    public List<String> getExpected() {
+        return this.expected;
+    }
+
+    /**
+     * Check for a lexical error (a character that does not start any token, an unterminated string...).
+     *
+     * @return true for a lexical error, false for a syntax error.
+     */
+    public boolean isLexical() {
+        return this.lexical;
+    }
+
+    /**
+     * Get the error message, the one of the ParseException (or lexical error) that readStatements() would have thrown.
+     *
+     * @return the message.
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    @Override
+    public String toString() {
+        return "line " + this.line + ", column " + this.column + ": " + this.message;
+    }
+}
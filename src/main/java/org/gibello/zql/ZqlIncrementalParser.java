@@ -0,0 +1,288 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZFunctionRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ZqlIncrementalParser: parses an SQL script that is being edited, re-parsing only the statements touched by each edit.<br>
+ * parse() splits the script at its top-level semicolons and parses every statement on its own, so that an error only affects its own
+ * statement. reparse() takes the previous result and an edit (the range replaced in the old text, and the range of the replacement in
+ * the new text): the script is split again from the first statement touched by the edit, until a semicolon that ends a statement of
+ * the old text after the edit. Only the statements in between are parsed; the others keep their ZStatement objects, with their chunks
+ * shifted. The cost of an edit depends on the size of the statements it touches, not on the size of the script.<br>
+ * A parser is not thread-safe; the parsed scripts are immutable.
+ */
+public class ZqlIncrementalParser {
+
+    /**
+     * The tab size used to compute column numbers.
+     */
+    private static final int TAB_SIZE = 8;
+
+    /**
+     * The stream the chunks are read from, reused.
+     */
+    private final CharSequenceCharStream stream = new CharSequenceCharStream("");
+
+    /**
+     * The parser, reused.
+     */
+    private final ZqlJJParser parser = new ZqlJJParser(this.stream);
+
+    /**
+     * The errors of the chunk being parsed, reused.
+     */
+    private final List<ZqlDiagnostic> diagnostics = new ArrayList<ZqlDiagnostic>();
+
+    /**
+     * Create a parser knowing the functions of the global registry.
+     */
+    public ZqlIncrementalParser() {
+        this(ZFunctionRegistry.global());
+    }
+
+    /**
+     * Create a parser knowing the functions of a session (see ZFunctionRegistry.scoped()).
+     *
+     * @param functions the functions known to the parses.
+     */
+    public ZqlIncrementalParser(final ZFunctionRegistry functions) {
+        this.parser.setFunctionRegistry(functions);
+    }
+
+    /**
+     * Parse a whole script.
+     *
+     * @param script the SQL script. It must not change afterwards: edits make a new text.
+     * @return the parsed script.
+     */
+    public ZqlParsedScript parse(final CharSequence script) {
+        final ZqlScriptSplitter splitter = new ZqlScriptSplitter(script, 0, 1, 1);
+        final List<ZqlScriptChunk> chunks = new ArrayList<ZqlScriptChunk>();
+        ZqlScriptChunk chunk = splitter.next();
+        while (chunk != null) {
+            chunks.add(chunk);
+            chunk = splitter.next();
+        }
+        final int size = chunks.size();
+        final int[] starts = new int[size];
+        final int[] ends = new int[size];
+        final int[] lines = new int[size];
+        final int[] columns = new int[size];
+        final Object[] results = new Object[size];
+        for (int i = 0; i < size; i++) {
+            this.store(script, chunks.get(i), i, starts, ends, lines, columns, results);
+        }
+        return new ZqlParsedScript(script, size, starts, ends, lines, columns, results);
+    }
+
+    /**
+     * Re-parse a script after an edit: the text between start and end in the old text is replaced.
+     *
+     * @param previous    the script before the edit.
+     * @param start       index of the first replaced character.
+     * @param end         index after the last replaced character, in the old text.
+     * @param replacement the new text of the range.
+     * @return the parsed script, with the new text.
+     */
+    public ZqlParsedScript reparse(final ZqlParsedScript previous, final int start, final int end, final CharSequence replacement) {
+        final CharSequence old = previous.getText();
+        final StringBuilder text = new StringBuilder(old.length() - (end - start) + replacement.length());
+        text.append(old, 0, start).append(replacement).append(old, end, old.length());
+        return this.reparse(previous, text, start, end, start + replacement.length());
+    }
+
+    /**
+     * Re-parse a script after an edit. The texts before and after the edit only differ between start and oldEnd in the old text,
+     * which became the text between start and newEnd in the new text.
+     *
+     * @param previous the script before the edit.
+     * @param text     the new text of the script.
+     * @param start    index of the first edited character.
+     * @param oldEnd   index after the last edited character, in the old text.
+     * @param newEnd   index after the last edited character, in the new text.
+     * @return the parsed script, with the new text.
+     */
+    public ZqlParsedScript reparse(final ZqlParsedScript previous, final CharSequence text, final int start, final int oldEnd,
+            final int newEnd) {
+        final int oldLength = previous.getText().length();
+        if (start < 0 || oldEnd < start || newEnd < start || oldEnd > oldLength || newEnd > text.length()
+                || oldLength - oldEnd != text.length() - newEnd) {
+            throw new IllegalArgumentException("Invalid edit: start " + start + ", old end " + oldEnd + ", new end " + newEnd
+                    + ", old length " + oldLength + ", new length " + text.length());
+        }
+        final int size = previous.size();
+        final int[] oldStarts = previous.starts();
+        final int[] oldEnds = previous.ends();
+        final int[] oldLines = previous.lines();
+        final int[] oldColumns = previous.columns();
+        final Object[] oldResults = previous.results();
+        final int delta = newEnd - oldEnd;
+
+        // The first chunk touched by the edit. An edit after the last chunk may extend it (a semicolon was removed).
+        int first = ZqlParsedScript.firstEndAfter(oldEnds, size, start);
+        if (first == size && size > 0) {
+            first = size - 1;
+        }
+        final ZqlScriptSplitter splitter = first < size
+                ? new ZqlScriptSplitter(text, oldStarts[first], oldLines[first], oldColumns[first])
+                : new ZqlScriptSplitter(text, 0, 1, 1);
+
+        // Split until a semicolon that ends an old chunk, after the edit: the rest of the text splits the same way
+        final List<ZqlScriptChunk> chunks = new ArrayList<ZqlScriptChunk>();
+        int sync = -1;
+        int old = first;
+        ZqlScriptChunk chunk = splitter.next();
+        while (chunk != null) {
+            chunks.add(chunk);
+            if (chunk.getEnd() >= newEnd) {
+                final int oldChunkEnd = chunk.getEnd() - delta;
+                while (old < size && oldEnds[old] < oldChunkEnd) {
+                    old++;
+                }
+                if (old < size && oldEnds[old] == oldChunkEnd) {
+                    sync = old;
+                    break;
+                }
+            }
+            chunk = splitter.next();
+        }
+
+        final int kept = sync < 0 ? 0 : size - sync - 1;
+        final int parsed = chunks.size();
+        final int newSize = first + parsed + kept;
+        final int[] starts = new int[newSize];
+        final int[] ends = new int[newSize];
+        final int[] lines = new int[newSize];
+        final int[] columns = new int[newSize];
+        final Object[] results = new Object[newSize];
+
+        // Before the edit: unchanged
+        System.arraycopy(oldStarts, 0, starts, 0, first);
+        System.arraycopy(oldEnds, 0, ends, 0, first);
+        System.arraycopy(oldLines, 0, lines, 0, first);
+        System.arraycopy(oldColumns, 0, columns, 0, first);
+        System.arraycopy(oldResults, 0, results, 0, first);
+
+        // Around the edit: parsed again
+        for (int i = 0; i < parsed; i++) {
+            this.store(text, chunks.get(i), first + i, starts, ends, lines, columns, results);
+        }
+
+        // After the edit: shifted. Only the columns of the chunks on the line of the sync point can change.
+        if (kept > 0) {
+            final int lineDelta = splitter.getNextLine() - oldLines[sync + 1];
+            final int syncLine = oldLines[sync + 1];
+            final boolean columnsChanged = splitter.getNextColumn() != oldColumns[sync + 1];
+            int scanPos = chunks.get(parsed - 1).getEnd();
+            int scanColumn = splitter.getNextColumn();
+            for (int i = sync + 1, j = first + parsed; i < size; i++, j++) {
+                starts[j] = oldStarts[i] + delta;
+                ends[j] = oldEnds[i] + delta;
+                lines[j] = oldLines[i] + lineDelta;
+                columns[j] = oldColumns[i];
+                if (columnsChanged && oldLines[i] == syncLine) {
+                    scanColumn = columnAt(text, scanPos, scanColumn, starts[j]);
+                    scanPos = starts[j];
+                    columns[j] = scanColumn;
+                }
+                final Object result = oldResults[i];
+                if (result instanceof ZStatement || result == null
+                        || (delta == 0 && lineDelta == 0 && columns[j] == oldColumns[i])) {
+                    results[j] = result;
+                } else {
+                    // The positions of the errors are in the text: move them
+                    this.store(text, new ZqlScriptChunk(starts[j], ends[j], lines[j], columns[j]), j, starts, ends, lines, columns,
+                            results);
+                }
+            }
+        }
+        return new ZqlParsedScript(text, newSize, starts, ends, lines, columns, results);
+    }
+
+    /**
+     * Parse a chunk and store it.
+     *
+     * @param text    the script.
+     * @param chunk   the chunk.
+     * @param index   the index of the chunk.
+     * @param starts  the starts of the chunks.
+     * @param ends    the ends of the chunks.
+     * @param lines   the lines of the chunks.
+     * @param columns the columns of the chunks.
+     * @param results the results of the chunks.
+     */
+    private void store(final CharSequence text, final ZqlScriptChunk chunk, final int index, final int[] starts, final int[] ends,
+            final int[] lines, final int[] columns, final Object[] results) {
+        starts[index] = chunk.getStart();
+        ends[index] = chunk.getEnd();
+        lines[index] = chunk.getLine();
+        columns[index] = chunk.getColumn();
+        this.stream.ReInit(text, chunk.getStart(), chunk.getEnd(), chunk.getLine(), chunk.getColumn());
+        this.parser.ReInit(this.stream);
+        final List<ZqlDiagnostic> errors = this.diagnostics;
+        errors.clear();
+        final List<ZStatement> statements = this.parser.SQLStatements(errors);
+        final int count = statements.size() + errors.size();
+        if (count == 0) {
+            results[index] = null;
+        } else if (count == 1) {
+            results[index] = statements.isEmpty() ? errors.get(0) : statements.get(0);
+        } else {
+            final Object[] items = new Object[count];
+            int i = 0;
+            for (final ZStatement statement : statements) {
+                items[i++] = statement;
+            }
+            for (final ZqlDiagnostic error : errors) {
+                items[i++] = error;
+            }
+            results[index] = items;
+        }
+        this.stream.Done();
+    }
+
+    /**
+     * Compute the column of the first character of a chunk, from the column of the first character of a previous chunk on the same
+     * line. As in ZqlScriptSplitter, the column of a chunk is the column of the character before it, plus one: a tab at the beginning
+     * of the chunk is only expanded when the chunk is parsed.
+     *
+     * @param text   the script.
+     * @param from   index of the first character of the previous chunk.
+     * @param column the column of the previous chunk.
+     * @param to     index of the first character of the chunk, after from, with no line break in between.
+     * @return the column of the chunk.
+     */
+    private static int columnAt(final CharSequence text, final int from, final int column, final int to) {
+        // The column of the character before from
+        int result = column - 1;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\t') {
+                result += TAB_SIZE - (result % TAB_SIZE);
+            } else {
+                result++;
+            }
+        }
+        return result + 1;
+    }
+}
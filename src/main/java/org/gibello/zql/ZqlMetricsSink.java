@@ -0,0 +1,33 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+/**
+ * ZqlMetricsSink: receives the metrics of each parse made by a ZqlParser (see {@link ZqlParser#setMetricsSink(ZqlMetricsSink)}).<br>
+ * The sink is called on the parsing thread, right after the parse: it should be quick, and hand the metrics over to the metrics
+ * system of the application.
+ */
+public interface ZqlMetricsSink {
+
+    /**
+     * Record the metrics of a parse.
+     *
+     * @param metrics the metrics.
+     */
+    void parsed(ZqlParseMetrics metrics);
+}
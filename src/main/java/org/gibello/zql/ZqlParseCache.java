@@ -0,0 +1,273 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZCommonConstants;
+import org.gibello.zql.utils.ZFreezer;
+import org.gibello.zql.utils.ZFunctionRegistry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ZqlParseCache: a bounded, least recently used cache of parsed statements keyed by their SQL text and the function registry they were
+ * parsed with, so that sessions knowing different functions (see ZFunctionRegistry.scoped()) do not share statements.<br>
+ * A cache hit returns the statement parsed the first time the text was seen, without touching the parser. The cache is bounded both by
+ * the number of entries and by their total weight (the length of the cached SQL texts); the least recently used entries are evicted
+ * first.<br>
+ * Cached statements are shared by all the callers that ask for the same text: they are frozen (see ZFreezer), so that they can not be
+ * changed, and are safely shared between threads.
+ */
+public class ZqlParseCache {
+
+    /**
+     * The parsers used on a cache miss.
+     */
+    private final ZqlParserPool pool;
+
+    /**
+     * The maximum number of cached statements.
+     */
+    private final int maxEntries;
+
+    /**
+     * The maximum total weight of the cached statements.
+     */
+    private final long maxWeight;
+
+    /**
+     * The cached statements, in access order (least recently used first).
+     */
+    private final LinkedHashMap<Key, ZStatement> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The total weight of the cached statements.
+     */
+    private long weight = 0;
+
+    /**
+     * Number of lookups answered from the cache.
+     */
+    private long hits = 0;
+
+    /**
+     * Number of lookups that had to parse.
+     */
+    private long misses = 0;
+
+    /**
+     * Number of statements evicted to honour the bounds.
+     */
+    private long evictions = 0;
+
+    /**
+     * Create a cache bounded by its number of entries only.
+     *
+     * @param pool       the parsers used on a cache miss.
+     * @param maxEntries the maximum number of cached statements.
+     */
+    public ZqlParseCache(final ZqlParserPool pool, final int maxEntries) {
+        this(pool, maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param pool       the parsers used on a cache miss.
+     * @param maxEntries the maximum number of cached statements.
+     * @param maxWeight  the maximum total length of the cached SQL texts.
+     */
+    public ZqlParseCache(final ZqlParserPool pool, final int maxEntries, final long maxWeight) {
+        if (maxEntries < 1 || maxWeight < 1) {
+            throw new IllegalArgumentException(ZCommonConstants.CACHE_INVALID_BOUNDS);
+        }
+        this.pool = pool;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Parse a single SQL statement, or return the cached statement if the same text was parsed before.
+     *
+     * @param sql the SQL statement text.
+     * @return the statement, or null if the text holds no statement (EXIT or QUIT).
+     * @throws ParseException the parse exception (failures are not cached).
+     */
+    public ZStatement parse(final String sql) throws ParseException {
+        return this.parse(sql, ZFunctionRegistry.global());
+    }
+
+    /**
+     * Parse a single SQL statement with the functions of a session, or return the cached statement if the same text was parsed
+     * before with the same registry.
+     *
+     * @param sql       the SQL statement text.
+     * @param functions the functions known to the parse.
+     * @return the statement, or null if the text holds no statement (EXIT or QUIT).
+     * @throws ParseException the parse exception (failures are not cached).
+     */
+    public ZStatement parse(final String sql, final ZFunctionRegistry functions) throws ParseException {
+        final Key key = new Key(sql, functions);
+        synchronized (this) {
+            final ZStatement cached = this.entries.get(key);
+            if (cached != null) {
+                this.hits++;
+                return cached;
+            }
+            this.misses++;
+        }
+
+        // Parse outside of the lock: two threads missing on the same text both parse it, the first one wins.
+        final ZStatement statement = ZFreezer.freeze(this.pool.parse(sql, functions));
+        if (statement == null) {
+            return null;
+        }
+
+        synchronized (this) {
+            final ZStatement cached = this.entries.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            if (sql.length() <= this.maxWeight) {
+                this.entries.put(key, statement);
+                this.weight += sql.length();
+                this.evict();
+            }
+        }
+        return statement;
+    }
+
+    /**
+     * Remove a statement parsed with the global function registry from the cache.
+     *
+     * @param sql the SQL statement text.
+     */
+    public void invalidate(final String sql) {
+        this.invalidate(sql, ZFunctionRegistry.global());
+    }
+
+    /**
+     * Remove a statement parsed with the functions of a session from the cache.
+     *
+     * @param sql       the SQL statement text.
+     * @param functions the functions the statement was parsed with.
+     */
+    public synchronized void invalidate(final String sql, final ZFunctionRegistry functions) {
+        if (this.entries.remove(new Key(sql, functions)) != null) {
+            this.weight -= sql.length();
+        }
+    }
+
+    /**
+     * Remove all the cached statements; the counters are kept.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.weight = 0;
+    }
+
+    /**
+     * @return the number of cached statements.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return the total length of the cached SQL texts.
+     */
+    public synchronized long getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * @return the number of lookups answered from the cache.
+     */
+    public synchronized long getHitCount() {
+        return this.hits;
+    }
+
+    /**
+     * @return the number of lookups that had to parse.
+     */
+    public synchronized long getMissCount() {
+        return this.misses;
+    }
+
+    /**
+     * @return the number of statements evicted to honour the bounds.
+     */
+    public synchronized long getEvictionCount() {
+        return this.evictions;
+    }
+
+    /**
+     * Drop the least recently used entries until both bounds are honoured. Must be called with the lock held.
+     */
+    private void evict() {
+        final Iterator<Map.Entry<Key, ZStatement>> it = this.entries.entrySet().iterator();
+        while ((this.entries.size() > this.maxEntries || this.weight > this.maxWeight) && it.hasNext()) {
+            this.weight -= it.next().getKey().sql.length();
+            it.remove();
+            this.evictions++;
+        }
+    }
+
+    /**
+     * The key of a cached statement: its text and the registry it was parsed with (compared by identity).
+     */
+    private static final class Key {
+
+        /**
+         * The SQL statement text.
+         */
+        private final String sql;
+
+        /**
+         * The functions known to the parse.
+         */
+        private final ZFunctionRegistry functions;
+
+        /**
+         * Create a key.
+         *
+         * @param sql       the SQL statement text.
+         * @param functions the functions known to the parse.
+         */
+        Key(final String sql, final ZFunctionRegistry functions) {
+            this.sql = sql;
+            this.functions = functions;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) other;
+            return this.functions == key.functions && this.sql.equals(key.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.sql.hashCode() * 31 + System.identityHashCode(this.functions);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+/**
+ * ZqlParseMetrics: the cost of one call to readStatement(), readStatements() or readExpression() of a ZqlParser, with its result.
+ */
+public final class ZqlParseMetrics {
+
+    /**
+     * A call to readStatement().
+     */
+    public static final int STATEMENT = 1;
+
+    /**
+     * A call to readStatements().
+     */
+    public static final int STATEMENTS = 2;
+
+    /**
+     * A call to readExpression().
+     */
+    public static final int EXPRESSION = 3;
+
+    /**
+     * The parser method called.
+     */
+    private final int operation;
+
+    /**
+     * The result of the parse.
+     */
+    private final Object result;
+
+    /**
+     * The parse error.
+     */
+    private final ParseException error;
+
+    /**
+     * The wall time of the parse, in nanoseconds.
+     */
+    private final long wallTimeNanos;
+
+    /**
+     * The number of tokens read.
+     */
+    private final int tokenCount;
+
+    /**
+     * The number of nodes of the result.
+     */
+    private final int nodeCount;
+
+    /**
+     * The maximum nesting depth of the result.
+     */
+    private final int maxDepth;
+
+    /**
+     * The bytes allocated by the parse, -1 if unknown.
+     */
+    private final long allocatedBytes;
+
+    /**
+     * Create the metrics of a parse.
+     *
+     * @param operation      the parser method called.
+     * @param result         the result of the parse.
+     * @param error          the parse error.
+     * @param wallTimeNanos  the wall time of the parse, in nanoseconds.
+     * @param tokenCount     the number of tokens read.
+     * @param nodeCount      the number of nodes of the result.
+     * @param maxDepth       the maximum nesting depth of the result.
+     * @param allocatedBytes the bytes allocated by the parse, -1 if unknown.
+     */
+    ZqlParseMetrics(final int operation, final Object result, final ParseException error, final long wallTimeNanos,
+            final int tokenCount, final int nodeCount, final int maxDepth, final long allocatedBytes) {
+        this.operation = operation;
+        this.result = result;
+        this.error = error;
+        this.wallTimeNanos = wallTimeNanos;
+        this.tokenCount = tokenCount;
+        this.nodeCount = nodeCount;
+        this.maxDepth = maxDepth;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Get the parser method called.
+     *
+     * @return STATEMENT, STATEMENTS or EXPRESSION.
+     */
+    public int getOperation() {
+        return this.operation;
+    }
+
+    /**
+     * Get the result of the parse: a ZStatement for readStatement(), a List of ZStatement for readStatements(), a ZExp for
+     * readExpression().
+     *
+     * @return the result, null if the parse failed.
+     */
+    public Object getResult() {
+        return this.result;
+    }
+
+    /**
+     * Get the parse error.
+     *
+     * @return the error, null if the parse succeeded.
+     */
+    public ParseException getError() {
+        return this.error;
+    }
+
+    /**
+     * Get the wall time of the parse.
+     *
+     * @return the time, in nanoseconds.
+     */
+    public long getWallTimeNanos() {
+        return this.wallTimeNanos;
+    }
+
+    /**
+     * Get the number of tokens read by the parse (up to the error, if it failed).
+     *
+     * @return the number of tokens.
+     */
+    public int getTokenCount() {
+        return this.tokenCount;
+    }
+
+    /**
+     * Get the number of nodes of the result: statements, queries, expressions, constants, select, from, group by and order by items.
+     *
+     * @return the number of nodes, 0 if the parse failed.
+     */
+    public int getNodeCount() {
+        return this.nodeCount;
+    }
+
+    /**
+     * Get the maximum nesting depth of the nodes of the result (1 for a lone constant).
+     *
+     * @return the depth, 0 if the parse failed.
+     */
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * Get the bytes allocated by the parsing thread during the parse. They are measured with the thread allocation counter of the
+     * JVM, when it has one.
+     *
+     * @return the allocated bytes, -1 if the JVM does not count them.
+     */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "operation " + this.operation + ", " + this.wallTimeNanos + " ns, " + this.tokenCount + " tokens, " + this.nodeCount
+                + " nodes, depth " + this.maxDepth + ", " + this.allocatedBytes + " bytes" + (this.error != null ? ", failed" : "");
+    }
+}
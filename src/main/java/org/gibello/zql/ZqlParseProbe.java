@@ -0,0 +1,195 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.alias.ZSelectItem;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.statement.ZDelete;
+import org.gibello.zql.statement.ZInsert;
+import org.gibello.zql.statement.ZUpdate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * ZqlParseProbe: measures one parse for a ZqlMetricsSink. It is only created when a sink is set, so an unobserved parser pays
+ * nothing but a null check.
+ */
+final class ZqlParseProbe {
+
+    /**
+     * The thread allocation counter of the JVM, null if there is none.
+     */
+    private static final com.sun.management.ThreadMXBean ALLOCATION_COUNTER = allocationCounter();
+
+    /**
+     * The parser.
+     */
+    private final ZqlJJParser parser;
+
+    /**
+     * The last token read before the parse.
+     */
+    private final Token startToken;
+
+    /**
+     * The thread allocated bytes before the parse, -1 if unknown.
+     */
+    private final long startAllocatedBytes;
+
+    /**
+     * The time before the parse.
+     */
+    private final long startNanos;
+
+    /**
+     * The number of nodes found.
+     */
+    private int nodeCount;
+
+    /**
+     * The maximum depth found.
+     */
+    private int maxDepth;
+
+    /**
+     * Start measuring a parse.
+     *
+     * @param parser the parser.
+     */
+    ZqlParseProbe(final ZqlJJParser parser) {
+        this.parser = parser;
+        this.startToken = parser.token;
+        this.startAllocatedBytes = allocatedBytes();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Stop measuring the parse.
+     *
+     * @param operation the parser method called.
+     * @param result    the result of the parse, null if it failed.
+     * @param error     the parse error, null if it succeeded.
+     * @return the metrics of the parse.
+     */
+    ZqlParseMetrics finish(final int operation, final Object result, final ParseException error) {
+        final long wallTime = System.nanoTime() - this.startNanos;
+        final long endAllocatedBytes = allocatedBytes();
+        final long allocated = endAllocatedBytes < 0 || this.startAllocatedBytes < 0 ? -1 : endAllocatedBytes
+                - this.startAllocatedBytes;
+
+        int tokens = 0;
+        for (Token t = this.startToken; t != this.parser.token && t.next != null; t = t.next) {
+            tokens++;
+        }
+        this.node(result, 1);
+        return new ZqlParseMetrics(operation, result, error, wallTime, tokens, this.nodeCount, this.maxDepth, allocated);
+    }
+
+    /**
+     * Count a node and its children.
+     *
+     * @param node  the node.
+     * @param depth the depth of the node.
+     */
+    private void node(final Object node, final int depth) {
+        if (node == null) {
+            return;
+        }
+        if (node instanceof Collection) {
+            // Lists of statements or of items are not nodes themselves
+            for (final Object child : (Collection<?>) node) {
+                this.node(child, depth);
+            }
+            return;
+        }
+
+        this.nodeCount++;
+        if (depth > this.maxDepth) {
+            this.maxDepth = depth;
+        }
+        final int childDepth = depth + 1;
+        if (node instanceof ZExpression) {
+            final ZExpression expression = (ZExpression) node;
+            for (int i = 0; i < expression.nbOperands(); i++) {
+                this.node(expression.getOperand(i), childDepth);
+            }
+        } else if (node instanceof ZQuery) {
+            final ZQuery query = (ZQuery) node;
+            this.node(query.getSelect(), childDepth);
+            this.node(query.getFrom(), childDepth);
+            this.node(query.getWhere(), childDepth);
+            this.node(query.getGroupBy(), childDepth);
+            this.node(query.getSet(), childDepth);
+            this.node(query.getOrderBy(), childDepth);
+        } else if (node instanceof ZSelectItem) {
+            this.node(((ZSelectItem) node).getExpression(), childDepth);
+        } else if (node instanceof ZGroupBy) {
+            this.node(((ZGroupBy) node).getGroupBy(), childDepth);
+            this.node(((ZGroupBy) node).getHaving(), childDepth);
+        } else if (node instanceof ZOrderBy) {
+            this.node(((ZOrderBy) node).getExpression(), childDepth);
+        } else if (node instanceof ZDelete) {
+            this.node(((ZDelete) node).getWhere(), childDepth);
+        } else if (node instanceof ZInsert) {
+            final ZInsert insert = (ZInsert) node;
+            this.node(insert.getQuery() != null ? insert.getQuery() : insert.getValues(), childDepth);
+        } else if (node instanceof ZUpdate) {
+            final ZUpdate update = (ZUpdate) node;
+            if (update.getSet() != null) {
+                this.node(update.getSet().values(), childDepth);
+            }
+            this.node(update.getWhere(), childDepth);
+        }
+    }
+
+    /**
+     * Get the bytes allocated so far by the current thread.
+     *
+     * @return the allocated bytes, -1 if unknown.
+     */
+    private static long allocatedBytes() {
+        if (ALLOCATION_COUNTER == null) {
+            return -1;
+        }
+        return ALLOCATION_COUNTER.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Find the thread allocation counter of the JVM (HotSpot and OpenJ9 have one).
+     *
+     * @return the counter, null if there is none or if it is disabled.
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                final com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) bean;
+                if (counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled()) {
+                    return counter;
+                }
+            }
+        } catch (final LinkageError e) {
+            // Not a HotSpot-like JVM
+        }
+        return null;
+    }
+}
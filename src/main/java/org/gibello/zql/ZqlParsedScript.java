@@ -0,0 +1,288 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ZqlParsedScript: a script parsed by a ZqlIncrementalParser, statement by statement.<br>
+ * The script is split in chunks (one statement each, see ZqlScriptSplitter), and each chunk has its own result: a statement, or a
+ * diagnostic if it could not be parsed. An error in a statement does not prevent parsing the others.<br>
+ * A parsed script is immutable. It is the input of the next ZqlIncrementalParser.reparse(), which shares the results of the chunks
+ * that were not edited.
+ */
+public final class ZqlParsedScript {
+
+    /**
+     * The text of the script.
+     */
+    private final CharSequence text;
+
+    /**
+     * The number of chunks.
+     */
+    private final int size;
+
+    /**
+     * Index of the first character of each chunk.
+     */
+    private final int[] starts;
+
+    /**
+     * Index after the last character of each chunk.
+     */
+    private final int[] ends;
+
+    /**
+     * Line of the first character of each chunk.
+     */
+    private final int[] lines;
+
+    /**
+     * Column of the first character of each chunk.
+     */
+    private final int[] columns;
+
+    /**
+     * Result of each chunk: a ZStatement, a ZqlDiagnostic, null for EXIT/QUIT, or in the unusual case of a chunk holding several
+     * statements, an array of ZStatement and ZqlDiagnostic.
+     */
+    private final Object[] results;
+
+    /**
+     * Create a parsed script.
+     *
+     * @param text    the text of the script.
+     * @param size    the number of chunks.
+     * @param starts  index of the first character of each chunk.
+     * @param ends    index after the last character of each chunk.
+     * @param lines   line of the first character of each chunk.
+     * @param columns column of the first character of each chunk.
+     * @param results result of each chunk.
+     */
+    ZqlParsedScript(final CharSequence text, final int size, final int[] starts, final int[] ends, final int[] lines,
+            final int[] columns, final Object[] results) {
+        this.text = text;
+        this.size = size;
+        this.starts = starts;
+        this.ends = ends;
+        this.lines = lines;
+        this.columns = columns;
+        this.results = results;
+    }
+
+    /**
+     * Get the text of the script.
+     *
+     * @return the text.
+     */
+    public CharSequence getText() {
+        return this.text;
+    }
+
+    /**
+     * Get the number of chunks (statements, valid or not).
+     *
+     * @return the number of chunks.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get a chunk, with its position in the script.
+     *
+     * @param index the index of the chunk.
+     * @return the chunk.
+     */
+    public ZqlScriptChunk getChunk(final int index) {
+        this.check(index);
+        return new ZqlScriptChunk(this.starts[index], this.ends[index], this.lines[index], this.columns[index]);
+    }
+
+    /**
+     * Find the chunk holding a character.
+     *
+     * @param offset the index of the character in the script.
+     * @return the index of the chunk, -1 if the character is not in a chunk (blanks and comments after the last statement).
+     */
+    public int indexAt(final int offset) {
+        final int index = firstEndAfter(this.ends, this.size, offset);
+        return index < this.size && this.starts[index] <= offset ? index : -1;
+    }
+
+    /**
+     * Get the statement of a chunk.
+     *
+     * @param index the index of the chunk.
+     * @return the statement, null if the chunk has an error, or is an EXIT/QUIT.
+     */
+    public ZStatement getStatement(final int index) {
+        this.check(index);
+        final Object result = this.results[index];
+        return result instanceof ZStatement ? (ZStatement) result : null;
+    }
+
+    /**
+     * Get the error of a chunk.
+     *
+     * @param index the index of the chunk.
+     * @return the diagnostic of the error, with its position in the current text, null if the chunk has no error.
+     */
+    public ZqlDiagnostic getDiagnostic(final int index) {
+        this.check(index);
+        final Object result = this.results[index];
+        if (result instanceof Object[]) {
+            for (final Object item : (Object[]) result) {
+                if (item instanceof ZqlDiagnostic) {
+                    return (ZqlDiagnostic) item;
+                }
+            }
+        }
+        return result instanceof ZqlDiagnostic ? (ZqlDiagnostic) result : null;
+    }
+
+    /**
+     * Get the valid statements of the script, like ZqlParser.readStatements(List) would return them: in order, and up to the first
+     * EXIT/QUIT.
+     *
+     * @return the statements.
+     */
+    public List<ZStatement> getStatements() {
+        final List<ZStatement> statements = new ArrayList<ZStatement>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            final Object result = this.results[i];
+            if (result == null) {
+                break;
+            }
+            if (result instanceof ZStatement) {
+                statements.add((ZStatement) result);
+            } else if (result instanceof Object[]) {
+                for (final Object item : (Object[]) result) {
+                    if (item instanceof ZStatement) {
+                        statements.add((ZStatement) item);
+                    }
+                }
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Get the errors of the script.
+     *
+     * @return the diagnostics, in order.
+     */
+    public List<ZqlDiagnostic> getDiagnostics() {
+        final List<ZqlDiagnostic> diagnostics = new ArrayList<ZqlDiagnostic>();
+        for (int i = 0; i < this.size; i++) {
+            final Object result = this.results[i];
+            if (result instanceof ZqlDiagnostic) {
+                diagnostics.add((ZqlDiagnostic) result);
+            } else if (result instanceof Object[]) {
+                for (final Object item : (Object[]) result) {
+                    if (item instanceof ZqlDiagnostic) {
+                        diagnostics.add((ZqlDiagnostic) item);
+                    }
+                }
+            }
+        }
+        return diagnostics;
+    }
+
+    /**
+     * Get the start of each chunk, not copied.
+     *
+     * @return the starts.
+     */
+    int[] starts() {
+        return this.starts;
+    }
+
+    /**
+     * Get the end of each chunk, not copied.
+     *
+     * @return the ends.
+     */
+    int[] ends() {
+        return this.ends;
+    }
+
+    /**
+     * Get the line of each chunk, not copied.
+     *
+     * @return the lines.
+     */
+    int[] lines() {
+        return this.lines;
+    }
+
+    /**
+     * Get the column of each chunk, not copied.
+     *
+     * @return the columns.
+     */
+    int[] columns() {
+        return this.columns;
+    }
+
+    /**
+     * Get the result of each chunk, not copied.
+     *
+     * @return the results.
+     */
+    Object[] results() {
+        return this.results;
+    }
+
+    /**
+     * Find the first chunk ending after a character.
+     *
+     * @param ends   the ends of the chunks, in increasing order.
+     * @param size   the number of chunks.
+     * @param offset the index of the character.
+     * @return the index of the chunk, size if there is none.
+     */
+    static int firstEndAfter(final int[] ends, final int size, final int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (ends[middle] > offset) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Check the index of a chunk.
+     *
+     * @param index the index.
+     */
+    private void check(final int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Chunk " + index + ", size " + this.size);
+        }
+    }
+}
@@ -19,25 +19,47 @@ package org.gibello.zql;
 
 import org.gibello.zql.expression.ZExp;
 import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.template.ZTemplate;
 import org.gibello.zql.utils.ZCommonConstants;
-import org.gibello.zql.utils.ZUtils;
+import org.gibello.zql.utils.ZFreezer;
+import org.gibello.zql.utils.ZFunctionRegistry;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.util.List;
 
 /**
- * ZqlParser: an SQL parser.
+ * ZqlParser: an SQL parser.<br>
+ * A parser reading a file (see initParser(File)) keeps it open until it is re-initialized or closed.
  *
  * @author Pierre-Yves Gibello
  * @author Bogdan Mariesan, Romania
  */
-public class ZqlParser {
+public class ZqlParser implements Closeable {
 
     /**
      * The parser.
      */
     private ZqlJJParser parser = null;
 
+    /**
+     * The stream of the mapped file being parsed, null if the parser does not read a file.
+     */
+    private MappedFileCharStream mappedStream = null;
+
+    /**
+     * The sink of the parse metrics, null if the parses are not measured.
+     */
+    private ZqlMetricsSink metricsSink = null;
+
+    /**
+     * The custom functions known to this parser.
+     */
+    private ZFunctionRegistry functions = ZFunctionRegistry.global();
+
     /**
      * Create a new parser to parse SQL statements from a given input stream.
      *
@@ -47,6 +69,34 @@ public class ZqlParser {
         this.initParser(in);
     }
 
+    /**
+     * Create a new parser to parse SQL statements from a given character sequence, without copying it.
+     *
+     * @param text The SQL statements (usually a String).
+     */
+    public ZqlParser(final CharSequence text) {
+        this.initParser(text);
+    }
+
+    /**
+     * Create a new parser to parse SQL statements from a given reader.
+     *
+     * @param in The Reader from which SQL statements will be read.
+     */
+    public ZqlParser(final Reader in) {
+        this.initParser(in);
+    }
+
+    /**
+     * Create a new parser to parse SQL statements from a UTF-8 (or ASCII) file, mapped in memory.
+     *
+     * @param file The file from which SQL statements will be read.
+     * @throws IOException if the file can not be opened.
+     */
+    public ZqlParser(final File file) throws IOException {
+        this.initParser(file);
+    }
+
     /**
      * Create a new parser: before use, call initParser(InputStream) to specify an input stream for the parsing.
      */
@@ -60,21 +110,139 @@ public class ZqlParser {
      * @param in the input stream.
      */
     public void initParser(final InputStream in) {
+        this.closeMappedStream();
+        if (this.parser == null) {
+            this.parser = new ZqlJJParser(in);
+        } else {
+            this.parser.ReInit(in);
+        }
+        this.parser.setFunctionRegistry(this.functions);
+    }
+
+    /**
+     * Initialize (or re-initialize) the parser on a character sequence. The characters are read in place, there is no conversion to
+     * bytes and back.
+     *
+     * @param text the SQL text (usually a String).
+     */
+    public void initParser(final CharSequence text) {
+        this.closeMappedStream();
+        if (this.parser == null) {
+            this.parser = new ZqlJJParser(text);
+        } else {
+            this.parser.ReInit(text);
+        }
+        this.parser.setFunctionRegistry(this.functions);
+    }
+
+    /**
+     * Initialize (or re-initialize) the reader for the parser.
+     *
+     * @param in the reader.
+     */
+    public void initParser(final Reader in) {
+        this.closeMappedStream();
         if (this.parser == null) {
             this.parser = new ZqlJJParser(in);
         } else {
             this.parser.ReInit(in);
         }
+        this.parser.setFunctionRegistry(this.functions);
+    }
+
+    /**
+     * Initialize (or re-initialize) the parser on a UTF-8 (or ASCII) file. The file is mapped in memory and decoded as it is parsed,
+     * so the heap used does not depend on the size of the file.
+     *
+     * @param file the file.
+     * @throws IOException if the file can not be opened.
+     */
+    public void initParser(final File file) throws IOException {
+        this.closeMappedStream();
+        final MappedFileCharStream stream = new MappedFileCharStream(file);
+        this.mappedStream = stream;
+        if (this.parser == null) {
+            this.parser = new ZqlJJParser(stream);
+        } else {
+            this.parser.ReInit(stream);
+        }
+        this.parser.setFunctionRegistry(this.functions);
+    }
+
+    /**
+     * Close the file being parsed, if any (see initParser(File)). The parser can be re-initialized afterwards.
+     *
+     * @throws IOException if the file can not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        final MappedFileCharStream stream = this.mappedStream;
+        this.mappedStream = null;
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    /**
+     * Close the file previously parsed, before reading from another input.
+     */
+    private void closeMappedStream() {
+        try {
+            this.close();
+        } catch (final IOException e) {
+            // The file was only read, nothing is lost
+        }
     }
 
     /**
-     * Adds a custom function string.
+     * Adds a custom function string, to the function registry of this parser (the global registry by default).
      *
      * @param fct   the function names.
      * @param nparm the function params.
      */
     public void addCustomFunction(final String fct, final int nparm) {
-        ZUtils.addCustomFunction(fct, nparm);
+        this.functions.register(fct, nparm);
+    }
+
+    /**
+     * Get the custom functions known to this parser.
+     *
+     * @return the function registry.
+     */
+    public ZFunctionRegistry getFunctionRegistry() {
+        return this.functions;
+    }
+
+    /**
+     * Set the custom functions known to this parser, to give it (or a session) functions of its own: see ZFunctionRegistry.scoped().
+     * By default, a parser uses the global registry.
+     *
+     * @param registry the function registry.
+     */
+    public void setFunctionRegistry(final ZFunctionRegistry registry) {
+        this.functions = registry;
+        if (this.parser != null) {
+            this.parser.setFunctionRegistry(registry);
+        }
+    }
+
+    /**
+     * Get the sink of the parse metrics.
+     *
+     * @return the sink, null if the parses are not measured.
+     */
+    public ZqlMetricsSink getMetricsSink() {
+        return this.metricsSink;
+    }
+
+    /**
+     * Measure each call to readStatement(), readStatements() and readExpression() (wall time, tokens, nodes, depth and allocated
+     * bytes), and send the metrics to a sink. Without a sink (the default), nothing is measured.
+     *
+     * @param sink the sink, null to stop measuring.
+     */
+    public void setMetricsSink(final ZqlMetricsSink sink) {
+        this.metricsSink = sink;
     }
 
     /**
@@ -87,7 +255,23 @@ public class ZqlParser {
         if (this.parser == null) {
             throw new ParseException(ZCommonConstants.PARSE_EXCEPTION);
         }
-        return this.parser.SQLStatement();
+        if (this.metricsSink == null) {
+            return this.parser.SQLStatement();
+        }
+        return (ZStatement) this.measure(ZqlParseMetrics.STATEMENT);
+    }
+
+    /**
+     * Parse an SQL Statement with parameters ("?" or ":name") from the parser's input stream, as a template: the statement is parsed
+     * once, and its parameters are bound to new values for each execution. The statement is frozen (see ZFreezer), so that the
+     * template can be shared between threads.
+     *
+     * @return The template, or null if there's no more statement.
+     * @throws ParseException the parse exception.
+     */
+    public ZTemplate readTemplate() throws ParseException {
+        final ZStatement statement = this.readStatement();
+        return statement == null ? null : new ZTemplate(ZFreezer.freeze(statement), this.parser.getParameters());
     }
 
     /**
@@ -96,11 +280,51 @@ public class ZqlParser {
      * @return A vector of ZStatement objects (SQL statements).
      * @throws ParseException the parse exception.
      */
+    @SuppressWarnings("unchecked")
     public List<ZStatement> readStatements() throws ParseException {
         if (this.parser == null) {
             throw new ParseException(ZCommonConstants.PARSE_EXCEPTION);
         }
-        return this.parser.SQLStatements();
+        if (this.metricsSink == null) {
+            return this.parser.SQLStatements();
+        }
+        return (List<ZStatement>) this.measure(ZqlParseMetrics.STATEMENTS);
+    }
+
+    /**
+     * Parse all the available SQL Statements from the parser's input stream, going on after errors. Each statement with an error is
+     * skipped up to its semicolon, and a diagnostic (position, expected tokens...) is added to the list: the parser does not need to
+     * be re-initialized, and the following statements are still parsed.
+     *
+     * @param diagnostics the list the errors are added to.
+     * @return the statements parsed without error, in order.
+     * @throws ParseException if the parser is not initialized.
+     */
+    public List<ZStatement> readStatements(final List<ZqlDiagnostic> diagnostics) throws ParseException {
+        if (this.parser == null) {
+            throw new ParseException(ZCommonConstants.PARSE_EXCEPTION);
+        }
+        if (this.metricsSink == null) {
+            return this.parser.SQLStatements(diagnostics);
+        }
+        final ZqlParseProbe probe = new ZqlParseProbe(this.parser);
+        final List<ZStatement> statements = this.parser.SQLStatements(diagnostics);
+        this.metricsSink.parsed(probe.finish(ZqlParseMetrics.STATEMENTS, statements, null));
+        return statements;
+    }
+
+    /**
+     * Parse the SQL Statements from the parser's input stream lazily, one at a time: unlike readStatements(), the memory used does
+     * not depend on the number of statements.
+     *
+     * @return An iterator over the statements.
+     * @throws ParseException if the parser is not initialized.
+     */
+    public ZqlStatementIterator iterateStatements() throws ParseException {
+        if (this.parser == null) {
+            throw new ParseException(ZCommonConstants.PARSE_EXCEPTION);
+        }
+        return new ZqlStatementIterator(this.parser);
     }
 
     /**
@@ -113,7 +337,47 @@ public class ZqlParser {
         if (this.parser == null) {
             throw new ParseException(ZCommonConstants.PARSE_EXCEPTION);
         }
-        return this.parser.SQLExpression();
+        this.parser.resetParameters();
+        if (this.metricsSink == null) {
+            return this.parser.SQLExpression();
+        }
+        return (ZExp) this.measure(ZqlParseMetrics.EXPRESSION);
+    }
+
+    /**
+     * Call a parser method, and send its metrics to the sink, whether it succeeds or fails. A lexical error is measured as a parse
+     * error with the same message, and thrown as is.
+     *
+     * @param operation the parser method: STATEMENT, STATEMENTS or EXPRESSION (see ZqlParseMetrics).
+     * @return the result of the parser method.
+     * @throws ParseException the parse exception.
+     */
+    private Object measure(final int operation) throws ParseException {
+        final ZqlParseProbe probe = new ZqlParseProbe(this.parser);
+        Object result = null;
+        ParseException error = null;
+        try {
+            switch (operation) {
+                case ZqlParseMetrics.STATEMENT:
+                    result = this.parser.SQLStatement();
+                    break;
+                case ZqlParseMetrics.STATEMENTS:
+                    result = this.parser.SQLStatements();
+                    break;
+                default:
+                    result = this.parser.SQLExpression();
+                    break;
+            }
+            return result;
+        } catch (final ParseException e) {
+            error = e;
+            throw e;
+        } catch (final TokenMgrError e) {
+            error = new ParseException(e.getMessage());
+            throw e;
+        } finally {
+            this.metricsSink.parsed(probe.finish(operation, result, error));
+        }
     }
 
 }
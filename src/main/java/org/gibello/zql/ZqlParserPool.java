@@ -0,0 +1,231 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZCommonConstants;
+import org.gibello.zql.utils.ZFunctionRegistry;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ZqlParserPool: a bounded pool of reusable parsers that can be shared by many threads.<br>
+ * A ZqlParser (and the generated parser behind it) is not thread safe, but it can be re-initialized on a new input without
+ * re-allocating its token manager and character buffers. The pool creates parsers lazily, up to a maximum size, and hands each one to a
+ * single thread at a time. When all the parsers are checked out, callers wait for one to be released.<br>
+ * The parsers use the global function registry, unless a parse is given the registry of a session (see ZFunctionRegistry.scoped()).
+ */
+public class ZqlParserPool {
+
+    /**
+     * The parsers that are not currently checked out.
+     */
+    private final BlockingQueue<ZqlParser> idle;
+
+    /**
+     * The maximum number of parsers the pool will create.
+     */
+    private final int maxSize;
+
+    /**
+     * The number of parsers created so far.
+     */
+    private final AtomicInteger created = new AtomicInteger();
+
+    /**
+     * Create a pool holding at most one parser per available processor.
+     */
+    public ZqlParserPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a pool holding at most maxSize parsers.
+     *
+     * @param maxSize the maximum number of parsers, must be positive.
+     */
+    public ZqlParserPool(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException(ZCommonConstants.POOL_INVALID_SIZE + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    /**
+     * Check out a parser; the caller owns it until it is given back with release(ZqlParser).
+     *
+     * @return a parser using the global function registry, possibly holding state from a previous input: call initParser() before use.
+     * @throws InterruptedException if the thread is interrupted while waiting for a parser.
+     */
+    public ZqlParser borrow() throws InterruptedException {
+        ZqlParser parser = this.idle.poll();
+        if (parser != null) {
+            return parser;
+        }
+
+        int count = this.created.get();
+        while (count < this.maxSize) {
+            if (this.created.compareAndSet(count, count + 1)) {
+                return new ZqlParser();
+            }
+            count = this.created.get();
+        }
+
+        return this.idle.take();
+    }
+
+    /**
+     * Give a parser back to the pool.
+     *
+     * @param parser a parser obtained from borrow().
+     */
+    public void release(final ZqlParser parser) {
+        if (parser == null) {
+            return;
+        }
+        // The registry of a session must not leak to the next borrower
+        parser.setFunctionRegistry(ZFunctionRegistry.global());
+        if (!this.idle.offer(parser)) {
+            throw new IllegalStateException(ZCommonConstants.POOL_FOREIGN_PARSER);
+        }
+    }
+
+    /**
+     * Parse a single SQL statement.
+     *
+     * @param sql the SQL statement text.
+     * @return the statement, or null if the text holds no statement (EXIT or QUIT).
+     * @throws ParseException the parse exception.
+     */
+    public ZStatement parse(final String sql) throws ParseException {
+        return this.parse(sql, ZFunctionRegistry.global());
+    }
+
+    /**
+     * Parse a single SQL statement.
+     *
+     * @param sql       the SQL statement text.
+     * @param functions the functions known to the parse.
+     * @return the statement, or null if the text holds no statement (EXIT or QUIT).
+     * @throws ParseException the parse exception.
+     */
+    public ZStatement parse(final String sql, final ZFunctionRegistry functions) throws ParseException {
+        final ZqlParser parser = this.checkout();
+        try {
+            parser.setFunctionRegistry(functions);
+            parser.initParser(sql);
+            return parser.readStatement();
+        } finally {
+            this.release(parser);
+        }
+    }
+
+    /**
+     * Parse all the SQL statements in a script.
+     *
+     * @param sql the SQL script text.
+     * @return the statements.
+     * @throws ParseException the parse exception.
+     */
+    public List<ZStatement> parseAll(final String sql) throws ParseException {
+        return this.parseAll(sql, ZFunctionRegistry.global());
+    }
+
+    /**
+     * Parse all the SQL statements in a script.
+     *
+     * @param sql       the SQL script text.
+     * @param functions the functions known to the parse.
+     * @return the statements.
+     * @throws ParseException the parse exception.
+     */
+    public List<ZStatement> parseAll(final String sql, final ZFunctionRegistry functions) throws ParseException {
+        final ZqlParser parser = this.checkout();
+        try {
+            parser.setFunctionRegistry(functions);
+            parser.initParser(sql);
+            return parser.readStatements();
+        } finally {
+            this.release(parser);
+        }
+    }
+
+    /**
+     * Parse an SQL expression (like the WHERE clause of an SQL query).
+     *
+     * @param sql the SQL expression text.
+     * @return the expression.
+     * @throws ParseException the parse exception.
+     */
+    public ZExp parseExpression(final String sql) throws ParseException {
+        return this.parseExpression(sql, ZFunctionRegistry.global());
+    }
+
+    /**
+     * Parse an SQL expression (like the WHERE clause of an SQL query).
+     *
+     * @param sql       the SQL expression text.
+     * @param functions the functions known to the parse.
+     * @return the expression.
+     * @throws ParseException the parse exception.
+     */
+    public ZExp parseExpression(final String sql, final ZFunctionRegistry functions) throws ParseException {
+        final ZqlParser parser = this.checkout();
+        try {
+            parser.setFunctionRegistry(functions);
+            parser.initParser(sql);
+            return parser.readExpression();
+        } finally {
+            this.release(parser);
+        }
+    }
+
+    /**
+     * @return the maximum number of parsers of this pool.
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return the number of parsers created so far.
+     */
+    public int getCreatedCount() {
+        return this.created.get();
+    }
+
+    /**
+     * Borrow a parser, turning an interruption into a parse failure.
+     *
+     * @return a parser.
+     * @throws ParseException if the thread is interrupted while waiting.
+     */
+    private ZqlParser checkout() throws ParseException {
+        try {
+            return this.borrow();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ParseException(ZCommonConstants.POOL_INTERRUPTED);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+/**
+ * ZqlScriptChunk: the text of one top-level statement of a script (up to and including its semicolon), with its position in the
+ * script.
+ */
+public final class ZqlScriptChunk {
+
+    /**
+     * Index in the script of the first character of the chunk.
+     */
+    private final int start;
+
+    /**
+     * Index in the script after the last character of the chunk.
+     */
+    private final int end;
+
+    /**
+     * Line of the first character of the chunk.
+     */
+    private final int line;
+
+    /**
+     * Column of the first character of the chunk.
+     */
+    private final int column;
+
+    /**
+     * Create a chunk.
+     *
+     * @param start  index in the script of the first character of the chunk.
+     * @param end    index in the script after the last character of the chunk.
+     * @param line   line of the first character of the chunk.
+     * @param column column of the first character of the chunk.
+     */
+    public ZqlScriptChunk(final int start, final int end, final int line, final int column) {
+        this.start = start;
+        this.end = end;
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Get the index in the script of the first character of the chunk.
+     *
+     * @return the start index.
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Get the index in the script after the last character of the chunk.
+     *
+     * @return the end index.
+     */
+    public int getEnd() {
+        return this.end;
+    }
+
+    /**
+     * Get the line of the first character of the chunk.
+     *
+     * @return the line.
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Get the column of the first character of the chunk.
+     *
+     * @return the column.
+     */
+    public int getColumn() {
+        return this.column;
+    }
+
+    /**
+     * Create a stream reading the chunk in place, with the positions of the script.
+     *
+     * @param script the script the chunk comes from.
+     * @return the stream.
+     */
+    public CharSequenceCharStream newCharStream(final CharSequence script) {
+        return new CharSequenceCharStream(script, this.start, this.end, this.line, this.column);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + this.start + ", " + this.end + ") at line " + this.line + ", column " + this.column;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZFunctionRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ZqlScriptParser: parses the statements of a script on several cores.<br>
+ * The script is first split at its top-level semicolons (see ZqlScriptSplitter), then the statements are parsed concurrently on a
+ * fork-join pool, in place and with their positions in the whole script. The result is the same as ZqlParser.readStatements() on the
+ * same text: the statements come in their original order, parsing stops at EXIT/QUIT or silently at the first chunk that cannot start
+ * a statement, a script without any statement is an error, and the first error of the script is thrown, with its line and column in
+ * the script.<br>
+ * A ZqlScriptParser can be shared by several threads.
+ */
+public class ZqlScriptParser {
+
+    /**
+     * Number of statements below which a task does not split any more.
+     */
+    private static final int LEAF_SIZE = 16;
+
+    /**
+     * The pool running the parse tasks.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a script parser with its own pool, using all the available processors.
+     */
+    public ZqlScriptParser() {
+        this(new ForkJoinPool());
+    }
+
+    /**
+     * Create a script parser running on a given pool.
+     *
+     * @param pool the pool.
+     */
+    public ZqlScriptParser(final ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Parse all the statements of a script.
+     *
+     * @param script the SQL script.
+     * @return the statements, in the order of the script.
+     * @throws ParseException the first parse error of the script.
+     */
+    public List<ZStatement> parse(final CharSequence script) throws ParseException {
+        return this.parse(script, ZFunctionRegistry.global());
+    }
+
+    /**
+     * Parse all the statements of a script, with the functions of a session (see ZFunctionRegistry.scoped()).
+     *
+     * @param script    the SQL script.
+     * @param functions the functions known to the parse.
+     * @return the statements, in the order of the script.
+     * @throws ParseException the first parse error of the script.
+     */
+    public List<ZStatement> parse(final CharSequence script, final ZFunctionRegistry functions) throws ParseException {
+        final List<ZqlScriptChunk> chunks = ZqlScriptSplitter.split(script);
+        if (chunks.isEmpty()) {
+            // Blanks and comments only: the sequential parser raises the error
+            final ZqlJJParser parser = new ZqlJJParser(new CharSequenceCharStream(script));
+            parser.setFunctionRegistry(functions);
+            return parser.SQLStatements();
+        }
+        final Object[] results = new Object[chunks.size()];
+        this.pool.invoke(new ParseTask(script, functions, chunks, results, 0, chunks.size()));
+
+        final List<ZStatement> statements = new ArrayList<ZStatement>(results.length);
+        for (final Object result : results) {
+            if (result instanceof ParseException) {
+                throw (ParseException) result;
+            }
+            if (result instanceof TokenMgrError) {
+                throw (TokenMgrError) result;
+            }
+            if (result == null) {
+                // EXIT, QUIT or a chunk that cannot start a statement
+                break;
+            }
+            if (result instanceof ZStatement) {
+                statements.add((ZStatement) result);
+            } else {
+                for (final Object statement : (Object[]) result) {
+                    if (statement == null) {
+                        return statements;
+                    }
+                    statements.add((ZStatement) statement);
+                }
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Parses a range of chunks, splitting it in two while it is large.<br>
+     * The result of each chunk is its statement, null for EXIT/QUIT or for a chunk that cannot start a statement (except the first
+     * one, which is parsed to raise the error), the error raised, or in the unusual case of a chunk holding several statements, an
+     * array of statements (ended by null where parsing stops).
+     */
+    private static final class ParseTask extends RecursiveAction {
+
+        /**
+         * The serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The script.
+         */
+        private final CharSequence script;
+
+        /**
+         * The functions known to the parse.
+         */
+        private final ZFunctionRegistry functions;
+
+        /**
+         * The chunks of the script.
+         */
+        private final List<ZqlScriptChunk> chunks;
+
+        /**
+         * The result of each chunk.
+         */
+        private final Object[] results;
+
+        /**
+         * First chunk of the range.
+         */
+        private final int from;
+
+        /**
+         * End of the range.
+         */
+        private final int to;
+
+        /**
+         * Create a task.
+         *
+         * @param script    the script.
+         * @param functions the functions known to the parse.
+         * @param chunks    the chunks of the script.
+         * @param results   the result of each chunk.
+         * @param from      first chunk of the range.
+         * @param to        end of the range.
+         */
+        ParseTask(final CharSequence script, final ZFunctionRegistry functions, final List<ZqlScriptChunk> chunks, final Object[] results,
+                final int from, final int to) {
+            this.script = script;
+            this.functions = functions;
+            this.chunks = chunks;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > LEAF_SIZE) {
+                final int middle = (this.from + this.to) >>> 1;
+                invokeAll(new ParseTask(this.script, this.functions, this.chunks, this.results, this.from, middle),
+                        new ParseTask(this.script, this.functions, this.chunks, this.results, middle, this.to));
+                return;
+            }
+
+            ZqlJJParser parser = null;
+            for (int i = this.from; i < this.to; i++) {
+                final CharSequenceCharStream stream = this.chunks.get(i).newCharStream(this.script);
+                if (parser == null) {
+                    parser = new ZqlJJParser(stream);
+                    parser.setFunctionRegistry(this.functions);
+                } else {
+                    parser.ReInit(stream);
+                }
+                try {
+                    this.results[i] = i > 0 && !parser.atStatementStart() ? null : parseChunk(parser);
+                } catch (final ParseException e) {
+                    this.results[i] = e;
+                } catch (final TokenMgrError e) {
+                    this.results[i] = e;
+                }
+            }
+        }
+
+        /**
+         * Parse the statement of a chunk.
+         *
+         * @param parser the parser, initialized on the chunk.
+         * @return the result of the chunk.
+         * @throws ParseException if the chunk is not valid.
+         */
+        private static Object parseChunk(final ZqlJJParser parser) throws ParseException {
+            final ZStatement statement = parser.SQLStatement();
+            if (statement == null || parser.getToken(1).kind == ZqlJJParserConstants.EOF) {
+                return statement;
+            }
+            final List<ZStatement> statements = new ArrayList<ZStatement>();
+            statements.add(statement);
+            while (parser.atStatementStart()) {
+                final ZStatement next = parser.SQLStatement();
+                statements.add(next);
+                if (next == null) {
+                    return statements.toArray();
+                }
+            }
+            if (parser.getToken(1).kind != ZqlJJParserConstants.EOF) {
+                // A token that cannot start a statement: parsing stops here
+                statements.add(null);
+            }
+            return statements.toArray();
+        }
+    }
+}
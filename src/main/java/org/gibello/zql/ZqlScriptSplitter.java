@@ -0,0 +1,260 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ZqlScriptSplitter: splits an SQL script at its top-level semicolons, without parsing it.<br>
+ * The splitter only knows enough of the lexical rules of the parser to skip the semicolons found in string literals ('...', with ''
+ * escapes), quoted identifiers ("...") and comments (line and multi-line). Chunks holding only blanks and comments are dropped. Each chunk
+ * keeps the line and column of its first character, computed like the parser does (tabs expand to the next multiple of 8), so that
+ * parsing it in place gives the same positions as parsing the whole script.
+ */
+public final class ZqlScriptSplitter {
+
+    /**
+     * The tab size used to compute column numbers.
+     */
+    private static final int TAB_SIZE = 8;
+
+    /**
+     * Scanning statement text.
+     */
+    private static final int CODE = 0;
+
+    /**
+     * Scanning a string literal.
+     */
+    private static final int STRING = 1;
+
+    /**
+     * Scanning a quoted identifier.
+     */
+    private static final int QUOTED = 2;
+
+    /**
+     * Scanning a line comment.
+     */
+    private static final int LINE_COMMENT = 3;
+
+    /**
+     * Scanning a multi-line comment.
+     */
+    private static final int BLOCK_COMMENT = 4;
+
+    /**
+     * The script.
+     */
+    private final CharSequence script;
+
+    /**
+     * Index of the next character to scan.
+     */
+    private int pos;
+
+    /**
+     * Index of the first character of the current chunk.
+     */
+    private int chunkStart;
+
+    /**
+     * Line of the first character of the current chunk.
+     */
+    private int chunkLine;
+
+    /**
+     * Column of the first character of the current chunk.
+     */
+    private int chunkColumn;
+
+    /**
+     * Line of the last scanned character.
+     */
+    private int line;
+
+    /**
+     * Column of the last scanned character.
+     */
+    private int column;
+
+    /**
+     * Whether the current chunk has a character that is not a blank or in a comment.
+     */
+    private boolean significant;
+
+    /**
+     * Whether the last chunk has been returned.
+     */
+    private boolean done;
+
+    /**
+     * Create a splitter starting at the beginning of a chunk: the beginning of the script, or right after a top-level semicolon.
+     *
+     * @param script the SQL script.
+     * @param from   index of the first character to scan.
+     * @param line   line of that character.
+     * @param column column of that character.
+     */
+    ZqlScriptSplitter(final CharSequence script, final int from, final int line, final int column) {
+        this.script = script;
+        this.pos = from;
+        this.chunkStart = from;
+        this.chunkLine = line;
+        this.chunkColumn = column;
+        this.line = line;
+        this.column = column - 1;
+    }
+
+    /**
+     * Split a script into statements.
+     *
+     * @param script the SQL script.
+     * @return the chunks of the script, in order.
+     */
+    public static List<ZqlScriptChunk> split(final CharSequence script) {
+        final List<ZqlScriptChunk> chunks = new ArrayList<ZqlScriptChunk>();
+        final ZqlScriptSplitter splitter = new ZqlScriptSplitter(script, 0, 1, 1);
+        ZqlScriptChunk chunk = splitter.next();
+        while (chunk != null) {
+            chunks.add(chunk);
+            chunk = splitter.next();
+        }
+        return chunks;
+    }
+
+    /**
+     * Scan the next chunk.
+     *
+     * @return the chunk, null at the end of the script.
+     */
+    ZqlScriptChunk next() {
+        if (this.done) {
+            return null;
+        }
+        final CharSequence text = this.script;
+        final int length = text.length();
+        int state = CODE;
+        int commentBody = 0;
+        // A chunk ends with a semicolon, so the previous character is never a line break
+        boolean prevCR = false;
+        boolean prevLF = false;
+
+        for (int i = this.pos; i < length; i++) {
+            final char c = text.charAt(i);
+
+            // Position of c, as computed by the char streams
+            this.column++;
+            if (prevLF) {
+                prevLF = false;
+                this.column = 1;
+                this.line++;
+            } else if (prevCR) {
+                prevCR = false;
+                if (c == '\n') {
+                    prevLF = true;
+                } else {
+                    this.column = 1;
+                    this.line++;
+                }
+            }
+            if (c == '\r') {
+                prevCR = true;
+            } else if (c == '\n') {
+                prevLF = true;
+            } else if (c == '\t') {
+                this.column--;
+                this.column += TAB_SIZE - (this.column % TAB_SIZE);
+            }
+
+            switch (state) {
+                case STRING:
+                    if (c == '\'') {
+                        state = CODE;
+                    }
+                    break;
+                case QUOTED:
+                    if (c == '"' || c == '\r' || c == '\n') {
+                        state = CODE;
+                    }
+                    break;
+                case LINE_COMMENT:
+                    if (c == '\r' || c == '\n') {
+                        state = CODE;
+                    }
+                    break;
+                case BLOCK_COMMENT:
+                    if (c == '/' && i > commentBody && text.charAt(i - 1) == '*') {
+                        state = CODE;
+                    }
+                    break;
+                default:
+                    if (c == '\'') {
+                        state = STRING;
+                        this.significant = true;
+                    } else if (c == '"') {
+                        state = QUOTED;
+                        this.significant = true;
+                    } else if (c == '-' && i + 1 < length && text.charAt(i + 1) == '-') {
+                        state = LINE_COMMENT;
+                    } else if (c == '/' && i + 1 < length && text.charAt(i + 1) == '*') {
+                        state = BLOCK_COMMENT;
+                        commentBody = i + 2;
+                    } else if (c == ';') {
+                        final ZqlScriptChunk chunk = new ZqlScriptChunk(this.chunkStart, i + 1, this.chunkLine, this.chunkColumn);
+                        this.significant = false;
+                        this.pos = i + 1;
+                        this.chunkStart = i + 1;
+                        this.chunkLine = this.line;
+                        this.chunkColumn = this.column + 1;
+                        return chunk;
+                    } else if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                        this.significant = true;
+                    }
+                    break;
+            }
+        }
+
+        this.done = true;
+        this.pos = length;
+        // An unterminated comment is an error for the parser, so it is kept
+        if (this.significant || state == BLOCK_COMMENT) {
+            return new ZqlScriptChunk(this.chunkStart, length, this.chunkLine, this.chunkColumn);
+        }
+        return null;
+    }
+
+    /**
+     * Get the line of the first character after the last returned chunk.
+     *
+     * @return the line.
+     */
+    int getNextLine() {
+        return this.chunkLine;
+    }
+
+    /**
+     * Get the column of the first character after the last returned chunk.
+     *
+     * @return the column.
+     */
+    int getNextColumn() {
+        return this.chunkColumn;
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ZqlStatementClassifier: finds the kind of SQL statements and the tables they reference, from their tokens only.<br>
+ * The statements are not parsed: no expression is built and the syntax is not checked, so this is much cheaper than a full parse when
+ * only the kind and the tables are needed (to route or authorize a statement, for example). The tables are the names following FROM
+ * (in queries, subqueries and DELETE), INSERT INTO, UPDATE, DELETE and LOCK TABLE.<br>
+ * For a statement that the parser accepts, the kind and the tables are the ones of the parsed statement. An invalid statement may
+ * still be classified.<br>
+ * A classifier is not thread-safe, but it can be reused: its token manager is re-initialized for each input.
+ */
+public class ZqlStatementClassifier {
+
+    /**
+     * Kind of the ";" token.
+     */
+    private static final int SEMICOLON = ZqlJJParser.tokenKind("\";\"");
+
+    /**
+     * Kind of the "," token.
+     */
+    private static final int COMMA = ZqlJJParser.tokenKind("\",\"");
+
+    /**
+     * Kind of the "." token.
+     */
+    private static final int DOT = ZqlJJParser.tokenKind("\".\"");
+
+    /**
+     * Not reading a table name.
+     */
+    private static final int NONE = 0;
+
+    /**
+     * Expecting a table name.
+     */
+    private static final int TABLE = 1;
+
+    /**
+     * After the first part of a table name.
+     */
+    private static final int AFTER_NAME = 2;
+
+    /**
+     * After the dot of a table name.
+     */
+    private static final int AFTER_DOT = 3;
+
+    /**
+     * After a table name of a list (FROM, LOCK TABLE): an alias or a comma may follow.
+     */
+    private static final int AFTER_TABLE = 4;
+
+    /**
+     * After the alias of a table of a list: a comma may follow.
+     */
+    private static final int AFTER_ALIAS = 5;
+
+    /**
+     * The characters of the statements.
+     */
+    private final CharSequenceCharStream stream = new CharSequenceCharStream("");
+
+    /**
+     * The token manager (lexer) of the parser.
+     */
+    private final ZqlJJParserTokenManager tokens = new ZqlJJParserTokenManager(this.stream);
+
+    /**
+     * Classify the first statement of an SQL text.
+     *
+     * @param sql the SQL text.
+     * @return the statement info, or null if there is no statement.
+     * @throws ParseException if the text has a lexical error.
+     */
+    public ZqlStatementInfo classify(final CharSequence sql) throws ParseException {
+        this.stream.ReInit(sql);
+        this.tokens.ReInit(this.stream);
+        return this.next();
+    }
+
+    /**
+     * Classify all the statements of an SQL script.
+     *
+     * @param script the SQL script.
+     * @return the statement infos, in order.
+     * @throws ParseException if the script has a lexical error.
+     */
+    public List<ZqlStatementInfo> classifyAll(final CharSequence script) throws ParseException {
+        this.stream.ReInit(script);
+        this.tokens.ReInit(this.stream);
+        final List<ZqlStatementInfo> infos = new ArrayList<ZqlStatementInfo>();
+        ZqlStatementInfo info = this.next();
+        while (info != null) {
+            infos.add(info);
+            info = this.next();
+        }
+        return infos;
+    }
+
+    /**
+     * Classify the next statement, reading its tokens up to its semicolon.
+     *
+     * @return the statement info, or null at the end of the input.
+     * @throws ParseException on a lexical error.
+     */
+    private ZqlStatementInfo next() throws ParseException {
+        Token t = this.nextToken();
+        if (t.kind == ZqlJJParserConstants.EOF) {
+            return null;
+        }
+        final long beginOffset = t.beginOffset;
+        final int kind = statementKind(t.kind);
+        final boolean list = kind == ZqlStatementInfo.LOCK_TABLE;
+        List<String> tables = null;
+        boolean inList = false;
+        int state = kind == ZqlStatementInfo.UPDATE || kind == ZqlStatementInfo.DELETE ? TABLE : NONE;
+        String name = null;
+        long endOffset = t.endOffset;
+
+        t = this.nextToken();
+        while (t.kind != ZqlJJParserConstants.EOF) {
+            endOffset = t.endOffset;
+            if (state == AFTER_NAME && t.kind != DOT) {
+                tables = addTable(tables, name);
+                state = inList ? AFTER_TABLE : NONE;
+            }
+            if (t.kind == SEMICOLON) {
+                break;
+            }
+
+            switch (state) {
+                case TABLE:
+                    if (isName(t.kind)) {
+                        name = t.image;
+                        state = AFTER_NAME;
+                    } else {
+                        state = NONE;
+                    }
+                    break;
+                case AFTER_NAME:
+                    // The dot of a schema.table name
+                    state = AFTER_DOT;
+                    break;
+                case AFTER_DOT:
+                    if (isName(t.kind)) {
+                        tables = addTable(tables, name + "." + t.image);
+                        state = inList ? AFTER_TABLE : NONE;
+                    } else {
+                        state = NONE;
+                    }
+                    break;
+                case AFTER_TABLE:
+                case AFTER_ALIAS:
+                    if (t.kind == COMMA) {
+                        state = TABLE;
+                    } else if (state == AFTER_TABLE && t.kind == ZqlJJParserConstants.S_IDENTIFIER) {
+                        state = AFTER_ALIAS;
+                    } else {
+                        state = NONE;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            if (state == NONE) {
+                if (t.kind == ZqlJJParserConstants.K_FROM
+                        || (list && t.kind == ZqlJJParserConstants.K_TABLE)) {
+                    state = TABLE;
+                    inList = true;
+                } else if (t.kind == ZqlJJParserConstants.K_INTO && kind == ZqlStatementInfo.INSERT) {
+                    state = TABLE;
+                    inList = false;
+                }
+            }
+            t = this.nextToken();
+        }
+        if (state == AFTER_NAME) {
+            tables = addTable(tables, name);
+        }
+
+        final List<String> result;
+        if (tables == null) {
+            result = Collections.emptyList();
+        } else {
+            result = Collections.unmodifiableList(tables);
+        }
+        return new ZqlStatementInfo(kind, result, beginOffset, endOffset);
+    }
+
+    /**
+     * Read the next token.
+     *
+     * @return the token.
+     * @throws ParseException on a lexical error.
+     */
+    private Token nextToken() throws ParseException {
+        try {
+            return this.tokens.getNextToken();
+        } catch (final TokenMgrError e) {
+            throw new ParseException(e.getMessage());
+        }
+    }
+
+    /**
+     * Add a table, unless already there.
+     *
+     * @param tables the tables found so far, null if none.
+     * @param table  the table.
+     * @return the tables.
+     */
+    private static List<String> addTable(final List<String> tables, final String table) {
+        if (tables == null) {
+            final List<String> created = new ArrayList<String>(2);
+            created.add(table);
+            return created;
+        }
+        if (!tables.contains(table)) {
+            tables.add(table);
+        }
+        return tables;
+    }
+
+    /**
+     * Check for a token that can be part of a table name.
+     *
+     * @param tokenKind the kind of token.
+     * @return true for an identifier or a quoted identifier.
+     */
+    private static boolean isName(final int tokenKind) {
+        return tokenKind == ZqlJJParserConstants.S_IDENTIFIER || tokenKind == ZqlJJParserConstants.S_QUOTED_IDENTIFIER;
+    }
+
+    /**
+     * Get the kind of statement that starts with a token.
+     *
+     * @param tokenKind the kind of the first token.
+     * @return the kind of statement.
+     */
+    private static int statementKind(final int tokenKind) {
+        switch (tokenKind) {
+            case ZqlJJParserConstants.K_SELECT:
+                return ZqlStatementInfo.QUERY;
+            case ZqlJJParserConstants.K_INSERT:
+                return ZqlStatementInfo.INSERT;
+            case ZqlJJParserConstants.K_UPDATE:
+                return ZqlStatementInfo.UPDATE;
+            case ZqlJJParserConstants.K_DELETE:
+                return ZqlStatementInfo.DELETE;
+            case ZqlJJParserConstants.K_LOCK:
+                return ZqlStatementInfo.LOCK_TABLE;
+            case ZqlJJParserConstants.K_COMMIT:
+                return ZqlStatementInfo.COMMIT;
+            case ZqlJJParserConstants.K_ROLLBACK:
+                return ZqlStatementInfo.ROLLBACK;
+            case ZqlJJParserConstants.K_SET:
+                return ZqlStatementInfo.SET_TRANSACTION;
+            case ZqlJJParserConstants.K_EXIT:
+            case ZqlJJParserConstants.K_QUIT:
+                return ZqlStatementInfo.EXIT;
+            default:
+                return ZqlStatementInfo.UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import java.util.List;
+
+/**
+ * ZqlStatementInfo: what the ZqlStatementClassifier found out about a statement, its kind and the tables it references.
+ */
+public final class ZqlStatementInfo {
+
+    /**
+     * A statement that does not start like any statement of the grammar.
+     */
+    public static final int UNKNOWN = 0;
+
+    /**
+     * A SELECT statement.
+     */
+    public static final int QUERY = 1;
+
+    /**
+     * An INSERT statement.
+     */
+    public static final int INSERT = 2;
+
+    /**
+     * An UPDATE statement.
+     */
+    public static final int UPDATE = 3;
+
+    /**
+     * A DELETE statement.
+     */
+    public static final int DELETE = 4;
+
+    /**
+     * A LOCK TABLE statement.
+     */
+    public static final int LOCK_TABLE = 5;
+
+    /**
+     * A COMMIT statement.
+     */
+    public static final int COMMIT = 6;
+
+    /**
+     * A ROLLBACK statement.
+     */
+    public static final int ROLLBACK = 7;
+
+    /**
+     * A SET TRANSACTION statement.
+     */
+    public static final int SET_TRANSACTION = 8;
+
+    /**
+     * An EXIT or QUIT statement.
+     */
+    public static final int EXIT = 9;
+
+    /**
+     * The kind of statement.
+     */
+    private final int kind;
+
+    /**
+     * The referenced tables.
+     */
+    private final List<String> tables;
+
+    /**
+     * Offset of the first character of the statement.
+     */
+    private final long beginOffset;
+
+    /**
+     * Offset after the last character of the statement.
+     */
+    private final long endOffset;
+
+    /**
+     * Create a statement info.
+     *
+     * @param kind        the kind of statement.
+     * @param tables      the referenced tables (not copied).
+     * @param beginOffset offset of the first character of the statement.
+     * @param endOffset   offset after the last character of the statement.
+     */
+    ZqlStatementInfo(final int kind, final List<String> tables, final long beginOffset, final long endOffset) {
+        this.kind = kind;
+        this.tables = tables;
+        this.beginOffset = beginOffset;
+        this.endOffset = endOffset;
+    }
+
+    /**
+     * Get the kind of statement.
+     *
+     * @return one of the constants of this class (QUERY, INSERT...).
+     */
+    public int getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Check for a COMMIT, ROLLBACK or SET TRANSACTION statement.
+     *
+     * @return true for a transaction statement.
+     */
+    public boolean isTransaction() {
+        return this.kind == COMMIT || this.kind == ROLLBACK || this.kind == SET_TRANSACTION;
+    }
+
+    /**
+     * Get the tables referenced by the statement (including the ones of its subqueries), as written in the statement ("table" or
+     * "schema.table"), without duplicates and in order of appearance.
+     *
+     * @return the tables, as an unmodifiable list.
+     */
+    public List<String> getTables() {
+        return this.tables;
+    }
+
+    /**
+     * Get the offset of the first character of the statement.
+     *
+     * @return the offset.
+     */
+    public long getBeginOffset() {
+        return this.beginOffset;
+    }
+
+    /**
+     * Get the offset after the last character of the statement (after its semicolon, if any).
+     *
+     * @return the offset.
+     */
+    public long getEndOffset() {
+        return this.endOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "kind " + this.kind + ", tables " + this.tables;
+    }
+}
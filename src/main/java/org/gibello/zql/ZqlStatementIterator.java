@@ -0,0 +1,224 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZFunctionRegistry;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * ZqlStatementIterator: reads the statements of an SQL script one at a time.<br>
+ * Only the statement being parsed is held in memory (the input is not buffered beyond the current token), so scripts of any size can
+ * be processed. The iteration stops at the end of the input or at an EXIT/QUIT statement.<br>
+ * The character offsets of the last returned statement are available, so that an interrupted run can be resumed from the end of the
+ * last processed statement with {@link #ZqlStatementIterator(CharSequence, int)} or {@link #ZqlStatementIterator(Reader, long)}.<br>
+ * Parse errors are thrown as UncheckedParseException by hasNext() and next(); the iteration can not continue after an error.
+ */
+public class ZqlStatementIterator implements Iterator<ZStatement> {
+
+    /**
+     * The parser.
+     */
+    private final ZqlJJParser parser;
+
+    /**
+     * The statement returned by the next call to next(), if already parsed.
+     */
+    private ZStatement pending;
+
+    /**
+     * Offset of the first character of the pending statement.
+     */
+    private long pendingBeginOffset = -1;
+
+    /**
+     * Offset after the last character of the pending statement.
+     */
+    private long pendingEndOffset = -1;
+
+    /**
+     * Offset of the first character of the last returned statement.
+     */
+    private long beginOffset = -1;
+
+    /**
+     * Offset after the last character of the last returned statement.
+     */
+    private long endOffset = -1;
+
+    /**
+     * Whether the end of the script (or an error) has been reached.
+     */
+    private boolean finished;
+
+    /**
+     * Iterate over the statements of a script held in memory.
+     *
+     * @param text the SQL script.
+     */
+    public ZqlStatementIterator(final CharSequence text) {
+        this(text, 0);
+    }
+
+    /**
+     * Iterate over the statements of a script held in memory, starting at a given offset (usually the end offset of the last statement
+     * processed by a previous run). Offsets are indexes in the text, line numbers restart at 1 at the start offset.
+     *
+     * @param text        the SQL script.
+     * @param startOffset the index of the first character to parse.
+     */
+    public ZqlStatementIterator(final CharSequence text, final int startOffset) {
+        this(new ZqlJJParser(new CharSequenceCharStream(text, startOffset, text.length(), 1, 1)));
+    }
+
+    /**
+     * Iterate over the statements read from a reader.
+     *
+     * @param in the reader.
+     */
+    public ZqlStatementIterator(final Reader in) {
+        this(new ZqlJJParser(new ReaderCharStream(in)));
+    }
+
+    /**
+     * Iterate over the statements read from a reader, skipping the characters before a given offset (usually the end offset of the
+     * last statement processed by a previous run). Offsets are counted from the start of the reader, line numbers restart at 1 at the
+     * start offset.
+     *
+     * @param in          the reader, positioned at its start.
+     * @param startOffset the number of characters to skip.
+     * @throws IOException if the characters can not be skipped.
+     */
+    public ZqlStatementIterator(final Reader in, final long startOffset) throws IOException {
+        this(new ZqlJJParser(new ReaderCharStream(in, skip(in, startOffset), 1, 1)));
+    }
+
+    /**
+     * Iterate over the statements of a parser's input.
+     *
+     * @param parser the parser.
+     */
+    ZqlStatementIterator(final ZqlJJParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Set the custom functions known to the parser (the global registry by default), before the iteration starts.
+     *
+     * @param functions the function registry.
+     */
+    public void setFunctionRegistry(final ZFunctionRegistry functions) {
+        this.parser.setFunctionRegistry(functions);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.pending == null && !this.finished) {
+            this.parseNext();
+        }
+        return this.pending != null;
+    }
+
+    @Override
+    public ZStatement next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final ZStatement statement = this.pending;
+        this.pending = null;
+        this.beginOffset = this.pendingBeginOffset;
+        this.endOffset = this.pendingEndOffset;
+        return statement;
+    }
+
+    /**
+     * Statements can not be removed from a script.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Get the offset of the first character of the last statement returned by next() (leading comments excluded).
+     *
+     * @return the offset, or -1 before the first statement or if the input does not track offsets.
+     */
+    public long getBeginOffset() {
+        return this.beginOffset;
+    }
+
+    /**
+     * Get the offset after the last character (the semicolon) of the last statement returned by next(): the offset at which to resume.
+     *
+     * @return the offset, or -1 before the first statement or if the input does not track offsets.
+     */
+    public long getEndOffset() {
+        return this.endOffset;
+    }
+
+    /**
+     * Parse the next statement, if any.
+     */
+    private void parseNext() {
+        try {
+            this.pendingBeginOffset = this.parser.getToken(1).beginOffset;
+            if (this.parser.getToken(1).kind == ZqlJJParserConstants.EOF) {
+                this.finished = true;
+                return;
+            }
+            this.pending = this.parser.SQLStatement();
+            this.pendingEndOffset = this.parser.getToken(0).endOffset;
+            this.finished = this.pending == null;
+        } catch (final ParseException e) {
+            this.finished = true;
+            throw new UncheckedParseException(e);
+        } catch (final TokenMgrError e) {
+            this.finished = true;
+            throw new UncheckedParseException(new ParseException(e.getMessage()));
+        }
+    }
+
+    /**
+     * Skip the first characters of a reader.
+     *
+     * @param in    the reader.
+     * @param count the number of characters to skip.
+     * @return the number of characters skipped.
+     * @throws IOException if the reader fails or ends before count characters.
+     */
+    private static long skip(final Reader in, final long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            final long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new IOException("Unexpected end of input after " + (count - remaining) + " characters");
+                }
+                remaining--;
+            } else {
+                remaining -= skipped;
+            }
+        }
+        return count;
+    }
+}
@@ -17,11 +17,11 @@
 
 package org.gibello.zql.alias;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.gibello.zql.utils.ZCommonConstants;
+import org.gibello.zql.utils.ZFreezer;
 
 import java.io.Serializable;
+import java.util.Objects;
 import java.util.StringTokenizer;
 
 /**
@@ -74,6 +74,16 @@ public class ZAliasedName implements Serializable {
      */
     private int formColumn = ZAliasedName.FORM_COLUMN;
 
+    /**
+     * Whether the name is frozen (read-only).
+     */
+    private boolean frozen = false;
+
+    /**
+     * The structural hash, kept once the name is frozen, 0 if it is not known.
+     */
+    private transient int hash;
+
     /**
      * Default constructor.
      */
@@ -156,6 +166,32 @@ public class ZAliasedName implements Serializable {
         return result.trim();
     }
 
+    /**
+     * Make this name compact and read-only (see ZFreezer).
+     *
+     * @return this name.
+     */
+    public ZAliasedName freeze() {
+        if (!this.frozen) {
+            this.strform = ZFreezer.intern(this.strform);
+            this.schema = ZFreezer.intern(this.schema);
+            this.table = ZFreezer.intern(this.table);
+            this.column = ZFreezer.intern(this.column);
+            this.alias = ZFreezer.intern(this.alias);
+            this.frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * Check whether this name is frozen.
+     *
+     * @return whether it is read-only.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
     @Override
     public String toString() {
         if (this.alias == null) {
@@ -176,6 +212,7 @@ public class ZAliasedName implements Serializable {
      * @param schema the schema.
      */
     public void setSchema(final String schema) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.schema = schema;
     }
 
@@ -190,6 +227,7 @@ public class ZAliasedName implements Serializable {
      * @param table the table name.
      */
     public void setTable(final String table) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.table = table;
     }
 
@@ -204,6 +242,7 @@ public class ZAliasedName implements Serializable {
      * @param column the column.
      */
     public void setColumn(final String column) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.column = column;
     }
 
@@ -235,6 +274,7 @@ public class ZAliasedName implements Serializable {
      * @param alias the alias associated to the current name.
      */
     public void setAlias(final String alias) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.alias = alias;
     }
 
@@ -249,6 +289,7 @@ public class ZAliasedName implements Serializable {
      * @param strform the string form.
      */
     public void setStrform(final String strform) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.strform = strform;
     }
 
@@ -263,36 +304,49 @@ public class ZAliasedName implements Serializable {
      * @param formColumn the form column.
      */
     public void setFormColumn(final int formColumn) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.formColumn = formColumn;
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-
-        if (o == null || getClass() != o.getClass()) return false;
-
-        ZAliasedName that = (ZAliasedName) o;
-
-        return new EqualsBuilder()
-                .append(getFormColumn(), that.getFormColumn())
-                .append(getStrform(), that.getStrform())
-                .append(getSchema(), that.getSchema())
-                .append(getTable(), that.getTable())
-                .append(getColumn(), that.getColumn())
-                .append(getAlias(), that.getAlias())
-                .isEquals();
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ZAliasedName that = (ZAliasedName) o;
+        if (this.frozen && that.frozen && this.hashCode() != that.hashCode()) {
+            return false;
+        }
+        return this.formColumn == that.formColumn && Objects.equals(this.strform, that.strform) && Objects.equals(this.schema, that.schema)
+                && Objects.equals(this.table, that.table) && Objects.equals(this.column, that.column) && Objects.equals(this.alias, that.alias);
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder(17, 37)
-                .append(getStrform())
-                .append(getSchema())
-                .append(getTable())
-                .append(getColumn())
-                .append(getAlias())
-                .append(getFormColumn())
-                .toHashCode();
+        int result = this.hash;
+        if (result == 0) {
+            result = this.structuralHash();
+            if (this.frozen) {
+                this.hash = result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute the hash of the fields of this name. hashCode() keeps it once the name is frozen.
+     *
+     * @return the hash.
+     */
+    protected int structuralHash() {
+        int result = Objects.hashCode(this.strform);
+        result = 31 * result + Objects.hashCode(this.schema);
+        result = 31 * result + Objects.hashCode(this.table);
+        result = 31 * result + Objects.hashCode(this.column);
+        result = 31 * result + Objects.hashCode(this.alias);
+        return 31 * result + this.formColumn;
     }
 }
@@ -17,13 +17,14 @@
 
 package org.gibello.zql.alias;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.gibello.zql.expression.ZConstant;
 import org.gibello.zql.expression.ZExp;
 import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.utils.ZFreezer;
 import org.gibello.zql.utils.ZUtils;
 
+import java.util.Objects;
+
 /**
  * ZSelectItem: an item in the SELECT part of an SQL query. (The SELECT part of a query is a Vector of ZSelectItem).
  *
@@ -101,6 +102,7 @@ public class ZSelectItem extends ZAliasedName {
      * @param expression the expression.
      */
     public void setExpression(final ZExp expression) {
+        ZFreezer.checkNotFrozen(this.isFrozen());
         this.expression = expression;
         this.setStrform(this.expression.toString());
     }
@@ -122,34 +124,44 @@ public class ZSelectItem extends ZAliasedName {
      * @param aggregate The name of the aggregate function (a String, like SUM, AVG, MAX, MIN)
      */
     public void setAggregate(final String aggregate) {
+        ZFreezer.checkNotFrozen(this.isFrozen());
         this.aggregate = aggregate;
     }
 
+    /**
+     * Make this item and its expression compact and read-only (see ZFreezer).
+     *
+     * @return this item.
+     */
+    @Override
+    public ZSelectItem freeze() {
+        if (!this.isFrozen()) {
+            this.expression = ZFreezer.freeze(this.expression);
+            this.aggregate = ZFreezer.intern(this.aggregate);
+        }
+        super.freeze();
+        return this;
+    }
+
     /**
      * TBD public String toString() { String agg = getAggregate(); if(agg == null) agg = ""; return agg + super.toString(); }
      **/
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-
-        if (o == null || getClass() != o.getClass()) return false;
-
-        ZSelectItem that = (ZSelectItem) o;
-
-        return new EqualsBuilder()
-                .appendSuper(super.equals(o))
-                .append(getExpression(), that.getExpression())
-                .append(getAggregate(), that.getAggregate())
-                .isEquals();
+    public boolean equals(final Object o) {
+        if (!super.equals(o)) {
+            return false;
+        }
+        final ZSelectItem that = (ZSelectItem) o;
+        // The expression of a column item is made from its column name, which is compared by super.equals()
+        return this.isExpression() == that.isExpression() && (!this.isExpression() || this.expression.equals(that.expression))
+                && Objects.equals(this.aggregate, that.aggregate);
     }
 
     @Override
-    public int hashCode() {
-        return new HashCodeBuilder(17, 37)
-                .appendSuper(super.hashCode())
-                .append(getExpression())
-                .append(getAggregate())
-                .toHashCode();
+    protected int structuralHash() {
+        int result = super.structuralHash();
+        result = 31 * result + (this.isExpression() ? this.expression.hashCode() : 0);
+        return 31 * result + Objects.hashCode(this.aggregate);
     }
 }
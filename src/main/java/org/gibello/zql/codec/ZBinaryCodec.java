@@ -0,0 +1,909 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.codec;
+
+import org.gibello.zql.ZGroupBy;
+import org.gibello.zql.ZOrderBy;
+import org.gibello.zql.alias.ZAliasedName;
+import org.gibello.zql.alias.ZFromItem;
+import org.gibello.zql.alias.ZSelectItem;
+import org.gibello.zql.expression.ZConstant;
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.expression.ZParameter;
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.statement.ZDelete;
+import org.gibello.zql.statement.ZInsert;
+import org.gibello.zql.statement.ZLockTable;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.statement.ZTransactStmt;
+import org.gibello.zql.statement.ZUpdate;
+import org.gibello.zql.utils.ZCommonConstants;
+import org.gibello.zql.visitor.ZVisitor;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ZBinaryCodec: encodes statements and expressions to a compact binary form, and decodes them back.<br>
+ * A message holds a header (the magic bytes "ZQL" and a version byte), a string table, then its root nodes. Every string of the trees
+ * (names, literals, operators) is written once in the table, in UTF-8, and referenced by its index. All the counts and indexes are
+ * unsigned variable-length integers (7 bits per byte, the high bit set on all bytes but the last), so most of them take one byte. Each
+ * node is a tag byte followed by its fields, in a fixed order: the format has no field names and no class names.<br>
+ * Decoding reads the strings in place from the buffer (there is no copy to an intermediate array), and leaves the buffer positioned
+ * after the message, so that messages can be concatenated. The decoded trees are equal to the encoded ones, and are not frozen.
+ */
+public final class ZBinaryCodec {
+
+    /**
+     * The version of the format written by this class.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The magic bytes starting a message.
+     */
+    private static final byte[] MAGIC = {'Z', 'Q', 'L'};
+
+    /**
+     * Tag of a null node.
+     */
+    private static final int NULL = 0;
+
+    /**
+     * Tag of a ZConstant: type, value.
+     */
+    private static final int CONSTANT = 1;
+
+    /**
+     * Tag of a ZExpression: function flag, operator, operands.
+     */
+    private static final int EXPRESSION = 2;
+
+    /**
+     * Tag of a ZParameter: name, index.
+     */
+    private static final int PARAMETER = 3;
+
+    /**
+     * Tag of a ZQuery: flags, select, from, where, group by, set, order by.
+     */
+    private static final int QUERY = 4;
+
+    /**
+     * Tag of a ZInsert: table, columns, values or query.
+     */
+    private static final int INSERT = 5;
+
+    /**
+     * Tag of a ZUpdate: table, alias, set mode, column/value pairs, where.
+     */
+    private static final int UPDATE = 6;
+
+    /**
+     * Tag of a ZDelete: table, where.
+     */
+    private static final int DELETE = 7;
+
+    /**
+     * Tag of a ZLockTable: nowait flag, lock mode, tables.
+     */
+    private static final int LOCK_TABLE = 8;
+
+    /**
+     * Tag of a ZTransactStmt: read only flag, statement, comment.
+     */
+    private static final int TRANSACTION = 9;
+
+    /**
+     * Tag of a ZSelectItem: the ZAliasedName fields, expression, aggregate.
+     */
+    private static final int SELECT_ITEM = 10;
+
+    /**
+     * Tag of a ZFromItem: the ZAliasedName fields.
+     */
+    private static final int FROM_ITEM = 11;
+
+    /**
+     * Tag of a ZAliasedName: string form, schema, table, column, alias, form.
+     */
+    private static final int ALIASED_NAME = 12;
+
+    /**
+     * Tag of a ZGroupBy: items, having.
+     */
+    private static final int GROUP_BY = 13;
+
+    /**
+     * Tag of a ZOrderBy: ascending flag, expression.
+     */
+    private static final int ORDER_BY = 14;
+
+    /**
+     * Tag of a String (the column names of an INSERT).
+     */
+    private static final int NAME = 15;
+
+    /**
+     * The SET clause of an UPDATE is null.
+     */
+    private static final int SET_NONE = 0;
+
+    /**
+     * The SET clause of an UPDATE was built with addColumnUpdate(), and keeps its order.
+     */
+    private static final int SET_ORDERED = 1;
+
+    /**
+     * The SET clause of an UPDATE was given as a Hashtable, and has no order.
+     */
+    private static final int SET_UNORDERED = 2;
+
+    /**
+     * Utility class.
+     */
+    private ZBinaryCodec() {
+
+    }
+
+    /**
+     * Encode a statement.
+     *
+     * @param statement the statement.
+     * @return the message.
+     */
+    public static byte[] encode(final ZStatement statement) {
+        return new Encoder().encode(Collections.singletonList(statement));
+    }
+
+    /**
+     * Encode an expression.
+     *
+     * @param exp the expression.
+     * @return the message.
+     */
+    public static byte[] encode(final ZExp exp) {
+        return new Encoder().encode(Collections.singletonList(exp));
+    }
+
+    /**
+     * Encode a query (a query is both an expression and a statement).
+     *
+     * @param query the query.
+     * @return the message.
+     */
+    public static byte[] encode(final ZQuery query) {
+        return encode((ZStatement) query);
+    }
+
+    /**
+     * Encode several statements in one message: their strings are shared, so that this is smaller than one message per statement.
+     *
+     * @param statements the statements.
+     * @return the message.
+     */
+    public static byte[] encodeStatements(final List<? extends ZStatement> statements) {
+        return new Encoder().encode(statements);
+    }
+
+    /**
+     * Decode a message holding one statement.
+     *
+     * @param buffer the buffer, positioned at the start of the message. It is positioned after the message on return.
+     * @return the statement.
+     */
+    public static ZStatement decodeStatement(final ByteBuffer buffer) {
+        return (ZStatement) decodeSingle(buffer, ZStatement.class);
+    }
+
+    /**
+     * Decode a message holding statements.
+     *
+     * @param buffer the buffer, positioned at the start of the message. It is positioned after the message on return.
+     * @return the statements, in order.
+     */
+    public static List<ZStatement> decodeStatements(final ByteBuffer buffer) {
+        final Decoder decoder = new Decoder(buffer);
+        final int count = decoder.getRootCount();
+        final List<ZStatement> statements = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            statements.add((ZStatement) decoder.readNode(ZStatement.class));
+        }
+        return statements;
+    }
+
+    /**
+     * Decode a message holding one expression.
+     *
+     * @param buffer the buffer, positioned at the start of the message. It is positioned after the message on return.
+     * @return the expression.
+     */
+    public static ZExp decodeExpression(final ByteBuffer buffer) {
+        return (ZExp) decodeSingle(buffer, ZExp.class);
+    }
+
+    /**
+     * Decode a message holding one node.
+     *
+     * @param buffer the buffer.
+     * @param type   the expected type of the node.
+     * @return the node.
+     */
+    private static Object decodeSingle(final ByteBuffer buffer, final Class<?> type) {
+        final Decoder decoder = new Decoder(buffer);
+        final int count = decoder.getRootCount();
+        if (count != 1) {
+            throw new IllegalArgumentException(ZCommonConstants.CODEC_NOT_SINGLE + count);
+        }
+        return decoder.readNode(type);
+    }
+
+    /**
+     * Writes the nodes of a message: the strings are collected in a table while the nodes are written, and the table is written
+     * before them at the end.
+     */
+    private static final class Encoder implements ZVisitor<Void> {
+
+        /**
+         * The encoded nodes.
+         */
+        private byte[] body = new byte[256];
+
+        /**
+         * The number of bytes in body.
+         */
+        private int size;
+
+        /**
+         * The index of each string of the table.
+         */
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        /**
+         * The strings of the table, by index.
+         */
+        private final List<String> strings = new ArrayList<>();
+
+        /**
+         * Encode a message.
+         *
+         * @param roots the root nodes.
+         * @return the message.
+         */
+        byte[] encode(final List<?> roots) {
+            for (final Object root : roots) {
+                this.node(root);
+            }
+            final byte[] nodes = Arrays.copyOf(this.body, this.size);
+
+            // The header and the string table, then the nodes
+            this.body = new byte[64 + 8 * this.strings.size()];
+            this.size = 0;
+            for (final byte b : MAGIC) {
+                this.write(b);
+            }
+            this.write(VERSION);
+            this.writeInt(this.strings.size());
+            for (final String s : this.strings) {
+                final byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                this.writeInt(utf8.length);
+                this.write(utf8, utf8.length);
+            }
+            this.writeInt(roots.size());
+            this.write(nodes, nodes.length);
+            return Arrays.copyOf(this.body, this.size);
+        }
+
+        /**
+         * Write a node of any type.
+         *
+         * @param node the node, may be null.
+         */
+        private void node(final Object node) {
+            if (node == null) {
+                this.write(NULL);
+            } else if (node instanceof ZExp) {
+                ((ZExp) node).accept(this);
+            } else if (node instanceof ZStatement) {
+                ((ZStatement) node).accept(this);
+            } else if (node instanceof ZSelectItem) {
+                final ZSelectItem item = (ZSelectItem) node;
+                this.write(SELECT_ITEM);
+                this.aliasedName(item);
+                this.node(item.isExpression() ? item.getExpression() : null);
+                this.string(item.getAggregate());
+            } else if (node instanceof ZFromItem) {
+                this.write(FROM_ITEM);
+                this.aliasedName((ZFromItem) node);
+            } else if (node instanceof ZAliasedName) {
+                this.write(ALIASED_NAME);
+                this.aliasedName((ZAliasedName) node);
+            } else if (node instanceof ZGroupBy) {
+                final ZGroupBy groupBy = (ZGroupBy) node;
+                this.write(GROUP_BY);
+                this.list(groupBy.getGroupBy());
+                this.node(groupBy.getHaving());
+            } else if (node instanceof ZOrderBy) {
+                final ZOrderBy orderBy = (ZOrderBy) node;
+                this.write(ORDER_BY);
+                this.write(orderBy.getAscOrder() ? 1 : 0);
+                this.node(orderBy.getExpression());
+            } else if (node instanceof String) {
+                this.write(NAME);
+                this.string((String) node);
+            } else {
+                throw new IllegalArgumentException(ZCommonConstants.CODEC_UNSUPPORTED_NODE + node.getClass().getName());
+            }
+        }
+
+        /**
+         * Write the fields of an aliased name.
+         *
+         * @param name the name.
+         */
+        private void aliasedName(final ZAliasedName name) {
+            this.string(name.getStrform());
+            this.string(name.getSchema());
+            this.string(name.getTable());
+            this.string(name.getColumn());
+            this.string(name.getAlias());
+            this.writeInt(name.getFormColumn());
+        }
+
+        /**
+         * Write a list of nodes: its size + 1 (0 for a null list), then its items.
+         *
+         * @param list the list, may be null.
+         */
+        private void list(final List<?> list) {
+            if (list == null) {
+                this.write(0);
+                return;
+            }
+            final int count = list.size();
+            this.writeInt(count + 1);
+            for (int i = 0; i < count; i++) {
+                this.node(list.get(i));
+            }
+        }
+
+        /**
+         * Write a string, as its index in the table + 1 (0 for null).
+         *
+         * @param s the string, may be null.
+         */
+        private void string(final String s) {
+            if (s == null) {
+                this.write(0);
+                return;
+            }
+            Integer id = this.ids.get(s);
+            if (id == null) {
+                id = this.strings.size();
+                this.ids.put(s, id);
+                this.strings.add(s);
+            }
+            this.writeInt(id + 1);
+        }
+
+        /**
+         * Write an unsigned variable-length integer.
+         *
+         * @param value the value, not negative.
+         */
+        private void writeInt(final int value) {
+            int v = value;
+            while ((v & ~0x7F) != 0) {
+                this.write((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            this.write(v);
+        }
+
+        /**
+         * Write a byte.
+         *
+         * @param b the byte, in its low 8 bits.
+         */
+        private void write(final int b) {
+            if (this.size == this.body.length) {
+                this.body = Arrays.copyOf(this.body, this.size * 2);
+            }
+            this.body[this.size++] = (byte) b;
+        }
+
+        /**
+         * Write bytes.
+         *
+         * @param bytes the bytes.
+         * @param len   the number of bytes to write.
+         */
+        private void write(final byte[] bytes, final int len) {
+            if (this.size + len > this.body.length) {
+                this.body = Arrays.copyOf(this.body, Math.max(this.body.length * 2, this.size + len));
+            }
+            System.arraycopy(bytes, 0, this.body, this.size, len);
+            this.size += len;
+        }
+
+        @Override
+        public Void visitConstant(final ZConstant constant) {
+            this.write(CONSTANT);
+            this.writeInt(constant.getType());
+            this.string(constant.getValue());
+            return null;
+        }
+
+        @Override
+        public Void visitExpression(final ZExpression expression) {
+            this.write(EXPRESSION);
+            this.write(expression.isFunction() ? 1 : 0);
+            this.string(expression.getOperator());
+            this.list(expression.getOperands());
+            return null;
+        }
+
+        @Override
+        public Void visitParameter(final ZParameter parameter) {
+            this.write(PARAMETER);
+            this.string(parameter.getName());
+            this.writeInt(parameter.getIndex());
+            return null;
+        }
+
+        @Override
+        public Void visitQuery(final ZQuery query) {
+            this.write(QUERY);
+            this.write((query.isDistinct() ? 1 : 0) | (query.isForUpdate() ? 2 : 0));
+            this.list(query.getSelect());
+            this.list(query.getFrom());
+            this.node(query.getWhere());
+            this.node(query.getGroupBy());
+            this.node(query.getSet());
+            this.list(query.getOrderBy());
+            return null;
+        }
+
+        @Override
+        public Void visitInsert(final ZInsert insert) {
+            this.write(INSERT);
+            this.string(insert.getTable());
+            this.list(insert.getColumns());
+            this.node(insert.getValueSpec());
+            return null;
+        }
+
+        @Override
+        public Void visitUpdate(final ZUpdate update) {
+            this.write(UPDATE);
+            this.string(update.getTable());
+            this.string(update.getAlias());
+            final List<String> columns = update.getColumnUpdateNames();
+            if (columns != null) {
+                final int count = update.getColumnUpdateCount();
+                this.write(SET_ORDERED);
+                this.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    this.string(columns.get(i));
+                    this.node(update.getColumnUpdate(i));
+                }
+            } else if (update.getSet() != null) {
+                final Hashtable<String, ZExp> set = update.getSet();
+                this.write(SET_UNORDERED);
+                this.writeInt(set.size());
+                for (final Map.Entry<String, ZExp> entry : set.entrySet()) {
+                    this.string(entry.getKey());
+                    this.node(entry.getValue());
+                }
+            } else {
+                this.write(SET_NONE);
+            }
+            this.node(update.getWhere());
+            return null;
+        }
+
+        @Override
+        public Void visitDelete(final ZDelete delete) {
+            this.write(DELETE);
+            this.string(delete.getTable());
+            this.node(delete.getWhere());
+            return null;
+        }
+
+        @Override
+        public Void visitLockTable(final ZLockTable lock) {
+            this.write(LOCK_TABLE);
+            this.write(lock.isNowait() ? 1 : 0);
+            this.string(lock.getLockMode());
+            this.list(lock.getTables());
+            return null;
+        }
+
+        @Override
+        public Void visitTransaction(final ZTransactStmt transaction) {
+            this.write(TRANSACTION);
+            this.write(transaction.isReadOnly() ? 1 : 0);
+            this.string(transaction.getStatement());
+            this.string(transaction.getComment());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the nodes of a message, after its header and string table.
+     */
+    private static final class Decoder {
+
+        /**
+         * The message.
+         */
+        private final ByteBuffer in;
+
+        /**
+         * The string table.
+         */
+        private final String[] strings;
+
+        /**
+         * The number of root nodes.
+         */
+        private final int rootCount;
+
+        /**
+         * Read the header, the string table and the root count of a message.
+         *
+         * @param in the buffer, positioned at the start of the message.
+         */
+        Decoder(final ByteBuffer in) {
+            this.in = in;
+            try {
+                for (final byte b : MAGIC) {
+                    if (in.get() != b) {
+                        throw new IllegalArgumentException(ZCommonConstants.CODEC_NOT_BINARY);
+                    }
+                }
+                final int version = in.get() & 0xFF;
+                if (version != VERSION) {
+                    throw new IllegalArgumentException(ZCommonConstants.CODEC_UNSUPPORTED_VERSION + version);
+                }
+            } catch (final BufferUnderflowException e) {
+                throw new IllegalArgumentException(ZCommonConstants.CODEC_NOT_BINARY, e);
+            }
+            try {
+                // The counts are not trusted: the table grows with the strings actually read
+                final int count = this.readCount();
+                final List<String> table = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    table.add(this.readUtf8(this.readCount()));
+                }
+                this.strings = table.toArray(new String[table.size()]);
+                this.rootCount = this.readCount();
+            } catch (final BufferUnderflowException e) {
+                throw new IllegalArgumentException(ZCommonConstants.CODEC_CORRUPTED + "truncated message", e);
+            }
+        }
+
+        /**
+         * Get the number of root nodes of the message.
+         *
+         * @return the number of root nodes.
+         */
+        int getRootCount() {
+            return this.rootCount;
+        }
+
+        /**
+         * Read a node.
+         *
+         * @param type the expected type of the node.
+         * @return the node, may be null.
+         */
+        Object readNode(final Class<?> type) {
+            final int tag;
+            final Object node;
+            try {
+                tag = this.in.get();
+                node = this.read(tag);
+            } catch (final BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException(ZCommonConstants.CODEC_CORRUPTED + "truncated message", e);
+            } catch (final IllegalArgumentException e) {
+                throw e;
+            } catch (final RuntimeException e) {
+                // Fields that do not fit together (a null column name...) are rejected by the nodes themselves
+                throw new IllegalArgumentException(ZCommonConstants.CODEC_CORRUPTED + "invalid node " + e, e);
+            }
+            if (node != null && !type.isInstance(node)) {
+                throw new IllegalArgumentException(ZCommonConstants.CODEC_CORRUPTED + "unexpected node tag " + tag);
+            }
+            return node;
+        }
+
+        /**
+         * Read the fields of a node.
+         *
+         * @param tag the tag of the node.
+         * @return the node.
+         */
+        private Object read(final int tag) {
+            switch (tag) {
+                case NULL:
+                    return null;
+                case CONSTANT:
+                    final int type = this.readInt();
+                    return new ZConstant(this.readString(), type);
+                case EXPRESSION:
+                    final boolean function = this.in.get() != 0;
+                    final ZExpression expression = new ZExpression(this.readString());
+                    expression.setFunction(function);
+                    final List<ZExp> operands = this.readList(ZExp.class);
+                    if (operands != null) {
+                        expression.setOperands(operands);
+                    }
+                    return expression;
+                case PARAMETER:
+                    final String name = this.readString();
+                    return new ZParameter(name, this.readInt());
+                case QUERY:
+                    return this.readQuery();
+                case INSERT:
+                    final ZInsert insert = new ZInsert(this.readString());
+                    final List<ZExp> columns = this.readList(Object.class);
+                    if (columns != null) {
+                        insert.addColumns(columns);
+                    }
+                    final ZExp values = (ZExp) this.readNode(ZExp.class);
+                    if (values != null) {
+                        insert.addValueSpec(values);
+                    }
+                    return insert;
+                case UPDATE:
+                    return this.readUpdate();
+                case DELETE:
+                    final ZDelete delete = new ZDelete(this.readString());
+                    delete.addWhere((ZExp) this.readNode(ZExp.class));
+                    return delete;
+                case LOCK_TABLE:
+                    final ZLockTable lock = new ZLockTable();
+                    lock.setNowait(this.in.get() != 0);
+                    lock.setLockMode(this.readString());
+                    final List<Object> tables = this.readList(Object.class);
+                    if (tables != null) {
+                        lock.addTables(tables);
+                    }
+                    return lock;
+                case TRANSACTION:
+                    final boolean readOnly = this.in.get() != 0;
+                    final ZTransactStmt transaction = new ZTransactStmt(this.readString());
+                    transaction.setComment(this.readString());
+                    transaction.setReadOnly(readOnly);
+                    return transaction;
+                case SELECT_ITEM:
+                    final ZSelectItem item = new ZSelectItem();
+                    final String[] fields = this.readAliasedName();
+                    final int form = this.readInt();
+                    final ZExp itemExpression = (ZExp) this.readNode(ZExp.class);
+                    if (itemExpression != null) {
+                        item.setExpression(itemExpression);
+                    }
+                    this.setAliasedName(item, fields, form);
+                    item.setAggregate(this.readString());
+                    return item;
+                case FROM_ITEM:
+                    final ZFromItem fromItem = new ZFromItem();
+                    this.setAliasedName(fromItem, this.readAliasedName(), this.readInt());
+                    return fromItem;
+                case ALIASED_NAME:
+                    final ZAliasedName aliasedName = new ZAliasedName();
+                    this.setAliasedName(aliasedName, this.readAliasedName(), this.readInt());
+                    return aliasedName;
+                case GROUP_BY:
+                    final ZGroupBy groupBy = new ZGroupBy(this.readList(Object.class));
+                    groupBy.setHaving((ZExp) this.readNode(ZExp.class));
+                    return groupBy;
+                case ORDER_BY:
+                    final boolean ascending = this.in.get() != 0;
+                    final ZOrderBy orderBy = new ZOrderBy((ZExp) this.readNode(ZExp.class));
+                    orderBy.setAscOrder(ascending);
+                    return orderBy;
+                case NAME:
+                    return this.readString();
+                default:
+                    throw new IllegalArgumentException(ZCommonConstants.CODEC_CORRUPTED + "unknown node tag " + tag);
+            }
+        }
+
+        /**
+         * Read the fields of a query.
+         *
+         * @return the query.
+         */
+        private ZQuery readQuery() {
+            final ZQuery query = new ZQuery();
+            final int flags = this.in.get();
+            query.setDistinct((flags & 1) != 0);
+            query.setForupdate((flags & 2) != 0);
+            query.addSelect(this.readList(Object.class));
+            query.addFrom(this.readList(Object.class));
+            query.addWhere((ZExp) this.readNode(ZExp.class));
+            query.addGroupBy((ZGroupBy) this.readNode(ZGroupBy.class));
+            query.addSet((ZExpression) this.readNode(ZExpression.class));
+            query.addOrderBy(this.readList(Object.class));
+            return query;
+        }
+
+        /**
+         * Read the fields of an UPDATE statement.
+         *
+         * @return the statement.
+         */
+        private ZUpdate readUpdate() {
+            final ZUpdate update = new ZUpdate(this.readString());
+            update.setAlias(this.readString());
+            final int mode = this.in.get();
+            if (mode == SET_ORDERED) {
+                final int count = this.readCount();
+                for (int i = 0; i < count; i++) {
+                    final String column = this.readString();
+                    update.addColumnUpdate(column, (ZExp) this.readNode(ZExp.class));
+                }
+            } else if (mode == SET_UNORDERED) {
+                final int count = this.readCount();
+                final Hashtable<String, ZExp> set = new Hashtable<>();
+                for (int i = 0; i < count; i++) {
+                    final String column = this.readString();
+                    set.put(column, (ZExp) this.readNode(ZExp.class));
+                }
+                update.addSet(set);
+            }
+            update.addWhere((ZExp) this.readNode(ZExp.class));
+            return update;
+        }
+
+        /**
+         * Read the string fields of an aliased name.
+         *
+         * @return the string form, schema, table, column and alias.
+         */
+        private String[] readAliasedName() {
+            return new String[] {this.readString(), this.readString(), this.readString(), this.readString(), this.readString()};
+        }
+
+        /**
+         * Set the fields of an aliased name.
+         *
+         * @param name   the aliased name.
+         * @param fields the string form, schema, table, column and alias.
+         * @param form   the form (table or column).
+         */
+        private void setAliasedName(final ZAliasedName name, final String[] fields, final int form) {
+            name.setStrform(fields[0]);
+            name.setSchema(fields[1]);
+            name.setTable(fields[2]);
+            name.setColumn(fields[3]);
+            name.setAlias(fields[4]);
+            name.setFormColumn(form);
+        }
+
+        /**
+         * Read a list of nodes.
+         *
+         * @param type the expected type of the items.
+         * @param <T>  the type of the items.
+         * @return the list, null if a null list was encoded.
+         */
+        @SuppressWarnings("unchecked")
+        private <T> List<T> readList(final Class<?> type) {
+            // 0 for a null list, the number of items plus one otherwise
+            final int encoded = this.readInt();
+            if (encoded == 0) {
+                return null;
+            }
+            final int count = this.checkCount(encoded - 1);
+            final List<T> list = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                list.add((T) this.readNode(type));
+            }
+            return list;
+        }
+
+        /**
+         * Read a string reference.
+         *
+         * @return the string, may be null.
+         */
+        private String readString() {
+            final int id = this.readInt();
+            if (id < 0 || id > this.strings.length) {
+                throw new IllegalArgumentException(ZCommonConstants.CODEC_CORRUPTED + "invalid string reference " + id);
+            }
+            return id == 0 ? null : this.strings[id - 1];
+        }
+
+        /**
+         * Read UTF-8 bytes as a string, directly from the buffer.
+         *
+         * @param len the number of bytes.
+         * @return the string.
+         */
+        private String readUtf8(final int len) {
+            final int pos = this.in.position();
+            if (len > this.in.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            final String s;
+            if (this.in.hasArray()) {
+                s = new String(this.in.array(), this.in.arrayOffset() + pos, len, StandardCharsets.UTF_8);
+            } else {
+                final ByteBuffer slice = this.in.duplicate();
+                slice.limit(pos + len);
+                s = StandardCharsets.UTF_8.decode(slice).toString();
+            }
+            this.in.position(pos + len);
+            return s;
+        }
+
+        /**
+         * Read a count of items, or of bytes. Each item takes at least one byte, so a count larger than the rest of the message is
+         * corrupted.
+         *
+         * @return the count.
+         */
+        private int readCount() {
+            return this.checkCount(this.readInt());
+        }
+
+        /**
+         * Check a count of items, or of bytes, read from the message.
+         *
+         * @param count the count.
+         * @return the count.
+         */
+        private int checkCount(final int count) {
+            if (count < 0 || count > this.in.remaining()) {
+                throw new IllegalArgumentException(ZCommonConstants.CODEC_CORRUPTED + "invalid count " + count);
+            }
+            return count;
+        }
+
+        /**
+         * Read an unsigned variable-length integer.
+         *
+         * @return the value.
+         */
+        private int readInt() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                final byte b = this.in.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException(ZCommonConstants.CODEC_CORRUPTED + "integer too long");
+        }
+    }
+}
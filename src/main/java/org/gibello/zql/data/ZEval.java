@@ -21,13 +21,17 @@ import org.gibello.zql.ZqlParser;
 import org.gibello.zql.expression.ZConstant;
 import org.gibello.zql.expression.ZExp;
 import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.expression.ZParameter;
+import org.gibello.zql.template.ZBindings;
 import org.gibello.zql.utils.ZCommonConstants;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.FileReader;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Evaluate SQL expressions.
@@ -37,11 +41,100 @@ import java.util.List;
  */
 public class ZEval {
 
+    /**
+     * The values of the parameters, null if the expressions have none.
+     */
+    private final ZBindings bindings;
+
+    /**
+     * The slot of each shared sub-expression, whose value is kept for the current row; null if no value is kept.
+     */
+    private final Map<ZExp, Integer> slots;
+
+    /**
+     * The values of the shared numeric sub-expressions, by slot.
+     */
+    private final double[] numbers;
+
+    /**
+     * The values of the shared conditions, by slot.
+     */
+    private final boolean[] truths;
+
+    /**
+     * The row each kept value was computed for, by slot.
+     */
+    private final int[] rows;
+
+    /**
+     * The current row number.
+     */
+    private int row;
+
+    /**
+     * The tuple of the current row.
+     */
+    private ZTuple rowTuple;
+
+    /**
+     * The version of the tuple of the current row.
+     */
+    private int rowVersion;
+
+    /**
+     * The number of evaluations of shared sub-expressions saved so far.
+     */
+    private long savedEvaluations;
+
     /**
      * Default constructor.
      */
     public ZEval() {
+        this(null);
+    }
 
+    /**
+     * Create an evaluator of expressions with parameters ("?" or ":name").
+     *
+     * @param bindings the values of the parameters.
+     */
+    public ZEval(final ZBindings bindings) {
+        this(bindings, null);
+    }
+
+    /**
+     * Create an evaluator that computes each shared sub-expression once per row: the value is kept, and reused each time the same
+     * expression (the same object) is evaluated on the same row. A new row is detected when another tuple is given, or when the
+     * values of the tuple change. See ZCommonSubexpressions, which finds and shares the repeated sub-expressions of a query.
+     *
+     * @param bindings the values of the parameters, null if there are none.
+     * @param shared   the shared sub-expressions, null if there are none.
+     */
+    public ZEval(final ZBindings bindings, final Collection<? extends ZExp> shared) {
+        this.bindings = bindings;
+        if (shared == null || shared.isEmpty()) {
+            this.slots = null;
+            this.numbers = null;
+            this.truths = null;
+            this.rows = null;
+        } else {
+            this.slots = new IdentityHashMap<>();
+            for (final ZExp exp : shared) {
+                this.slots.put(exp, this.slots.size());
+            }
+            this.numbers = new double[this.slots.size()];
+            this.truths = new boolean[this.slots.size()];
+            this.rows = new int[this.slots.size()];
+        }
+    }
+
+    /**
+     * Get the number of evaluations of shared sub-expressions saved so far, by reusing the value computed for the row.
+     *
+     * @return the number of saved evaluations, 0 if no sub-expression is shared.
+     */
+    public long getSavedEvaluations() {
+        return this.savedEvaluations;
     }
 
     // FIXME extract to proper test module!!!
@@ -60,7 +153,7 @@ public class ZEval {
                 BufferedReader sql = new BufferedReader(new FileReader("test.sql"));
                 String query;
                 while ((query = sql.readLine()) != null) {
-                    parser.initParser(new ByteArrayInputStream(query.getBytes()));
+                    parser.initParser(query);
                     ZExp exp = parser.readExpression();
                     System.out.print(tpl + ", " + query + ", ");
                     System.out.println(evaluator.eval(t, exp));
@@ -92,103 +185,119 @@ public class ZEval {
         }
 
         final ZExpression pred = (ZExpression) exp;
-        final String op = pred.getOperator();
+        final int slot = this.slotOf(tuple, pred);
+        if (slot < 0) {
+            return this.evalPredicate(tuple, pred);
+        }
+        if (this.rows[slot] == this.row) {
+            this.savedEvaluations++;
+            return this.truths[slot];
+        }
+        final boolean value = this.evalPredicate(tuple, pred);
+        this.truths[slot] = value;
+        this.rows[slot] = this.row;
+        return value;
+    }
 
-        switch (op) {
-            case ZCommonConstants.AND:
+    /**
+     * Evaluate a boolean expression, without looking for a kept value.
+     *
+     * @param tuple The tuple on which to evaluate the expression
+     * @param pred  The expression to evaluate
+     * @return true if the expression evaluate to true for this tuple, false if not.
+     * @throws SQLException the sql exception.
+     */
+    private boolean evalPredicate(final ZTuple tuple, final ZExpression pred) throws SQLException {
+        switch (pred.getOperatorCode()) {
+            case ZExpression.AND:
                 boolean and = true;
                 for (int i = 0; i < pred.nbOperands(); i++) {
                     and &= this.eval(tuple, pred.getOperand(i));
                 }
                 return and;
-            case ZCommonConstants.OR:
+            case ZExpression.OR:
                 boolean or = false;
                 for (int i = 0; i < pred.nbOperands(); i++) {
                     or |= this.eval(tuple, pred.getOperand(i));
                 }
                 return or;
-            case ZCommonConstants.NOT:
+            case ZExpression.NOT:
                 return !this.eval(tuple, pred.getOperand(0));
 
-            case ZCommonConstants.EQUALS:
+            case ZExpression.EQUALS:
                 return evalCmp(tuple, pred.getOperands()) == 0;
-            case ZCommonConstants.NOT_EQUALS:
-                return evalCmp(tuple, pred.getOperands()) != 0;
-            case ZCommonConstants.EXCLUDING:
+            case ZExpression.NOT_EQUALS:
                 return evalCmp(tuple, pred.getOperands()) != 0;
-            case ZCommonConstants.DIEZ:
+            case ZExpression.DIEZ:
                 throw new SQLException(ZCommonConstants.ZEVAL_OPERATOR_NOT_SUPPORTED);
-            case ZCommonConstants.GREATER_THAN:
+            case ZExpression.GREATER_THAN:
                 return evalCmp(tuple, pred.getOperands()) > 0;
-            case ZCommonConstants.GREATER_THAN + ZCommonConstants.EQUALS:
+            case ZExpression.GREATER_OR_EQUALS:
                 return evalCmp(tuple, pred.getOperands()) >= 0;
-            case ZCommonConstants.LESSER_THAN:
+            case ZExpression.LESSER_THAN:
                 return evalCmp(tuple, pred.getOperands()) < 0;
-            case ZCommonConstants.LESSER_THAN + ZCommonConstants.EQUALS:
+            case ZExpression.LESSER_OR_EQUALS:
                 return evalCmp(tuple, pred.getOperands()) <= 0;
 
-            case ZCommonConstants.BETWEEN:
-            case ZCommonConstants.NOT_BETWEEN: {
+            case ZExpression.BETWEEN:
+            case ZExpression.NOT_BETWEEN: {
 
-                // Between: borders included
-                final ZExpression newexp = new ZExpression(ZCommonConstants.AND,
-                        new ZExpression(ZCommonConstants.GREATER_THAN + ZCommonConstants.EQUALS, pred.getOperand(0), pred.getOperand(1)),
-                        new ZExpression(ZCommonConstants.LESSER_THAN + ZCommonConstants.EQUALS, pred.getOperand(0), pred.getOperand(2)));
-
-                if (op.equals(ZCommonConstants.NOT_BETWEEN)) {
-                    return !this.eval(tuple, newexp);
-                } else {
-                    return this.eval(tuple, newexp);
-                }
+                // Between: borders included. Both borders are compared, like an AND of the two comparisons would.
+                final Object value = this.evalExpValue(tuple, pred.getOperand(0));
+                final boolean lower = compare(value, this.evalExpValue(tuple, pred.getOperand(1))) >= 0;
+                final boolean upper = compare(value, this.evalExpValue(tuple, pred.getOperand(2))) <= 0;
+                final boolean between = lower & upper;
+                return pred.getOperatorCode() == ZExpression.BETWEEN ? between : !between;
 
             }
-            case ZCommonConstants.LIKE:
-            case ZCommonConstants.NOT_LIKE:
+            case ZExpression.LIKE:
+            case ZExpression.NOT_LIKE:
                 final boolean like = this.evalLike(tuple, pred.getOperands());
-                return op.equals(ZCommonConstants.LIKE) ? like : !like;
+                return pred.getOperatorCode() == ZExpression.LIKE ? like : !like;
 
-            case ZCommonConstants.IN:
-            case ZCommonConstants.NOT_IN: {
-
-                final ZExpression newexp = new ZExpression(ZCommonConstants.OR);
+            case ZExpression.IN:
+            case ZExpression.NOT_IN: {
 
+                // Like an OR of equalities: all the values of the list are compared
+                final Object value = this.evalExpValue(tuple, pred.getOperand(0));
+                boolean in = false;
                 for (int i = 1; i < pred.nbOperands(); i++) {
-                    newexp.addOperand(new ZExpression(ZCommonConstants.EQUALS, pred.getOperand(0), pred.getOperand(i)));
-                }
-
-                if (op.equals(ZCommonConstants.NOT_IN)) {
-                    return !this.eval(tuple, newexp);
-                } else {
-                    return this.eval(tuple, newexp);
+                    in |= compare(value, this.evalExpValue(tuple, pred.getOperand(i))) == 0;
                 }
+                return pred.getOperatorCode() == ZExpression.IN ? in : !in;
 
             }
-            case ZCommonConstants.IS_NULL: {
-
-                if (pred.nbOperands() <= 0 || pred.getOperand(0) == null) {
-                    return true;
-                }
-                final ZExp x = pred.getOperand(0);
-                if (x instanceof ZConstant) {
-                    return ((ZConstant) x).getType() == ZConstant.NULL;
-                } else {
-                    throw new SQLException(ZCommonConstants.ZEVAL_CAN_T_EVAL_IS_NOT_NULL);
-                }
-
-            }
-            case ZCommonConstants.IS_NOT_NULL: {
-
-                final ZExpression x = new ZExpression(ZCommonConstants.IS_NULL);
-                x.setOperands(pred.getOperands());
-                return !this.eval(tuple, x);
-
-            }
+            case ZExpression.IS_NULL:
+                return this.isNull(pred);
+            case ZExpression.IS_NOT_NULL:
+                return !this.isNull(pred);
             default:
-                throw new SQLException(ZCommonConstants.ZEVAL_UNKNOWN_OPERATOR + op);
+                throw new SQLException(ZCommonConstants.ZEVAL_UNKNOWN_OPERATOR + pred.getOperator());
         }
 
     }
 
+    /**
+     * Evaluates the IS NULL operand.
+     *
+     * @param pred the IS NULL (or IS NOT NULL) expression.
+     * @return whether its operand is null.
+     * @throws SQLException the sql exception.
+     */
+    private boolean isNull(final ZExpression pred) throws SQLException {
+        if (pred.nbOperands() <= 0 || pred.getOperand(0) == null) {
+            return true;
+        }
+        final ZExp x = pred.getOperand(0);
+        if (x instanceof ZParameter) {
+            return this.parameterValue((ZParameter) x) == null;
+        } else if (x instanceof ZConstant) {
+            return ((ZConstant) x).getType() == ZConstant.NULL;
+        } else {
+            throw new SQLException(ZCommonConstants.ZEVAL_CAN_T_EVAL_IS_NOT_NULL);
+        }
+    }
+
     /**
      * Compares values on a given operand.
      *
@@ -206,9 +315,18 @@ public class ZEval {
             throw new SQLException(ZCommonConstants.ZEVAL_CMP_TRYING_TO_COMPARE_MORE_THAN_TWO_VALUES);
         }
 
-        Object o1 = this.evalExpValue(tuple, (ZExp) operands.get(0));
-        Object o2 = this.evalExpValue(tuple, (ZExp) operands.get(1));
+        return compare(this.evalExpValue(tuple, (ZExp) operands.get(0)), this.evalExpValue(tuple, (ZExp) operands.get(1)));
+    }
 
+    /**
+     * Compares two values.
+     *
+     * @param o1 the first value.
+     * @param o2 the second value.
+     * @return 0 if they are equal, the difference of numbers, -1 for different strings.
+     * @throws SQLException if the values can not be compared.
+     */
+    private static double compare(final Object o1, final Object o2) throws SQLException {
         if (o1 instanceof String || o2 instanceof String) {
             return o1.equals(o2) ? 0 : -1;
         }
@@ -269,72 +387,83 @@ public class ZEval {
             throw new SQLException(ZCommonConstants.ZEVAL_NULL_ARGUMENT_OR_OPERATOR);
         }
 
-        final String op = exp.getOperator();
-
-        final Object o1 = this.evalExpValue(tuple, exp.getOperand(0));
-        if (!(o1 instanceof Double)) {
-            throw new SQLException(ZCommonConstants.ZEVAL_NUMERIC_EXP_EXPRESSION_NOT_NUMERIC);
-        }
-
-        final Double dobj = (Double) o1;
+        final double first = this.numericValue(tuple, exp.getOperand(0));
 
-        switch (op) {
-            case ZCommonConstants.PLUS: {
+        switch (exp.getOperatorCode()) {
+            case ZExpression.PLUS: {
 
-                double val = dobj;
+                double val = first;
                 for (int i = 1; i < exp.nbOperands(); i++) {
-                    final Object obj = this.evalExpValue(tuple, exp.getOperand(i));
-                    val += ((Number) obj).doubleValue();
+                    val += this.numericValue(tuple, exp.getOperand(i));
                 }
                 return val;
 
             }
-            case ZCommonConstants.MINUS: {
+            case ZExpression.MINUS: {
 
-                double val = dobj;
+                double val = first;
                 if (exp.nbOperands() == 1) {
                     return -val;
                 }
                 for (int i = 1; i < exp.nbOperands(); i++) {
-                    final Object obj = this.evalExpValue(tuple, exp.getOperand(i));
-                    val -= ((Number) obj).doubleValue();
+                    val -= this.numericValue(tuple, exp.getOperand(i));
                 }
                 return val;
 
             }
-            case ZCommonConstants.MULTIPLICATION: {
+            case ZExpression.MULTIPLICATION: {
 
-                double val = dobj;
+                double val = first;
                 for (int i = 1; i < exp.nbOperands(); i++) {
-                    final Object obj = this.evalExpValue(tuple, exp.getOperand(i));
-                    val *= ((Number) obj).doubleValue();
+                    val *= this.numericValue(tuple, exp.getOperand(i));
                 }
                 return val;
 
             }
-            case ZCommonConstants.SLASH: {
+            case ZExpression.SLASH: {
 
-                double val = dobj;
+                double val = first;
                 for (int i = 1; i < exp.nbOperands(); i++) {
-                    final Object obj = this.evalExpValue(tuple, exp.getOperand(i));
-                    val /= ((Number) obj).doubleValue();
+                    val /= this.numericValue(tuple, exp.getOperand(i));
                 }
                 return val;
 
             }
-            case ZCommonConstants.MULTIPLICATION + ZCommonConstants.MULTIPLICATION: {
+            case ZExpression.POWER: {
 
-                double val = dobj;
+                double val = first;
                 for (int i = 1; i < exp.nbOperands(); i++) {
-                    final Object obj = this.evalExpValue(tuple, exp.getOperand(i));
-                    val = Math.pow(val, ((Number) obj).doubleValue());
+                    val = Math.pow(val, this.numericValue(tuple, exp.getOperand(i)));
                 }
                 return val;
 
             }
             default:
-                throw new SQLException("ZConstans.evalNumericExp(): Unknown operator " + op);
+                throw new SQLException("ZConstans.evalNumericExp(): Unknown operator " + exp.getOperator());
+        }
+    }
+
+    /**
+     * Evaluates an operand of a numeric expression, without boxing it when it is a number constant or an expression.
+     *
+     * @param tuple the tuple
+     * @param exp   the operand
+     * @return its value
+     * @throws SQLException if the operand is not numeric
+     */
+    private double numericValue(final ZTuple tuple, final ZExp exp) throws SQLException {
+        // A parameter is a ZExpression without operands: its value is bound
+        if (exp instanceof ZExpression && !(exp instanceof ZParameter)) {
+            return this.evalShared(tuple, (ZExpression) exp);
         }
+        if (exp instanceof ZConstant && ((ZConstant) exp).isNumber()) {
+            return ((ZConstant) exp).getDoubleValue();
+        }
+        final Object value = this.evalExpValue(tuple, exp);
+        if (!(value instanceof Number)) {
+            throw new SQLException(ZCommonConstants.ZEVAL_NUMERIC_EXP_EXPRESSION_NOT_NUMERIC);
+        }
+        return ((Number) value).doubleValue();
     }
 
     /**
@@ -349,7 +478,10 @@ public class ZEval {
 
         Object o2 = null;
 
-        if (exp instanceof ZConstant) {
+        if (exp instanceof ZParameter) {
+            final Object value = this.parameterValue((ZParameter) exp);
+            o2 = value instanceof Number ? Double.valueOf(((Number) value).doubleValue()) : value;
+        } else if (exp instanceof ZConstant) {
 
             final ZConstant c = (ZConstant) exp;
 
@@ -369,7 +501,8 @@ public class ZEval {
                     break;
 
                 case ZConstant.NUMBER:
-                    o2 = new Double(c.getValue());
+                    // Decoded when the constant was parsed
+                    o2 = c.isNumber() ? c.getNumberValue() : new Double(c.getValue());
                     break;
 
                 case ZConstant.STRING:
@@ -378,8 +511,68 @@ public class ZEval {
                     break;
             }
         } else if (exp instanceof ZExpression) {
-            o2 = this.evalNumericExp(tuple, (ZExpression) exp);
-            }
+            o2 = this.evalShared(tuple, (ZExpression) exp);
+        }
         return o2;
     }
+
+    /**
+     * Evaluates a numeric expression, or reuses its value if it is shared and already computed for this row.
+     *
+     * @param tuple the tuple
+     * @param exp   the expression
+     * @return the result
+     * @throws SQLException the sql exception
+     */
+    private double evalShared(final ZTuple tuple, final ZExpression exp) throws SQLException {
+        final int slot = this.slotOf(tuple, exp);
+        if (slot < 0) {
+            return this.evalNumericExp(tuple, exp);
+        }
+        if (this.rows[slot] == this.row) {
+            this.savedEvaluations++;
+            return this.numbers[slot];
+        }
+        final double value = this.evalNumericExp(tuple, exp);
+        this.numbers[slot] = value;
+        this.rows[slot] = this.row;
+        return value;
+    }
+
+    /**
+     * Get the slot of a shared sub-expression, and start a new row if the tuple changed.
+     *
+     * @param tuple the tuple.
+     * @param exp   the expression.
+     * @return the slot, -1 if the expression is not shared.
+     */
+    private int slotOf(final ZTuple tuple, final ZExp exp) {
+        if (this.slots == null) {
+            return -1;
+        }
+        final Integer slot = this.slots.get(exp);
+        if (slot == null) {
+            return -1;
+        }
+        if (tuple != this.rowTuple || tuple.getVersion() != this.rowVersion) {
+            this.row++;
+            this.rowTuple = tuple;
+            this.rowVersion = tuple.getVersion();
+        }
+        return slot;
+    }
+
+    /**
+     * Get the value of a parameter.
+     *
+     * @param parameter the parameter.
+     * @return its value.
+     * @throws SQLException if the parameter has no value.
+     */
+    private Object parameterValue(final ZParameter parameter) throws SQLException {
+        if (this.bindings == null || !this.bindings.isBound(parameter.getIndex())) {
+            throw new SQLException(ZCommonConstants.ZEVAL_UNBOUND_PARAMETER + parameter);
+        }
+        return this.bindings.get(parameter.getIndex());
+    }
 }
@@ -46,6 +46,11 @@ public class ZTuple {
      */
     private Hashtable<String, Integer> searchTable;
 
+    /**
+     * The number of changes of the values, to tell the rows apart.
+     */
+    private int version;
+
     /**
      * The default constructor.
      */
@@ -105,6 +110,7 @@ public class ZTuple {
      * @param value the Object representing the attribute value
      */
     public void setAtt(final String name, final Object value) {
+        this.version++;
         if (name != null) {
             final boolean exist = this.searchTable.containsKey(name);
 
@@ -120,6 +126,15 @@ public class ZTuple {
         }
     }
 
+    /**
+     * Get the number of changes of the values of this tuple: it changes with each new row.
+     *
+     * @return the number of changes.
+     */
+    int getVersion() {
+        return this.version;
+    }
+
     /**
      * Return the name of the attribute corresponding to the index.
      *
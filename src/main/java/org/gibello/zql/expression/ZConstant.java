@@ -17,8 +17,11 @@
 
 package org.gibello.zql.expression;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.gibello.zql.utils.ZFreezer;
+import org.gibello.zql.visitor.ZVisitor;
+
+import java.math.BigDecimal;
+import java.util.Objects;
 
 /**
  * ZConstant: a representation of SQL constants.
@@ -62,6 +65,31 @@ public class ZConstant implements ZExp {
      */
     private String values = null;
 
+    /**
+     * The value of a NUMBER constant, decoded once: null for the other types, or if the value is not a number.
+     */
+    private Double number = null;
+
+    /**
+     * The value of a NUMBER constant as a long, if it is an integer that fits in a long.
+     */
+    private long longValue = 0L;
+
+    /**
+     * Whether the constant is an integer that fits in a long.
+     */
+    private boolean integer = false;
+
+    /**
+     * The exact value of a NUMBER constant, decoded when first asked for.
+     */
+    private transient BigDecimal decimal;
+
+    /**
+     * The structural hash, 0 if it is not known yet (a constant never changes).
+     */
+    private transient int hash;
+
     /**
      * Create a new constant, given its name and type.
      *
@@ -71,6 +99,37 @@ public class ZConstant implements ZExp {
     public ZConstant(final String values, final int zconstantTypes) {
         this.values = values;
         this.zconstantType = zconstantTypes;
+        if (zconstantTypes == ZConstant.NUMBER && values != null) {
+            this.decodeNumber();
+        }
+    }
+
+    /**
+     * Decode the value of a NUMBER constant, so that it is not parsed again each time it is evaluated.
+     */
+    private void decodeNumber() {
+        try {
+            this.number = Double.valueOf(this.values);
+        } catch (final NumberFormatException e) {
+            return;
+        }
+        final int length = this.values.length();
+        int i = this.values.startsWith("-") ? 1 : 0;
+        if (i == length) {
+            return;
+        }
+        for (; i < length; i++) {
+            final char c = this.values.charAt(i);
+            if (c < '0' || c > '9') {
+                return;
+            }
+        }
+        try {
+            this.longValue = Long.parseLong(this.values);
+            this.integer = true;
+        } catch (final NumberFormatException e) {
+            // Too large for a long: only the double and decimal values are known
+        }
     }
 
     /**
@@ -87,6 +146,86 @@ public class ZConstant implements ZExp {
         return this.zconstantType;
     }
 
+    /**
+     * Check whether this constant is a number, with a decoded value.
+     *
+     * @return whether this is a NUMBER constant holding a valid number.
+     */
+    public boolean isNumber() {
+        return this.number != null;
+    }
+
+    /**
+     * Check whether this constant is an integer that fits in a long (see getLongValue()).
+     *
+     * @return whether this is an integer NUMBER constant.
+     */
+    public boolean isLong() {
+        return this.integer;
+    }
+
+    /**
+     * Get the value of an integer NUMBER constant, without parsing it.
+     *
+     * @return the value, 0 if the constant is not an integer that fits in a long.
+     */
+    public long getLongValue() {
+        return this.longValue;
+    }
+
+    /**
+     * Get the value of a NUMBER constant as a double, without parsing it.
+     *
+     * @return the value, NaN if the constant is not a number.
+     */
+    public double getDoubleValue() {
+        return this.number == null ? Double.NaN : this.number;
+    }
+
+    /**
+     * Get the value of a NUMBER constant as a Double, without parsing nor boxing it: the same object is returned on each call.
+     *
+     * @return the value, null if the constant is not a number.
+     */
+    public Double getNumberValue() {
+        return this.number;
+    }
+
+    /**
+     * Get the exact value of a NUMBER constant (the double value may be rounded). It is decoded on the first call.
+     *
+     * @return the value, null if the constant is not a number (or not an SQL number, like NaN).
+     */
+    public BigDecimal getDecimalValue() {
+        if (this.decimal == null && this.number != null) {
+            try {
+                this.decimal = this.integer ? BigDecimal.valueOf(this.longValue) : new BigDecimal(this.values);
+            } catch (final NumberFormatException e) {
+                // A Java only form of double, like NaN or 1d: there is no exact value
+                return null;
+            }
+        }
+        return this.decimal;
+    }
+
+    /**
+     * Intern the value of this constant, if it is a column name (the same names are shared by all the trees). A constant has no setter,
+     * so it is always read-only.
+     *
+     * @return this constant.
+     */
+    public ZConstant freeze() {
+        if (this.zconstantType == ZConstant.COLUMNNAME) {
+            this.values = ZFreezer.intern(this.values);
+        }
+        return this;
+    }
+
+    @Override
+    public <R> R accept(final ZVisitor<R> visitor) {
+        return visitor.visitConstant(this);
+    }
+
     @Override
     public String toString() {
         String toString;
@@ -101,24 +240,24 @@ public class ZConstant implements ZExp {
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-
-        if (o == null || getClass() != o.getClass()) return false;
-
-        ZConstant zConstant = (ZConstant) o;
-
-        return new EqualsBuilder()
-                .append(zconstantType, zConstant.zconstantType)
-                .append(values, zConstant.values)
-                .isEquals();
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ZConstant that = (ZConstant) o;
+        return this.zconstantType == that.zconstantType && this.hashCode() == that.hashCode() && Objects.equals(this.values, that.values);
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder(17, 37)
-                .append(zconstantType)
-                .append(values)
-                .toHashCode();
+        int result = this.hash;
+        if (result == 0) {
+            result = 31 * this.zconstantType + Objects.hashCode(this.values);
+            this.hash = result;
+        }
+        return result;
     }
 }
@@ -17,13 +17,15 @@
 
 package org.gibello.zql.expression;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.unparse.ZUnparser;
 import org.gibello.zql.utils.ZCommonConstants;
-import org.gibello.zql.utils.ZUtils;
+import org.gibello.zql.utils.ZFreezer;
+import org.gibello.zql.utils.ZNodeList;
+import org.gibello.zql.visitor.ZVisitor;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Vector;
 
 /**
@@ -40,16 +42,156 @@ public class ZExpression implements ZExp {
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Code of the operators the evaluator does not know: functions, set operators, lists...
+     */
+    public static final int OTHER = 0;
+
+    /**
+     * Code of the AND operator.
+     */
+    public static final int AND = 1;
+
+    /**
+     * Code of the OR operator.
+     */
+    public static final int OR = 2;
+
+    /**
+     * Code of the NOT operator.
+     */
+    public static final int NOT = 3;
+
+    /**
+     * Code of the = operator.
+     */
+    public static final int EQUALS = 4;
+
+    /**
+     * Code of the != and <> operators.
+     */
+    public static final int NOT_EQUALS = 5;
+
+    /**
+     * Code of the # operator.
+     */
+    public static final int DIEZ = 6;
+
+    /**
+     * Code of the > operator.
+     */
+    public static final int GREATER_THAN = 7;
+
+    /**
+     * Code of the >= operator.
+     */
+    public static final int GREATER_OR_EQUALS = 8;
+
+    /**
+     * Code of the < operator.
+     */
+    public static final int LESSER_THAN = 9;
+
+    /**
+     * Code of the <= operator.
+     */
+    public static final int LESSER_OR_EQUALS = 10;
+
+    /**
+     * Code of the BETWEEN operator.
+     */
+    public static final int BETWEEN = 11;
+
+    /**
+     * Code of the NOT BETWEEN operator.
+     */
+    public static final int NOT_BETWEEN = 12;
+
+    /**
+     * Code of the LIKE operator.
+     */
+    public static final int LIKE = 13;
+
+    /**
+     * Code of the NOT LIKE operator.
+     */
+    public static final int NOT_LIKE = 14;
+
+    /**
+     * Code of the IN operator.
+     */
+    public static final int IN = 15;
+
+    /**
+     * Code of the NOT IN operator.
+     */
+    public static final int NOT_IN = 16;
+
+    /**
+     * Code of the IS NULL operator.
+     */
+    public static final int IS_NULL = 17;
+
+    /**
+     * Code of the IS NOT NULL operator.
+     */
+    public static final int IS_NOT_NULL = 18;
+
+    /**
+     * Code of the + operator.
+     */
+    public static final int PLUS = 19;
+
+    /**
+     * Code of the - operator.
+     */
+    public static final int MINUS = 20;
+
+    /**
+     * Code of the * operator.
+     */
+    public static final int MULTIPLICATION = 21;
+
+    /**
+     * Code of the / operator.
+     */
+    public static final int SLASH = 22;
+
+    /**
+     * Code of the ** operator.
+     */
+    public static final int POWER = 23;
+
     /**
      * The operator.
      */
     private String operator = null;
 
+    /**
+     * The code of the operator (AND, EQUALS...), resolved once when the expression is created.
+     */
+    private final int operatorCode;
+
     /**
      * The list of operands.
      */
     private List<ZExp> operands = null;
 
+    /**
+     * Whether the expression is a call to a custom function, whatever the registry it was found in.
+     */
+    private boolean function = false;
+
+    /**
+     * Whether the expression is frozen (read-only).
+     */
+    private boolean frozen = false;
+
+    /**
+     * The structural hash, kept once the expression is frozen, 0 if it is not known.
+     */
+    private transient int hash;
+
     /**
      * Create an SQL Expression given the operator.
      *
@@ -57,6 +199,7 @@ public class ZExpression implements ZExp {
      */
     public ZExpression(final String operator) {
         this.operator = operator;
+        this.operatorCode = operatorCode(operator);
     }
 
     /**
@@ -67,6 +210,7 @@ public class ZExpression implements ZExp {
      */
     public ZExpression(final String operator, final ZExp firstOperand) {
         this.operator = operator;
+        this.operatorCode = operatorCode(operator);
         this.addOperand(firstOperand);
     }
 
@@ -79,6 +223,7 @@ public class ZExpression implements ZExp {
      */
     public ZExpression(final String operator, final ZExp secondOperand, final ZExp thirdOperand) {
         this.operator = operator;
+        this.operatorCode = operatorCode(operator);
         this.addOperand(secondOperand);
         this.addOperand(thirdOperand);
     }
@@ -92,6 +237,78 @@ public class ZExpression implements ZExp {
         return this.operator;
     }
 
+    /**
+     * Get the code of this expression's operator, so that it can be told apart without comparing strings.
+     *
+     * @return the code (AND, EQUALS, PLUS...), OTHER if the operator has no code.
+     */
+    public int getOperatorCode() {
+        return this.operatorCode;
+    }
+
+    /**
+     * Get the code of an operator.
+     *
+     * @param operator the operator.
+     * @return the code (AND, EQUALS, PLUS...), OTHER if the operator has no code.
+     */
+    public static int operatorCode(final String operator) {
+        if (operator == null) {
+            return OTHER;
+        }
+        switch (operator) {
+            case ZCommonConstants.AND:
+                return AND;
+            case ZCommonConstants.OR:
+                return OR;
+            case ZCommonConstants.NOT:
+                return NOT;
+            case ZCommonConstants.EQUALS:
+                return EQUALS;
+            case ZCommonConstants.NOT_EQUALS:
+            case ZCommonConstants.EXCLUDING:
+                return NOT_EQUALS;
+            case ZCommonConstants.DIEZ:
+                return DIEZ;
+            case ZCommonConstants.GREATER_THAN:
+                return GREATER_THAN;
+            case ZCommonConstants.GREATER_THAN + ZCommonConstants.EQUALS:
+                return GREATER_OR_EQUALS;
+            case ZCommonConstants.LESSER_THAN:
+                return LESSER_THAN;
+            case ZCommonConstants.LESSER_THAN + ZCommonConstants.EQUALS:
+                return LESSER_OR_EQUALS;
+            case ZCommonConstants.BETWEEN:
+                return BETWEEN;
+            case ZCommonConstants.NOT_BETWEEN:
+                return NOT_BETWEEN;
+            case ZCommonConstants.LIKE:
+                return LIKE;
+            case ZCommonConstants.NOT_LIKE:
+                return NOT_LIKE;
+            case ZCommonConstants.IN:
+                return IN;
+            case ZCommonConstants.NOT_IN:
+                return NOT_IN;
+            case ZCommonConstants.IS_NULL:
+                return IS_NULL;
+            case ZCommonConstants.IS_NOT_NULL:
+                return IS_NOT_NULL;
+            case ZCommonConstants.PLUS:
+                return PLUS;
+            case ZCommonConstants.MINUS:
+                return MINUS;
+            case ZCommonConstants.MULTIPLICATION:
+                return MULTIPLICATION;
+            case ZCommonConstants.SLASH:
+                return SLASH;
+            case ZCommonConstants.MULTIPLICATION + ZCommonConstants.MULTIPLICATION:
+                return POWER;
+            default:
+                return OTHER;
+        }
+    }
+
     /**
      * Get this expression's operands.
      *
@@ -107,21 +324,73 @@ public class ZExpression implements ZExp {
      * @param operands A vector that contains all operands (ZExp objects).
      */
     public void setOperands(final List<ZExp> operands) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.operands = operands;
     }
 
+    /**
+     * Check whether this expression is a call to a custom function. The parser marks the calls it reads, so that they are printed as
+     * calls even if their function is only known to the registry of that parser.
+     *
+     * @return whether this expression is a function call.
+     */
+    public boolean isFunction() {
+        return this.function;
+    }
+
+    /**
+     * Mark this expression as a call to a custom function (or not).
+     *
+     * @param function whether this expression is a function call.
+     */
+    public void setFunction(final boolean function) {
+        ZFreezer.checkNotFrozen(this.frozen);
+        this.function = function;
+    }
+
     /**
      * Add an operand to the current expression.
      *
      * @param operand The operand to add.
      */
     public void addOperand(final ZExp operand) {
+        ZFreezer.checkNotFrozen(this.frozen);
         if (this.operands == null) {
             this.operands = new Vector<>();
         }
         this.operands.add(operand);
     }
 
+    /**
+     * Make this expression and its operands compact and read-only (see ZFreezer).
+     *
+     * @return this expression.
+     */
+    public ZExpression freeze() {
+        if (!this.frozen) {
+            this.operator = ZFreezer.intern(this.operator);
+            if (this.operands != null) {
+                this.operands = ZNodeList.freeze(this.operands);
+            }
+            this.frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * Check whether this expression is frozen.
+     *
+     * @return whether it is read-only.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    @Override
+    public <R> R accept(final ZVisitor<R> visitor) {
+        return visitor.visitExpression(this);
+    }
+
     /**
      * Get an operand according to its index (position).
      *
@@ -135,10 +404,10 @@ public class ZExpression implements ZExp {
     /**
      * Get the number of operands.
      *
-     * @return The number of operands
+     * @return The number of operands (0 for an operator alone, like the "?" of prepared statements)
      */
     public int nbOperands() {
-        return this.operands.size();
+        return this.operands == null ? 0 : this.operands.size();
     }
 
     /**
@@ -147,170 +416,65 @@ public class ZExpression implements ZExp {
      * @return The current expression in reverse polish notation (a String)
      */
     public String toReversePolish() {
-        final StringBuilder buf = new StringBuilder(ZCommonConstants.LEFT_BRACKET);
-        buf.append(this.operator);
+        final StringBuilder buf = new StringBuilder();
+        this.toReversePolish(buf);
+        return buf.toString();
+    }
+
+    /**
+     * Append the reverse polish notation of this expression to a buffer, with its operands.
+     *
+     * @param buf the buffer.
+     */
+    private void toReversePolish(final StringBuilder buf) {
+        buf.append(ZCommonConstants.LEFT_BRACKET).append(this.operator);
         for (int i = 0; i < this.nbOperands(); i++) {
             final ZExp opr = this.getOperand(i);
-            if (opr instanceof ZExpression) {
+            buf.append(ZCommonConstants.EMPTY_STRING);
+            if (opr instanceof ZParameter) {
+                // A parameter is a leaf ("?" or ":name")
+                buf.append(opr.toString());
+            } else if (opr instanceof ZExpression) {
                 // Warning recursive call
-                buf.append(ZCommonConstants.EMPTY_STRING).append(((ZExpression) opr).toReversePolish());
+                ((ZExpression) opr).toReversePolish(buf);
             } else if (opr instanceof ZQuery) {
-                buf.append(ZCommonConstants.EMPTY_STRING + ZCommonConstants.LEFT_BRACKET).append(opr.toString()).append(ZCommonConstants.RIGHT_BRACKET);
+                buf.append(ZCommonConstants.LEFT_BRACKET).append(opr.toString()).append(ZCommonConstants.RIGHT_BRACKET);
             } else {
-                buf.append(ZCommonConstants.EMPTY_STRING).append(opr.toString());
+                buf.append(opr.toString());
             }
         }
         buf.append(ZCommonConstants.RIGHT_BRACKET);
-        return buf.toString();
     }
 
     @Override
     public String toString() {
+        return ZUnparser.render(this);
+    }
 
-        if (this.operator.equals("?")) {
-            // For prepared columns ("?")
-            return this.operator;
-        }
-
-        if (ZUtils.isCustomFunction(this.operator) >= 0) {
-            return this.formatFunction();
-        }
-
-        final StringBuilder buf = new StringBuilder();
-        if (needPar(this.operator)) {
-            buf.append(ZCommonConstants.LEFT_BRACKET);
-        }
-
-        ZExp operand;
-        switch (this.nbOperands()) {
-
-            case 1:
-                operand = this.getOperand(0);
-                if (operand instanceof ZConstant) {
-                    // Operator may be an aggregate function (MAX, SUM...)
-                    if (ZUtils.isAggregate(this.operator)) {
-                        buf.append(this.operator).append(ZCommonConstants.LEFT_BRACKET).append(operand.toString()).append(ZCommonConstants.RIGHT_BRACKET);
-                    } else if (this.operator.equals(ZCommonConstants.IS_NULL) || this.operator.equals(ZCommonConstants.IS_NOT_NULL)) {
-                        buf.append(operand.toString()).append(ZCommonConstants.EMPTY_STRING).append(this.operator);
-                    }
-                    // "," = list of values, here just one single value
-                    else if (this.operator.equals(ZCommonConstants.COMMA)) {
-                        buf.append(operand.toString());
-                    } else {
-                        buf.append(this.operator).append(ZCommonConstants.EMPTY_STRING).append(operand.toString());
-                    }
-                } else if (operand instanceof ZQuery) {
-                    buf.append(this.operator).append(ZCommonConstants.EMPTY_STRING).append(ZCommonConstants.LEFT_BRACKET).append(operand.toString()).append(ZCommonConstants.RIGHT_BRACKET);
-                } else {
-                    switch (this.operator) {
-                        case ZCommonConstants.IS_NULL:
-                        case ZCommonConstants.IS_NOT_NULL:
-                            buf.append(operand.toString()).append(ZCommonConstants.EMPTY_STRING).append(this.operator);
-                            break;
-                        // "," = list of values, here just one single value
-                        case ZCommonConstants.COMMA:
-                            buf.append(operand.toString());
-                            break;
-                        default:
-                            buf.append(this.operator).append(ZCommonConstants.EMPTY_STRING).append(operand.toString());
-                            break;
-                    }
-                }
-                break;
-
-            case ZCommonConstants.MAGIC_NUMBER_3:
-                if (this.operator.toUpperCase().endsWith("BETWEEN")) {
-                    buf.append(this.getOperand(0).toString()).append(ZCommonConstants.EMPTY_STRING).append(this.operator).append(ZCommonConstants.EMPTY_STRING).append(this.getOperand(1)
-                            .toString()).append(" AND ").append(this.getOperand(ZCommonConstants.MAGIC_NUMBER_2).toString());
-                    break;
-                }
-
-            default:
-
-                boolean inOperator = false;
-                if (this.operator.equals("IN") || this.operator.equals("NOT IN")) {
-                    inOperator = true;
-                }
-
-                final int nb = this.nbOperands();
-                for (int i = 0; i < nb; i++) {
-
-                    if (inOperator && i == 1) {
-                        buf.append(ZCommonConstants.EMPTY_STRING).append(this.operator).append(" (");
-                    }
-
-                    operand = this.getOperand(i);
-                    if (operand instanceof ZQuery && !inOperator) {
-                        buf.append(ZCommonConstants.LEFT_BRACKET).append(operand.toString()).append(ZCommonConstants.RIGHT_BRACKET);
-                    } else {
-                        buf.append(operand.toString());
-                    }
-                    if (i < nb - 1) {
-                        if (this.operator.equals(ZCommonConstants.COMMA) || (inOperator && i > 0)) {
-                            buf.append(", ");
-                        } else if (!inOperator) {
-                            buf.append(ZCommonConstants.EMPTY_STRING).append(this.operator).append(ZCommonConstants.EMPTY_STRING);
-                        }
-                    }
-                }
-                if (inOperator) {
-                    buf.append(ZCommonConstants.RIGHT_BRACKET);
-                }
-                break;
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
         }
-
-        if (this.needPar(this.operator)) {
-            buf.append(ZCommonConstants.RIGHT_BRACKET);
+        if (o == null || getClass() != o.getClass()) {
+            return false;
         }
-
-        return buf.toString();
-    }
-
-    /**
-     * Checks for special operators.
-     *
-     * @param op the operator.
-     * @return the result of the check.
-     */
-    private boolean needPar(final String op) {
-        final String tmp = op.toUpperCase();
-        return !(tmp.equals("ANY") || tmp.equals("ALL") || tmp.equals("UNION") || ZUtils.isAggregate(tmp));
-    }
-
-    /**
-     * Formatting function.
-     *
-     * @return the formatted string.
-     */
-    private String formatFunction() {
-        final StringBuilder b = new StringBuilder(this.operator + ZCommonConstants.LEFT_BRACKET);
-        final int nb = this.nbOperands();
-        for (int i = 0; i < nb; i++) {
-            b.append(this.getOperand(i).toString()).append(i < nb - 1 ? ZCommonConstants.COMMA : "");
+        final ZExpression that = (ZExpression) o;
+        if (this.frozen && that.frozen && this.hashCode() != that.hashCode()) {
+            return false;
         }
-        b.append(ZCommonConstants.RIGHT_BRACKET);
-        return b.toString();
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-
-        if (o == null || getClass() != o.getClass()) return false;
-
-        ZExpression that = (ZExpression) o;
-
-        return new EqualsBuilder()
-                .append(getOperator(), that.getOperator())
-                .append(getOperands(), that.getOperands())
-                .isEquals();
+        return Objects.equals(this.operator, that.operator) && ZNodeList.equal(this.operands, that.operands);
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder(17, 37)
-                .append(getOperator())
-                .append(getOperands())
-                .toHashCode();
+        int result = this.hash;
+        if (result == 0) {
+            result = 31 * Objects.hashCode(this.operator) + ZNodeList.hash(this.operands);
+            if (this.frozen) {
+                this.hash = result;
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,122 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.expression;
+
+import org.gibello.zql.visitor.ZVisitor;
+
+import java.util.Objects;
+
+/**
+ * ZParameter: a parameter of a prepared statement, positional ("?") or named (":name").<br>
+ * Its index is its position among the parameters of the statement, from 1 like in JDBC. A parameter holds no value: values are given
+ * for each execution by a ZBindings, so that one parsed statement serves any number of executions. It is an expression with the "?"
+ * operator and no operand, so that code written for the prepared columns of earlier versions still works.
+ */
+public class ZParameter extends ZExpression {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The name of the parameter, without its colon, null for a positional parameter.
+     */
+    private final String name;
+
+    /**
+     * The position of the parameter in its statement, from 1.
+     */
+    private final int index;
+
+    /**
+     * Create a parameter.
+     *
+     * @param name  the name of the parameter, without its colon, null for a positional parameter.
+     * @param index the position of the parameter in its statement, from 1.
+     */
+    public ZParameter(final String name, final int index) {
+        super("?");
+        this.name = name;
+        this.index = index;
+    }
+
+    /**
+     * Get the name of the parameter.
+     *
+     * @return the name, without its colon, null for a positional parameter.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Check whether the parameter is named.
+     *
+     * @return true for ":name", false for "?".
+     */
+    public boolean isNamed() {
+        return this.name != null;
+    }
+
+    /**
+     * Get the position of the parameter in its statement.
+     *
+     * @return the index, from 1.
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
+    @Override
+    public <R> R accept(final ZVisitor<R> visitor) {
+        return visitor.visitParameter(this);
+    }
+
+    /**
+     * A parameter is a leaf: its reverse polish notation is "?" or ":name".
+     *
+     * @return the parameter, as written in SQL.
+     */
+    @Override
+    public String toReversePolish() {
+        return this.toString();
+    }
+
+    @Override
+    public String toString() {
+        return this.name == null ? "?" : ":" + this.name;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ZParameter that = (ZParameter) o;
+        return this.index == that.index && Objects.equals(this.name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * this.index + Objects.hashCode(this.name);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.fingerprint;
+
+import org.gibello.zql.expression.ZConstant;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ZFingerprint: the 128 bit fingerprint of the shape of a statement, with the literal values extracted from it.<br>
+ * Two statements that only differ by their NUMBER and STRING literals (and by the number of literals in their IN lists) have the same
+ * fingerprint. Fingerprints are stable: they do not depend on the JVM or on the run.
+ */
+public final class ZFingerprint implements Serializable {
+
+    /**
+     * The serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of hex digits of a long.
+     */
+    private static final int HEX_DIGITS = 16;
+
+    /**
+     * The high 64 bits of the fingerprint.
+     */
+    private final long high;
+
+    /**
+     * The low 64 bits of the fingerprint.
+     */
+    private final long low;
+
+    /**
+     * The literals, in the order of the statement.
+     */
+    private final List<ZConstant> literals;
+
+    /**
+     * Create a fingerprint.
+     *
+     * @param high     the high 64 bits of the fingerprint.
+     * @param low      the low 64 bits of the fingerprint.
+     * @param literals the literals, in the order of the statement.
+     */
+    public ZFingerprint(final long high, final long low, final List<ZConstant> literals) {
+        this.high = high;
+        this.low = low;
+        this.literals = Collections.unmodifiableList(literals);
+    }
+
+    /**
+     * Get the 64 bit fingerprint, for use as a hash key.
+     *
+     * @return the low 64 bits of the fingerprint.
+     */
+    public long getHash() {
+        return this.low;
+    }
+
+    /**
+     * @return the high 64 bits of the fingerprint
+     */
+    public long getHigh() {
+        return this.high;
+    }
+
+    /**
+     * @return the low 64 bits of the fingerprint
+     */
+    public long getLow() {
+        return this.low;
+    }
+
+    /**
+     * Get the literals replaced by placeholders, in the order of the statement (the values of an IN list included).
+     *
+     * @return the NUMBER and STRING constants of the statement.
+     */
+    public List<ZConstant> getLiterals() {
+        return this.literals;
+    }
+
+    /**
+     * Fingerprints are equal when their 128 bits are, whatever their literals.
+     */
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ZFingerprint)) {
+            return false;
+        }
+        final ZFingerprint other = (ZFingerprint) o;
+        return this.high == other.high && this.low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (this.low ^ (this.low >>> 32));
+    }
+
+    /**
+     * @return the fingerprint as 32 hex digits
+     */
+    @Override
+    public String toString() {
+        return hex(this.high) + hex(this.low);
+    }
+
+    /**
+     * Format a long as 16 hex digits.
+     *
+     * @param value the value.
+     * @return the hex digits.
+     */
+    private static String hex(final long value) {
+        final String digits = Long.toHexString(value);
+        final StringBuilder buf = new StringBuilder(HEX_DIGITS);
+        for (int i = digits.length(); i < HEX_DIGITS; i++) {
+            buf.append('0');
+        }
+        return buf.append(digits).toString();
+    }
+}
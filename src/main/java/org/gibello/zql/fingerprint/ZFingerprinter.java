@@ -0,0 +1,603 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.fingerprint;
+
+import org.gibello.zql.ZGroupBy;
+import org.gibello.zql.ZOrderBy;
+import org.gibello.zql.alias.ZAliasedName;
+import org.gibello.zql.alias.ZSelectItem;
+import org.gibello.zql.expression.ZConstant;
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.expression.ZParameter;
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.statement.ZDelete;
+import org.gibello.zql.statement.ZInsert;
+import org.gibello.zql.statement.ZLockTable;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.statement.ZTransactStmt;
+import org.gibello.zql.statement.ZUpdate;
+import org.gibello.zql.utils.ZCommonConstants;
+import org.gibello.zql.visitor.ZVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ZFingerprinter: computes the fingerprint of a statement by walking its tree.<br>
+ * Each node is hashed as it is visited (node kind, operators, names, and a placeholder for each NUMBER or STRING literal), in two
+ * independent 64 bit lanes. Nothing is rendered to text: apart from the result, the only allocation is the list of literals. Names are
+ * hashed as written, so the fingerprint is case sensitive.<br>
+ * A ZFingerprinter is not thread safe, but it is cheap to create.
+ */
+public class ZFingerprinter {
+
+    /**
+     * FNV-1a 64 bit offset basis (first lane).
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a 64 bit prime (first lane).
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Seed of the second lane.
+     */
+    private static final long SEED = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Multiplier of the second lane.
+     */
+    private static final long MULTIPLIER = 0xc2b2ae3d27d4eb4fL;
+
+    /**
+     * Rotation of the second lane.
+     */
+    private static final int ROTATION = 31;
+
+    /**
+     * Node kind: an absent (null) node.
+     */
+    private static final int ABSENT = 0;
+
+    /**
+     * Node kind: a SELECT statement.
+     */
+    private static final int QUERY = 1;
+
+    /**
+     * Node kind: a DELETE statement.
+     */
+    private static final int DELETE = 2;
+
+    /**
+     * Node kind: an INSERT statement.
+     */
+    private static final int INSERT = 3;
+
+    /**
+     * Node kind: an UPDATE statement.
+     */
+    private static final int UPDATE = 4;
+
+    /**
+     * Node kind: a LOCK TABLE statement.
+     */
+    private static final int LOCK_TABLE = 5;
+
+    /**
+     * Node kind: a COMMIT, ROLLBACK or SET TRANSACTION statement.
+     */
+    private static final int TRANSACTION = 6;
+
+    /**
+     * Node kind: an operator and its operands.
+     */
+    private static final int EXPRESSION = 7;
+
+    /**
+     * Node kind: a column name or NULL.
+     */
+    private static final int CONSTANT = 8;
+
+    /**
+     * Node kind: a literal replaced by a placeholder.
+     */
+    private static final int PLACEHOLDER = 9;
+
+    /**
+     * Node kind: an IN list of literals replaced by a single placeholder.
+     */
+    private static final int LIST_PLACEHOLDER = 10;
+
+    /**
+     * Node kind: an item of a SELECT list.
+     */
+    private static final int SELECT_ITEM = 11;
+
+    /**
+     * Node kind: an item of a FROM list.
+     */
+    private static final int FROM_ITEM = 12;
+
+    /**
+     * Node kind: a GROUP BY clause.
+     */
+    private static final int GROUP_BY = 13;
+
+    /**
+     * Node kind: an item of an ORDER BY clause.
+     */
+    private static final int ORDER_BY = 14;
+
+    /**
+     * Node kind: a name in a list of names.
+     */
+    private static final int NAME = 15;
+
+    /**
+     * Node kind: any other node, hashed by its text.
+     */
+    private static final int OTHER = 16;
+
+    /**
+     * First lane.
+     */
+    private long lane1;
+
+    /**
+     * Second lane.
+     */
+    private long lane2;
+
+    /**
+     * The literals of the statement being hashed.
+     */
+    private List<ZConstant> literals;
+
+    /**
+     * The visitor calling the hash method that matches the type of a node.
+     */
+    private final ZVisitor<Void> walker = new Walker();
+
+    /**
+     * Compute the fingerprint of a statement.
+     *
+     * @param statement the statement.
+     * @return the fingerprint and the literals of the statement.
+     */
+    public ZFingerprint fingerprint(final ZStatement statement) {
+        this.start();
+        this.statement(statement);
+        return this.finish();
+    }
+
+    /**
+     * Compute the fingerprint of an expression (a WHERE clause for instance).
+     *
+     * @param expression the expression.
+     * @return the fingerprint and the literals of the expression.
+     */
+    public ZFingerprint fingerprintExpression(final ZExp expression) {
+        this.start();
+        this.expression(expression);
+        return this.finish();
+    }
+
+    /**
+     * Reset the hash.
+     */
+    private void start() {
+        this.lane1 = FNV_OFFSET;
+        this.lane2 = SEED;
+        this.literals = new ArrayList<ZConstant>();
+    }
+
+    /**
+     * Finalize the hash.
+     *
+     * @return the fingerprint.
+     */
+    private ZFingerprint finish() {
+        final ZFingerprint result = new ZFingerprint(mix(this.lane2), mix(this.lane1), this.literals);
+        this.literals = null;
+        return result;
+    }
+
+    /**
+     * Hash a statement.
+     *
+     * @param statement the statement, may be null.
+     */
+    private void statement(final ZStatement statement) {
+        if (statement == null) {
+            this.add(ABSENT);
+        } else {
+            statement.accept(this.walker);
+        }
+    }
+
+    /**
+     * Hash a DELETE statement.
+     *
+     * @param delete the statement.
+     */
+    private void delete(final ZDelete delete) {
+        this.add(DELETE);
+        this.add(delete.getTable());
+        this.expression(delete.getWhere());
+    }
+
+    /**
+     * Hash a LOCK TABLE statement.
+     *
+     * @param lock the statement.
+     */
+    private void lockTable(final ZLockTable lock) {
+        this.add(LOCK_TABLE);
+        this.list(lock.getTables());
+        this.add(lock.getLockMode());
+        this.add(lock.isNowait());
+    }
+
+    /**
+     * Hash a transaction statement.
+     *
+     * @param transaction the statement.
+     */
+    private void transaction(final ZTransactStmt transaction) {
+        this.add(TRANSACTION);
+        this.add(transaction.getStatement());
+        this.add(transaction.getComment());
+        this.add(transaction.isReadOnly());
+    }
+
+    /**
+     * Hash a query.
+     *
+     * @param query the query.
+     */
+    private void query(final ZQuery query) {
+        this.add(QUERY);
+        this.add(query.isDistinct());
+        this.list(query.getSelect());
+        this.list(query.getFrom());
+        this.expression(query.getWhere());
+        final ZGroupBy groupBy = query.getGroupBy();
+        if (groupBy == null) {
+            this.add(ABSENT);
+        } else {
+            this.add(GROUP_BY);
+            this.list(groupBy.getGroupBy());
+            this.expression(groupBy.getHaving());
+        }
+        this.expression(query.getSet());
+        this.list(query.getOrderBy());
+        this.add(query.isForUpdate());
+    }
+
+    /**
+     * Hash an INSERT statement.
+     *
+     * @param insert the statement.
+     */
+    private void insert(final ZInsert insert) {
+        this.add(INSERT);
+        this.add(insert.getTable());
+        this.list(insert.getColumns());
+        if (insert.getQuery() != null) {
+            this.query(insert.getQuery());
+        } else {
+            this.list(insert.getValues());
+        }
+    }
+
+    /**
+     * Hash an UPDATE statement.
+     *
+     * @param update the statement.
+     */
+    private void update(final ZUpdate update) {
+        this.add(UPDATE);
+        this.add(update.getTable());
+        this.add(update.getAlias());
+        final List<String> columns = update.getColumnUpdateNames();
+        if (columns == null && update.getSet() == null) {
+            this.add(ABSENT);
+        } else {
+            final Iterable<String> names = columns != null ? columns : update.getSet().keySet();
+            this.add(update.getColumnUpdateCount());
+            for (final String name : names) {
+                this.add(name);
+                this.expression(update.getColumnUpdate(name));
+            }
+        }
+        this.expression(update.getWhere());
+    }
+
+    /**
+     * Hash a list of nodes.
+     *
+     * @param nodes the nodes, may be null.
+     */
+    private void list(final List<?> nodes) {
+        if (nodes == null) {
+            this.add(ABSENT);
+            return;
+        }
+        final int size = nodes.size();
+        this.add(size);
+        for (int i = 0; i < size; i++) {
+            this.node(nodes.get(i));
+        }
+    }
+
+    /**
+     * Hash a node of a list.
+     *
+     * @param node the node.
+     */
+    private void node(final Object node) {
+        if (node instanceof ZExp) {
+            this.expression((ZExp) node);
+        } else if (node instanceof ZSelectItem) {
+            final ZSelectItem item = (ZSelectItem) node;
+            this.add(SELECT_ITEM);
+            if (item.isExpression()) {
+                this.expression(item.getExpression());
+            } else {
+                this.add(item.getStrform());
+            }
+            this.add(item.getAlias());
+        } else if (node instanceof ZAliasedName) {
+            final ZAliasedName item = (ZAliasedName) node;
+            this.add(FROM_ITEM);
+            this.add(item.getStrform());
+            this.add(item.getAlias());
+        } else if (node instanceof ZOrderBy) {
+            final ZOrderBy orderBy = (ZOrderBy) node;
+            this.add(ORDER_BY);
+            this.expression(orderBy.getExpression());
+            this.add(orderBy.getAscOrder());
+        } else if (node instanceof String) {
+            this.add(NAME);
+            this.add((String) node);
+        } else if (node == null) {
+            this.add(ABSENT);
+        } else {
+            this.add(OTHER);
+            this.add(node.toString());
+        }
+    }
+
+    /**
+     * Hash an expression.
+     *
+     * @param exp the expression, may be null.
+     */
+    private void expression(final ZExp exp) {
+        if (exp == null) {
+            this.add(ABSENT);
+        } else {
+            exp.accept(this.walker);
+        }
+    }
+
+    /**
+     * Hash a constant: a placeholder for a literal, its type and value otherwise.
+     *
+     * @param constant the constant.
+     */
+    private void constant(final ZConstant constant) {
+        if (isLiteral(constant)) {
+            this.add(PLACEHOLDER);
+            this.literals.add(constant);
+        } else {
+            this.add(CONSTANT);
+            this.add(constant.getType());
+            this.add(constant.getValue());
+        }
+    }
+
+    /**
+     * Hash an operator and its operands (a parameter is an operator without operand).
+     *
+     * @param expression the expression.
+     */
+    private void operation(final ZExpression expression) {
+        final String operator = expression.getOperator();
+        final int size = expression.nbOperands();
+        if (size > 1 && isInList(operator) && this.literalList(expression)) {
+            this.add(EXPRESSION);
+            this.add(operator);
+            this.expression(expression.getOperand(0));
+            this.add(LIST_PLACEHOLDER);
+            for (int i = 1; i < size; i++) {
+                this.literals.add((ZConstant) expression.getOperand(i));
+            }
+            return;
+        }
+        this.add(EXPRESSION);
+        this.add(operator);
+        this.add(size);
+        for (int i = 0; i < size; i++) {
+            this.expression(expression.getOperand(i));
+        }
+    }
+
+    /**
+     * Check if the values of an IN list are all literals.
+     *
+     * @param expression the IN expression.
+     * @return true if all the operands but the first one are literals.
+     */
+    private boolean literalList(final ZExpression expression) {
+        final int size = expression.nbOperands();
+        for (int i = 1; i < size; i++) {
+            final ZExp operand = expression.getOperand(i);
+            if (!(operand instanceof ZConstant) || !isLiteral((ZConstant) operand)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if an operator is IN or NOT IN.
+     *
+     * @param operator the operator.
+     * @return true for IN and NOT IN.
+     */
+    private static boolean isInList(final String operator) {
+        return ZCommonConstants.IN.equals(operator) || ZCommonConstants.NOT_IN.equals(operator);
+    }
+
+    /**
+     * Check if a constant is replaced by a placeholder.
+     *
+     * @param constant the constant.
+     * @return true for NUMBER and STRING constants.
+     */
+    private static boolean isLiteral(final ZConstant constant) {
+        return constant.getType() == ZConstant.NUMBER || constant.getType() == ZConstant.STRING;
+    }
+
+    /**
+     * Hash a string, and its length so that consecutive strings can not be confused.
+     *
+     * @param value the string, may be null.
+     */
+    private void add(final String value) {
+        if (value == null) {
+            this.add(-1);
+            return;
+        }
+        final int length = value.length();
+        this.add(length);
+        for (int i = 0; i < length; i++) {
+            this.add16(value.charAt(i));
+        }
+    }
+
+    /**
+     * Hash a flag.
+     *
+     * @param value the flag.
+     */
+    private void add(final boolean value) {
+        this.add16(value ? 1 : 0);
+    }
+
+    /**
+     * Hash an int.
+     *
+     * @param value the int.
+     */
+    private void add(final int value) {
+        this.add16(value >>> 16);
+        this.add16(value & 0xFFFF);
+    }
+
+    /**
+     * Hash 16 bits in both lanes.
+     *
+     * @param value the bits.
+     */
+    private void add16(final int value) {
+        this.lane1 = (this.lane1 ^ value) * FNV_PRIME;
+        this.lane2 = Long.rotateLeft(this.lane2 ^ value, ROTATION) * MULTIPLIER;
+    }
+
+    /**
+     * Final avalanche of a lane (the MurmurHash3 finalizer).
+     *
+     * @param value the lane.
+     * @return the mixed lane.
+     */
+    private static long mix(final long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * The visitor calling the hash method that matches the type of a node.
+     */
+    private final class Walker implements ZVisitor<Void> {
+
+        @Override
+        public Void visitConstant(final ZConstant constant) {
+            ZFingerprinter.this.constant(constant);
+            return null;
+        }
+
+        @Override
+        public Void visitExpression(final ZExpression expression) {
+            ZFingerprinter.this.operation(expression);
+            return null;
+        }
+
+        @Override
+        public Void visitParameter(final ZParameter parameter) {
+            ZFingerprinter.this.operation(parameter);
+            return null;
+        }
+
+        @Override
+        public Void visitQuery(final ZQuery query) {
+            ZFingerprinter.this.query(query);
+            return null;
+        }
+
+        @Override
+        public Void visitInsert(final ZInsert insert) {
+            ZFingerprinter.this.insert(insert);
+            return null;
+        }
+
+        @Override
+        public Void visitUpdate(final ZUpdate update) {
+            ZFingerprinter.this.update(update);
+            return null;
+        }
+
+        @Override
+        public Void visitDelete(final ZDelete delete) {
+            ZFingerprinter.this.delete(delete);
+            return null;
+        }
+
+        @Override
+        public Void visitLockTable(final ZLockTable lock) {
+            ZFingerprinter.this.lockTable(lock);
+            return null;
+        }
+
+        @Override
+        public Void visitTransaction(final ZTransactStmt transaction) {
+            ZFingerprinter.this.transaction(transaction);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.optimize;
+
+import org.gibello.zql.expression.ZConstant;
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.expression.ZParameter;
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZFreezer;
+import org.gibello.zql.visitor.ZTransformer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * ZCanonicalizer: puts expressions in a canonical form, so that conditions written in a different order give equal trees (see
+ * ZExp.equals()), and the same cache key.<br>
+ * The pass works bottom-up, on all the expressions of a tree (see ZTransformer: the given tree is not modified):
+ * <ul>
+ * <li>nested AND and OR are flattened, and their operands are sorted: b = 2 AND a = 1 becomes a = 1 AND b = 2;</li>
+ * <li>the operands of =, &lt;&gt;, + and * are sorted, and != is written &lt;&gt;;</li>
+ * <li>the other comparisons are mirrored to sort their operands: 1 &lt; a becomes a &gt; 1;</li>
+ * <li>the values of IN and NOT IN lists are sorted.</li>
+ * </ul>
+ * Operands are sorted columns first, then expressions, sub-queries, parameters and literals, so that literals end on the right.
+ * The order only depends on the structure of the operands. Arithmetic is only parsed with two operands, so sorting it does not change
+ * how doubles are rounded. Function calls are left unchanged.<br>
+ * The hashCode() of a canonical tree is computed from its operators, names and values only, so it is the same from one run to the
+ * next: key() gives a frozen canonical tree, whose hash is computed once, to use as a cache key.
+ */
+public class ZCanonicalizer extends ZTransformer {
+
+    /**
+     * The rank of column names, sorted first.
+     */
+    private static final int COLUMN = 0;
+
+    /**
+     * The rank of expressions.
+     */
+    private static final int EXPRESSION = 1;
+
+    /**
+     * The rank of sub-queries.
+     */
+    private static final int QUERY = 2;
+
+    /**
+     * The rank of parameters.
+     */
+    private static final int PARAMETER = 3;
+
+    /**
+     * The rank of literals, sorted last.
+     */
+    private static final int LITERAL = 4;
+
+    /**
+     * The canonical order of operands.
+     */
+    private static final Comparator<ZExp> ORDER = new Comparator<ZExp>() {
+        @Override
+        public int compare(final ZExp first, final ZExp second) {
+            return ZCanonicalizer.compare(first, second);
+        }
+    };
+
+    /**
+     * Get the canonical form of a statement, frozen (see ZFreezer) to use it as a cache key: statements that only differ by the
+     * order of commutative operands give equal keys, with equal hashes.
+     *
+     * @param statement the statement.
+     * @return the key.
+     */
+    public static ZStatement key(final ZStatement statement) {
+        return ZFreezer.freeze(new ZCanonicalizer().transform(statement));
+    }
+
+    /**
+     * Get the canonical form of an expression, frozen (see ZFreezer) to use it as a cache key.
+     *
+     * @param exp the expression.
+     * @return the key.
+     */
+    public static ZExp key(final ZExp exp) {
+        return ZFreezer.freeze(new ZCanonicalizer().transform(exp));
+    }
+
+    @Override
+    protected ZExp transformExpression(final ZExpression expression) {
+        final ZExp exp = super.transformExpression(expression);
+        if (!(exp instanceof ZExpression) || ((ZExpression) exp).isFunction()) {
+            return exp;
+        }
+        final ZExpression e = (ZExpression) exp;
+        switch (e.getOperatorCode()) {
+            case ZExpression.AND:
+            case ZExpression.OR:
+                return junction(e);
+            case ZExpression.EQUALS:
+            case ZExpression.PLUS:
+            case ZExpression.MULTIPLICATION:
+                return e.nbOperands() == 2 && compare(e.getOperand(0), e.getOperand(1)) > 0 ? swap(e, e.getOperator()) : e;
+            case ZExpression.NOT_EQUALS:
+                if (e.nbOperands() == 2 && compare(e.getOperand(0), e.getOperand(1)) > 0) {
+                    return swap(e, "<>");
+                }
+                return "<>".equals(e.getOperator()) ? e : copy(e, "<>", e.getOperands());
+            case ZExpression.GREATER_THAN:
+                return mirror(e, "<");
+            case ZExpression.GREATER_OR_EQUALS:
+                return mirror(e, "<=");
+            case ZExpression.LESSER_THAN:
+                return mirror(e, ">");
+            case ZExpression.LESSER_OR_EQUALS:
+                return mirror(e, ">=");
+            case ZExpression.IN:
+            case ZExpression.NOT_IN:
+                return list(e);
+            default:
+                return e;
+        }
+    }
+
+    /**
+     * Flatten the nested AND (or OR) of a junction, and sort its operands.
+     *
+     * @param e the AND or OR expression, with canonical operands.
+     * @return the canonical junction, e itself if it already is.
+     */
+    private static ZExp junction(final ZExpression e) {
+        final List<ZExp> operands = new ArrayList<>();
+        boolean changed = false;
+        for (int i = 0; i < e.nbOperands(); i++) {
+            final ZExp operand = e.getOperand(i);
+            if (operand instanceof ZExpression && !((ZExpression) operand).isFunction()
+                    && ((ZExpression) operand).getOperatorCode() == e.getOperatorCode()) {
+                operands.addAll(((ZExpression) operand).getOperands());
+                changed = true;
+            } else {
+                operands.add(operand);
+            }
+        }
+        changed |= sort(operands, 0);
+        return changed ? copy(e, e.getOperator(), operands) : e;
+    }
+
+    /**
+     * Mirror a comparison whose operands are not in order.
+     *
+     * @param e        the comparison, with canonical operands.
+     * @param mirrored the operator of the mirrored comparison.
+     * @return the mirrored comparison, e itself if its operands are in order.
+     */
+    private static ZExp mirror(final ZExpression e, final String mirrored) {
+        return e.nbOperands() == 2 && compare(e.getOperand(0), e.getOperand(1)) > 0 ? swap(e, mirrored) : e;
+    }
+
+    /**
+     * Sort the values of an IN or NOT IN list.
+     *
+     * @param e the IN or NOT IN expression, with canonical operands.
+     * @return the sorted expression, e itself if its values are in order.
+     */
+    private static ZExp list(final ZExpression e) {
+        final List<ZExp> operands = new ArrayList<>(e.getOperands());
+        return sort(operands, 1) ? copy(e, e.getOperator(), operands) : e;
+    }
+
+    /**
+     * Sort the operands of a list, from an index.
+     *
+     * @param operands the operands.
+     * @param from     the index of the first operand to sort.
+     * @return true if the order changed.
+     */
+    private static boolean sort(final List<ZExp> operands, final int from) {
+        for (int i = from + 1; i < operands.size(); i++) {
+            if (compare(operands.get(i - 1), operands.get(i)) > 0) {
+                Collections.sort(operands.subList(from, operands.size()), ORDER);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Swap the two operands of an expression.
+     *
+     * @param e        the expression.
+     * @param operator the operator of the swapped expression.
+     * @return the swapped expression.
+     */
+    private static ZExpression swap(final ZExpression e, final String operator) {
+        return new ZExpression(operator, e.getOperand(1), e.getOperand(0));
+    }
+
+    /**
+     * Copy an expression with another operator and other operands.
+     *
+     * @param e        the expression.
+     * @param operator the operator of the copy.
+     * @param operands the operands of the copy.
+     * @return the copy.
+     */
+    private static ZExpression copy(final ZExpression e, final String operator, final List<ZExp> operands) {
+        final ZExpression copy = new ZExpression(operator);
+        copy.setOperands(operands == e.getOperands() ? new ArrayList<>(operands) : operands);
+        return copy;
+    }
+
+    /**
+     * Compare two operands in the canonical order: by rank, then by structure (number literals by value).
+     *
+     * @param first  the first operand.
+     * @param second the second operand.
+     * @return a negative number, zero or a positive number if the first operand comes before, is equal to or comes after the second.
+     */
+    private static int compare(final ZExp first, final ZExp second) {
+        final int rank = rank(first) - rank(second);
+        if (rank != 0 || first == second) {
+            return rank;
+        }
+        if (first instanceof ZConstant) {
+            final ZConstant c1 = (ZConstant) first;
+            final ZConstant c2 = (ZConstant) second;
+            final int type = c1.getType() - c2.getType();
+            if (type != 0) {
+                return type;
+            }
+            final int number = c1.isNumber() && c2.isNumber() ? Double.compare(c1.getDoubleValue(), c2.getDoubleValue()) : 0;
+            return number != 0 ? number : compareStrings(c1.getValue(), c2.getValue());
+        }
+        if (first instanceof ZParameter) {
+            final ZParameter p1 = (ZParameter) first;
+            final ZParameter p2 = (ZParameter) second;
+            final int index = p1.getIndex() - p2.getIndex();
+            return index != 0 ? index : compareStrings(p1.getName(), p2.getName());
+        }
+        if (first instanceof ZExpression) {
+            final ZExpression e1 = (ZExpression) first;
+            final ZExpression e2 = (ZExpression) second;
+            int result = compareStrings(e1.getOperator(), e2.getOperator());
+            if (result == 0) {
+                result = e1.nbOperands() - e2.nbOperands();
+            }
+            for (int i = 0; result == 0 && i < e1.nbOperands(); i++) {
+                result = compare(e1.getOperand(i), e2.getOperand(i));
+            }
+            return result;
+        }
+        return compareStrings(first.toString(), second.toString());
+    }
+
+    /**
+     * Get the rank of an operand: columns first, then expressions, sub-queries, parameters and literals.
+     *
+     * @param exp the operand.
+     * @return the rank.
+     */
+    private static int rank(final ZExp exp) {
+        if (exp instanceof ZConstant) {
+            return ((ZConstant) exp).getType() == ZConstant.COLUMNNAME ? COLUMN : LITERAL;
+        }
+        if (exp instanceof ZParameter) {
+            return PARAMETER;
+        }
+        return exp instanceof ZQuery ? QUERY : EXPRESSION;
+    }
+
+    /**
+     * Compare two strings, null first.
+     *
+     * @param first  the first string, may be null.
+     * @param second the second string, may be null.
+     * @return the result of the comparison.
+     */
+    private static int compareStrings(final String first, final String second) {
+        if (first == null || second == null) {
+            return first == null ? (second == null ? 0 : -1) : 1;
+        }
+        return first.compareTo(second);
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.optimize;
+
+import org.gibello.zql.ZGroupBy;
+import org.gibello.zql.ZOrderBy;
+import org.gibello.zql.alias.ZSelectItem;
+import org.gibello.zql.data.ZEval;
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.template.ZBindings;
+import org.gibello.zql.visitor.ZTransformer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ZCommonSubexpressions: finds the sub-expressions repeated in the SELECT items and the WHERE clause of a query, so that each is
+ * computed once per row.<br>
+ * Repeated sub-expressions are found by structure (see ZExp.equals()), and the query is rewritten so that all their occurrences are
+ * the same object (see ZTransformer: the given query is not modified). The evaluator returned by newEvaluator() keeps the value of
+ * these objects for the row, and reuses it for the other occurrences.<br>
+ * Only the arithmetic and the conditions are shared: function calls (which may not give the same result twice), and the expressions
+ * holding a function call or a sub-query, are left unchanged. The other clauses (GROUP BY, ORDER BY, UNION...) and the sub-queries
+ * are not rewritten.
+ */
+public final class ZCommonSubexpressions {
+
+    /**
+     * The rewritten query.
+     */
+    private final ZQuery query;
+
+    /**
+     * The shared sub-expressions, in the order they are first evaluated.
+     */
+    private final List<ZExpression> shared;
+
+    /**
+     * The number of evaluations saved for a row.
+     */
+    private final int savedPerRow;
+
+    /**
+     * Create the result of the analysis of a query.
+     *
+     * @param query       the rewritten query.
+     * @param shared      the shared sub-expressions.
+     * @param savedPerRow the number of evaluations saved for a row.
+     */
+    private ZCommonSubexpressions(final ZQuery query, final List<ZExpression> shared, final int savedPerRow) {
+        this.query = query;
+        this.shared = Collections.unmodifiableList(shared);
+        this.savedPerRow = savedPerRow;
+    }
+
+    /**
+     * Find the sub-expressions repeated in the SELECT items and the WHERE clause of a query, and share them. The sub-expressions are
+     * compared with equals() and hashCode(), which are only computed once on a frozen query (see ZFreezer).
+     *
+     * @param query the query.
+     * @return the rewritten query, and the shared sub-expressions.
+     */
+    public static ZCommonSubexpressions of(final ZQuery query) {
+        final Map<ZExp, Integer> counts = new HashMap<>();
+        for (final ZExp root : rootsOf(query)) {
+            count(root, counts);
+        }
+        final Sharer sharer = new Sharer(query, counts);
+        final ZQuery rewritten = sharer.transform(query);
+
+        // Replay the evaluation order of ZEval: keep only the sub-expressions that are met again once computed
+        final Set<ZExp> candidates = Collections.newSetFromMap(new IdentityHashMap<ZExp, Boolean>());
+        candidates.addAll(sharer.firsts.values());
+        final Map<ZExp, Boolean> seen = new IdentityHashMap<>();
+        final List<ZExp> order = new ArrayList<>();
+        int saved = 0;
+        for (final ZExp root : rootsOf(rewritten)) {
+            saved += replay(root, candidates, seen, order);
+        }
+        final List<ZExpression> shared = new ArrayList<>();
+        for (final ZExp exp : order) {
+            if (seen.get(exp)) {
+                shared.add((ZExpression) exp);
+            }
+        }
+        return new ZCommonSubexpressions(rewritten, shared, saved);
+    }
+
+    /**
+     * Get the rewritten query: the occurrences of each shared sub-expression are the same object.
+     *
+     * @return the query, the given query itself if no sub-expression is repeated.
+     */
+    public ZQuery getQuery() {
+        return this.query;
+    }
+
+    /**
+     * Get the shared sub-expressions: a sub-expression repeated only inside another shared one is not listed, since it is not
+     * computed again.
+     *
+     * @return the shared sub-expressions (unmodifiable), empty if there are none.
+     */
+    public List<ZExpression> getShared() {
+        return this.shared;
+    }
+
+    /**
+     * Get the number of evaluations of sub-expressions saved for a row where the WHERE clause and all the SELECT items are
+     * evaluated. See ZEval.getSavedEvaluations() for the evaluations actually saved.
+     *
+     * @return the number of saved evaluations, 0 if no sub-expression is repeated.
+     */
+    public int getSavedEvaluationsPerRow() {
+        return this.savedPerRow;
+    }
+
+    /**
+     * Create an evaluator that computes each shared sub-expression once per row, for the rewritten query.
+     *
+     * @param bindings the values of the parameters, null if there are none.
+     * @return the evaluator.
+     */
+    public ZEval newEvaluator(final ZBindings bindings) {
+        return new ZEval(bindings, this.shared);
+    }
+
+    /**
+     * Get the expressions of a query that are evaluated for each row: the WHERE clause first, then the SELECT items, like ZEval
+     * is used.
+     *
+     * @param query the query.
+     * @return the expressions.
+     */
+    private static List<ZExp> rootsOf(final ZQuery query) {
+        final List<ZExp> roots = new ArrayList<>();
+        if (query.getWhere() != null) {
+            roots.add(query.getWhere());
+        }
+        if (query.getSelect() != null) {
+            for (final Object item : query.getSelect()) {
+                if (item instanceof ZSelectItem && ((ZSelectItem) item).isExpression()) {
+                    roots.add(((ZSelectItem) item).getExpression());
+                }
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * Count the occurrences of the sub-expressions that can be shared.
+     *
+     * @param exp    the expression.
+     * @param counts the occurrences, by structure.
+     * @return true if the expression can be shared: it holds no function call nor sub-query.
+     */
+    private static boolean count(final ZExp exp, final Map<ZExp, Integer> counts) {
+        if (exp instanceof ZQuery) {
+            return false;
+        }
+        if (!(exp instanceof ZExpression)) {
+            return true;
+        }
+        final ZExpression e = (ZExpression) exp;
+        boolean shareable = !e.isFunction();
+        for (int i = 0; i < e.nbOperands(); i++) {
+            shareable &= count(e.getOperand(i), counts);
+        }
+        if (shareable) {
+            final Integer count = counts.get(e);
+            counts.put(e, count == null ? 1 : count + 1);
+        }
+        return shareable;
+    }
+
+    /**
+     * Count the evaluations saved for an expression, in the order ZEval evaluates it.
+     *
+     * @param exp        the expression.
+     * @param candidates the sub-expressions met more than once.
+     * @param seen       the candidates already computed, with true if they were met again.
+     * @param order      the candidates already computed, in order.
+     * @return the number of saved evaluations.
+     */
+    private static int replay(final ZExp exp, final Set<ZExp> candidates, final Map<ZExp, Boolean> seen, final List<ZExp> order) {
+        if (!(exp instanceof ZExpression)) {
+            return 0;
+        }
+        if (candidates.contains(exp)) {
+            if (seen.containsKey(exp)) {
+                seen.put(exp, Boolean.TRUE);
+                return 1;
+            }
+            seen.put(exp, Boolean.FALSE);
+            order.add(exp);
+        }
+        final ZExpression e = (ZExpression) exp;
+        int saved = 0;
+        for (int i = 0; i < e.nbOperands(); i++) {
+            saved += replay(e.getOperand(i), candidates, seen, order);
+        }
+        return saved;
+    }
+
+    /**
+     * Replaces the occurrences of each repeated sub-expression of a query by the first one.
+     */
+    private static final class Sharer extends ZTransformer {
+
+        /**
+         * The query to rewrite.
+         */
+        private final ZQuery top;
+
+        /**
+         * The occurrences of the sub-expressions, by structure; the first occurrence replaces the others.
+         */
+        private final Map<ZExp, Integer> counts;
+
+        /**
+         * The first occurrence of each repeated sub-expression, by structure.
+         */
+        private final Map<ZExp, ZExp> firsts = new HashMap<>();
+
+        /**
+         * Create a rewriter.
+         *
+         * @param top    the query to rewrite.
+         * @param counts the occurrences of the sub-expressions, by structure.
+         */
+        Sharer(final ZQuery top, final Map<ZExp, Integer> counts) {
+            this.top = top;
+            this.counts = counts;
+        }
+
+        @Override
+        protected ZExp transformExpression(final ZExpression expression) {
+            final ZExp exp = super.transformExpression(expression);
+            final Integer count = this.counts.get(exp);
+            if (count == null || count < 2) {
+                return exp;
+            }
+            final ZExp first = this.firsts.get(exp);
+            if (first == null) {
+                this.firsts.put(exp, exp);
+                return exp;
+            }
+            return first;
+        }
+
+        @Override
+        protected ZQuery transformQuery(final ZQuery query) {
+            return query == this.top ? super.transformQuery(query) : query;
+        }
+
+        @Override
+        protected ZGroupBy transformGroupBy(final ZGroupBy groupBy) {
+            return groupBy;
+        }
+
+        @Override
+        protected ZOrderBy transformOrderBy(final ZOrderBy orderBy) {
+            return orderBy;
+        }
+    }
+}
@@ -0,0 +1,467 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.optimize;
+
+import org.gibello.zql.expression.ZConstant;
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.utils.ZCommonConstants;
+import org.gibello.zql.visitor.ZTransformer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ZSimplifier: folds the constant parts of expressions and simplifies boolean conditions, so that they are not computed again for
+ * each row.<br>
+ * The pass works bottom-up, on all the expressions of a tree (see ZTransformer: the given tree is not modified):
+ * <ul>
+ * <li>arithmetic on integer literals is folded: 1 + 2 * 3 becomes 7. Divisions are only folded when they are exact, and results are
+ * kept within the integers a double holds exactly, so that the SQL and the evaluator (ZEval) agree;</li>
+ * <li>comparisons of number literals, and BETWEEN or IN on number literals, are folded to true or false, written (1 = 1) and (1 = 0)
+ * since SQL has no boolean literal;</li>
+ * <li>x = x (and x >= x, x <= x) becomes true for a literal x. It is kept for a column: it is unknown, not false, when the column
+ * is NULL, so no rewrite stays right under a NOT;</li>
+ * <li>a BETWEEN b AND b becomes a = b, and a IN (b) becomes a = b;</li>
+ * <li>nested AND and OR are flattened, true and false operands are removed or decide the result, and an AND or OR left with one
+ * operand is replaced by it;</li>
+ * <li>NOT is pushed down: NOT NOT x becomes x, a NOT over AND or OR is distributed (De Morgan), and a NOT over a comparison, LIKE, IN,
+ * BETWEEN or IS NULL becomes the opposite operator.</li>
+ * </ul>
+ * All the rewrites hold for the SQL three-valued logic: a comparison with NULL stays unknown, so conditions on NULL literals are not
+ * folded. Function calls and sub-queries are left unchanged.
+ */
+public class ZSimplifier extends ZTransformer {
+
+    /**
+     * The largest integer folded: a double holds all the integers up to 2^53 exactly.
+     */
+    private static final BigDecimal MAX_EXACT = BigDecimal.valueOf(1L << 53);
+
+    @Override
+    protected ZExp transformExpression(final ZExpression expression) {
+        final ZExp exp = super.transformExpression(expression);
+        if (!(exp instanceof ZExpression) || ((ZExpression) exp).isFunction()) {
+            return exp;
+        }
+        final ZExpression e = (ZExpression) exp;
+        switch (e.getOperatorCode()) {
+            case ZExpression.AND:
+            case ZExpression.OR:
+                return this.junction(e);
+            case ZExpression.NOT:
+                return e.nbOperands() == 1 ? this.negate(e.getOperand(0), e) : e;
+            case ZExpression.EQUALS:
+            case ZExpression.NOT_EQUALS:
+            case ZExpression.GREATER_THAN:
+            case ZExpression.GREATER_OR_EQUALS:
+            case ZExpression.LESSER_THAN:
+            case ZExpression.LESSER_OR_EQUALS:
+                return this.comparison(e);
+            case ZExpression.BETWEEN:
+            case ZExpression.NOT_BETWEEN:
+                return this.between(e);
+            case ZExpression.IN:
+            case ZExpression.NOT_IN:
+                return this.in(e);
+            case ZExpression.PLUS:
+            case ZExpression.MINUS:
+            case ZExpression.MULTIPLICATION:
+            case ZExpression.SLASH:
+                return this.arithmetic(e);
+            default:
+                return e;
+        }
+    }
+
+    /**
+     * Simplify an AND or an OR, whose operands are already simplified.
+     *
+     * @param e the expression.
+     * @return the simplified expression, e itself if nothing changed.
+     */
+    private ZExp junction(final ZExpression e) {
+        final boolean and = e.getOperatorCode() == ZExpression.AND;
+        final List<ZExp> operands = new ArrayList<>(e.nbOperands());
+        boolean changed = false;
+        for (int i = 0; i < e.nbOperands(); i++) {
+            final ZExp operand = e.getOperand(i);
+            final Boolean truth = truthOf(operand);
+            if (truth != null) {
+                if (truth != and) {
+                    // false AND x, true OR x
+                    return known(e, !and);
+                }
+                // true AND x, false OR x
+                changed = true;
+            } else if (operand instanceof ZExpression && ((ZExpression) operand).getOperatorCode() == e.getOperatorCode()
+                    && !((ZExpression) operand).isFunction()) {
+                // The nested operands are already flattened
+                operands.addAll(((ZExpression) operand).getOperands());
+                changed = true;
+            } else {
+                operands.add(operand);
+            }
+        }
+        if (operands.isEmpty()) {
+            return known(e, and);
+        }
+        if (operands.size() == 1) {
+            return operands.get(0);
+        }
+        if (!changed) {
+            return e;
+        }
+        final ZExpression copy = new ZExpression(e.getOperator());
+        copy.setOperands(operands);
+        return copy;
+    }
+
+    /**
+     * Get the negation of a simplified expression, with the NOT pushed down as far as possible.
+     *
+     * @param exp the expression.
+     * @param not the NOT expression over exp, null if there is none.
+     * @return the negation: not itself, or NOT exp, if it can not be pushed down.
+     */
+    private ZExp negate(final ZExp exp, final ZExpression not) {
+        if (exp instanceof ZExpression && !((ZExpression) exp).isFunction()) {
+            final ZExpression e = (ZExpression) exp;
+            final Boolean truth = truthOf(e);
+            if (truth != null) {
+                return not == null ? truth(!truth) : known(not, !truth);
+            }
+            final int size = e.nbOperands();
+            switch (e.getOperatorCode()) {
+                case ZExpression.NOT:
+                    if (size == 1) {
+                        return e.getOperand(0);
+                    }
+                    break;
+                case ZExpression.AND:
+                case ZExpression.OR:
+                    final ZExpression junction = new ZExpression(
+                            e.getOperatorCode() == ZExpression.AND ? ZCommonConstants.OR : ZCommonConstants.AND);
+                    for (int i = 0; i < size; i++) {
+                        junction.addOperand(this.negate(e.getOperand(i), null));
+                    }
+                    return this.junction(junction);
+                default:
+                    final String opposite = opposite(e.getOperatorCode());
+                    if (opposite != null) {
+                        final ZExpression negation = copy(e, opposite);
+                        return isComparison(negation.getOperatorCode()) ? this.comparison(negation) : negation;
+                    }
+                    break;
+            }
+        }
+        return this.wrap(exp, not);
+    }
+
+    /**
+     * Check whether an operator is a comparison (=, <>, >, >=, <, <=).
+     *
+     * @param code the code of the operator.
+     * @return whether it is a comparison.
+     */
+    private static boolean isComparison(final int code) {
+        return code == ZExpression.EQUALS || code == ZExpression.NOT_EQUALS || code == ZExpression.GREATER_THAN
+                || code == ZExpression.GREATER_OR_EQUALS || code == ZExpression.LESSER_THAN || code == ZExpression.LESSER_OR_EQUALS;
+    }
+
+    /**
+     * Get the opposite of an operator.
+     *
+     * @param code the code of the operator.
+     * @return the opposite operator, null if it has none.
+     */
+    private static String opposite(final int code) {
+        switch (code) {
+            case ZExpression.EQUALS:
+                return ZCommonConstants.EXCLUDING;
+            case ZExpression.NOT_EQUALS:
+                return ZCommonConstants.EQUALS;
+            case ZExpression.GREATER_THAN:
+                return ZCommonConstants.LESSER_THAN + ZCommonConstants.EQUALS;
+            case ZExpression.GREATER_OR_EQUALS:
+                return ZCommonConstants.LESSER_THAN;
+            case ZExpression.LESSER_THAN:
+                return ZCommonConstants.GREATER_THAN + ZCommonConstants.EQUALS;
+            case ZExpression.LESSER_OR_EQUALS:
+                return ZCommonConstants.GREATER_THAN;
+            case ZExpression.BETWEEN:
+                return ZCommonConstants.NOT_BETWEEN;
+            case ZExpression.NOT_BETWEEN:
+                return ZCommonConstants.BETWEEN;
+            case ZExpression.LIKE:
+                return ZCommonConstants.NOT_LIKE;
+            case ZExpression.NOT_LIKE:
+                return ZCommonConstants.LIKE;
+            case ZExpression.IN:
+                return ZCommonConstants.NOT_IN;
+            case ZExpression.NOT_IN:
+                return ZCommonConstants.IN;
+            case ZExpression.IS_NULL:
+                return ZCommonConstants.IS_NOT_NULL;
+            case ZExpression.IS_NOT_NULL:
+                return ZCommonConstants.IS_NULL;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Get the NOT of an expression whose negation can not be pushed down.
+     *
+     * @param exp the expression.
+     * @param not the NOT expression over exp, null if there is none.
+     * @return not itself, or a new NOT exp.
+     */
+    private ZExp wrap(final ZExp exp, final ZExpression not) {
+        return not != null ? not : new ZExpression(ZCommonConstants.NOT, exp);
+    }
+
+    /**
+     * Simplify a comparison, whose operands are already simplified.
+     *
+     * @param e the comparison.
+     * @return the simplified expression, e itself if nothing changed.
+     */
+    private ZExp comparison(final ZExpression e) {
+        if (e.nbOperands() != 2) {
+            return e;
+        }
+        final Boolean truth = truthOf(e);
+        if (truth != null) {
+            return known(e, truth);
+        }
+        final ZExp left = e.getOperand(0);
+        if (!(left instanceof ZConstant) || !left.equals(e.getOperand(1))) {
+            return e;
+        }
+        final int code = e.getOperatorCode();
+        final boolean reflexive = code == ZExpression.EQUALS || code == ZExpression.GREATER_OR_EQUALS || code == ZExpression.LESSER_OR_EQUALS;
+        switch (((ZConstant) left).getType()) {
+            case ZConstant.STRING:
+            case ZConstant.NUMBER:
+                return known(e, reflexive);
+            default:
+                return e;
+        }
+    }
+
+    /**
+     * Simplify a BETWEEN or NOT BETWEEN, whose operands are already simplified.
+     *
+     * @param e the expression.
+     * @return the simplified expression, e itself if nothing changed.
+     */
+    private ZExp between(final ZExpression e) {
+        if (e.nbOperands() != 3) {
+            return e;
+        }
+        final boolean between = e.getOperatorCode() == ZExpression.BETWEEN;
+        final BigDecimal value = numberOf(e.getOperand(0));
+        final BigDecimal low = numberOf(e.getOperand(1));
+        final BigDecimal high = numberOf(e.getOperand(2));
+        if (value != null && low != null && high != null) {
+            return known(e, (value.compareTo(low) >= 0 && value.compareTo(high) <= 0) == between);
+        }
+        if (e.getOperand(1) instanceof ZConstant && e.getOperand(1).equals(e.getOperand(2))) {
+            return this.comparison(new ZExpression(between ? ZCommonConstants.EQUALS : ZCommonConstants.EXCLUDING, e.getOperand(0),
+                    e.getOperand(1)));
+        }
+        return e;
+    }
+
+    /**
+     * Simplify an IN or NOT IN, whose operands are already simplified.
+     *
+     * @param e the expression.
+     * @return the simplified expression, e itself if nothing changed.
+     */
+    private ZExp in(final ZExpression e) {
+        final int size = e.nbOperands();
+        if (size < 2 || e.getOperand(1) instanceof ZQuery) {
+            return e;
+        }
+        final boolean in = e.getOperatorCode() == ZExpression.IN;
+        if (size == 2) {
+            return this.comparison(new ZExpression(in ? ZCommonConstants.EQUALS : ZCommonConstants.EXCLUDING, e.getOperand(0),
+                    e.getOperand(1)));
+        }
+        final BigDecimal value = numberOf(e.getOperand(0));
+        if (value == null) {
+            return e;
+        }
+        boolean found = false;
+        for (int i = 1; i < size; i++) {
+            final BigDecimal item = numberOf(e.getOperand(i));
+            if (item == null) {
+                return e;
+            }
+            found |= value.compareTo(item) == 0;
+        }
+        return known(e, found == in);
+    }
+
+    /**
+     * Fold an arithmetic expression on integer literals, or a minus sign before a number literal.
+     *
+     * @param e the expression, whose operands are already simplified.
+     * @return the value, e itself if it can not be folded.
+     */
+    private ZExp arithmetic(final ZExpression e) {
+        final int size = e.nbOperands();
+        if (size == 1 && e.getOperatorCode() == ZExpression.MINUS) {
+            final BigDecimal value = numberOf(e.getOperand(0));
+            return value == null ? e : new ZConstant(value.negate().toPlainString(), ZConstant.NUMBER);
+        }
+        if (size < 2) {
+            return e;
+        }
+        BigDecimal result = integerOf(e.getOperand(0));
+        for (int i = 1; i < size && result != null; i++) {
+            final BigDecimal operand = integerOf(e.getOperand(i));
+            if (operand == null) {
+                return e;
+            }
+            switch (e.getOperatorCode()) {
+                case ZExpression.PLUS:
+                    result = result.add(operand);
+                    break;
+                case ZExpression.MINUS:
+                    result = result.subtract(operand);
+                    break;
+                case ZExpression.MULTIPLICATION:
+                    result = result.multiply(operand);
+                    break;
+                default:
+                    // Inexact or by zero: left to the evaluation
+                    if (operand.signum() == 0 || result.remainder(operand).signum() != 0) {
+                        return e;
+                    }
+                    result = result.divide(operand);
+                    break;
+            }
+            if (result.abs().compareTo(MAX_EXACT) > 0) {
+                return e;
+            }
+        }
+        return result == null ? e : new ZConstant(result.toPlainString(), ZConstant.NUMBER);
+    }
+
+    /**
+     * Copy an expression with another operator.
+     *
+     * @param e        the expression.
+     * @param operator the new operator.
+     * @return the copy, sharing the operands of e.
+     */
+    private static ZExpression copy(final ZExpression e, final String operator) {
+        final ZExpression copy = new ZExpression(operator);
+        if (e.getOperands() != null) {
+            copy.setOperands(new ArrayList<>(e.getOperands()));
+        }
+        return copy;
+    }
+
+    /**
+     * Get the value of a number literal.
+     *
+     * @param exp the expression.
+     * @return its exact value, null if it is not a number literal.
+     */
+    private static BigDecimal numberOf(final ZExp exp) {
+        return exp instanceof ZConstant ? ((ZConstant) exp).getDecimalValue() : null;
+    }
+
+    /**
+     * Get the value of an integer literal that a double holds exactly.
+     *
+     * @param exp the expression.
+     * @return its value, null if it is not such a literal.
+     */
+    private static BigDecimal integerOf(final ZExp exp) {
+        if (!(exp instanceof ZConstant) || !((ZConstant) exp).isLong()) {
+            return null;
+        }
+        final BigDecimal value = ((ZConstant) exp).getDecimalValue();
+        return value.abs().compareTo(MAX_EXACT) > 0 ? null : value;
+    }
+
+    /**
+     * Get the truth of a comparison of two number literals (this includes the (1 = 1) and (1 = 0) written for true and false).
+     *
+     * @param exp the expression.
+     * @return its truth, null if it is not known.
+     */
+    private static Boolean truthOf(final ZExp exp) {
+        if (!(exp instanceof ZExpression) || ((ZExpression) exp).nbOperands() != 2) {
+            return null;
+        }
+        final ZExpression e = (ZExpression) exp;
+        final BigDecimal left = numberOf(e.getOperand(0));
+        final BigDecimal right = left == null ? null : numberOf(e.getOperand(1));
+        if (right == null) {
+            return null;
+        }
+        final int cmp = left.compareTo(right);
+        switch (e.getOperatorCode()) {
+            case ZExpression.EQUALS:
+                return cmp == 0;
+            case ZExpression.NOT_EQUALS:
+                return cmp != 0;
+            case ZExpression.GREATER_THAN:
+                return cmp > 0;
+            case ZExpression.GREATER_OR_EQUALS:
+                return cmp >= 0;
+            case ZExpression.LESSER_THAN:
+                return cmp < 0;
+            case ZExpression.LESSER_OR_EQUALS:
+                return cmp <= 0;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Get the expression written for true or false.
+     *
+     * @param truth the truth.
+     * @return (1 = 1) or (1 = 0).
+     */
+    private static ZExpression truth(final boolean truth) {
+        return new ZExpression(ZCommonConstants.EQUALS, new ZConstant("1", ZConstant.NUMBER), new ZConstant(truth ? "1" : "0",
+                ZConstant.NUMBER));
+    }
+
+    /**
+     * Replace an expression whose truth is known.
+     *
+     * @param e     the expression.
+     * @param truth its truth.
+     * @return e itself if it is already written as true or false, the expression written for its truth if not.
+     */
+    private static ZExp known(final ZExpression e, final boolean truth) {
+        final ZExpression value = truth(truth);
+        return value.equals(e) ? e : value;
+    }
+}
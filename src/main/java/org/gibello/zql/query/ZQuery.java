@@ -17,15 +17,17 @@
 
 package org.gibello.zql.query;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.gibello.zql.ZGroupBy;
 import org.gibello.zql.expression.ZExp;
 import org.gibello.zql.expression.ZExpression;
 import org.gibello.zql.statement.ZStatement;
-import org.gibello.zql.utils.ZCommonConstants;
+import org.gibello.zql.unparse.ZUnparser;
+import org.gibello.zql.utils.ZFreezer;
+import org.gibello.zql.utils.ZNodeList;
+import org.gibello.zql.visitor.ZVisitor;
 
 import java.util.List;
+import java.util.Objects;
 
 /**
  * ZQuery: an SQL SELECT statement.
@@ -80,6 +82,16 @@ public class ZQuery implements ZStatement, ZExp {
      */
     private boolean forupdate = false;
 
+    /**
+     * Whether the query is frozen (read-only).
+     */
+    private boolean frozen = false;
+
+    /**
+     * The structural hash, kept once the query is frozen, 0 if it is not known.
+     */
+    private transient int hash;
+
     /**
      * Create a new SELECT statement.
      */
@@ -93,6 +105,7 @@ public class ZQuery implements ZStatement, ZExp {
      * @param select A vector of ZSelectItem objects
      */
     public void addSelect(final List<?> select) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.select = select;
     }
 
@@ -102,6 +115,7 @@ public class ZQuery implements ZStatement, ZExp {
      * @param from a Vector of ZFromItem objects
      */
     public void addFrom(final List<?> from) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.from = from;
     }
 
@@ -111,6 +125,7 @@ public class ZQuery implements ZStatement, ZExp {
      * @param where An SQL Expression
      */
     public void addWhere(final ZExp where) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.where = where;
     }
 
@@ -120,6 +135,7 @@ public class ZQuery implements ZStatement, ZExp {
      * @param groupby A GROUP BY...HAVING clause
      */
     public void addGroupBy(final ZGroupBy groupby) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.groupby = groupby;
     }
 
@@ -129,6 +145,7 @@ public class ZQuery implements ZStatement, ZExp {
      * @param setclause An SQL Expression (generally UNION, INTERSECT or MINUS)
      */
     public void addSet(final ZExpression setclause) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.setclause = setclause;
     }
 
@@ -138,6 +155,7 @@ public class ZQuery implements ZStatement, ZExp {
      * @param orderby A vector of ZOrderBy objects
      */
     public void addOrderBy(final List<?> orderby) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.orderby = orderby;
     }
 
@@ -154,6 +172,7 @@ public class ZQuery implements ZStatement, ZExp {
      * @param select set select.
      */
     public void setSelect(final List<?> select) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.select = select;
     }
 
@@ -170,6 +189,7 @@ public class ZQuery implements ZStatement, ZExp {
      * @param from set from.
      */
     public void setFrom(final List<?> from) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.from = from;
     }
 
@@ -186,6 +206,7 @@ public class ZQuery implements ZStatement, ZExp {
      * @param where set where clause.
      */
     public void setWhere(final ZExp where) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.where = where;
     }
 
@@ -227,6 +248,7 @@ public class ZQuery implements ZStatement, ZExp {
      * @param distinct set distinct.
      */
     public void setDistinct(final boolean distinct) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.distinct = distinct;
     }
 
@@ -237,49 +259,47 @@ public class ZQuery implements ZStatement, ZExp {
         return this.forupdate;
     }
 
-    @Override
-    public String toString() {
-        final StringBuilder buf = new StringBuilder("select ");
-        if (this.distinct) {
-            buf.append("distinct ");
-        }
-
-        // buf.append(select_.toString());
-        int i;
-        buf.append(this.select.get(0).toString());
-        for (i = 1; i < this.select.size(); i++) {
-            buf.append(ZCommonConstants.COMMA + ZCommonConstants.EMPTY_STRING).append(this.select.get(i).toString());
+    /**
+     * Make this query compact and read-only (see ZFreezer).
+     *
+     * @return this query.
+     */
+    public ZQuery freeze() {
+        if (!this.frozen) {
+            if (this.select != null) {
+                this.select = ZNodeList.freeze(this.select);
+            }
+            if (this.from != null) {
+                this.from = ZNodeList.freeze(this.from);
+            }
+            this.where = ZFreezer.freeze(this.where);
+            this.groupby = ZFreezer.freeze(this.groupby);
+            this.setclause = ZFreezer.freeze(this.setclause);
+            if (this.orderby != null) {
+                this.orderby = ZNodeList.freeze(this.orderby);
+            }
+            this.frozen = true;
         }
+        return this;
+    }
 
-        // buf.append(" from " + from_.toString());
-        buf.append(" from ");
-        buf.append(this.from.get(0).toString());
-        for (i = 1; i < this.from.size(); i++) {
-            buf.append(ZCommonConstants.COMMA + ZCommonConstants.EMPTY_STRING).append(this.from.get(i).toString());
-        }
+    /**
+     * Check whether this query is frozen.
+     *
+     * @return whether it is read-only.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
 
-        if (this.where != null) {
-            buf.append(" where ").append(this.where.toString());
-        }
-        if (this.groupby != null) {
-            buf.append(ZCommonConstants.EMPTY_STRING).append(this.groupby.toString());
-        }
-        if (this.setclause != null) {
-            buf.append(ZCommonConstants.EMPTY_STRING).append(this.setclause.toString());
-        }
-        if (this.orderby != null) {
-            buf.append(" order by ");
-            // buf.append(orderby_.toString());
-            buf.append(this.orderby.get(0).toString());
-            for (i = 1; i < this.orderby.size(); i++) {
-                buf.append(", ").append(this.orderby.get(i).toString());
-            }
-        }
-        if (this.forupdate) {
-            buf.append(" for update");
-        }
+    @Override
+    public <R> R accept(final ZVisitor<R> visitor) {
+        return visitor.visitQuery(this);
+    }
 
-        return buf.toString();
+    @Override
+    public String toString() {
+        return ZUnparser.render(this);
     }
 
     /**
@@ -293,6 +313,7 @@ public class ZQuery implements ZStatement, ZExp {
      * @param groupby the group by.
      */
     public void setGroupby(final ZGroupBy groupby) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.groupby = groupby;
     }
 
@@ -307,6 +328,7 @@ public class ZQuery implements ZStatement, ZExp {
      * @param setclause the set clause.
      */
     public void setSetclause(final ZExpression setclause) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.setclause = setclause;
     }
 
@@ -321,6 +343,7 @@ public class ZQuery implements ZStatement, ZExp {
      * @param orderby set order by.
      */
     public void setOrderby(final List<?> orderby) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.orderby = orderby;
     }
 
@@ -335,40 +358,43 @@ public class ZQuery implements ZStatement, ZExp {
      * @param forupdate set for update.
      */
     public void setForupdate(final boolean forupdate) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.forupdate = forupdate;
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-
-        if (o == null || getClass() != o.getClass()) return false;
-
-        ZQuery query = (ZQuery) o;
-
-        return new EqualsBuilder()
-                .append(isDistinct(), query.isDistinct())
-                .append(isForupdate(), query.isForupdate())
-                .append(getSelect(), query.getSelect())
-                .append(getFrom(), query.getFrom())
-                .append(getWhere(), query.getWhere())
-                .append(getGroupby(), query.getGroupby())
-                .append(getSetclause(), query.getSetclause())
-                .append(getOrderby(), query.getOrderby())
-                .isEquals();
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ZQuery that = (ZQuery) o;
+        if (this.frozen && that.frozen && this.hashCode() != that.hashCode()) {
+            return false;
+        }
+        return this.distinct == that.distinct && this.forupdate == that.forupdate && ZNodeList.equal(this.select, that.select)
+                && ZNodeList.equal(this.from, that.from) && Objects.equals(this.where, that.where) && Objects.equals(this.groupby, that.groupby)
+                && Objects.equals(this.setclause, that.setclause) && ZNodeList.equal(this.orderby, that.orderby);
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder(17, 37)
-                .append(getSelect())
-                .append(isDistinct())
-                .append(getFrom())
-                .append(getWhere())
-                .append(getGroupby())
-                .append(getSetclause())
-                .append(getOrderby())
-                .append(isForupdate())
-                .toHashCode();
+        int result = this.hash;
+        if (result == 0) {
+            result = ZNodeList.hash(this.select);
+            result = 31 * result + (this.distinct ? 1 : 0);
+            result = 31 * result + ZNodeList.hash(this.from);
+            result = 31 * result + Objects.hashCode(this.where);
+            result = 31 * result + Objects.hashCode(this.groupby);
+            result = 31 * result + Objects.hashCode(this.setclause);
+            result = 31 * result + ZNodeList.hash(this.orderby);
+            result = 31 * result + (this.forupdate ? 1 : 0);
+            if (this.frozen) {
+                this.hash = result;
+            }
+        }
+        return result;
     }
 }
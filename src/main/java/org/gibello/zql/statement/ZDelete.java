@@ -18,6 +18,11 @@
 package org.gibello.zql.statement;
 
 import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.unparse.ZUnparser;
+import org.gibello.zql.utils.ZFreezer;
+import org.gibello.zql.visitor.ZVisitor;
+
+import java.util.Objects;
 
 /**
  * ZDelete: an SQL DELETE statement.<br>
@@ -43,6 +48,16 @@ public class ZDelete implements ZStatement {
      */
     private ZExp where = null;
 
+    /**
+     * Whether the statement is frozen (read-only).
+     */
+    private boolean frozen = false;
+
+    /**
+     * The structural hash, kept once the statement is frozen, 0 if it is not known.
+     */
+    private transient int hash;
+
     /**
      * Create a DELETE statement on a given table.
      *
@@ -58,6 +73,7 @@ public class ZDelete implements ZStatement {
      * @param where An SQL expression compatible with a WHERE clause
      */
     public void addWhere(final ZExp where) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.where = where;
     }
 
@@ -75,16 +91,63 @@ public class ZDelete implements ZStatement {
         return this.where;
     }
 
+    /**
+     * Make this statement compact and read-only (see ZFreezer).
+     *
+     * @return this statement.
+     */
+    public ZDelete freeze() {
+        if (!this.frozen) {
+            this.table = ZFreezer.intern(this.table);
+            this.where = ZFreezer.freeze(this.where);
+            this.frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * Check whether this statement is frozen.
+     *
+     * @return whether it is read-only.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    @Override
+    public <R> R accept(final ZVisitor<R> visitor) {
+        return visitor.visitDelete(this);
+    }
+
     @Override
     public String toString() {
-        final StringBuilder buf = new StringBuilder("delete ");
-        if (this.where != null) {
-            buf.append("from ");
+        return ZUnparser.render(this);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ZDelete that = (ZDelete) o;
+        if (this.frozen && that.frozen && this.hashCode() != that.hashCode()) {
+            return false;
         }
-        buf.append(this.table);
-        if (this.where != null) {
-            buf.append(" where ").append(this.where.toString());
+        return Objects.equals(this.table, that.table) && Objects.equals(this.where, that.where);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = this.hash;
+        if (result == 0) {
+            result = 31 * Objects.hashCode(this.table) + Objects.hashCode(this.where);
+            if (this.frozen) {
+                this.hash = result;
+            }
         }
-        return buf.toString();
+        return result;
     }
 }
@@ -20,9 +20,13 @@ package org.gibello.zql.statement;
 import org.gibello.zql.expression.ZExp;
 import org.gibello.zql.expression.ZExpression;
 import org.gibello.zql.query.ZQuery;
-import org.gibello.zql.utils.ZCommonConstants;
+import org.gibello.zql.unparse.ZUnparser;
+import org.gibello.zql.utils.ZFreezer;
+import org.gibello.zql.utils.ZNodeList;
+import org.gibello.zql.visitor.ZVisitor;
 
 import java.util.List;
+import java.util.Objects;
 
 /**
  * ZInsert: an SQL INSERT statement.
@@ -52,6 +56,16 @@ public class ZInsert implements ZStatement {
      */
     private ZExp specifiedValues = null;
 
+    /**
+     * Whether the statement is frozen (read-only).
+     */
+    private boolean frozen = false;
+
+    /**
+     * The structural hash, kept once the statement is frozen, 0 if it is not known.
+     */
+    private transient int hash;
+
     /**
      * Create an INSERT statement on a given table.
      *
@@ -85,6 +99,7 @@ public class ZInsert implements ZStatement {
      * @param tableColumns A vector of column names (Strings)
      */
     public void addColumns(final List<ZExp> tableColumns) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.tableColumns = tableColumns;
     }
 
@@ -95,9 +110,19 @@ public class ZInsert implements ZStatement {
      *                        with operator = "," and operands = the expressions in the list. If it is a SELECT statement, e should be a ZQuery object.
      */
     public void addValueSpec(final ZExp specifiedValues) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.specifiedValues = specifiedValues;
     }
 
+    /**
+     * Get the VALUES part or SQL sub-query of the INSERT statement, as given to addValueSpec().
+     *
+     * @return An SQL expression (operator "," and the values as operands), or a SELECT statement (a ZQuery object).
+     */
+    public ZExp getValueSpec() {
+        return this.specifiedValues;
+    }
+
     /**
      * Get the VALUES part of the INSERT statement.
      *
@@ -117,29 +142,69 @@ public class ZInsert implements ZStatement {
         return (this.specifiedValues != null) ? (this.specifiedValues instanceof ZQuery ? (ZQuery) this.specifiedValues : null) : null;
     }
 
-    @Override
-    public String toString() {
-        final StringBuilder buf = new StringBuilder("insert into " + this.tableName);
-        if (this.tableColumns != null && this.tableColumns.size() > 0) {
-            // buf.append(" " + columns_.toString());
-            buf.append(ZCommonConstants.LEFT_BRACKET).append(this.tableColumns.get(0));
-            for (int i = 1; i < this.tableColumns.size(); i++) {
-                buf.append(",").append(this.tableColumns.get(i));
+    /**
+     * Make this statement compact and read-only (see ZFreezer).
+     *
+     * @return this statement.
+     */
+    public ZInsert freeze() {
+        if (!this.frozen) {
+            this.tableName = ZFreezer.intern(this.tableName);
+            if (this.tableColumns != null) {
+                this.tableColumns = ZNodeList.freeze(this.tableColumns);
             }
-            buf.append(ZCommonConstants.RIGHT_BRACKET);
+            this.specifiedValues = ZFreezer.freeze(this.specifiedValues);
+            this.frozen = true;
         }
+        return this;
+    }
 
-        final String vlist = this.specifiedValues.toString();
-        buf.append(ZCommonConstants.EMPTY_STRING);
-        if (this.getValues() != null) {
-            buf.append("values ");
+    /**
+     * Check whether this statement is frozen.
+     *
+     * @return whether it is read-only.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    @Override
+    public <R> R accept(final ZVisitor<R> visitor) {
+        return visitor.visitInsert(this);
+    }
+
+    @Override
+    public String toString() {
+        return ZUnparser.render(this);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
         }
-        if (vlist.startsWith(ZCommonConstants.LEFT_BRACKET)) {
-            buf.append(vlist);
-        } else {
-            buf.append(ZCommonConstants.EMPTY_STRING + ZCommonConstants.LEFT_BRACKET).append(vlist).append(ZCommonConstants.RIGHT_BRACKET);
+        final ZInsert that = (ZInsert) o;
+        if (this.frozen && that.frozen && this.hashCode() != that.hashCode()) {
+            return false;
         }
+        return Objects.equals(this.tableName, that.tableName) && ZNodeList.equal(this.tableColumns, that.tableColumns)
+                && Objects.equals(this.specifiedValues, that.specifiedValues);
+    }
 
-        return buf.toString();
+    @Override
+    public int hashCode() {
+        int result = this.hash;
+        if (result == 0) {
+            result = Objects.hashCode(this.tableName);
+            result = 31 * result + ZNodeList.hash(this.tableColumns);
+            result = 31 * result + Objects.hashCode(this.specifiedValues);
+            if (this.frozen) {
+                this.hash = result;
+            }
+        }
+        return result;
     }
 }
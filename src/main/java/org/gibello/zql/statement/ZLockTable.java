@@ -17,7 +17,12 @@
 
 package org.gibello.zql.statement;
 
+import org.gibello.zql.utils.ZFreezer;
+import org.gibello.zql.utils.ZNodeList;
+import org.gibello.zql.visitor.ZVisitor;
+
 import java.util.List;
+import java.util.Objects;
 
 /**
  * ZLockTable: an SQL LOCK TABLE statement.
@@ -47,6 +52,16 @@ public class ZLockTable implements ZStatement {
      */
     private List<?> tables = null;
 
+    /**
+     * Whether the statement is frozen (read-only).
+     */
+    private boolean frozen = false;
+
+    /**
+     * The structural hash, kept once the statement is frozen, 0 if it is not known.
+     */
+    private transient int hash;
+
     /**
      * Default constructor.
      */
@@ -58,6 +73,7 @@ public class ZLockTable implements ZStatement {
      * @param tables the tables.
      */
     public void addTables(final List<?> tables) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.tables = tables;
     }
 
@@ -79,6 +95,7 @@ public class ZLockTable implements ZStatement {
      * @param lc sets the lock mode.
      */
     public void setLockMode(final String lc) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.lockMode = lc;
     }
 
@@ -93,6 +110,66 @@ public class ZLockTable implements ZStatement {
      * @param noWait is no wait.
      */
     public void setNowait(final boolean noWait) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.noWait = noWait;
     }
+
+    /**
+     * Make this statement compact and read-only (see ZFreezer).
+     *
+     * @return this statement.
+     */
+    public ZLockTable freeze() {
+        if (!this.frozen) {
+            this.lockMode = ZFreezer.intern(this.lockMode);
+            if (this.tables != null) {
+                this.tables = ZNodeList.freeze(this.tables);
+            }
+            this.frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * Check whether this statement is frozen.
+     *
+     * @return whether it is read-only.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    @Override
+    public <R> R accept(final ZVisitor<R> visitor) {
+        return visitor.visitLockTable(this);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ZLockTable that = (ZLockTable) o;
+        if (this.frozen && that.frozen && this.hashCode() != that.hashCode()) {
+            return false;
+        }
+        return this.noWait == that.noWait && Objects.equals(this.lockMode, that.lockMode) && ZNodeList.equal(this.tables, that.tables);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = this.hash;
+        if (result == 0) {
+            result = ZNodeList.hash(this.tables);
+            result = 31 * result + Objects.hashCode(this.lockMode);
+            result = 31 * result + (this.noWait ? 1 : 0);
+            if (this.frozen) {
+                this.hash = result;
+            }
+        }
+        return result;
+    }
 }
@@ -17,6 +17,8 @@
 
 package org.gibello.zql.statement;
 
+import org.gibello.zql.visitor.ZVisitor;
+
 import java.io.Serializable;
 
 /**
@@ -27,4 +29,12 @@ import java.io.Serializable;
  */
 public interface ZStatement extends Serializable {
 
+    /**
+     * Call the method of a visitor that matches the type of this statement (double dispatch).
+     *
+     * @param visitor the visitor.
+     * @param <R>     the type of the result of the visitor.
+     * @return the result of the visitor.
+     */
+    <R> R accept(ZVisitor<R> visitor);
 }
@@ -17,6 +17,11 @@
 
 package org.gibello.zql.statement;
 
+import org.gibello.zql.utils.ZFreezer;
+import org.gibello.zql.visitor.ZVisitor;
+
+import java.util.Objects;
+
 /**
  * ZTransactStmt: an SQL statement that concerns database transactions (example: COMMIT, ROLLBACK, SET TRANSACTION).
  *
@@ -45,6 +50,16 @@ public class ZTransactStmt implements ZStatement {
      */
     private boolean readOnly = false;
 
+    /**
+     * Whether the statement is frozen (read-only).
+     */
+    private boolean frozen = false;
+
+    /**
+     * The structural hash, kept once the statement is frozen, 0 if it is not known.
+     */
+    private transient int hash;
+
     /**
      * Transaction statement constructor.
      *
@@ -69,6 +84,7 @@ public class ZTransactStmt implements ZStatement {
      * @param comment the comment.
      */
     public void setComment(final String comment) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.comment = comment;
     }
 
@@ -85,6 +101,7 @@ public class ZTransactStmt implements ZStatement {
      * @param readOnly sets read only.
      */
     public void setReadOnly(final boolean readOnly) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.readOnly = readOnly;
     }
 
@@ -99,6 +116,64 @@ public class ZTransactStmt implements ZStatement {
      * @param statement the statement to set
      */
     public void setStatement(final String statement) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.statement = statement;
     }
+
+    /**
+     * Make this statement compact and read-only (see ZFreezer).
+     *
+     * @return this statement.
+     */
+    public ZTransactStmt freeze() {
+        if (!this.frozen) {
+            this.statement = ZFreezer.intern(this.statement);
+            this.comment = ZFreezer.intern(this.comment);
+            this.frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * Check whether this statement is frozen.
+     *
+     * @return whether it is read-only.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    @Override
+    public <R> R accept(final ZVisitor<R> visitor) {
+        return visitor.visitTransaction(this);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ZTransactStmt that = (ZTransactStmt) o;
+        if (this.frozen && that.frozen && this.hashCode() != that.hashCode()) {
+            return false;
+        }
+        return this.readOnly == that.readOnly && Objects.equals(this.statement, that.statement) && Objects.equals(this.comment, that.comment);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = this.hash;
+        if (result == 0) {
+            result = Objects.hashCode(this.statement);
+            result = 31 * result + Objects.hashCode(this.comment);
+            result = 31 * result + (this.readOnly ? 1 : 0);
+            if (this.frozen) {
+                this.hash = result;
+            }
+        }
+        return result;
+    }
 }
@@ -18,10 +18,16 @@
 package org.gibello.zql.statement;
 
 import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.unparse.ZUnparser;
+import org.gibello.zql.utils.ZFreezer;
+import org.gibello.zql.utils.ZNodeList;
+import org.gibello.zql.visitor.ZVisitor;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
-import java.util.Vector;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * ZUpdate: an SQL UPDATE statement.
@@ -47,7 +53,7 @@ public class ZUpdate implements ZStatement {
     private String tableAlias = null;
 
     /**
-     * Set values.
+     * Set values, null once frozen.
      */
     private Hashtable<String, ZExp> setValues;
 
@@ -57,9 +63,29 @@ public class ZUpdate implements ZStatement {
     private ZExp whereClause = null;
 
     /**
-     * Columns vector.
+     * Columns, in the order of the SET clause.
      */
-    private Vector<String> tableColumns = null;
+    private List<String> tableColumns = null;
+
+    /**
+     * Values of the columns once frozen, in the order of tableColumns.
+     */
+    private ZExp[] columnValues = null;
+
+    /**
+     * Number of distinct columns once frozen.
+     */
+    private int columnCount = 0;
+
+    /**
+     * Whether the statement is frozen (read-only).
+     */
+    private boolean frozen = false;
+
+    /**
+     * The structural hash, kept once the statement is frozen, 0 if it is not known.
+     */
+    private transient int hash;
 
     /**
      * Create an UPDATE statement on a given table.
@@ -94,6 +120,7 @@ public class ZUpdate implements ZStatement {
      * @param tableAlias the table alias.
      */
     public void setAlias(final String tableAlias) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.tableAlias = tableAlias;
     }
 
@@ -104,6 +131,7 @@ public class ZUpdate implements ZStatement {
      *                  example, the values may be ZConstant objects (like "Smith") or more complex SQL Expressions.
      */
     public void addSet(final Hashtable<String, ZExp> setValues) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.setValues = setValues;
     }
 
@@ -111,10 +139,17 @@ public class ZUpdate implements ZStatement {
      * Get the whole SET... clause
      *
      * @return A Hashtable, where keys are column names (the columns to update), and values are ZExp objects (Expressions that specify
-     * column values: for example, ZConstant objects like "Smith").
+     * column values: for example, ZConstant objects like "Smith"). Once the statement is frozen, this is a copy.
      */
     public Hashtable<String, ZExp> getSet() {
-        return this.setValues;
+        if (!this.frozen) {
+            return this.setValues;
+        }
+        final Hashtable<String, ZExp> copy = new Hashtable<>();
+        for (int i = 0; i < this.columnValues.length; i++) {
+            copy.put(this.tableColumns.get(i), this.columnValues[i]);
+        }
+        return copy;
     }
 
     /**
@@ -124,6 +159,7 @@ public class ZUpdate implements ZStatement {
      * @param val The column value
      */
     public void addColumnUpdate(final String col, final ZExp val) {
+        ZFreezer.checkNotFrozen(this.frozen);
         if (this.setValues == null) {
             this.setValues = new Hashtable<>();
         }
@@ -131,10 +167,10 @@ public class ZUpdate implements ZStatement {
         this.setValues.put(col, val);
 
         if (this.tableColumns == null) {
-            this.tableColumns = new Vector<>();
+            this.tableColumns = new ArrayList<>();
         }
 
-        this.tableColumns.addElement(col);
+        this.tableColumns.add(col);
     }
 
     /**
@@ -144,7 +180,15 @@ public class ZUpdate implements ZStatement {
      * @return a ZExp, like a ZConstant representing a value, or a more complex SQL expression.
      */
     public ZExp getColumnUpdate(final String col) {
-        return this.setValues.get(col);
+        if (!this.frozen) {
+            return this.setValues.get(col);
+        }
+        for (int i = 0; i < this.columnValues.length; i++) {
+            if (this.tableColumns.get(i).equals(col)) {
+                return this.columnValues[i];
+            }
+        }
+        return null;
     }
 
     /**
@@ -156,12 +200,10 @@ public class ZUpdate implements ZStatement {
      * @return a ZExp, like a ZConstant representing a value, or a more complex SQL expression.
      */
     public ZExp getColumnUpdate(final int index) {
-        ZExp result;
-
-        final String col = this.tableColumns.elementAt(index);
-        result = this.setValues.get(col);
-
-        return result;
+        if (this.frozen) {
+            return this.columnValues[index];
+        }
+        return this.setValues.get(this.tableColumns.get(index));
     }
 
     /**
@@ -173,7 +215,18 @@ public class ZUpdate implements ZStatement {
      * @return The corresponding column name.
      */
     public String getColumnUpdateName(final int index) {
-        return this.tableColumns.elementAt(index);
+        return this.tableColumns.get(index);
+    }
+
+    /**
+     * Get the names of the updated columns, in the order of the SET... clause.<br>
+     * WARNING: This method will work only if column/value pairs have been inserted using addColumnUpdate() (or if the statement is
+     * frozen) - otherwise it is not possible to guess what the right order is, and null will be returned.
+     *
+     * @return The column names.
+     */
+    public List<String> getColumnUpdateNames() {
+        return this.tableColumns;
     }
 
     /**
@@ -182,7 +235,10 @@ public class ZUpdate implements ZStatement {
      * @return the number of pairs in the SET clause.
      */
     public int getColumnUpdateCount() {
-        return this.setValues.size();
+        if (this.frozen) {
+            return this.columnCount;
+        }
+        return this.setValues == null ? 0 : this.setValues.size();
     }
 
     /**
@@ -191,6 +247,7 @@ public class ZUpdate implements ZStatement {
      * @param whereExpr An SQL Expression compatible with a WHERE... clause.
      */
     public void addWhere(final ZExp whereExpr) {
+        ZFreezer.checkNotFrozen(this.frozen);
         this.whereClause = whereExpr;
     }
 
@@ -203,38 +260,126 @@ public class ZUpdate implements ZStatement {
         return this.whereClause;
     }
 
-    @Override
-    public String toString() {
-        final StringBuilder buf = new StringBuilder("update " + this.tableName);
-        if (this.tableAlias != null) {
-            buf.append(" ").append(this.tableAlias);
+    /**
+     * Make this statement compact and read-only (see ZFreezer): the SET clause is kept as arrays of columns and values, in the order of
+     * the clause.
+     *
+     * @return this statement.
+     */
+    public ZUpdate freeze() {
+        if (!this.frozen) {
+            final List<String> columns = new ArrayList<>();
+            if (this.tableColumns != null) {
+                columns.addAll(this.tableColumns);
+            } else if (this.setValues != null) {
+                final Enumeration<String> e = this.setValues.keys();
+                while (e.hasMoreElements()) {
+                    columns.add(e.nextElement());
+                }
+            }
+            this.columnValues = new ZExp[columns.size()];
+            for (int i = 0; i < this.columnValues.length; i++) {
+                this.columnValues[i] = ZFreezer.freeze(this.setValues.get(columns.get(i)));
+            }
+            this.columnCount = this.setValues == null ? 0 : this.setValues.size();
+            this.tableColumns = ZNodeList.freeze(columns);
+            this.setValues = null;
+            this.tableName = ZFreezer.intern(this.tableName);
+            this.tableAlias = ZFreezer.intern(this.tableAlias);
+            this.whereClause = ZFreezer.freeze(this.whereClause);
+            this.frozen = true;
         }
+        return this;
+    }
 
-        buf.append(" set ");
+    /**
+     * Check whether this statement is frozen.
+     *
+     * @return whether it is read-only.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
 
-        Enumeration<String> e;
-        if (this.tableColumns != null) {
-            e = this.tableColumns.elements();
-        } else {
-            e = this.setValues.keys();
-        }
+    @Override
+    public <R> R accept(final ZVisitor<R> visitor) {
+        return visitor.visitUpdate(this);
+    }
 
-        boolean first = true;
-        while (e.hasMoreElements()) {
-            final String key = e.nextElement();
+    @Override
+    public String toString() {
+        return ZUnparser.render(this);
+    }
 
-            if (!first) {
-                buf.append(", ");
+    /**
+     * Compare the SET... clause with the one of another statement: in order if both orders are known, as maps otherwise.
+     *
+     * @param that the other statement.
+     * @return whether the clauses are equal.
+     */
+    private boolean sameColumnUpdates(final ZUpdate that) {
+        if (this.tableColumns == null || that.tableColumns == null) {
+            return Objects.equals(this.getSet(), that.getSet());
+        }
+        if (!ZNodeList.equal(this.tableColumns, that.tableColumns)) {
+            return false;
+        }
+        for (int i = 0; i < this.tableColumns.size(); i++) {
+            if (!Objects.equals(this.getColumnUpdate(i), that.getColumnUpdate(i))) {
+                return false;
             }
+        }
+        return true;
+    }
 
-            buf.append(key).append("=").append(this.setValues.get(key).toString());
-            first = false;
+    /**
+     * Hash the SET... clause like a map (its order is only known for some statements): equal clauses have the same hash.
+     *
+     * @return the hash.
+     */
+    private int columnUpdatesHash() {
+        if (this.tableColumns == null) {
+            return Objects.hashCode(this.getSet());
         }
+        int result = 0;
+        for (int i = 0; i < this.tableColumns.size(); i++) {
+            final String column = this.tableColumns.get(i);
+            // A column set twice is only once in the map
+            if (this.tableColumns.indexOf(column) == i) {
+                result += column.hashCode() ^ Objects.hashCode(this.getColumnUpdate(i));
+            }
+        }
+        return result;
+    }
 
-        if (this.whereClause != null) {
-            buf.append(" where ").append(this.whereClause.toString());
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
         }
+        final ZUpdate that = (ZUpdate) o;
+        if (this.frozen && that.frozen && this.hashCode() != that.hashCode()) {
+            return false;
+        }
+        return Objects.equals(this.tableName, that.tableName) && Objects.equals(this.tableAlias, that.tableAlias)
+                && Objects.equals(this.whereClause, that.whereClause) && this.sameColumnUpdates(that);
+    }
 
-        return buf.toString();
+    @Override
+    public int hashCode() {
+        int result = this.hash;
+        if (result == 0) {
+            result = Objects.hashCode(this.tableName);
+            result = 31 * result + Objects.hashCode(this.tableAlias);
+            result = 31 * result + Objects.hashCode(this.whereClause);
+            result = 31 * result + this.columnUpdatesHash();
+            if (this.frozen) {
+                this.hash = result;
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,174 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.template;
+
+import org.gibello.zql.expression.ZParameter;
+
+import java.util.Arrays;
+
+/**
+ * ZBindings: the values of the parameters of a template for one execution.<br>
+ * Values are set by index (from 1) or by name (all the parameters with that name). A null value is the SQL NULL; a parameter without
+ * value is unbound. Bindings are not thread-safe: each thread (or execution) has its own.
+ */
+public final class ZBindings {
+
+    /**
+     * The template.
+     */
+    private final ZTemplate template;
+
+    /**
+     * The values, by index (from 1, so the value of index i is at i - 1).
+     */
+    private final Object[] values;
+
+    /**
+     * Whether each parameter has a value.
+     */
+    private final boolean[] bound;
+
+    /**
+     * Create bindings with no value.
+     *
+     * @param template the template.
+     */
+    ZBindings(final ZTemplate template) {
+        this.template = template;
+        this.values = new Object[template.getParameterCount()];
+        this.bound = new boolean[this.values.length];
+    }
+
+    /**
+     * Get the template.
+     *
+     * @return the template.
+     */
+    public ZTemplate getTemplate() {
+        return this.template;
+    }
+
+    /**
+     * Set the value of a parameter.
+     *
+     * @param index the index of the parameter, from 1.
+     * @param value the value, null for NULL.
+     * @return these bindings.
+     */
+    public ZBindings set(final int index, final Object value) {
+        this.check(index);
+        this.values[index - 1] = value;
+        this.bound[index - 1] = true;
+        return this;
+    }
+
+    /**
+     * Set the value of all the parameters with a name.
+     *
+     * @param name  the name of the parameters, without colon.
+     * @param value the value, null for NULL.
+     * @return these bindings.
+     */
+    public ZBindings set(final String name, final Object value) {
+        final ZParameter[] parameters = this.template.parameters();
+        boolean found = false;
+        for (int i = 0; i < parameters.length; i++) {
+            if (name.equals(parameters[i].getName())) {
+                this.values[i] = value;
+                this.bound[i] = true;
+                found = true;
+            }
+        }
+        if (!found) {
+            throw new IllegalArgumentException("No parameter :" + name);
+        }
+        return this;
+    }
+
+    /**
+     * Check whether a parameter has a value.
+     *
+     * @param index the index of the parameter, from 1.
+     * @return whether it has a value (possibly null).
+     */
+    public boolean isBound(final int index) {
+        this.check(index);
+        return this.bound[index - 1];
+    }
+
+    /**
+     * Check whether all the parameters have a value.
+     *
+     * @return whether all the parameters have a value.
+     */
+    public boolean isComplete() {
+        for (final boolean b : this.bound) {
+            if (!b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the value of a parameter.
+     *
+     * @param index the index of the parameter, from 1.
+     * @return the value, null for NULL.
+     * @throws IllegalStateException if the parameter has no value.
+     */
+    public Object get(final int index) {
+        if (!this.isBound(index)) {
+            throw new IllegalStateException("Unbound parameter " + index + " (" + this.template.getParameter(index) + ")");
+        }
+        return this.values[index - 1];
+    }
+
+    /**
+     * Get the value of a parameter of the template.
+     *
+     * @param parameter the parameter.
+     * @return the value, null for NULL.
+     * @throws IllegalStateException if the parameter has no value.
+     */
+    public Object get(final ZParameter parameter) {
+        return this.get(parameter.getIndex());
+    }
+
+    /**
+     * Remove all the values, to reuse the bindings for another execution.
+     *
+     * @return these bindings.
+     */
+    public ZBindings clear() {
+        Arrays.fill(this.values, null);
+        Arrays.fill(this.bound, false);
+        return this;
+    }
+
+    /**
+     * Check the index of a parameter.
+     *
+     * @param index the index, from 1.
+     */
+    private void check(final int index) {
+        if (index < 1 || index > this.values.length) {
+            throw new IndexOutOfBoundsException("Parameter " + index + ", count " + this.values.length);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.template;
+
+import org.gibello.zql.expression.ZParameter;
+import org.gibello.zql.statement.ZStatement;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ZTemplate: a parsed statement with parameters ("?" or ":name"), and the list of these parameters.<br>
+ * The statement is parsed once (see ZqlParser.readTemplate()); each execution gets its values from a ZBindings created by
+ * newBindings(), without parsing again or copying the statement. A template is immutable, and can be shared between threads as long as
+ * its statement is not modified (the statements of ZqlParser.readTemplate() are frozen).
+ */
+public final class ZTemplate {
+
+    /**
+     * The statement.
+     */
+    private final ZStatement statement;
+
+    /**
+     * The parameters of the statement, by index (from 1, so the parameter of index i is at i - 1).
+     */
+    private final ZParameter[] parameters;
+
+    /**
+     * Create a template.
+     *
+     * @param statement  the statement.
+     * @param parameters the parameters of the statement, in the order of their indexes (1, 2, 3...).
+     */
+    public ZTemplate(final ZStatement statement, final List<ZParameter> parameters) {
+        this.statement = statement;
+        this.parameters = parameters.toArray(new ZParameter[parameters.size()]);
+        for (int i = 0; i < this.parameters.length; i++) {
+            if (this.parameters[i].getIndex() != i + 1) {
+                throw new IllegalArgumentException("Parameter " + this.parameters[i] + " has index " + this.parameters[i].getIndex()
+                        + " at position " + (i + 1));
+            }
+        }
+    }
+
+    /**
+     * Get the statement.
+     *
+     * @return the statement, with its parameters.
+     */
+    public ZStatement getStatement() {
+        return this.statement;
+    }
+
+    /**
+     * Get the number of parameters.
+     *
+     * @return the number of parameters (a name used twice counts twice).
+     */
+    public int getParameterCount() {
+        return this.parameters.length;
+    }
+
+    /**
+     * Get a parameter.
+     *
+     * @param index the index of the parameter, from 1.
+     * @return the parameter.
+     */
+    public ZParameter getParameter(final int index) {
+        if (index < 1 || index > this.parameters.length) {
+            throw new IndexOutOfBoundsException("Parameter " + index + ", count " + this.parameters.length);
+        }
+        return this.parameters[index - 1];
+    }
+
+    /**
+     * Get the parameters.
+     *
+     * @return the parameters, in the order of their indexes.
+     */
+    public List<ZParameter> getParameters() {
+        return Collections.unmodifiableList(Arrays.asList(this.parameters));
+    }
+
+    /**
+     * Create the bindings of an execution. They can be cleared and reused for the next execution.
+     *
+     * @return bindings with no value.
+     */
+    public ZBindings newBindings() {
+        return new ZBindings(this);
+    }
+
+    /**
+     * Get the parameters, not copied.
+     *
+     * @return the parameters.
+     */
+    ZParameter[] parameters() {
+        return this.parameters;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(this.statement);
+    }
+}
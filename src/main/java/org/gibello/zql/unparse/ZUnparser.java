@@ -0,0 +1,738 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.unparse;
+
+import org.gibello.zql.ZGroupBy;
+import org.gibello.zql.ZOrderBy;
+import org.gibello.zql.alias.ZAliasedName;
+import org.gibello.zql.expression.ZConstant;
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.expression.ZParameter;
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.statement.ZDelete;
+import org.gibello.zql.statement.ZInsert;
+import org.gibello.zql.statement.ZLockTable;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.statement.ZTransactStmt;
+import org.gibello.zql.statement.ZUpdate;
+import org.gibello.zql.utils.ZCommonConstants;
+import org.gibello.zql.utils.ZUtils;
+import org.gibello.zql.visitor.ZVisitor;
+
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.List;
+
+/**
+ * ZUnparser: writes statements and expressions back to SQL, in a single pass over the tree.<br>
+ * The whole tree is written to one Appendable (a StringBuilder, or a buffered Writer for large statements): no String is built for
+ * the nodes, so the time and memory used are linear in the size of the output. The SQL written is the toString() of the nodes, which
+ * use this class. LOCK TABLE and transaction statements, which have no toString(), are written in upper case, like their lock mode
+ * and statement name.<br>
+ * A ZUnparser is not thread safe, but it is cheap to create.
+ */
+public final class ZUnparser {
+
+    /**
+     * The output.
+     */
+    private final Appendable out;
+
+    /**
+     * The visitor calling the write method that matches the type of a node.
+     */
+    private final ZVisitor<Void> writer = new Writer();
+
+    /**
+     * Create an unparser.
+     *
+     * @param out the output.
+     */
+    public ZUnparser(final Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * Write a statement.
+     *
+     * @param statement the statement.
+     * @return this unparser.
+     * @throws IOException if the output fails.
+     */
+    public ZUnparser unparse(final ZStatement statement) throws IOException {
+        try {
+            statement.accept(this.writer);
+        } catch (final OutputFailure e) {
+            throw e.getCause();
+        }
+        return this;
+    }
+
+    /**
+     * Write an expression.
+     *
+     * @param exp the expression.
+     * @return this unparser.
+     * @throws IOException if the output fails.
+     */
+    public ZUnparser unparse(final ZExp exp) throws IOException {
+        try {
+            exp.accept(this.writer);
+        } catch (final OutputFailure e) {
+            throw e.getCause();
+        }
+        return this;
+    }
+
+    /**
+     * Write a query (a query is both an expression and a statement).
+     *
+     * @param query the query.
+     * @return this unparser.
+     * @throws IOException if the output fails.
+     */
+    public ZUnparser unparse(final ZQuery query) throws IOException {
+        return this.unparse((ZExp) query);
+    }
+
+    /**
+     * Write a GROUP BY...HAVING clause.
+     *
+     * @param groupBy the clause.
+     * @return this unparser.
+     * @throws IOException if the output fails.
+     */
+    public ZUnparser unparse(final ZGroupBy groupBy) throws IOException {
+        try {
+            this.groupBy(groupBy);
+        } catch (final OutputFailure e) {
+            throw e.getCause();
+        }
+        return this;
+    }
+
+    /**
+     * Write an item of an ORDER BY clause.
+     *
+     * @param orderBy the item.
+     * @return this unparser.
+     * @throws IOException if the output fails.
+     */
+    public ZUnparser unparse(final ZOrderBy orderBy) throws IOException {
+        try {
+            this.orderBy(orderBy);
+        } catch (final OutputFailure e) {
+            throw e.getCause();
+        }
+        return this;
+    }
+
+    /**
+     * Get the SQL of a statement.
+     *
+     * @param statement the statement.
+     * @return the SQL.
+     */
+    public static String render(final ZStatement statement) {
+        final StringBuilder buf = new StringBuilder();
+        statement.accept(new ZUnparser(buf).writer);
+        return buf.toString();
+    }
+
+    /**
+     * Get the SQL of an expression.
+     *
+     * @param exp the expression.
+     * @return the SQL.
+     */
+    public static String render(final ZExp exp) {
+        final StringBuilder buf = new StringBuilder();
+        exp.accept(new ZUnparser(buf).writer);
+        return buf.toString();
+    }
+
+    /**
+     * Get the SQL of a query.
+     *
+     * @param query the query.
+     * @return the SQL.
+     */
+    public static String render(final ZQuery query) {
+        return render((ZExp) query);
+    }
+
+    /**
+     * Get the SQL of a GROUP BY...HAVING clause.
+     *
+     * @param groupBy the clause.
+     * @return the SQL.
+     */
+    public static String render(final ZGroupBy groupBy) {
+        final StringBuilder buf = new StringBuilder();
+        new ZUnparser(buf).groupBy(groupBy);
+        return buf.toString();
+    }
+
+    /**
+     * Get the SQL of an item of an ORDER BY clause.
+     *
+     * @param orderBy the item.
+     * @return the SQL.
+     */
+    public static String render(final ZOrderBy orderBy) {
+        final StringBuilder buf = new StringBuilder();
+        new ZUnparser(buf).orderBy(orderBy);
+        return buf.toString();
+    }
+
+    /**
+     * Write text.
+     *
+     * @param text the text.
+     */
+    private void write(final CharSequence text) {
+        try {
+            this.out.append(text);
+        } catch (final IOException e) {
+            throw new OutputFailure(e);
+        }
+    }
+
+    /**
+     * Write a character.
+     *
+     * @param c the character.
+     */
+    private void write(final char c) {
+        try {
+            this.out.append(c);
+        } catch (final IOException e) {
+            throw new OutputFailure(e);
+        }
+    }
+
+    /**
+     * Write an expression.
+     *
+     * @param exp the expression.
+     */
+    private void exp(final ZExp exp) {
+        exp.accept(this.writer);
+    }
+
+    /**
+     * Write a constant: a string is quoted, other constants are written as they are.
+     *
+     * @param constant the constant.
+     */
+    private void constant(final ZConstant constant) {
+        if (constant.getType() == ZConstant.STRING) {
+            this.write('\'');
+            this.write(constant.getValue());
+            this.write('\'');
+        } else {
+            this.write(constant.getValue());
+        }
+    }
+
+    /**
+     * Write an expression: an operator and its operands.
+     *
+     * @param expression the expression.
+     */
+    private void expression(final ZExpression expression) {
+        final String operator = expression.getOperator();
+        if (operator.equals("?")) {
+            // For prepared columns ("?")
+            this.write(operator);
+            return;
+        }
+        if (expression.isFunction() || ZUtils.isCustomFunction(operator) >= 0) {
+            this.function(expression);
+            return;
+        }
+
+        final boolean parenthesis = needPar(operator);
+        if (parenthesis) {
+            this.write('(');
+        }
+        final int nb = expression.nbOperands();
+        if (nb == 1) {
+            this.unary(operator, expression.getOperand(0));
+        } else if (nb == ZCommonConstants.MAGIC_NUMBER_3 && isBetween(operator)) {
+            this.exp(expression.getOperand(0));
+            this.write(' ');
+            this.write(operator);
+            this.write(' ');
+            this.exp(expression.getOperand(1));
+            this.write(" AND ");
+            this.exp(expression.getOperand(ZCommonConstants.MAGIC_NUMBER_2));
+        } else {
+            this.operands(operator, expression, nb);
+        }
+        if (parenthesis) {
+            this.write(')');
+        }
+    }
+
+    /**
+     * Write an operator with one operand.
+     *
+     * @param operator the operator.
+     * @param operand  the operand.
+     */
+    private void unary(final String operator, final ZExp operand) {
+        if (operand instanceof ZConstant && ZUtils.isAggregate(operator)) {
+            // Operator may be an aggregate function (MAX, SUM...)
+            this.write(operator);
+            this.write('(');
+            this.exp(operand);
+            this.write(')');
+        } else if (operand instanceof ZQuery) {
+            this.write(operator);
+            this.write(" (");
+            this.exp(operand);
+            this.write(')');
+        } else if (operator.equals(ZCommonConstants.IS_NULL) || operator.equals(ZCommonConstants.IS_NOT_NULL)) {
+            this.exp(operand);
+            this.write(' ');
+            this.write(operator);
+        } else if (operator.equals(ZCommonConstants.COMMA)) {
+            // "," = list of values, here just one single value
+            this.exp(operand);
+        } else {
+            this.write(operator);
+            this.write(' ');
+            this.exp(operand);
+        }
+    }
+
+    /**
+     * Write an operator between its operands, or an IN list.
+     *
+     * @param operator   the operator.
+     * @param expression the expression.
+     * @param nb         the number of operands.
+     */
+    private void operands(final String operator, final ZExpression expression, final int nb) {
+        final boolean inOperator = operator.equals("IN") || operator.equals("NOT IN");
+        for (int i = 0; i < nb; i++) {
+            if (inOperator && i == 1) {
+                this.write(' ');
+                this.write(operator);
+                this.write(" (");
+            }
+            final ZExp operand = expression.getOperand(i);
+            if (operand instanceof ZQuery && !inOperator) {
+                this.write('(');
+                this.exp(operand);
+                this.write(')');
+            } else {
+                this.exp(operand);
+            }
+            if (i < nb - 1) {
+                if (operator.equals(ZCommonConstants.COMMA) || (inOperator && i > 0)) {
+                    this.write(", ");
+                } else if (!inOperator) {
+                    this.write(' ');
+                    this.write(operator);
+                    this.write(' ');
+                }
+            }
+        }
+        if (inOperator) {
+            this.write(')');
+        }
+    }
+
+    /**
+     * Write a function call.
+     *
+     * @param expression the call.
+     */
+    private void function(final ZExpression expression) {
+        this.write(expression.getOperator());
+        this.write('(');
+        final int nb = expression.nbOperands();
+        for (int i = 0; i < nb; i++) {
+            if (i > 0) {
+                this.write(',');
+            }
+            this.exp(expression.getOperand(i));
+        }
+        this.write(')');
+    }
+
+    /**
+     * Write a query.
+     *
+     * @param query the query.
+     */
+    private void query(final ZQuery query) {
+        this.write("select ");
+        if (query.isDistinct()) {
+            this.write("distinct ");
+        }
+        this.items(query.getSelect());
+        this.write(" from ");
+        this.items(query.getFrom());
+        if (query.getWhere() != null) {
+            this.write(" where ");
+            this.exp(query.getWhere());
+        }
+        if (query.getGroupBy() != null) {
+            this.write(' ');
+            this.groupBy(query.getGroupBy());
+        }
+        if (query.getSet() != null) {
+            this.write(' ');
+            this.exp(query.getSet());
+        }
+        if (query.getOrderBy() != null) {
+            this.write(" order by ");
+            this.items(query.getOrderBy());
+        }
+        if (query.isForUpdate()) {
+            this.write(" for update");
+        }
+    }
+
+    /**
+     * Write a GROUP BY...HAVING clause.
+     *
+     * @param groupBy the clause.
+     */
+    private void groupBy(final ZGroupBy groupBy) {
+        this.write("group by ");
+        this.items(groupBy.getGroupBy());
+        if (groupBy.getHaving() != null) {
+            this.write(" having ");
+            this.exp(groupBy.getHaving());
+        }
+    }
+
+    /**
+     * Write an item of an ORDER BY clause.
+     *
+     * @param orderBy the item.
+     */
+    private void orderBy(final ZOrderBy orderBy) {
+        this.exp(orderBy.getExpression());
+        this.write(orderBy.getAscOrder() ? " ASC" : " DESC");
+    }
+
+    /**
+     * Write the items of a clause, separated by commas.
+     *
+     * @param items the items: expressions, SELECT or FROM items, ORDER BY items or names.
+     */
+    private void items(final List<?> items) {
+        final int size = items.size();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                this.write(", ");
+            }
+            this.item(items.get(i));
+        }
+    }
+
+    /**
+     * Write an item of a clause.
+     *
+     * @param item the item.
+     */
+    private void item(final Object item) {
+        if (item instanceof ZExp) {
+            this.exp((ZExp) item);
+        } else if (item instanceof ZAliasedName) {
+            // The text of a SELECT item is kept by the item, the expression was written when it was set
+            final ZAliasedName name = (ZAliasedName) item;
+            this.write(name.getStrform());
+            if (name.getAlias() != null) {
+                this.write(' ');
+                this.write(name.getAlias());
+            }
+        } else if (item instanceof ZOrderBy) {
+            this.orderBy((ZOrderBy) item);
+        } else {
+            this.write(String.valueOf(item));
+        }
+    }
+
+    /**
+     * Write an INSERT statement.
+     *
+     * @param insert the statement.
+     */
+    private void insert(final ZInsert insert) {
+        this.write("insert into ");
+        this.write(insert.getTable());
+        final List<?> columns = insert.getColumns();
+        if (columns != null && columns.size() > 0) {
+            this.write('(');
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    this.write(',');
+                }
+                this.item(columns.get(i));
+            }
+            this.write(')');
+        }
+        this.write(' ');
+        if (insert.getValues() != null) {
+            this.write("values ");
+        }
+        final ZExp values = insert.getValueSpec();
+        if (values instanceof ZExpression && opensParenthesis((ZExpression) values)) {
+            this.exp(values);
+        } else if (values instanceof ZQuery) {
+            this.write(" (");
+            this.exp(values);
+            this.write(')');
+        } else {
+            // Rare: the SQL must be known to tell whether it starts with a parenthesis
+            final String text = render(values);
+            if (text.startsWith(ZCommonConstants.LEFT_BRACKET)) {
+                this.write(text);
+            } else {
+                this.write(" (");
+                this.write(text);
+                this.write(')');
+            }
+        }
+    }
+
+    /**
+     * Write an UPDATE statement.
+     *
+     * @param update the statement.
+     */
+    private void update(final ZUpdate update) {
+        this.write("update ");
+        this.write(update.getTable());
+        if (update.getAlias() != null) {
+            this.write(' ');
+            this.write(update.getAlias());
+        }
+        this.write(" set ");
+        final List<String> columns = update.getColumnUpdateNames();
+        if (columns != null) {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    this.write(", ");
+                }
+                this.write(columns.get(i));
+                this.write('=');
+                this.exp(update.getColumnUpdate(i));
+            }
+        } else {
+            // Without addColumnUpdate(), the order of the columns is the order of the table
+            final Hashtable<String, ZExp> set = update.getSet();
+            final Enumeration<String> e = set.keys();
+            boolean first = true;
+            while (e.hasMoreElements()) {
+                final String key = e.nextElement();
+                if (!first) {
+                    this.write(", ");
+                }
+                this.write(key);
+                this.write('=');
+                this.exp(set.get(key));
+                first = false;
+            }
+        }
+        if (update.getWhere() != null) {
+            this.write(" where ");
+            this.exp(update.getWhere());
+        }
+    }
+
+    /**
+     * Write a DELETE statement.
+     *
+     * @param delete the statement.
+     */
+    private void delete(final ZDelete delete) {
+        this.write("delete ");
+        if (delete.getWhere() != null) {
+            this.write("from ");
+        }
+        this.write(delete.getTable());
+        if (delete.getWhere() != null) {
+            this.write(" where ");
+            this.exp(delete.getWhere());
+        }
+    }
+
+    /**
+     * Write a LOCK TABLE statement.
+     *
+     * @param lock the statement.
+     */
+    private void lockTable(final ZLockTable lock) {
+        this.write("LOCK TABLE ");
+        this.items(lock.getTables());
+        this.write(" IN ");
+        this.write(lock.getLockMode());
+        this.write(" MODE");
+        if (lock.isNowait()) {
+            this.write(" NOWAIT");
+        }
+    }
+
+    /**
+     * Write a transaction statement.
+     *
+     * @param transaction the statement.
+     */
+    private void transaction(final ZTransactStmt transaction) {
+        this.write(transaction.getStatement());
+        if (transaction.getComment() != null) {
+            // The comment is kept with its quotes
+            this.write(" COMMENT ");
+            this.write(transaction.getComment());
+        }
+        if ("SET TRANSACTION".equals(transaction.getStatement())) {
+            this.write(transaction.isReadOnly() ? " READ ONLY" : " READ WRITE");
+        }
+    }
+
+    /**
+     * Check for the operators written without parenthesis.
+     *
+     * @param op the operator.
+     * @return false for ANY, ALL, UNION and the aggregates.
+     */
+    private static boolean needPar(final String op) {
+        return !(op.equalsIgnoreCase("ANY") || op.equalsIgnoreCase("ALL") || op.equalsIgnoreCase("UNION") || ZUtils.isAggregate(op));
+    }
+
+    /**
+     * Check for BETWEEN and NOT BETWEEN.
+     *
+     * @param op the operator.
+     * @return true if the operator ends with BETWEEN, in any case.
+     */
+    private static boolean isBetween(final String op) {
+        final String between = "BETWEEN";
+        return op.regionMatches(true, op.length() - between.length(), between, 0, between.length());
+    }
+
+    /**
+     * Check whether an expression is written in parenthesis, without writing it.
+     *
+     * @param expression the expression.
+     * @return true if the SQL of the expression starts with a parenthesis.
+     */
+    private static boolean opensParenthesis(final ZExpression expression) {
+        final String operator = expression.getOperator();
+        return !operator.equals("?") && !expression.isFunction() && ZUtils.isCustomFunction(operator) < 0 && needPar(operator);
+    }
+
+    /**
+     * An IOException of the output, thrown through the visitor.
+     */
+    private static final class OutputFailure extends RuntimeException {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Wrap an IOException.
+         *
+         * @param cause the exception.
+         */
+        OutputFailure(final IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * The visitor calling the write method that matches the type of a node.
+     */
+    private final class Writer implements ZVisitor<Void> {
+
+        @Override
+        public Void visitConstant(final ZConstant constant) {
+            ZUnparser.this.constant(constant);
+            return null;
+        }
+
+        @Override
+        public Void visitExpression(final ZExpression expression) {
+            ZUnparser.this.expression(expression);
+            return null;
+        }
+
+        @Override
+        public Void visitParameter(final ZParameter parameter) {
+            if (parameter.isNamed()) {
+                ZUnparser.this.write(':');
+                ZUnparser.this.write(parameter.getName());
+            } else {
+                ZUnparser.this.write('?');
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitQuery(final ZQuery query) {
+            ZUnparser.this.query(query);
+            return null;
+        }
+
+        @Override
+        public Void visitInsert(final ZInsert insert) {
+            ZUnparser.this.insert(insert);
+            return null;
+        }
+
+        @Override
+        public Void visitUpdate(final ZUpdate update) {
+            ZUnparser.this.update(update);
+            return null;
+        }
+
+        @Override
+        public Void visitDelete(final ZDelete delete) {
+            ZUnparser.this.delete(delete);
+            return null;
+        }
+
+        @Override
+        public Void visitLockTable(final ZLockTable lock) {
+            ZUnparser.this.lockTable(lock);
+            return null;
+        }
+
+        @Override
+        public Void visitTransaction(final ZTransactStmt transaction) {
+            ZUnparser.this.transaction(transaction);
+            return null;
+        }
+    }
+}
@@ -34,11 +34,21 @@ public class ZCommonConstants {
      */
     public static final String NULLABLE = "(null)";
 
+    /**
+     * Change of a frozen node error.
+     */
+    public static final String FROZEN_NODE = "Frozen node: it can not be changed";
+
     /**
      * Unknown column error.
      */
     public static final String ZEVAL_EXP_VALUE_UNKNOWN_COLUMN = "ZEval.evalExpValue(): unknown column ";
 
+    /**
+     * Parameter without value error.
+     */
+    public static final String ZEVAL_UNBOUND_PARAMETER = "ZEval.evalExpValue(): no value for parameter ";
+
     /**
      * Slash string.
      */
@@ -234,6 +244,51 @@ public class ZCommonConstants {
      */
     public static final String PARSE_EXCEPTION = "Parser not initialized: use initParser(InputStream);";
 
+    /**
+     * Invalid parser pool size error.
+     */
+    public static final String POOL_INVALID_SIZE = "ZqlParserPool: the pool size must be positive, got ";
+
+    /**
+     * Parser released to the wrong pool error.
+     */
+    public static final String POOL_FOREIGN_PARSER = "ZqlParserPool: released a parser that was not borrowed from this pool";
+
+    /**
+     * Interrupted while waiting for a parser error.
+     */
+    public static final String POOL_INTERRUPTED = "ZqlParserPool: interrupted while waiting for a parser";
+
+    /**
+     * Invalid parse cache bounds error.
+     */
+    public static final String CACHE_INVALID_BOUNDS = "ZqlParseCache: the maximum entries and weight must be positive";
+
+    /**
+     * Binary codec magic error.
+     */
+    public static final String CODEC_NOT_BINARY = "ZBinaryCodec: the data does not start with the binary format magic bytes";
+
+    /**
+     * Binary codec version error.
+     */
+    public static final String CODEC_UNSUPPORTED_VERSION = "ZBinaryCodec: unsupported binary format version ";
+
+    /**
+     * Binary codec corrupted data error.
+     */
+    public static final String CODEC_CORRUPTED = "ZBinaryCodec: corrupted data, ";
+
+    /**
+     * Binary codec node count error.
+     */
+    public static final String CODEC_NOT_SINGLE = "ZBinaryCodec: expected a single node, found ";
+
+    /**
+     * Binary codec unknown node error.
+     */
+    public static final String CODEC_UNSUPPORTED_NODE = "ZBinaryCodec: can not encode a node of class ";
+
     /**
      * Right bracket.
      */
@@ -0,0 +1,111 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.utils;
+
+import org.gibello.zql.ZGroupBy;
+import org.gibello.zql.ZOrderBy;
+import org.gibello.zql.alias.ZAliasedName;
+import org.gibello.zql.expression.ZConstant;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.statement.ZDelete;
+import org.gibello.zql.statement.ZInsert;
+import org.gibello.zql.statement.ZLockTable;
+import org.gibello.zql.statement.ZTransactStmt;
+import org.gibello.zql.statement.ZUpdate;
+
+import java.util.Collection;
+
+/**
+ * ZFreezer: makes a parsed tree compact and read-only, so that it can be cached and shared between threads.<br>
+ * Every node of the tree is frozen in place: its lists become exact-size ZNodeLists, its names and operators are interned (the same
+ * column or operator names are shared by all the trees), and its setters throw IllegalStateException. Freezing is done once, before
+ * the tree is shared; the tree must then be published safely (for example through a synchronized or concurrent map).
+ */
+public final class ZFreezer {
+
+    /**
+     * Default constructor.
+     */
+    private ZFreezer() {
+
+    }
+
+    /**
+     * Freeze a node of a tree, and its children.
+     *
+     * @param node the node: a statement, an expression, an item of a query, or a list of them. Other objects are left unchanged.
+     * @param <T>  the type of the node.
+     * @return the frozen node (a new list for a list, the node itself otherwise).
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T freeze(final T node) {
+        final Object frozen;
+        if (node instanceof ZExpression) {
+            frozen = ((ZExpression) node).freeze();
+        } else if (node instanceof ZConstant) {
+            frozen = ((ZConstant) node).freeze();
+        } else if (node instanceof ZQuery) {
+            frozen = ((ZQuery) node).freeze();
+        } else if (node instanceof ZAliasedName) {
+            frozen = ((ZAliasedName) node).freeze();
+        } else if (node instanceof ZGroupBy) {
+            frozen = ((ZGroupBy) node).freeze();
+        } else if (node instanceof ZOrderBy) {
+            frozen = ((ZOrderBy) node).freeze();
+        } else if (node instanceof ZInsert) {
+            frozen = ((ZInsert) node).freeze();
+        } else if (node instanceof ZUpdate) {
+            frozen = ((ZUpdate) node).freeze();
+        } else if (node instanceof ZDelete) {
+            frozen = ((ZDelete) node).freeze();
+        } else if (node instanceof ZLockTable) {
+            frozen = ((ZLockTable) node).freeze();
+        } else if (node instanceof ZTransactStmt) {
+            frozen = ((ZTransactStmt) node).freeze();
+        } else if (node instanceof Collection) {
+            frozen = ZNodeList.freeze((Collection<?>) node);
+        } else if (node instanceof String) {
+            frozen = ((String) node).intern();
+        } else {
+            frozen = node;
+        }
+        return (T) frozen;
+    }
+
+    /**
+     * Intern a name.
+     *
+     * @param name the name, may be null.
+     * @return the interned name, null for null.
+     */
+    public static String intern(final String name) {
+        return name == null ? null : name.intern();
+    }
+
+    /**
+     * Check that a node may be changed.
+     *
+     * @param frozen whether the node is frozen.
+     */
+    public static void checkNotFrozen(final boolean frozen) {
+        if (frozen) {
+            throw new IllegalStateException(ZCommonConstants.FROZEN_NODE);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.utils;
+
+/**
+ * ZFunctionRegistry: the custom functions known to a parser, with their number of parameters.<br>
+ * A registry may have a parent (usually the global registry), whose functions it also knows: a registry per parser or per session adds
+ * its own functions without changing the others. Names are case-insensitive.<br>
+ * Lookups read an immutable hash table through a volatile reference, without locking and without allocating; a registration copies
+ * the table. Registrations are expected to be rare compared with lookups.
+ */
+public final class ZFunctionRegistry {
+
+    /**
+     * The global registry, used by ZUtils and by the parsers without a registry of their own.
+     */
+    private static final ZFunctionRegistry GLOBAL = new ZFunctionRegistry(null);
+
+    /**
+     * The aggregate functions of SQL, always known.
+     */
+    private static final String[] AGGREGATES = {ZCommonConstants.SUM_OPERATOR, ZCommonConstants.AVG_OPERATOR,
+            ZCommonConstants.MAX_OPERATOR, ZCommonConstants.MIN_OPERATOR, ZCommonConstants.COUNT_OPERATOR};
+
+    /**
+     * The registry whose functions are also known, null if none.
+     */
+    private final ZFunctionRegistry parent;
+
+    /**
+     * The functions registered here. Never modified once published: a registration publishes a new table.
+     */
+    private volatile Table table = new Table(new String[8], new int[8], 0);
+
+    /**
+     * Create a registry.
+     *
+     * @param parent the registry whose functions are also known, null for none.
+     */
+    public ZFunctionRegistry(final ZFunctionRegistry parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Get the global registry.
+     *
+     * @return the global registry.
+     */
+    public static ZFunctionRegistry global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Create a registry knowing the global functions, and its own.
+     *
+     * @return the new registry.
+     */
+    public static ZFunctionRegistry scoped() {
+        return new ZFunctionRegistry(GLOBAL);
+    }
+
+    /**
+     * Get the parent registry.
+     *
+     * @return the registry whose functions are also known, null if none.
+     */
+    public ZFunctionRegistry getParent() {
+        return this.parent;
+    }
+
+    /**
+     * Register a function, or change its number of parameters.
+     *
+     * @param name     the name of the function.
+     * @param noParams the number of parameters, ZUtils.VARIABLE_PLIST for any number (a negative number counts as 1).
+     */
+    public synchronized void register(final String name, final int noParams) {
+        final char[] upper = new char[name.length()];
+        for (int i = 0; i < upper.length; i++) {
+            upper[i] = Character.toUpperCase(name.charAt(i));
+        }
+        final String key = new String(upper);
+        final Table current = this.table;
+        String[] names = current.names;
+        int[] params = current.params;
+        int size = current.size;
+        int slot = find(names, key, 0, key.length());
+        if (slot < 0) {
+            if ((size + 1) * 2 > names.length) {
+                names = new String[names.length * 2];
+                params = new int[names.length];
+                for (int i = 0; i < current.names.length; i++) {
+                    final String old = current.names[i];
+                    if (old != null) {
+                        final int free = -find(names, old, 0, old.length()) - 1;
+                        names[free] = old;
+                        params[free] = current.params[i];
+                    }
+                }
+            } else {
+                names = names.clone();
+                params = params.clone();
+            }
+            slot = -find(names, key, 0, key.length()) - 1;
+            size++;
+        } else {
+            names = names.clone();
+            params = params.clone();
+        }
+        names[slot] = key;
+        params[slot] = noParams < 0 ? 1 : noParams;
+        this.table = new Table(names, params, size);
+    }
+
+    /**
+     * Get the number of parameters of a custom function, looked up here then in the parent registries.
+     *
+     * @param name the name of the function, in any case.
+     * @return the number of parameters, ZUtils.VARIABLE_PLIST for any number, -1 if the function is unknown.
+     */
+    public int getParameterCount(final CharSequence name) {
+        if (name == null || name.length() < 1) {
+            return -1;
+        }
+        return this.lookup(name, 0, name.length());
+    }
+
+    /**
+     * Check whether a name is an aggregate function: SUM, AVG, MAX, MIN, COUNT, or a custom function. Blanks around the name are
+     * ignored.
+     *
+     * @param name the name, in any case.
+     * @return whether it is an aggregate function.
+     */
+    public boolean isAggregate(final CharSequence name) {
+        if (name == null) {
+            return false;
+        }
+        int from = 0;
+        int to = name.length();
+        while (from < to && name.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && name.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        for (final String aggregate : AGGREGATES) {
+            if (matches(aggregate, name, from, to)) {
+                return true;
+            }
+        }
+        return from < to && this.lookup(name, from, to) >= 0;
+    }
+
+    /**
+     * Look a function up, here then in the parent registries.
+     *
+     * @param name the name.
+     * @param from index of the first character of the name.
+     * @param to   index after the last character of the name.
+     * @return the number of parameters, -1 if the function is unknown.
+     */
+    private int lookup(final CharSequence name, final int from, final int to) {
+        for (ZFunctionRegistry registry = this; registry != null; registry = registry.parent) {
+            final Table current = registry.table;
+            final int slot = find(current.names, name, from, to);
+            if (slot >= 0) {
+                return current.params[slot];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the slot of a name in a hash table.
+     *
+     * @param table the table.
+     * @param name  the name.
+     * @param from  index of the first character of the name.
+     * @param to    index after the last character of the name.
+     * @return the slot of the name, or -(free slot) - 1 if it is not in the table.
+     */
+    private static int find(final String[] table, final CharSequence name, final int from, final int to) {
+        final int mask = table.length - 1;
+        int slot = hash(name, from, to) & mask;
+        while (table[slot] != null) {
+            if (matches(table[slot], name, from, to)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    /**
+     * Compute a case-insensitive hash of a name.
+     *
+     * @param name the name.
+     * @param from index of the first character of the name.
+     * @param to   index after the last character of the name.
+     * @return the hash.
+     */
+    private static int hash(final CharSequence name, final int from, final int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + Character.toUpperCase(name.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Compare a name with an upper case key, ignoring case.
+     *
+     * @param key  the key.
+     * @param name the name.
+     * @param from index of the first character of the name.
+     * @param to   index after the last character of the name.
+     * @return whether they are the same.
+     */
+    private static boolean matches(final String key, final CharSequence name, final int from, final int to) {
+        if (key.length() != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (key.charAt(i - from) != Character.toUpperCase(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An immutable hash table of functions.
+     */
+    private static final class Table {
+
+        /**
+         * Names of the functions, upper case, by open addressing (null for an empty slot).
+         */
+        private final String[] names;
+
+        /**
+         * Number of parameters of the functions, in the slots of their names.
+         */
+        private final int[] params;
+
+        /**
+         * The number of functions.
+         */
+        private final int size;
+
+        /**
+         * Create a table.
+         *
+         * @param names  names of the functions, by slot.
+         * @param params number of parameters of the functions, by slot.
+         * @param size   the number of functions.
+         */
+        private Table(final String[] names, final int[] params, final int size) {
+            this.names = names;
+            this.params = params;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.utils;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * ZNodeList: the read-only list of the children of a frozen node.<br>
+ * It holds exactly its elements in an array, with no spare capacity and no lock (unlike the Vectors used while parsing), and throws
+ * UnsupportedOperationException on any change. It equals any list with the same elements.
+ *
+ * @param <E> the type of the elements.
+ */
+public final class ZNodeList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The elements.
+     */
+    private final Object[] elements;
+
+    /**
+     * Create a list.
+     *
+     * @param elements the elements, not copied.
+     */
+    private ZNodeList(final Object[] elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * Copy a collection into a read-only list, freezing its elements (see ZFreezer).
+     *
+     * @param collection the collection.
+     * @param <E>        the type of the elements.
+     * @return the list, the collection itself if it is already a ZNodeList.
+     */
+    public static <E> ZNodeList<E> freeze(final Collection<E> collection) {
+        if (collection instanceof ZNodeList) {
+            return (ZNodeList<E>) collection;
+        }
+        final Object[] elements = collection.toArray();
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = ZFreezer.freeze(elements[i]);
+        }
+        return new ZNodeList<E>(elements);
+    }
+
+    /**
+     * Hash the elements of a list by index, without creating an iterator (frozen nodes keep the hash of their children).
+     *
+     * @param nodes the list, may be null.
+     * @return the hash, 0 for null.
+     */
+    public static int hash(final List<?> nodes) {
+        if (nodes == null) {
+            return 0;
+        }
+        int hash = 1;
+        final int size = nodes.size();
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + Objects.hashCode(nodes.get(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Compare the elements of two lists by index, without creating an iterator.
+     *
+     * @param first  the first list, may be null.
+     * @param second the second list, may be null.
+     * @return true if both are null, or have equal elements in the same order.
+     */
+    public static boolean equal(final List<?> first, final List<?> second) {
+        if (first == second) {
+            return true;
+        }
+        if (first == null || second == null || first.size() != second.size()) {
+            return false;
+        }
+        final int size = first.size();
+        for (int i = 0; i < size; i++) {
+            if (!Objects.equals(first.get(i), second.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(final int index) {
+        return (E) this.elements[index];
+    }
+
+    @Override
+    public int size() {
+        return this.elements.length;
+    }
+}
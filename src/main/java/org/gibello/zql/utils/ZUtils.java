@@ -17,8 +17,6 @@
 
 package org.gibello.zql.utils;
 
-import java.util.Hashtable;
-
 /**
  * Utils class.
  *
@@ -32,11 +30,6 @@ public final class ZUtils {
      */
     public static final int VARIABLE_PLIST = 10000;
 
-    /**
-     * Functions hash table.
-     */
-    private static Hashtable<String, Integer> fcts = new Hashtable<>();
-
     /**
      * Default constructor.
      */
@@ -45,40 +38,23 @@ public final class ZUtils {
     }
 
     /**
-     * Add custom function.
+     * Add custom function, to the global function registry.
      *
      * @param fct      the function
      * @param noParams the number of parammeters.
      */
     public static void addCustomFunction(final String fct, final int noParams) {
-        int params = noParams;
-
-        if (ZUtils.fcts == null) {
-            ZUtils.fcts = new Hashtable<>();
-        }
-
-        if (params < 0) {
-            params = 1;
-        }
-
-        ZUtils.fcts.put(fct.toUpperCase(), params);
+        ZFunctionRegistry.global().register(fct, noParams);
     }
 
     /**
      * Check if function is custom.
      *
      * @param fct the function name
-     * @return the result of the check.
+     * @return the number of parameters of the function, -1 if it is not a custom function.
      */
     public static int isCustomFunction(final String fct) {
-        Integer nparam;
-
-        nparam = ZUtils.fcts.get(fct.toUpperCase());
-        if (fct == null || fct.length() < 1 || fcts == null || nparam == null) {
-            nparam = -1;
-        }
-
-        return nparam;
+        return ZFunctionRegistry.global().getParameterCount(fct);
     }
 
     /**
@@ -88,24 +64,7 @@ public final class ZUtils {
      * @return result of the aggregate check.
      */
     public static boolean isAggregate(final String operator) {
-        final String tmp = operator.toUpperCase().trim();
-        boolean result = false;
-
-        if (tmp.equals(ZCommonConstants.SUM_OPERATOR)) {
-            result = true;
-        } else if (tmp.equals(ZCommonConstants.AVG_OPERATOR)) {
-            result = true;
-        } else if (tmp.equals(ZCommonConstants.MAX_OPERATOR)) {
-            result = true;
-        } else if (tmp.equals(ZCommonConstants.MIN_OPERATOR)) {
-            result = true;
-        } else if (tmp.equals(ZCommonConstants.COUNT_OPERATOR)) {
-            result = true;
-        } else if (fcts != null && fcts.get(tmp) != null) {
-            result = true;
-        }
-
-        return result;
+        return ZFunctionRegistry.global().isAggregate(operator);
     }
 
     /**
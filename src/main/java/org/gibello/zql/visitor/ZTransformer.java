@@ -0,0 +1,433 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.visitor;
+
+import org.gibello.zql.ZGroupBy;
+import org.gibello.zql.ZOrderBy;
+import org.gibello.zql.alias.ZSelectItem;
+import org.gibello.zql.expression.ZConstant;
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.expression.ZParameter;
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.statement.ZDelete;
+import org.gibello.zql.statement.ZInsert;
+import org.gibello.zql.statement.ZLockTable;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.statement.ZTransactStmt;
+import org.gibello.zql.statement.ZUpdate;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * ZTransformer: rewrites a parsed tree, copy-on-write.<br>
+ * Each transformXxx() method transforms the children of a node, and returns the node itself if none of them changed, or a shallow copy
+ * of the node holding the new children. The given tree is never modified (it may be frozen), and the new tree shares all its unchanged
+ * sub-trees with it. By default nothing changes: a pass overrides the methods of the nodes it rewrites, and calls the super method to
+ * go on with the children. For instance, to rename a column:
+ *
+ * <pre>
+ * ZTransformer renamer = new ZTransformer() {
+ *     protected ZExp transformConstant(ZConstant constant) {
+ *         return "a".equals(constant.getValue()) ? new ZConstant("b", ZConstant.COLUMNNAME) : constant;
+ *     }
+ * };
+ * ZStatement renamed = renamer.transform(statement);
+ * </pre>
+ */
+public class ZTransformer {
+
+    /**
+     * The visitor calling the transformXxx() method that matches the type of a node.
+     */
+    private final ZVisitor<Object> dispatcher = new Dispatcher();
+
+    /**
+     * Transform an expression.
+     *
+     * @param exp the expression, may be null.
+     * @return the transformed expression, exp itself if nothing changed.
+     */
+    public ZExp transform(final ZExp exp) {
+        return exp == null ? null : (ZExp) exp.accept(this.dispatcher);
+    }
+
+    /**
+     * Transform a statement.
+     *
+     * @param statement the statement, may be null.
+     * @return the transformed statement, the statement itself if nothing changed.
+     */
+    public ZStatement transform(final ZStatement statement) {
+        return statement == null ? null : (ZStatement) statement.accept(this.dispatcher);
+    }
+
+    /**
+     * Transform a query (a query is both an expression and a statement).
+     *
+     * @param query the query, may be null.
+     * @return the transformed query, the query itself if nothing changed.
+     */
+    public ZQuery transform(final ZQuery query) {
+        return query == null ? null : this.transformQuery(query);
+    }
+
+    /**
+     * Transform a constant.
+     *
+     * @param constant the constant.
+     * @return the constant itself.
+     */
+    protected ZExp transformConstant(final ZConstant constant) {
+        return constant;
+    }
+
+    /**
+     * Transform a parameter.
+     *
+     * @param parameter the parameter.
+     * @return the parameter itself.
+     */
+    protected ZExp transformParameter(final ZParameter parameter) {
+        return parameter;
+    }
+
+    /**
+     * Transform an expression: its operands are transformed.
+     *
+     * @param expression the expression.
+     * @return the expression itself, or a copy with the new operands.
+     */
+    protected ZExp transformExpression(final ZExpression expression) {
+        return this.transformOperands(expression);
+    }
+
+    /**
+     * Transform a query: its SELECT items, WHERE clause, GROUP BY...HAVING clause, set clause (UNION...) and ORDER BY items are
+     * transformed.
+     *
+     * @param query the query.
+     * @return the query itself, or a copy with the new clauses.
+     */
+    protected ZQuery transformQuery(final ZQuery query) {
+        final List<?> select = this.transformItems(query.getSelect());
+        final ZExp where = this.transform(query.getWhere());
+        final ZGroupBy groupBy = query.getGroupBy() == null ? null : this.transformGroupBy(query.getGroupBy());
+        final ZExpression set = query.getSet() == null ? null : this.transformOperands(query.getSet());
+        final List<?> orderBy = this.transformItems(query.getOrderBy());
+        if (select == query.getSelect() && where == query.getWhere() && groupBy == query.getGroupBy() && set == query.getSet()
+                && orderBy == query.getOrderBy()) {
+            return query;
+        }
+        final ZQuery copy = new ZQuery();
+        copy.addSelect(select);
+        copy.setDistinct(query.isDistinct());
+        copy.addFrom(query.getFrom());
+        copy.addWhere(where);
+        copy.addGroupBy(groupBy);
+        copy.addSet(set);
+        copy.addOrderBy(orderBy);
+        copy.setForupdate(query.isForUpdate());
+        return copy;
+    }
+
+    /**
+     * Transform an item of a SELECT clause: its expression (or column) is transformed, a wildcard is left unchanged.
+     *
+     * @param item the item.
+     * @return the item itself, or a new item for the new expression, with the same alias.
+     */
+    protected ZSelectItem transformSelectItem(final ZSelectItem item) {
+        final ZExp exp = item.getExpression();
+        if (exp == null) {
+            return item;
+        }
+        final ZExp result = this.transform(exp);
+        // The expression of a column item is a new constant on each call
+        if (result == exp || !item.isExpression() && exp.equals(result)) {
+            return item;
+        }
+        final ZSelectItem copy = new ZSelectItem(result.toString());
+        copy.setExpression(result);
+        copy.setAlias(item.getAlias());
+        return copy;
+    }
+
+    /**
+     * Transform a GROUP BY...HAVING clause: its expressions and its HAVING condition are transformed.
+     *
+     * @param groupBy the clause.
+     * @return the clause itself, or a copy with the new expressions.
+     */
+    protected ZGroupBy transformGroupBy(final ZGroupBy groupBy) {
+        final List<?> expressions = this.transformItems(groupBy.getGroupBy());
+        final ZExp having = this.transform(groupBy.getHaving());
+        if (expressions == groupBy.getGroupBy() && having == groupBy.getHaving()) {
+            return groupBy;
+        }
+        final ZGroupBy copy = new ZGroupBy(expressions);
+        copy.setHaving(having);
+        return copy;
+    }
+
+    /**
+     * Transform an item of an ORDER BY clause: its expression is transformed.
+     *
+     * @param orderBy the item.
+     * @return the item itself, or a copy with the new expression.
+     */
+    protected ZOrderBy transformOrderBy(final ZOrderBy orderBy) {
+        final ZExp exp = this.transform(orderBy.getExpression());
+        if (exp == orderBy.getExpression()) {
+            return orderBy;
+        }
+        final ZOrderBy copy = new ZOrderBy(exp);
+        copy.setAscOrder(orderBy.getAscOrder());
+        return copy;
+    }
+
+    /**
+     * Transform an INSERT statement: its VALUES (or sub-query) are transformed, the column names are left unchanged.
+     *
+     * @param insert the statement.
+     * @return the statement itself, or a copy with the new values.
+     */
+    @SuppressWarnings("unchecked")
+    protected ZStatement transformInsert(final ZInsert insert) {
+        final ZExp result;
+        if (insert.getValues() != null) {
+            final List<?> values = this.transformItems(insert.getValues());
+            if (values == insert.getValues()) {
+                return insert;
+            }
+            final ZExpression list = new ZExpression(",");
+            list.setOperands((List<ZExp>) values);
+            result = list;
+        } else {
+            result = this.transform(insert.getQuery());
+            if (result == insert.getQuery()) {
+                return insert;
+            }
+        }
+        final ZInsert copy = new ZInsert(insert.getTable());
+        copy.addColumns(insert.getColumns());
+        copy.addValueSpec(result);
+        return copy;
+    }
+
+    /**
+     * Transform an UPDATE statement: the values of its SET clause and its WHERE clause are transformed.
+     *
+     * @param update the statement.
+     * @return the statement itself, or a copy with the new values, in the same column order.
+     */
+    protected ZStatement transformUpdate(final ZUpdate update) {
+        final List<String> columns = columnsOf(update);
+        final ZExp[] values = new ZExp[columns.size()];
+        boolean changed = false;
+        for (int i = 0; i < values.length; i++) {
+            final ZExp value = update.getColumnUpdate(columns.get(i));
+            values[i] = this.transform(value);
+            changed |= values[i] != value;
+        }
+        final ZExp where = this.transform(update.getWhere());
+        if (!changed && where == update.getWhere()) {
+            return update;
+        }
+        final ZUpdate copy = new ZUpdate(update.getTable());
+        copy.setAlias(update.getAlias());
+        for (int i = 0; i < values.length; i++) {
+            copy.addColumnUpdate(columns.get(i), values[i]);
+        }
+        copy.addWhere(where);
+        return copy;
+    }
+
+    /**
+     * Transform a DELETE statement: its WHERE clause is transformed.
+     *
+     * @param delete the statement.
+     * @return the statement itself, or a copy with the new WHERE clause.
+     */
+    protected ZStatement transformDelete(final ZDelete delete) {
+        final ZExp where = this.transform(delete.getWhere());
+        if (where == delete.getWhere()) {
+            return delete;
+        }
+        final ZDelete copy = new ZDelete(delete.getTable());
+        copy.addWhere(where);
+        return copy;
+    }
+
+    /**
+     * Transform a LOCK TABLE statement.
+     *
+     * @param lock the statement.
+     * @return the statement itself (it has no expression).
+     */
+    protected ZStatement transformLockTable(final ZLockTable lock) {
+        return lock;
+    }
+
+    /**
+     * Transform a transaction statement.
+     *
+     * @param transaction the statement.
+     * @return the statement itself (it has no expression).
+     */
+    protected ZStatement transformTransaction(final ZTransactStmt transaction) {
+        return transaction;
+    }
+
+    /**
+     * Transform the operands of an expression.
+     *
+     * @param expression the expression.
+     * @return the expression itself if no operand changed, or a copy with the new operands.
+     */
+    private ZExpression transformOperands(final ZExpression expression) {
+        final int size = expression.nbOperands();
+        List<ZExp> operands = null;
+        for (int i = 0; i < size; i++) {
+            final ZExp operand = expression.getOperand(i);
+            final ZExp result = this.transform(operand);
+            if (result != operand && operands == null) {
+                operands = new ArrayList<>(size);
+                operands.addAll(expression.getOperands().subList(0, i));
+            }
+            if (operands != null) {
+                operands.add(result);
+            }
+        }
+        if (operands == null) {
+            return expression;
+        }
+        final ZExpression copy = new ZExpression(expression.getOperator());
+        copy.setOperands(operands);
+        copy.setFunction(expression.isFunction());
+        return copy;
+    }
+
+    /**
+     * Transform the items of a clause (expressions, SELECT items or ORDER BY items).
+     *
+     * @param items the items, may be null.
+     * @return the items themselves if none changed, or a new list.
+     */
+    private List<?> transformItems(final List<?> items) {
+        if (items == null) {
+            return null;
+        }
+        final int size = items.size();
+        List<Object> result = null;
+        for (int i = 0; i < size; i++) {
+            final Object item = items.get(i);
+            final Object transformed;
+            if (item instanceof ZExp) {
+                transformed = this.transform((ZExp) item);
+            } else if (item instanceof ZSelectItem) {
+                transformed = this.transformSelectItem((ZSelectItem) item);
+            } else if (item instanceof ZOrderBy) {
+                transformed = this.transformOrderBy((ZOrderBy) item);
+            } else {
+                transformed = item;
+            }
+            if (transformed != item && result == null) {
+                result = new ArrayList<>(size);
+                result.addAll(items.subList(0, i));
+            }
+            if (result != null) {
+                result.add(transformed);
+            }
+        }
+        return result == null ? items : result;
+    }
+
+    /**
+     * Get the updated columns of an UPDATE statement, in the order of its SET clause if it is known.
+     *
+     * @param update the statement.
+     * @return the column names.
+     */
+    private static List<String> columnsOf(final ZUpdate update) {
+        if (update.getColumnUpdateNames() != null) {
+            return update.getColumnUpdateNames();
+        }
+        final List<String> columns = new ArrayList<>();
+        if (update.getSet() != null) {
+            final Enumeration<String> e = update.getSet().keys();
+            while (e.hasMoreElements()) {
+                columns.add(e.nextElement());
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * The visitor calling the transformXxx() method that matches the type of a node.
+     */
+    private final class Dispatcher implements ZVisitor<Object> {
+
+        @Override
+        public Object visitConstant(final ZConstant constant) {
+            return ZTransformer.this.transformConstant(constant);
+        }
+
+        @Override
+        public Object visitExpression(final ZExpression expression) {
+            return ZTransformer.this.transformExpression(expression);
+        }
+
+        @Override
+        public Object visitParameter(final ZParameter parameter) {
+            return ZTransformer.this.transformParameter(parameter);
+        }
+
+        @Override
+        public Object visitQuery(final ZQuery query) {
+            return ZTransformer.this.transformQuery(query);
+        }
+
+        @Override
+        public Object visitInsert(final ZInsert insert) {
+            return ZTransformer.this.transformInsert(insert);
+        }
+
+        @Override
+        public Object visitUpdate(final ZUpdate update) {
+            return ZTransformer.this.transformUpdate(update);
+        }
+
+        @Override
+        public Object visitDelete(final ZDelete delete) {
+            return ZTransformer.this.transformDelete(delete);
+        }
+
+        @Override
+        public Object visitLockTable(final ZLockTable lock) {
+            return ZTransformer.this.transformLockTable(lock);
+        }
+
+        @Override
+        public Object visitTransaction(final ZTransactStmt transaction) {
+            return ZTransformer.this.transformTransaction(transaction);
+        }
+    }
+}
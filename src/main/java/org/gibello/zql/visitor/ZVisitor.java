@@ -0,0 +1,110 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.visitor;
+
+import org.gibello.zql.expression.ZConstant;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.expression.ZParameter;
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.statement.ZDelete;
+import org.gibello.zql.statement.ZInsert;
+import org.gibello.zql.statement.ZLockTable;
+import org.gibello.zql.statement.ZTransactStmt;
+import org.gibello.zql.statement.ZUpdate;
+
+/**
+ * ZVisitor: a visitor of the expressions (ZExp) and statements (ZStatement) of a parsed tree.<br>
+ * node.accept(visitor) calls the method matching the type of the node, so that a walk over a tree needs no instanceof chain. A visitor
+ * only visits the node it is given: it calls accept() on the children it wants to walk. See ZTransformer to rewrite a tree.
+ *
+ * @param <R> the type of the result of the visits.
+ */
+public interface ZVisitor<R> {
+
+    /**
+     * Visit a constant (a column name, a number, a string or NULL).
+     *
+     * @param constant the constant.
+     * @return the result of the visit.
+     */
+    R visitConstant(ZConstant constant);
+
+    /**
+     * Visit an expression (an operator or a function call, and its operands).
+     *
+     * @param expression the expression.
+     * @return the result of the visit.
+     */
+    R visitExpression(ZExpression expression);
+
+    /**
+     * Visit a parameter ("?" or ":name").
+     *
+     * @param parameter the parameter.
+     * @return the result of the visit.
+     */
+    R visitParameter(ZParameter parameter);
+
+    /**
+     * Visit a query (a SELECT statement, or a sub-query in an expression).
+     *
+     * @param query the query.
+     * @return the result of the visit.
+     */
+    R visitQuery(ZQuery query);
+
+    /**
+     * Visit an INSERT statement.
+     *
+     * @param insert the statement.
+     * @return the result of the visit.
+     */
+    R visitInsert(ZInsert insert);
+
+    /**
+     * Visit an UPDATE statement.
+     *
+     * @param update the statement.
+     * @return the result of the visit.
+     */
+    R visitUpdate(ZUpdate update);
+
+    /**
+     * Visit a DELETE statement.
+     *
+     * @param delete the statement.
+     * @return the result of the visit.
+     */
+    R visitDelete(ZDelete delete);
+
+    /**
+     * Visit a LOCK TABLE statement.
+     *
+     * @param lock the statement.
+     * @return the result of the visit.
+     */
+    R visitLockTable(ZLockTable lock);
+
+    /**
+     * Visit a transaction statement (COMMIT, ROLLBACK or SET TRANSACTION).
+     *
+     * @param transaction the statement.
+     * @return the result of the visit.
+     */
+    R visitTransaction(ZTransactStmt transaction);
+}
@@ -0,0 +1,117 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CharSequenceCharStreamTest {
+
+    private static final String SCRIPT = "select a, b\tfrom num\r\nwhere a = 1;\n"
+            + "update num set b = 'x' where a > 2;\r"
+            + "delete from num where b like 'y%';\n";
+
+    private static final String INVALID = "select a\n  from num\twhere\n  a =\t= 1;";
+
+    @Test
+    public void allInputsShouldProduceTheSameStatements() throws ParseException {
+        //given
+        String expected = parseAll(new ZqlParser(new ByteArrayInputStream(SCRIPT.getBytes()))).toString();
+        //when
+        String fromString = parseAll(new ZqlParser(SCRIPT)).toString();
+        String fromBuilder = parseAll(new ZqlParser(new StringBuilder(SCRIPT))).toString();
+        String fromReader = parseAll(new ZqlParser(new StringReader(SCRIPT))).toString();
+        //then
+        assertEquals(expected, fromString);
+        assertEquals(expected, fromBuilder);
+        assertEquals(expected, fromReader);
+    }
+
+    @Test
+    public void errorPositionsShouldMatchTheInputStreamPath() {
+        //given
+        String expected = errorOf(new ZqlParser(new ByteArrayInputStream(INVALID.getBytes())));
+        //when
+        String fromString = errorOf(new ZqlParser(INVALID));
+        String fromReader = errorOf(new ZqlParser(new StringReader(INVALID)));
+        //then
+        assertTrue(expected.contains("line 3, column 9"));
+        assertEquals(expected, fromString);
+        assertEquals(expected, fromReader);
+    }
+
+    @Test
+    public void tokensLongerThanTheBufferShouldBeRead() throws ParseException {
+        //given
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            literal.append((char) ('a' + i % 26));
+        }
+        String sql = "select * from num where b = '" + literal + "';";
+        //when
+        ZStatement statement = new ZqlParser(new StringReader(sql)).readStatement();
+        //then
+        assertEquals(new ZqlParser(sql).readStatement().toString(), statement.toString());
+        assertTrue(statement.toString().contains(literal));
+    }
+
+    @Test
+    public void aRegionShouldBeParsedInPlaceWithItsOwnPosition() throws ParseException {
+        //given
+        String text = "garbage; select * from num where a = 1; garbage";
+        ZqlJJParser parser = new ZqlJJParser(new CharSequenceCharStream(text, 9, 39, 3, 5));
+        //when
+        ZStatement statement = parser.SQLStatement();
+        //then
+        assertEquals("select * from num where (a = 1)", statement.toString());
+        assertEquals(3, parser.getToken(0).endLine);
+        assertEquals(34, parser.getToken(0).endColumn);
+    }
+
+    @Test
+    public void aReusedParserShouldReadTheNewText() throws ParseException {
+        //given
+        ZqlParser parser = new ZqlParser("delete from num;");
+        parser.readStatement();
+        //when
+        parser.initParser("select a from num;");
+        ZStatement statement = parser.readStatement();
+        //then
+        assertEquals("select a from num", statement.toString());
+    }
+
+    private static List<ZStatement> parseAll(final ZqlParser parser) throws ParseException {
+        return parser.readStatements();
+    }
+
+    private static String errorOf(final ZqlParser parser) {
+        try {
+            parser.readStatements();
+            fail("ParseException expected");
+            return null;
+        } catch (ParseException e) {
+            return e.getMessage();
+        }
+    }
+}
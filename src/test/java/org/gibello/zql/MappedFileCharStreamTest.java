@@ -0,0 +1,144 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MappedFileCharStreamTest {
+
+    private static final String UNICODE_SCRIPT = "select * from num where b = 'café € ß';\n"
+            + "update num set b = 'über' where a = 1;\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void aFileShouldBeParsedLikeItsText() throws IOException, ParseException {
+        //given
+        File file = new File("src/test/resources/valid_select_from_multiple_tables_with_wildcard.sql");
+        //when
+        List<ZStatement> statements = new ZqlParser(file).readStatements();
+        //then
+        String text = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+        assertEquals(new ZqlParser(text).readStatements().toString(), statements.toString());
+    }
+
+    @Test
+    public void utf8ShouldBeDecodedAcrossRegionBoundaries() throws IOException, ParseException {
+        //given
+        File file = write(UNICODE_SCRIPT);
+        String expected = new ZqlParser(new StringReader(UNICODE_SCRIPT)).readStatements().toString();
+        //when then
+        for (int regionSize = 4; regionSize <= 16; regionSize++) {
+            ZqlJJParser parser = new ZqlJJParser(new MappedFileCharStream(file, regionSize));
+            assertEquals("region size " + regionSize, expected, parser.SQLStatements().toString());
+        }
+    }
+
+    @Test
+    public void supplementaryCharactersShouldBeDecodedAsSurrogatePairs() throws IOException {
+        //given
+        String text = "-- 😀 😀 😀\n";
+        File file = write(text);
+        //when then
+        for (int regionSize = 4; regionSize <= 8; regionSize++) {
+            MappedFileCharStream stream = new MappedFileCharStream(file, regionSize);
+            StringBuilder decoded = new StringBuilder();
+            try {
+                while (true) {
+                    decoded.append(stream.readChar());
+                }
+            } catch (IOException e) {
+                // end of file
+            }
+            assertEquals("region size " + regionSize, text, decoded.toString());
+        }
+    }
+
+    @Test
+    public void offsetsShouldCountCharacters() throws IOException {
+        //given
+        File file = write(UNICODE_SCRIPT);
+        //when
+        ZqlStatementIterator iterator = new ZqlStatementIterator(new ZqlJJParser(new MappedFileCharStream(file, 8)));
+        iterator.next();
+        //then
+        assertEquals(UNICODE_SCRIPT.indexOf(';') + 1, iterator.getEndOffset());
+    }
+
+    @Test
+    public void malformedInputShouldBeReplaced() throws IOException, ParseException {
+        //given
+        File file = folder.newFile("malformed.sql");
+        OutputStream out = new FileOutputStream(file);
+        out.write("select * from num where b = 'x".getBytes("US-ASCII"));
+        out.write(new byte[] {(byte) 0xC3, (byte) 0x28});
+        out.write("';".getBytes("US-ASCII"));
+        out.close();
+        //when
+        ZStatement statement = new ZqlParser(file).readStatement();
+        //then
+        assertTrue(statement.toString().contains("'x�('"));
+    }
+
+    @Test
+    public void reInitializingOrClosingTheParserShouldCloseTheFile() throws IOException, ParseException {
+        //given
+        File fds = new File("/proc/self/fd");
+        Assume.assumeTrue(fds.isDirectory());
+        File file = write(UNICODE_SCRIPT);
+        ZqlParser parser = new ZqlParser(file);
+        parser.readStatement();
+        int open = fds.list().length;
+        //when
+        for (int i = 0; i < 100; i++) {
+            parser.initParser(file);
+            parser.readStatement();
+        }
+        parser.initParser("select a from num;");
+        int afterReInit = fds.list().length;
+        parser.initParser(file);
+        parser.readStatement();
+        parser.close();
+        //then
+        assertTrue(afterReInit < open);
+        assertEquals(afterReInit, fds.list().length);
+    }
+
+    private File write(final String text) throws IOException {
+        File file = folder.newFile();
+        OutputStream out = new FileOutputStream(file);
+        out.write(text.getBytes("UTF-8"));
+        out.close();
+        return file;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ZqlDiagnosticTest {
+
+    private static final String SCRIPT = "select a from num;\n"
+            + "select a from where b = 1;\n"
+            + "delete from num where a = 1;\n"
+            + "select undefinedfct(a) from num;\n"
+            + "update num set a = 2;";
+
+    @Test
+    public void statementsWithErrorsShouldBeSkipped() throws ParseException {
+        //given
+        List<ZqlDiagnostic> diagnostics = new ArrayList<ZqlDiagnostic>();
+        //when
+        List<ZStatement> statements = new ZqlParser(SCRIPT).readStatements(diagnostics);
+        //then
+        assertEquals(3, statements.size());
+        assertEquals("select a from num", statements.get(0).toString());
+        assertEquals("delete from num where (a = 1)", statements.get(1).toString());
+        assertEquals("update num set a=2", statements.get(2).toString());
+        assertEquals(2, diagnostics.size());
+    }
+
+    @Test
+    public void syntaxErrorsShouldBeLocated() throws ParseException {
+        //given
+        List<ZqlDiagnostic> diagnostics = new ArrayList<ZqlDiagnostic>();
+        //when
+        new ZqlParser(SCRIPT).readStatements(diagnostics);
+        //then
+        ZqlDiagnostic syntax = diagnostics.get(0);
+        assertFalse(syntax.isLexical());
+        assertEquals(SCRIPT.indexOf("select a from where"), syntax.getStatementOffset());
+        assertEquals(SCRIPT.indexOf("where b"), syntax.getOffset());
+        assertEquals(2, syntax.getLine());
+        assertEquals(15, syntax.getColumn());
+        assertEquals("where", syntax.getEncountered());
+        assertTrue(syntax.getExpected().contains("<S_IDENTIFIER>"));
+        assertEquals(errorOf("select a from where b = 1;"), syntax.getMessage().replace("line 2", "line 1"));
+
+        ZqlDiagnostic action = diagnostics.get(1);
+        assertEquals(SCRIPT.indexOf("select undefinedfct"), action.getStatementOffset());
+        assertEquals("Undefined function: undefinedfct", action.getMessage());
+        assertTrue(action.getExpected().isEmpty());
+    }
+
+    @Test
+    public void lexicalErrorsShouldBeSkipped() throws ParseException {
+        //given
+        String script = "select @ from num;\nselect a ! b from num; select b from num;\nselect 'unterminated from num;";
+        List<ZqlDiagnostic> diagnostics = new ArrayList<ZqlDiagnostic>();
+        //when
+        List<ZStatement> statements = new ZqlParser(script).readStatements(diagnostics);
+        //then
+        assertEquals(1, statements.size());
+        assertEquals("select b from num", statements.get(0).toString());
+        assertEquals(3, diagnostics.size());
+        assertTrue(diagnostics.get(0).isLexical());
+        assertEquals(script.indexOf('@'), diagnostics.get(0).getOffset());
+        assertEquals(0, diagnostics.get(0).getStatementOffset());
+        assertEquals(1, diagnostics.get(0).getLine());
+        assertEquals(8, diagnostics.get(0).getColumn());
+        assertTrue(diagnostics.get(1).isLexical());
+        assertEquals(script.indexOf('!'), diagnostics.get(1).getOffset());
+        assertEquals(script.indexOf('\''), diagnostics.get(2).getOffset());
+    }
+
+    @Test
+    public void lexicalErrorsShouldBeRecoveredInLinearTime() throws ParseException {
+        for (int n = 1000; n <= 4000; n *= 4) {
+            //given
+            StringBuilder script = new StringBuilder();
+            for (int i = 0; i < n; i++) {
+                script.append("select a from t where a ! b;\n");
+            }
+            CountingSequence text = new CountingSequence(script);
+            List<ZqlDiagnostic> diagnostics = new ArrayList<ZqlDiagnostic>();
+            //when
+            new ZqlParser(text).readStatements(diagnostics);
+            //then
+            assertEquals(n, diagnostics.size());
+            assertEquals(n, diagnostics.get(n - 1).getLine());
+            assertEquals(25, diagnostics.get(n - 1).getColumn());
+            assertTrue(n + " errors: " + text.reads + " reads", text.reads < 5L * script.length());
+        }
+    }
+
+    @Test
+    public void allInputsShouldRecoverTheSameWay() throws ParseException {
+        //given
+        List<ZqlDiagnostic> fromText = new ArrayList<ZqlDiagnostic>();
+        List<ZqlDiagnostic> fromStream = new ArrayList<ZqlDiagnostic>();
+        //when
+        List<ZStatement> expected = new ZqlParser(SCRIPT).readStatements(fromText);
+        List<ZStatement> statements = new ZqlParser(new ByteArrayInputStream(SCRIPT.getBytes())).readStatements(fromStream);
+        //then
+        assertEquals(expected.toString(), statements.toString());
+        assertEquals(fromText.toString(), fromStream.toString());
+    }
+
+    @Test
+    public void parsingShouldStopAtExit() throws ParseException {
+        //given
+        List<ZqlDiagnostic> diagnostics = new ArrayList<ZqlDiagnostic>();
+        //when
+        List<ZStatement> statements = new ZqlParser("select from;\nexit;\nselect a from num;").readStatements(diagnostics);
+        //then
+        assertTrue(statements.isEmpty());
+        assertEquals(1, diagnostics.size());
+    }
+
+    private static String errorOf(final String sql) {
+        try {
+            new ZqlParser(sql).readStatements();
+            fail("ParseException expected");
+            return null;
+        } catch (ParseException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * A character sequence counting the characters read from it.
+     */
+    private static final class CountingSequence implements CharSequence {
+
+        /**
+         * The counted sequence.
+         */
+        private final CharSequence text;
+
+        /**
+         * The number of characters read.
+         */
+        private long reads;
+
+        private CountingSequence(final CharSequence text) {
+            this.text = text;
+        }
+
+        @Override
+        public int length() {
+            return this.text.length();
+        }
+
+        @Override
+        public char charAt(final int index) {
+            this.reads++;
+            return this.text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            this.reads += end - start;
+            return this.text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return this.text.toString();
+        }
+    }
+}
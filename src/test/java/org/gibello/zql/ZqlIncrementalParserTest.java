@@ -0,0 +1,189 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.utils.ZFunctionRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ZqlIncrementalParserTest {
+
+    @Test
+    public void aSessionRegistryShouldBeUsedForEveryEdit() {
+        //given
+        ZFunctionRegistry tenant = ZFunctionRegistry.scoped();
+        tenant.register("tenantfct", 1);
+        ZqlIncrementalParser parser = new ZqlIncrementalParser(tenant);
+        ZqlParsedScript previous = parser.parse("select tenantfct(a) from num;\nselect a from num;");
+        //when
+        int end = previous.getText().length() - 1;
+        ZqlParsedScript script = parser.reparse(previous, end, end, " where tenantfct(a) = 1");
+        //then
+        assertEquals("select tenantfct(a) from num", script.getStatement(0).toString());
+        assertEquals("select a from num where (tenantfct(a) = 1)", script.getStatement(1).toString());
+        assertNull(new ZqlIncrementalParser().parse(script.getText()).getStatement(1));
+    }
+
+    private static final String SCRIPT = "select a from num;\n"
+            + "select a from where b = 1;\n"
+            + "delete from num where a = 1;\n"
+            + "update num set a = 2;\tselect b from num where b like 'x;y';\n"
+            + "/* trailing; comment */";
+
+    private static final String TAB_SCRIPT = "select a from num;\tselect b from;\t\tdelete num;  \tupdate;\n"
+            + "\tselect c from num where c = = 1;\tx;\t;";
+
+    private static final String[] LINE_FRAGMENTS = {"\t", " ", "x", ";", "\t;", "a = ", "\t\t"};
+
+    private static final String[] FRAGMENTS = {";", "'", "\"", "/*", "*/", "--", "\n", "\r", "\t", " ", "select a from num",
+            " where a = 1", "x", "exit", "@"};
+
+    @Test
+    public void untouchedStatementsShouldBeReused() {
+        //given
+        ZqlIncrementalParser parser = new ZqlIncrementalParser();
+        ZqlParsedScript previous = parser.parse(SCRIPT);
+        int start = SCRIPT.indexOf("a = 1");
+        //when
+        ZqlParsedScript script = parser.reparse(previous, start, start + 1, "b");
+        //then
+        assertEquals("delete from num where (b = 1)", script.getStatement(2).toString());
+        assertSame(previous.getStatement(0), script.getStatement(0));
+        assertSame(previous.getStatement(3), script.getStatement(3));
+        assertSame(previous.getStatement(4), script.getStatement(4));
+        assertEquals(describe(parser.parse(script.getText())), describe(script));
+    }
+
+    @Test
+    public void positionsShouldBeShiftedAfterAnEdit() {
+        //given
+        ZqlIncrementalParser parser = new ZqlIncrementalParser();
+        ZqlParsedScript previous = parser.parse(SCRIPT);
+        //when
+        ZqlParsedScript script = parser.reparse(previous, 0, 0, "\n\t");
+        //then
+        assertSame(previous.getStatement(4), script.getStatement(4));
+        assertEquals(5, script.getChunk(4).getLine());
+        ZqlDiagnostic diagnostic = script.getDiagnostic(1);
+        assertEquals(3, diagnostic.getLine());
+        assertEquals(15, diagnostic.getColumn());
+        assertEquals(SCRIPT.indexOf("where b") + 2, diagnostic.getOffset());
+        assertEquals(describe(parser.parse(script.getText())), describe(script));
+    }
+
+    @Test
+    public void editsOfTheLexicalStructureShouldGiveTheSameResultAsAFullParse() {
+        //given
+        ZqlIncrementalParser parser = new ZqlIncrementalParser();
+        ZqlParsedScript previous = parser.parse(SCRIPT);
+        String[][] edits = {{"num;", "num"}, {"from num", "from num;"}, {"'x;y'", "'x;y"}, {"a = 2;", "a = '2;"},
+                {"select b", "/* select b"}, {"*/", ""}, {"delete", "-- delete"}, {"\t", "\n"}};
+        for (String[] edit : edits) {
+            int start = SCRIPT.indexOf(edit[0]);
+            //when
+            ZqlParsedScript script = parser.reparse(previous, start, start + edit[0].length(), edit[1]);
+            //then
+            assertEquals(edit[0], describe(parser.parse(script.getText())), describe(script));
+        }
+    }
+
+    @Test
+    public void randomEditsShouldGiveTheSameResultAsAFullParse() {
+        //given
+        ZqlIncrementalParser parser = new ZqlIncrementalParser();
+        Random random = new Random(42);
+        ZqlParsedScript script = parser.parse(SCRIPT);
+        for (int i = 0; i < 2000; i++) {
+            int length = script.getText().length();
+            int start = random.nextInt(length + 1);
+            int end = Math.min(length, start + (random.nextBoolean() ? 0 : random.nextInt(8)));
+            String replacement = random.nextInt(4) == 0 ? "" : FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+            //when
+            script = parser.reparse(script, start, end, replacement);
+            //then
+            assertEquals(script.getText().toString(), describe(parser.parse(script.getText())), describe(script));
+        }
+    }
+
+    @Test
+    public void tabsOnTheLineOfTheEditShouldGiveTheColumnsOfAFullParse() throws ParseException {
+        //given
+        ZqlIncrementalParser parser = new ZqlIncrementalParser();
+        ZqlParsedScript previous = parser.parse("\n ;\t;;");
+        //when
+        ZqlParsedScript script = parser.reparse(previous, 2, 2, "x");
+        //then
+        assertEquals(describe(parser.parse(script.getText())), describe(script));
+        assertEquals(fullParseDiagnostics(script.getText()), script.getDiagnostics().toString());
+    }
+
+    @Test
+    public void randomEditsAmongTabsShouldGiveTheSameResultAsAFullParse() throws ParseException {
+        //given
+        ZqlIncrementalParser parser = new ZqlIncrementalParser();
+        Random random = new Random(7);
+        ZqlParsedScript script = parser.parse(TAB_SCRIPT);
+        for (int i = 0; i < 2000; i++) {
+            int length = script.getText().length();
+            int start = random.nextInt(length + 1);
+            int end = Math.min(length, start + (random.nextBoolean() ? 0 : random.nextInt(4)));
+            String replacement = random.nextInt(4) == 0 ? "" : LINE_FRAGMENTS[random.nextInt(LINE_FRAGMENTS.length)];
+            //when
+            script = parser.reparse(script, start, end, replacement);
+            //then
+            String text = script.getText().toString();
+            assertEquals(text, describe(parser.parse(text)), describe(script));
+            assertEquals(text, fullParseDiagnostics(text), script.getDiagnostics().toString());
+        }
+    }
+
+    @Test
+    public void statementsShouldStopAtExit() {
+        //given
+        ZqlIncrementalParser parser = new ZqlIncrementalParser();
+        //when
+        ZqlParsedScript script = parser.parse("select a from num;\nexit;\nselect b from num;");
+        //then
+        assertEquals(3, script.size());
+        assertEquals(1, script.getStatements().size());
+        assertNull(script.getStatement(1));
+        assertNull(script.getDiagnostic(1));
+        assertEquals("select b from num", script.getStatement(2).toString());
+    }
+
+    private static String fullParseDiagnostics(final CharSequence text) throws ParseException {
+        List<ZqlDiagnostic> diagnostics = new ArrayList<ZqlDiagnostic>();
+        new ZqlParser(text).readStatements(diagnostics);
+        return diagnostics.toString();
+    }
+
+    private static String describe(final ZqlParsedScript script) {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < script.size(); i++) {
+            ZqlDiagnostic diagnostic = script.getDiagnostic(i);
+            description.append(script.getChunk(i)).append(' ').append(script.getStatement(i)).append(' ').append(diagnostic)
+                    .append(' ').append(diagnostic == null ? -1 : diagnostic.getOffset()).append('\n');
+        }
+        return description.append(script.getStatements()).append(script.getDiagnostics()).toString();
+    }
+}
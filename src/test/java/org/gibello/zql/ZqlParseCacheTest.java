@@ -0,0 +1,134 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZFunctionRegistry;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ZqlParseCacheTest {
+
+    @Test
+    public void sessionsWithDifferentRegistriesShouldNotShareStatements() throws ParseException {
+        //given
+        ZqlParseCache cache = new ZqlParseCache(new ZqlParserPool(1), 10);
+        ZFunctionRegistry first = ZFunctionRegistry.scoped();
+        ZFunctionRegistry second = ZFunctionRegistry.scoped();
+        first.register("tenantfct", 1);
+        second.register("tenantfct", 1);
+        String sql = "select tenantfct(a) from num;";
+        //when
+        ZStatement fromFirst = cache.parse(sql, first);
+        ZStatement fromSecond = cache.parse(sql, second);
+        //then
+        assertNotSame(fromFirst, fromSecond);
+        assertSame(fromFirst, cache.parse(sql, first));
+        assertEquals(2, cache.size());
+        try {
+            cache.parse(sql);
+            fail("ParseException expected");
+        } catch (ParseException e) {
+            assertEquals("Undefined function: tenantfct", e.getMessage());
+        }
+        cache.invalidate(sql, first);
+        assertEquals(1, cache.size());
+    }
+
+    private static final String SELECT = "select * from num where a = 1;";
+
+    private static final String DELETE = "delete from num where a = 1;";
+
+    private static final String UPDATE = "update num set a = 2 where a = 1;";
+
+    @Test
+    public void repeatedTextShouldBeAnsweredFromTheCache() throws ParseException {
+        //given
+        ZqlParseCache cache = new ZqlParseCache(new ZqlParserPool(1), 10);
+        //when
+        ZStatement first = cache.parse(SELECT);
+        ZStatement second = cache.parse(SELECT);
+        //then
+        assertSame(first, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.size());
+        assertEquals(SELECT.length(), cache.getWeight());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesShouldBeEvictedFirst() throws ParseException {
+        //given
+        ZqlParseCache cache = new ZqlParseCache(new ZqlParserPool(1), 2);
+        ZStatement select = cache.parse(SELECT);
+        cache.parse(DELETE);
+        //when
+        cache.parse(SELECT);
+        cache.parse(UPDATE);
+        //then
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertSame(select, cache.parse(SELECT));
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void theWeightBoundShouldBeHonoured() throws ParseException {
+        //given
+        ZqlParseCache cache = new ZqlParseCache(new ZqlParserPool(1), 100, DELETE.length() + UPDATE.length());
+        //when
+        cache.parse(SELECT);
+        cache.parse(DELETE);
+        cache.parse(UPDATE);
+        //then
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(DELETE.length() + UPDATE.length(), cache.getWeight());
+    }
+
+    @Test
+    public void failuresShouldNotBeCached() {
+        //given
+        ZqlParseCache cache = new ZqlParseCache(new ZqlParserPool(1), 10);
+        //when
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.parse("select from;");
+                fail("ParseException expected");
+            } catch (ParseException e) {
+                // expected
+            }
+        }
+        //then
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void invalidatedEntriesShouldBeParsedAgain() throws ParseException {
+        //given
+        ZqlParseCache cache = new ZqlParseCache(new ZqlParserPool(1), 10);
+        ZStatement first = cache.parse(SELECT);
+        //when
+        cache.invalidate(SELECT);
+        ZStatement second = cache.parse(SELECT);
+        //then
+        assertNotSame(first, second);
+        assertEquals(0, cache.getHitCount());
+    }
+}
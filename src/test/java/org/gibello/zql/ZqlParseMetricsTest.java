@@ -0,0 +1,139 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ZqlParseMetricsTest {
+
+    private final List<ZqlParseMetrics> recorded = new ArrayList<ZqlParseMetrics>();
+
+    private final ZqlMetricsSink sink = new ZqlMetricsSink() {
+        @Override
+        public void parsed(final ZqlParseMetrics metrics) {
+            ZqlParseMetricsTest.this.recorded.add(metrics);
+        }
+    };
+
+    @Test
+    public void eachStatementShouldBeMeasured() throws ParseException {
+        //given
+        ZqlParser parser = new ZqlParser("select a from num where a = 1;\ndelete from num;");
+        parser.setMetricsSink(this.sink);
+        //when
+        ZStatement first = parser.readStatement();
+        parser.readStatement();
+        //then
+        assertEquals(2, this.recorded.size());
+        ZqlParseMetrics metrics = this.recorded.get(0);
+        assertEquals(ZqlParseMetrics.STATEMENT, metrics.getOperation());
+        assertSame(first, metrics.getResult());
+        assertNull(metrics.getError());
+        assertEquals(9, metrics.getTokenCount());
+        assertEquals(7, metrics.getNodeCount());
+        assertEquals(3, metrics.getMaxDepth());
+        assertTrue(metrics.getWallTimeNanos() > 0);
+        assertTrue(metrics.getAllocatedBytes() != 0);
+        assertEquals(4, this.recorded.get(1).getTokenCount());
+        assertEquals(1, this.recorded.get(1).getNodeCount());
+    }
+
+    @Test
+    public void scriptsAndExpressionsShouldBeMeasured() throws ParseException {
+        //given
+        ZqlParser parser = new ZqlParser("select a from num;\nselect b from num where b in (select c from other);");
+        parser.setMetricsSink(this.sink);
+        //when
+        parser.readStatements();
+        parser.initParser("a + (b * (c - 1))");
+        parser.readExpression();
+        //then
+        assertEquals(2, this.recorded.size());
+        assertEquals(ZqlParseMetrics.STATEMENTS, this.recorded.get(0).getOperation());
+        assertEquals(19, this.recorded.get(0).getTokenCount());
+        assertEquals(5, this.recorded.get(0).getMaxDepth());
+        ZqlParseMetrics expression = this.recorded.get(1);
+        assertEquals(ZqlParseMetrics.EXPRESSION, expression.getOperation());
+        assertEquals(11, expression.getTokenCount());
+        assertEquals(7, expression.getNodeCount());
+        assertEquals(4, expression.getMaxDepth());
+    }
+
+    @Test
+    public void failedParsesShouldBeMeasured() {
+        //given
+        ZqlParser parser = new ZqlParser("select a from num where a = = 1;");
+        parser.setMetricsSink(this.sink);
+        //when
+        try {
+            parser.readStatement();
+            fail("ParseException expected");
+        } catch (ParseException e) {
+            //then
+            assertEquals(1, this.recorded.size());
+            assertSame(e, this.recorded.get(0).getError());
+            assertNull(this.recorded.get(0).getResult());
+            assertEquals(0, this.recorded.get(0).getNodeCount());
+        }
+    }
+
+    @Test
+    public void lexicalErrorsShouldBeMeasured() throws ParseException {
+        //given
+        ZqlParser parser = new ZqlParser("select a from num where c ! d;");
+        parser.setMetricsSink(this.sink);
+        //when
+        try {
+            parser.readStatement();
+            fail("TokenMgrError expected");
+        } catch (TokenMgrError e) {
+            //then
+            assertEquals(1, this.recorded.size());
+            assertEquals(e.getMessage(), this.recorded.get(0).getError().getMessage());
+            assertNull(this.recorded.get(0).getResult());
+        }
+        parser.initParser("a ! b");
+        try {
+            parser.readExpression();
+            fail("TokenMgrError expected");
+        } catch (TokenMgrError e) {
+            assertEquals(2, this.recorded.size());
+            assertEquals(ZqlParseMetrics.EXPRESSION, this.recorded.get(1).getOperation());
+            assertNotNull(this.recorded.get(1).getError());
+        }
+    }
+
+    @Test
+    public void nothingShouldBeMeasuredWithoutASink() throws ParseException {
+        //given
+        ZqlParser parser = new ZqlParser("select a from num;");
+        parser.setMetricsSink(this.sink);
+        parser.setMetricsSink(null);
+        //when
+        parser.readStatement();
+        //then
+        assertTrue(this.recorded.isEmpty());
+        assertNull(parser.getMetricsSink());
+    }
+}
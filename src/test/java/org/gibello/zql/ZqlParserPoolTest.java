@@ -0,0 +1,124 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZFunctionRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class ZqlParserPoolTest {
+
+    @Test
+    public void aSessionRegistryShouldNotLeakToOtherParses() throws ParseException {
+        //given
+        ZqlParserPool pool = new ZqlParserPool(1);
+        ZFunctionRegistry tenant = ZFunctionRegistry.scoped();
+        tenant.register("tenantfct", 1);
+        //when
+        ZStatement statement = pool.parse("select tenantfct(a) from num;", tenant);
+        //then
+        assertEquals("select tenantfct(a) from num", statement.toString());
+        assertEquals("tenantfct(a)", pool.parseExpression("tenantfct(a)", tenant).toString());
+        assertEquals(1, pool.parseAll("select tenantfct(a) from num;", tenant).size());
+        try {
+            pool.parse("select tenantfct(a) from num;");
+            fail("ParseException expected");
+        } catch (ParseException e) {
+            assertEquals("Undefined function: tenantfct", e.getMessage());
+        }
+        assertEquals(1, pool.getCreatedCount());
+    }
+
+    private static final int THREADS = 8;
+
+    private static final int PARSES_PER_THREAD = 200;
+
+    @Test
+    public void parseShouldReturnTheStatement() throws ParseException {
+        //given
+        ZqlParserPool pool = new ZqlParserPool(2);
+        //when
+        ZStatement statement = pool.parse("select a, b from num where a = 1;");
+        //then
+        assertTrue(statement instanceof ZQuery);
+        assertEquals("select a, b from num where (a = 1)", statement.toString());
+    }
+
+    @Test
+    public void parsersShouldBeReusedAfterAFailure() throws ParseException {
+        //given
+        ZqlParserPool pool = new ZqlParserPool(1);
+        try {
+            pool.parse("select from;");
+            fail("ParseException expected");
+        } catch (ParseException e) {
+            // expected
+        }
+        //when
+        ZStatement statement = pool.parse("delete from num;");
+        //then
+        assertEquals("delete num", statement.toString());
+        assertEquals(1, pool.getCreatedCount());
+    }
+
+    @Test
+    public void concurrentParsesShouldNotExceedThePoolSize() throws Exception {
+        //given
+        final ZqlParserPool pool = new ZqlParserPool(3);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<>();
+        //when
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws ParseException {
+                    int matches = 0;
+                    for (int i = 0; i < PARSES_PER_THREAD; i++) {
+                        String expected = "select * from t" + thread + " where (a = " + i + ")";
+                        if (expected.equals(pool.parse("select * from t" + thread + " where a = " + i + ";").toString())) {
+                            matches++;
+                        }
+                    }
+                    return matches;
+                }
+            }));
+        }
+        //then
+        for (Future<Integer> result : results) {
+            assertEquals(PARSES_PER_THREAD, (int) result.get());
+        }
+        executor.shutdown();
+        assertTrue(pool.getCreatedCount() <= 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyPoolsShouldBeRejected() {
+        new ZqlParserPool(0);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZFunctionRegistry;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ZqlScriptParserTest {
+
+    @Test
+    public void aSessionRegistryShouldBeUsedForEveryChunk() throws ParseException {
+        //given
+        ZFunctionRegistry tenant = ZFunctionRegistry.scoped();
+        tenant.register("tenantfct", 1);
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            script.append("select tenantfct(a) from num;\n");
+        }
+        //when
+        List<ZStatement> statements = this.parser.parse(script, tenant);
+        //then
+        assertEquals(100, statements.size());
+        assertEquals("select tenantfct(a) from num", statements.get(99).toString());
+        try {
+            this.parser.parse(script);
+            fail("ParseException expected");
+        } catch (ParseException e) {
+            assertEquals("Undefined function: tenantfct", e.getMessage());
+        }
+    }
+
+    private static final String TRICKY = "-- a comment; with a semicolon\n"
+            + "select * from num where b = 'x;y' and c = 'it''s;';\n"
+            + "\t/* block; comment */ update num set \"b;c\" = 1;\r\n"
+            + "delete from num where a = 1; /*/ ; */ insert into num values (1, 2);\n";
+
+    private final ZqlScriptParser parser = new ZqlScriptParser(new ForkJoinPool(4));
+
+    @Test
+    public void theSplitterShouldIgnoreSemicolonsInLiteralsAndComments() {
+        //when
+        List<ZqlScriptChunk> chunks = ZqlScriptSplitter.split(TRICKY);
+        //then
+        assertEquals(4, chunks.size());
+        assertEquals(1, chunks.get(0).getLine());
+        assertEquals(2, chunks.get(1).getLine());
+        assertEquals(52, chunks.get(1).getColumn());
+        assertTrue(TRICKY.substring(chunks.get(3).getStart(), chunks.get(3).getEnd()).endsWith("insert into num values (1, 2);"));
+    }
+
+    @Test
+    public void statementsShouldMatchTheSequentialParser() throws ParseException {
+        //given
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            script.append(TRICKY);
+        }
+        //when
+        List<ZStatement> statements = this.parser.parse(script);
+        //then
+        assertEquals(new ZqlParser(script).readStatements().toString(), statements.toString());
+        assertEquals(2000, statements.size());
+    }
+
+    @Test
+    public void errorsShouldCarryTheirPositionInTheScript() {
+        //given
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            script.append(TRICKY);
+        }
+        script.append("select a\n\tfrom num where a = = 1;\n");
+        script.append("select from;\n");
+        //when
+        String expected = errorOf(script);
+        try {
+            this.parser.parse(script);
+            fail("ParseException expected");
+        } catch (ParseException e) {
+            //then
+            assertTrue(expected.contains("line 402, column 28"));
+            assertEquals(expected, e.getMessage());
+        }
+    }
+
+    @Test
+    public void parsingShouldStopAtExit() throws ParseException {
+        //given
+        String script = "commit;\nexit;\nselect from;\n";
+        //when
+        List<ZStatement> statements = this.parser.parse(script);
+        //then
+        assertEquals(1, statements.size());
+    }
+
+    @Test
+    public void blankTailsShouldBeIgnored() throws ParseException {
+        //when
+        List<ZStatement> statements = this.parser.parse("commit;\n  -- done\n");
+        //then
+        assertEquals(1, statements.size());
+    }
+
+    @Test
+    public void parsingShouldStopSilentlyWhereTheSequentialParserStops() throws ParseException {
+        String[] scripts = {"insert into t values (1);*/", "select a from t;;delete from t where a = 1", "select a from t;x",
+                "commit;\n;\nselect from;"};
+        for (String script : scripts) {
+            //when
+            List<ZStatement> statements = this.parser.parse(script);
+            //then
+            assertEquals(script, new ZqlParser(script).readStatements().toString(), statements.toString());
+            assertEquals(script, 1, statements.size());
+        }
+    }
+
+    @Test
+    public void scriptsWithoutStatementsShouldFailAsInTheSequentialParser() {
+        for (String script : new String[] {"", " \n", "-- nothing\n", "/* nothing */"}) {
+            try {
+                //when
+                this.parser.parse(script);
+                fail("ParseException expected");
+            } catch (ParseException e) {
+                //then
+                assertEquals(script, errorOf(script), e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void randomScriptsShouldMatchTheSequentialParser() {
+        String[] fragments = {"select a from t;", "insert into t values (1);", "delete from t where a = 1;", "commit;", "exit;", ";",
+                "x", "*/", "/* c */", "-- c\n", "\n", " ", "select from;", "'", "@", "update t set a = 2", "(", "select a from t"};
+        Random random = new Random(42);
+        for (int i = 0; i < 3000; i++) {
+            //given
+            StringBuilder script = new StringBuilder();
+            for (int n = random.nextInt(8); n >= 0; n--) {
+                script.append(fragments[random.nextInt(fragments.length)]);
+            }
+            //when
+            String parallel = outcomeOf(new ZqlScriptParser(ForkJoinPool.commonPool()), script);
+            //then
+            assertEquals(script.toString(), outcomeOf(null, script), parallel);
+        }
+    }
+
+    private static String outcomeOf(final ZqlScriptParser parser, final CharSequence script) {
+        try {
+            return (parser == null ? new ZqlParser(script).readStatements() : parser.parse(script)).toString();
+        } catch (ParseException | TokenMgrError e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    private static String errorOf(final CharSequence script) {
+        try {
+            new ZqlParser(script).readStatements();
+            fail("ParseException expected");
+            return null;
+        } catch (ParseException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ZqlStatementClassifierTest {
+
+    private final ZqlStatementClassifier classifier = new ZqlStatementClassifier();
+
+    @Test
+    public void queriesShouldReportAllTheirTables() throws ParseException {
+        //when
+        ZqlStatementInfo info = this.classifier.classify(
+                "select a.x, b.y from app.num a, other b where a.x in (select z from \"Third\" where z > 1) order by a.x;");
+        //then
+        assertEquals(ZqlStatementInfo.QUERY, info.getKind());
+        assertEquals(Arrays.asList("app.num", "other", "\"Third\""), info.getTables());
+    }
+
+    @Test
+    public void updatesShouldReportTheirTable() throws ParseException {
+        //when
+        ZqlStatementInfo update = this.classifier.classify("update app.num n set b = (select max(c) from other) where a = 1;");
+        ZqlStatementInfo insert = this.classifier.classify("insert into num (a, b) select a, b from other;");
+        ZqlStatementInfo delete = this.classifier.classify("delete num where a in (select a from num);");
+        ZqlStatementInfo deleteFrom = this.classifier.classify("delete from num;");
+        //then
+        assertEquals(ZqlStatementInfo.UPDATE, update.getKind());
+        assertEquals(Arrays.asList("app.num", "other"), update.getTables());
+        assertEquals(ZqlStatementInfo.INSERT, insert.getKind());
+        assertEquals(Arrays.asList("num", "other"), insert.getTables());
+        assertEquals(ZqlStatementInfo.DELETE, delete.getKind());
+        assertEquals(Arrays.asList("num"), delete.getTables());
+        assertEquals(Arrays.asList("num"), deleteFrom.getTables());
+    }
+
+    @Test
+    public void otherStatementsShouldBeClassified() throws ParseException {
+        //when
+        List<ZqlStatementInfo> infos = this.classifier.classifyAll("lock table num, app.other in share mode nowait;\n"
+                + "commit work;\n"
+                + "rollback;\n"
+                + "set transaction read only;\n"
+                + "drop table num;\n"
+                + "exit;");
+        //then
+        assertEquals(6, infos.size());
+        assertEquals(ZqlStatementInfo.LOCK_TABLE, infos.get(0).getKind());
+        assertEquals(Arrays.asList("num", "app.other"), infos.get(0).getTables());
+        assertEquals(ZqlStatementInfo.COMMIT, infos.get(1).getKind());
+        assertTrue(infos.get(1).isTransaction());
+        assertEquals(ZqlStatementInfo.ROLLBACK, infos.get(2).getKind());
+        assertEquals(ZqlStatementInfo.SET_TRANSACTION, infos.get(3).getKind());
+        assertTrue(infos.get(3).getTables().isEmpty());
+        assertEquals(ZqlStatementInfo.UNKNOWN, infos.get(4).getKind());
+        assertEquals(ZqlStatementInfo.EXIT, infos.get(5).getKind());
+    }
+
+    @Test
+    public void offsetsShouldDelimitEachStatement() throws ParseException {
+        //given
+        String script = "-- first\nselect a from num; delete from num";
+        //when
+        List<ZqlStatementInfo> infos = this.classifier.classifyAll(script);
+        //then
+        assertEquals(2, infos.size());
+        assertEquals("select a from num;", script.substring((int) infos.get(0).getBeginOffset(), (int) infos.get(0).getEndOffset()));
+        assertEquals("delete from num", script.substring((int) infos.get(1).getBeginOffset(), (int) infos.get(1).getEndOffset()));
+        assertNull(this.classifier.classify("  -- nothing\n"));
+    }
+
+    @Test
+    public void lexicalErrorsShouldBeParseExceptions() {
+        try {
+            this.classifier.classify("select a from num where b = 'x;");
+            fail("ParseException expected");
+        } catch (ParseException e) {
+            assertNotNull(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql;
+
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.statement.ZTransactStmt;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ZqlStatementIteratorTest {
+
+    private static final String SCRIPT = "-- header\n"
+            + "select * from num;\n"
+            + "delete from num where a = 1;\n"
+            + "/* last */ update num set a = 2;\n";
+
+    @Test
+    public void statementsShouldBeReturnedInOrderWithTheirOffsets() {
+        //given
+        ZqlStatementIterator iterator = new ZqlStatementIterator(SCRIPT);
+        List<String> statements = new ArrayList<String>();
+        List<String> sources = new ArrayList<String>();
+        //when
+        while (iterator.hasNext()) {
+            statements.add(iterator.next().toString());
+            sources.add(SCRIPT.substring((int) iterator.getBeginOffset(), (int) iterator.getEndOffset()));
+        }
+        //then
+        assertEquals(3, statements.size());
+        assertEquals("select * from num", statements.get(0));
+        assertEquals("select * from num;", sources.get(0));
+        assertEquals("delete from num where a = 1;", sources.get(1));
+        assertEquals("update num set a = 2;", sources.get(2));
+    }
+
+    @Test
+    public void aReaderShouldGiveTheSameStatementsAndOffsets() {
+        //given
+        ZqlStatementIterator fromText = new ZqlStatementIterator(SCRIPT);
+        ZqlStatementIterator fromReader = new ZqlStatementIterator(new StringReader(SCRIPT));
+        //when then
+        while (fromText.hasNext()) {
+            assertTrue(fromReader.hasNext());
+            assertEquals(fromText.next().toString(), fromReader.next().toString());
+            assertEquals(fromText.getBeginOffset(), fromReader.getBeginOffset());
+            assertEquals(fromText.getEndOffset(), fromReader.getEndOffset());
+        }
+        assertFalse(fromReader.hasNext());
+    }
+
+    @Test
+    public void parsingShouldResumeAtAnOffset() throws IOException {
+        //given
+        ZqlStatementIterator first = new ZqlStatementIterator(SCRIPT);
+        first.next();
+        long checkpoint = first.getEndOffset();
+        //when
+        ZqlStatementIterator resumedText = new ZqlStatementIterator(SCRIPT, (int) checkpoint);
+        ZqlStatementIterator resumedReader = new ZqlStatementIterator(new StringReader(SCRIPT), checkpoint);
+        //then
+        ZStatement statement = resumedText.next();
+        assertEquals("delete from num where (a = 1)", statement.toString());
+        assertEquals(statement.toString(), resumedReader.next().toString());
+        assertEquals(resumedText.getEndOffset(), resumedReader.getEndOffset());
+    }
+
+    @Test
+    public void iterationShouldStopAtExit() throws ParseException {
+        //given
+        ZqlParser parser = new ZqlParser("commit; exit; select * from num;");
+        //when
+        ZqlStatementIterator iterator = parser.iterateStatements();
+        //then
+        assertEquals("COMMIT", ((ZTransactStmt) iterator.next()).getStatement());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void parseErrorsShouldBeThrownUnchecked() {
+        //given
+        ZqlStatementIterator iterator = new ZqlStatementIterator("select * from num; select from;");
+        iterator.next();
+        //when
+        try {
+            iterator.hasNext();
+            fail("UncheckedParseException expected");
+        } catch (UncheckedParseException e) {
+            //then
+            assertNotNull(e.getCause());
+        }
+        assertFalse(iterator.hasNext());
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.codec;
+
+import org.gibello.zql.ParseException;
+import org.gibello.zql.ZqlParser;
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.statement.ZUpdate;
+import org.gibello.zql.utils.ZFreezer;
+import org.gibello.zql.utils.ZFunctionRegistry;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ZBinaryCodecTest {
+
+    private static final String SCRIPT = "select distinct a, b + 1 x, max(c) from num n, app.other where a = 1 and b in (1, 2) "
+            + "group by a having count(*) > 1 order by a desc;\n"
+            + "select * from num where a in (select a from other) for update;\n"
+            + "select a from num union select b from other;\n"
+            + "insert into num (a, b) values (1, 'x');\n"
+            + "insert into num select * from other;\n"
+            + "update num n set a = 1, b = b + 1 where c is null;\n"
+            + "delete from num where a between 1 and :max and b = ?;\n"
+            + "lock table num, other in share mode nowait;\n"
+            + "set transaction read only;\n"
+            + "commit comment 'done';";
+
+    @Test
+    public void everyStatementShouldRoundTrip() throws ParseException {
+        //given
+        List<ZStatement> statements = new ZqlParser(SCRIPT).readStatements();
+        for (ZStatement statement : statements) {
+            //when
+            ZStatement decoded = ZBinaryCodec.decodeStatement(ByteBuffer.wrap(ZBinaryCodec.encode(statement)));
+            //then
+            assertEquals(statement, decoded);
+            assertEquals(statement.toString(), decoded.toString());
+        }
+    }
+
+    @Test
+    public void messagesShouldBeReadInPlaceAndOneAfterTheOther() throws ParseException {
+        //given
+        List<ZStatement> statements = ZFreezer.freeze(new ZqlParser(SCRIPT).readStatements());
+        ZqlParser parser = new ZqlParser("upper(a) || 'é' like '%x'");
+        parser.setFunctionRegistry(ZFunctionRegistry.scoped());
+        parser.addCustomFunction("upper", 1);
+        ZExp exp = parser.readExpression();
+        byte[] all = ZBinaryCodec.encodeStatements(statements);
+        byte[] single = ZBinaryCodec.encode(exp);
+        ByteBuffer direct = ByteBuffer.allocateDirect(all.length + single.length);
+        direct.put(all).put(single).flip();
+        //when
+        List<ZStatement> decoded = ZBinaryCodec.decodeStatements(direct);
+        ZExp decodedExp = ZBinaryCodec.decodeExpression(direct);
+        //then
+        assertEquals(statements, decoded);
+        assertEquals(exp, decodedExp);
+        assertEquals(0, direct.remaining());
+        assertEquals("b", ((ZUpdate) decoded.get(5)).getColumnUpdateName(1));
+    }
+
+    @Test
+    public void sharedStringsShouldBeWrittenOnce() throws ParseException {
+        //given
+        List<ZStatement> statements = new ZqlParser(SCRIPT).readStatements();
+        int separate = 0;
+        for (ZStatement statement : statements) {
+            separate += ZBinaryCodec.encode(statement).length;
+        }
+        //when
+        int shared = ZBinaryCodec.encodeStatements(statements).length;
+        //then
+        assertTrue(shared < separate);
+        assertTrue(shared < SCRIPT.length());
+    }
+
+    @Test
+    public void invalidDataShouldBeRejected() throws ParseException {
+        //given
+        byte[] message = ZBinaryCodec.encode(new ZqlParser("delete from num where a = 1;").readStatement());
+        byte[] otherVersion = message.clone();
+        otherVersion[3] = (byte) (ZBinaryCodec.VERSION + 1);
+        byte[] truncated = Arrays.copyOf(message, message.length - 2);
+        //when
+        String notBinary = errorOf("delete from num".getBytes());
+        String version = errorOf(otherVersion);
+        String corrupted = errorOf(truncated);
+        //then
+        assertTrue(notBinary.contains("magic"));
+        assertTrue(version.contains("version " + (ZBinaryCodec.VERSION + 1)));
+        assertTrue(corrupted.contains("truncated"));
+    }
+
+    @Test
+    public void invalidCountsShouldBeRejected() {
+        //given
+        byte[] negative = {'Z', 'Q', 'L', ZBinaryCodec.VERSION, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        byte[] huge = {'Z', 'Q', 'L', ZBinaryCodec.VERSION, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        //when
+        String negativeError = errorOf(negative);
+        String hugeError = errorOf(huge);
+        //then
+        assertTrue(negativeError.contains("invalid count"));
+        assertTrue(hugeError.contains("invalid count"));
+    }
+
+    @Test
+    public void everyTruncationShouldBeRejected() throws ParseException {
+        //given
+        List<ZStatement> statements = new ZqlParser(SCRIPT).readStatements();
+        for (ZStatement statement : statements) {
+            byte[] message = ZBinaryCodec.encode(statement);
+            for (int length = 0; length < message.length; length++) {
+                //when
+                String error = errorOf(Arrays.copyOf(message, length));
+                //then
+                assertTrue(error, error.startsWith("ZBinaryCodec: "));
+            }
+        }
+    }
+
+    @Test
+    public void corruptedMessagesShouldOnlyThrowIllegalArgumentException() throws ParseException {
+        //given
+        byte[] message = ZBinaryCodec.encodeStatements(new ZqlParser(SCRIPT).readStatements());
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            byte[] corrupted = message.clone();
+            for (int j = random.nextInt(3); j >= 0; j--) {
+                corrupted[4 + random.nextInt(corrupted.length - 4)] = (byte) random.nextInt(256);
+            }
+            //when then
+            try {
+                ZBinaryCodec.decodeStatements(ByteBuffer.wrap(corrupted));
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("ZBinaryCodec: "));
+            }
+        }
+    }
+
+    private static String errorOf(final byte[] message) {
+        try {
+            ZBinaryCodec.decodeStatement(ByteBuffer.wrap(message));
+            fail("IllegalArgumentException expected");
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+}
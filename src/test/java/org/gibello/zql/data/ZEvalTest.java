@@ -0,0 +1,100 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.data;
+
+import org.gibello.zql.ParseException;
+import org.gibello.zql.ZqlParser;
+import org.gibello.zql.expression.ZConstant;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.template.ZBindings;
+import org.gibello.zql.template.ZTemplate;
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+public class ZEvalTest {
+
+    @Test
+    public void parsedOperatorsShouldCarryTheirCode() throws ParseException {
+        //given
+        ZExpression exp = (ZExpression) new ZqlParser("a <> 1 and b not between 1 and c ** 2").readExpression();
+        //when
+        ZExpression notEquals = (ZExpression) exp.getOperand(0);
+        ZExpression notBetween = (ZExpression) exp.getOperand(1);
+        ZExpression power = (ZExpression) notBetween.getOperand(2);
+        //then
+        assertEquals(ZExpression.AND, exp.getOperatorCode());
+        assertEquals(ZExpression.NOT_EQUALS, notEquals.getOperatorCode());
+        assertEquals(ZExpression.NOT_BETWEEN, notBetween.getOperatorCode());
+        assertEquals(ZExpression.POWER, power.getOperatorCode());
+        assertEquals(ZExpression.OTHER, new ZExpression("UNION").getOperatorCode());
+    }
+
+    @Test
+    public void predicatesShouldBeEvaluatedOnATuple() throws ParseException, SQLException {
+        //given
+        ZTuple tuple = new ZTuple("a,b,c,d,e");
+        tuple.setRow("1,2,3,4,5");
+        ZEval eval = new ZEval();
+        //when
+        boolean[] results = {
+                eval.eval(tuple, new ZqlParser("a = 1 and b != 1 and c <> 1").readExpression()),
+                eval.eval(tuple, new ZqlParser("e >= 5 and e <= 5 and a < b and not a > b").readExpression()),
+                eval.eval(tuple, new ZqlParser("c between 3 and 4 and e not between 1 and 4").readExpression()),
+                eval.eval(tuple, new ZqlParser("d in (1, 2, 4) and d not in (1, 2)").readExpression()),
+                eval.eval(tuple, new ZqlParser("a + b * 2 - c / 3 = 4 or e ** 2 = 25").readExpression()),
+                eval.eval(tuple, new ZqlParser("a in (2, 3) or b between 3 and 4").readExpression())};
+        //then
+        assertArrayEquals(new boolean[] {true, true, true, true, true, false}, results);
+    }
+
+    @Test
+    public void boundParametersShouldBeEvaluatedInArithmetic() throws ParseException, SQLException {
+        //given
+        ZTuple tuple = new ZTuple("a");
+        tuple.setRow("2");
+        String[] conditions = {"a * :k = 4", ":k + a = 4", "a = :k + 0", "a - :k < 1"};
+        for (String condition : conditions) {
+            ZTemplate template = new ZqlParser("select * from num where " + condition + ";").readTemplate();
+            ZBindings bindings = template.newBindings().set("k", 2);
+            //when
+            boolean result = new ZEval(bindings).eval(tuple, ((ZQuery) template.getStatement()).getWhere());
+            //then
+            assertTrue(condition, result);
+        }
+    }
+
+    @Test
+    public void unknownOperatorsShouldStillBeReported() throws SQLException {
+        //given
+        ZTuple tuple = new ZTuple("a");
+        tuple.setRow("1");
+        ZExpression exp = new ZExpression("UNION", new ZConstant("a", ZConstant.COLUMNNAME), new ZConstant("1", ZConstant.NUMBER));
+        try {
+            //when
+            new ZEval().eval(tuple, exp);
+            fail("SQLException expected");
+        } catch (SQLException e) {
+            //then
+            assertTrue(e.getMessage().endsWith("UNION"));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.expression;
+
+import org.gibello.zql.ParseException;
+import org.gibello.zql.ZqlParser;
+import org.gibello.zql.data.ZEval;
+import org.gibello.zql.data.ZTuple;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+public class ZConstantTest {
+
+    @Test
+    public void numbersShouldBeDecodedWhenParsed() throws ParseException {
+        //given
+        ZExpression list = (ZExpression) new ZqlParser("a in (42, 1.10, 12345678901234567890, 2e3, 'x', null)").readExpression();
+        //when
+        ZConstant integer = (ZConstant) list.getOperand(1);
+        ZConstant decimal = (ZConstant) list.getOperand(2);
+        ZConstant large = (ZConstant) list.getOperand(3);
+        ZConstant exponent = (ZConstant) list.getOperand(4);
+        //then
+        assertTrue(integer.isLong());
+        assertEquals(42L, integer.getLongValue());
+        assertEquals(42.0, integer.getDoubleValue(), 0.0);
+        assertFalse(decimal.isLong());
+        assertEquals(1.1, decimal.getDoubleValue(), 0.0);
+        assertEquals(new BigDecimal("1.10"), decimal.getDecimalValue());
+        assertFalse(large.isLong());
+        assertEquals(new BigDecimal("12345678901234567890"), large.getDecimalValue());
+        assertEquals(2000.0, exponent.getDoubleValue(), 0.0);
+    }
+
+    @Test
+    public void otherConstantsShouldHaveNoNumber() throws ParseException {
+        //given
+        ZExpression list = (ZExpression) new ZqlParser("a in ('42', null)").readExpression();
+        //when
+        ZConstant string = (ZConstant) list.getOperand(1);
+        ZConstant nullValue = (ZConstant) list.getOperand(2);
+        ZConstant column = (ZConstant) list.getOperand(0);
+        //then
+        for (ZConstant constant : new ZConstant[] {string, nullValue, column}) {
+            assertFalse(constant.isNumber());
+            assertNull(constant.getNumberValue());
+            assertNull(constant.getDecimalValue());
+            assertTrue(Double.isNaN(constant.getDoubleValue()));
+        }
+    }
+
+    @Test
+    public void theEvaluatorShouldNotParseNumbersAgain() throws SQLException {
+        //given
+        ZConstant three = new ZConstant("3", ZConstant.NUMBER);
+        ZTuple first = new ZTuple("a");
+        first.setRow("1");
+        ZTuple second = new ZTuple("a");
+        second.setRow("5");
+        ZEval eval = new ZEval();
+        //when
+        Object firstValue = eval.evalExpValue(first, three);
+        Object secondValue = eval.evalExpValue(second, three);
+        //then
+        assertEquals(3.0, firstValue);
+        assertSame(firstValue, secondValue);
+        assertTrue(eval.eval(second, new ZExpression(">", new ZConstant("a", ZConstant.COLUMNNAME), three)));
+    }
+}
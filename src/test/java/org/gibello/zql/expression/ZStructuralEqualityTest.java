@@ -0,0 +1,112 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.expression;
+
+import org.gibello.zql.ParseException;
+import org.gibello.zql.ZqlParser;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZFreezer;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ZStructuralEqualityTest {
+
+    private static final String SCRIPT = "select distinct a, b + 1 x, max(c) from num n, app.other where a = 1 and b in (1, 2) "
+            + "group by a having count(*) > 1 order by a desc;\n"
+            + "select * from num where a in (select a from other) for update;\n"
+            + "insert into num (a, b) values (1, 'x');\n"
+            + "update num n set a = 1, b = b + 1 where c is null;\n"
+            + "delete from num where a between 1 and :max;";
+
+    @Test
+    public void separateParsesShouldGiveEqualTrees() throws ParseException {
+        //given
+        List<ZStatement> first = new ZqlParser(SCRIPT).readStatements();
+        List<ZStatement> second = new ZqlParser(SCRIPT).readStatements();
+        //when
+        List<ZStatement> frozen = ZFreezer.freeze(new ZqlParser(SCRIPT).readStatements());
+        //then
+        assertEquals(first.get(0), second.get(0));
+        assertEquals(first.get(0).hashCode(), second.get(0).hashCode());
+        assertEquals(first.get(0), frozen.get(0));
+        assertEquals(first.get(0).hashCode(), frozen.get(0).hashCode());
+        assertEquals(first.get(1), frozen.get(1));
+    }
+
+    @Test
+    public void differentTreesShouldNotBeEqual() throws ParseException {
+        //given
+        ZExp exp = ZFreezer.freeze(new ZqlParser("a = 1 and (b > 2 or c like 'x%')").readExpression());
+        //when
+        ZExp operand = ZFreezer.freeze(new ZqlParser("a = 1 and (b > 2 or c like 'y%')").readExpression());
+        ZExp operator = ZFreezer.freeze(new ZqlParser("a = 1 or (b > 2 or c like 'x%')").readExpression());
+        ZExp type = ZFreezer.freeze(new ZqlParser("a = '1' and (b > 2 or c like 'x%')").readExpression());
+        //then
+        assertNotEquals(exp, operand);
+        assertNotEquals(exp, operator);
+        assertNotEquals(exp, type);
+        assertNotEquals(new ZqlParser("select a from num order by a asc;").readStatement(),
+                new ZqlParser("select a from num order by a desc;").readStatement());
+    }
+
+    @Test
+    public void expressionsWithoutOperatorShouldBeCompared() {
+        //given
+        ZExpression first = new ZExpression(null);
+        ZExpression second = new ZExpression(null);
+        //when
+        int hash = first.hashCode();
+        //then
+        assertEquals(hash, second.hashCode());
+        assertEquals(first, second);
+        assertNotEquals(first, new ZExpression("AND"));
+        assertNotEquals(new ZExpression("AND"), first);
+    }
+
+    @Test
+    public void theHashShouldOnlyBeKeptOnceTheNodeIsFrozen() throws ParseException {
+        //given
+        ZExpression exp = (ZExpression) new ZqlParser("a = 1").readExpression();
+        int before = exp.hashCode();
+        //when
+        exp.addOperand(new ZConstant("2", ZConstant.NUMBER));
+        int changed = exp.hashCode();
+        exp.freeze();
+        //then
+        assertNotEquals(before, changed);
+        assertEquals(changed, exp.hashCode());
+        assertEquals(new ZqlParser("a = 1").readExpression(), new ZqlParser("a = 1").readExpression());
+    }
+
+    @Test
+    public void frozenStatementsShouldBeDeduplicatedInASet() throws ParseException {
+        //given
+        Set<ZStatement> set = new HashSet<>();
+        //when
+        for (int i = 0; i < 3; i++) {
+            set.addAll(ZFreezer.freeze(new ZqlParser(SCRIPT).readStatements()));
+        }
+        //then
+        assertEquals(5, set.size());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.fingerprint;
+
+import org.gibello.zql.ParseException;
+import org.gibello.zql.ZqlParser;
+import org.gibello.zql.expression.ZConstant;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ZFingerprinterTest {
+
+    private final ZFingerprinter fingerprinter = new ZFingerprinter();
+
+    @Test
+    public void literalsShouldNotChangeTheFingerprint() throws ParseException {
+        //when
+        ZFingerprint first = fingerprint("select a from num where a = 1 and b like 'x%';");
+        ZFingerprint second = fingerprint("select a from num where a = 42 and b like 'abc';");
+        //then
+        assertEquals(first, second);
+        assertEquals(first.toString(), second.toString());
+        assertEquals(32, first.toString().length());
+    }
+
+    @Test
+    public void literalsShouldBeExtractedInOrder() throws ParseException {
+        //when
+        ZFingerprint fingerprint = fingerprint("update num set b = 'y', c = 3 where a in (1, 2) and d > 5;");
+        //then
+        assertEquals(5, fingerprint.getLiterals().size());
+        assertEquals("y", fingerprint.getLiterals().get(0).getValue());
+        assertEquals(ZConstant.STRING, fingerprint.getLiterals().get(0).getType());
+        assertEquals("3", fingerprint.getLiterals().get(1).getValue());
+        assertEquals("1", fingerprint.getLiterals().get(2).getValue());
+        assertEquals("2", fingerprint.getLiterals().get(3).getValue());
+        assertEquals("5", fingerprint.getLiterals().get(4).getValue());
+    }
+
+    @Test
+    public void inListsOfAnySizeShouldHaveTheSameFingerprint() throws ParseException {
+        //when
+        ZFingerprint one = fingerprint("delete from num where a in (1);");
+        ZFingerprint three = fingerprint("delete from num where a in (1, 2, 3);");
+        ZFingerprint columns = fingerprint("delete from num where a in (b, c);");
+        //then
+        assertEquals(one, three);
+        assertNotEquals(one, columns);
+    }
+
+    @Test
+    public void theShapeShouldChangeTheFingerprint() throws ParseException {
+        //when
+        ZFingerprint base = fingerprint("select a from num where a = 1;");
+        //then
+        assertNotEquals(base, fingerprint("select b from num where a = 1;"));
+        assertNotEquals(base, fingerprint("select a from num where a > 1;"));
+        assertNotEquals(base, fingerprint("select a from num where b = 1;"));
+        assertNotEquals(base, fingerprint("select a from num where a = b;"));
+        assertNotEquals(base, fingerprint("select a from num where a = 1 order by a;"));
+        assertNotEquals(base, fingerprint("select distinct a from num where a = 1;"));
+        assertNotEquals(fingerprint("insert into num(a) values (1);"), fingerprint("insert into num(b) values (1);"));
+    }
+
+    @Test
+    public void preparedColumnsShouldBeFingerprinted() throws ParseException {
+        //when
+        ZFingerprint prepared = fingerprint("update num set b = ? where a = ?;");
+        //then
+        assertEquals(prepared, fingerprint("update num set b = ? where a = ?;"));
+        assertNotEquals(prepared, fingerprint("update num set b = 1 where a = ?;"));
+        assertTrue(prepared.getLiterals().isEmpty());
+    }
+
+    @Test
+    public void fingerprintsShouldBeStable() throws ParseException {
+        //when
+        ZFingerprint fingerprint = fingerprint("select a from num where a = 1;");
+        //then
+        assertEquals(fingerprint, fingerprint("select a from num where a = 1;"));
+        assertEquals(fingerprint.getLow(), fingerprint.getHash());
+        assertNotEquals(fingerprint.getHigh(), fingerprint.getLow());
+    }
+
+    @Test
+    public void expressionsShouldBeFingerprinted() throws ParseException {
+        //when
+        ZFingerprint first = this.fingerprinter.fingerprintExpression(new ZqlParser("a + 1 > b").readExpression());
+        ZFingerprint second = this.fingerprinter.fingerprintExpression(new ZqlParser("a + 7 > b").readExpression());
+        //then
+        assertEquals(first, second);
+        assertEquals("1", first.getLiterals().get(0).getValue());
+    }
+
+    private ZFingerprint fingerprint(final String sql) throws ParseException {
+        return this.fingerprinter.fingerprint(new ZqlParser(sql).readStatement());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.optimize;
+
+import org.gibello.zql.ParseException;
+import org.gibello.zql.ZqlParser;
+import org.gibello.zql.data.ZEval;
+import org.gibello.zql.data.ZTuple;
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZFreezer;
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+public class ZCanonicalizerTest {
+
+    // The hash of the key only depends on the operators, names and values: it is the same on each run
+    private static final int STABLE_HASH = 1779860756;
+
+    private static final String[][] EQUIVALENTS = {
+            {"b = 2 and a = 1", "a = 1 and b = 2", "((a = 1) AND (b = 2))"},
+            {"1 < a", "a > 1", "(a > 1)"},
+            {"1 = a", "a = 1", "(a = 1)"},
+            {"a != 1", "1 <> a", "(a <> 1)"},
+            {"b <= a", "a >= b", "(a >= b)"},
+            {"a in (10, 2, 3)", "a in (3, 10, 2)", "(a IN (2, 3, 10))"},
+            {"(a = 1 or b = 2) or c = 3", "c = 3 or (b = 2 or a = 1)", "((a = 1) OR (b = 2) OR (c = 3))"},
+            {"10 < 2 * b + a", "a + b * 2 > 10", "((a + (b * 2)) > 10)"},
+            {"not (b like 'x%' and a = ?)", "not (a = ? and b like 'x%')", "(NOT ((a = ?) AND (b LIKE 'x%')))"}};
+
+    @Test
+    public void reorderedExpressionsShouldHaveTheSameCanonicalForm() throws ParseException {
+        for (String[] equivalent : EQUIVALENTS) {
+            //given
+            ZExp first = new ZqlParser(equivalent[0]).readExpression();
+            ZExp second = new ZqlParser(equivalent[1]).readExpression();
+            //when
+            ZExp firstKey = ZCanonicalizer.key(first);
+            ZExp secondKey = ZCanonicalizer.key(second);
+            //then
+            assertEquals(equivalent[0], equivalent[2], firstKey.toString());
+            assertEquals(equivalent[1], firstKey, secondKey);
+            assertEquals(equivalent[1], firstKey.hashCode(), secondKey.hashCode());
+        }
+    }
+
+    @Test
+    public void canonicalExpressionsShouldGiveTheSameResults() throws ParseException, SQLException {
+        ZEval eval = new ZEval();
+        ZTuple tuple = new ZTuple("a,b,c");
+        for (String[] equivalent : EQUIVALENTS) {
+            if (equivalent[0].contains("?")) {
+                continue;
+            }
+            //given
+            ZExp exp = new ZqlParser(equivalent[0]).readExpression();
+            //when
+            ZExp canonical = new ZCanonicalizer().transform(exp);
+            //then
+            for (int row = 0; row < 7 * 7 * 7; row++) {
+                tuple.setRow(row % 7 + "," + row / 7 % 7 + "," + row / 49);
+                assertEquals(equivalent[0] + " on " + row, eval.eval(tuple, exp), eval.eval(tuple, canonical));
+            }
+        }
+    }
+
+    @Test
+    public void canonicalTreesShouldBeLeftUnchanged() throws ParseException {
+        //given
+        ZStatement statement = ZFreezer.freeze(new ZqlParser("select a + 1, b from num where a > 1 and b in "
+                + "(select c from other where d <> c * 2) order by a;").readStatement());
+        //when
+        ZStatement canonical = new ZCanonicalizer().transform(statement);
+        //then
+        assertSame(statement, canonical);
+    }
+
+    @Test
+    public void statementKeysShouldBeEqualAndStable() throws ParseException {
+        //given
+        ZStatement first = new ZqlParser("select a from num where b = 2 and 1 = a;").readStatement();
+        ZStatement second = new ZqlParser("select a from num where a = 1 and b = 2;").readStatement();
+        //when
+        ZStatement firstKey = ZCanonicalizer.key(first);
+        ZStatement secondKey = ZCanonicalizer.key(second);
+        //then
+        assertEquals(firstKey, secondKey);
+        assertEquals(firstKey.hashCode(), secondKey.hashCode());
+        assertEquals(STABLE_HASH, firstKey.hashCode());
+    }
+}
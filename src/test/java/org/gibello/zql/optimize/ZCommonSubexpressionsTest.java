@@ -0,0 +1,97 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.optimize;
+
+import org.gibello.zql.ParseException;
+import org.gibello.zql.ZqlParser;
+import org.gibello.zql.alias.ZSelectItem;
+import org.gibello.zql.data.ZEval;
+import org.gibello.zql.data.ZTuple;
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.query.ZQuery;
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+public class ZCommonSubexpressionsTest {
+
+    private static final String QUERY = "select (a * b) + c, a * b from num where (a * b) + c > 10 and a * b < 50;";
+
+    @Test
+    public void repeatedSubexpressionsShouldBeShared() throws ParseException {
+        //given
+        ZQuery query = (ZQuery) new ZqlParser(QUERY).readStatement();
+        String sql = query.toString();
+        //when
+        ZCommonSubexpressions cse = ZCommonSubexpressions.of(query);
+        //then
+        ZQuery shared = cse.getQuery();
+        ZExpression where = (ZExpression) shared.getWhere();
+        ZExp sum = ((ZExpression) where.getOperand(0)).getOperand(0);
+        ZExp product = ((ZExpression) where.getOperand(1)).getOperand(0);
+        assertEquals(sql, shared.toString());
+        assertEquals(sql, query.toString());
+        assertSame(product, ((ZExpression) sum).getOperand(0));
+        assertSame(sum, ((ZSelectItem) shared.getSelect().get(0)).getExpression());
+        assertSame(product, ((ZSelectItem) shared.getSelect().get(1)).getExpression());
+        assertEquals(2, cse.getShared().size());
+        assertSame(sum, cse.getShared().get(0));
+        assertSame(product, cse.getShared().get(1));
+        assertEquals(3, cse.getSavedEvaluationsPerRow());
+    }
+
+    @Test
+    public void sharedValuesShouldGiveTheSameResults() throws ParseException, SQLException {
+        //given
+        ZQuery query = (ZQuery) new ZqlParser(QUERY).readStatement();
+        ZCommonSubexpressions cse = ZCommonSubexpressions.of(query);
+        ZEval plain = new ZEval();
+        ZEval eval = cse.newEvaluator(null);
+        ZTuple tuple = new ZTuple("a,b,c");
+        int rows = 0;
+        for (int row = 0; row < 8 * 8 * 8; row++, rows++) {
+            //when
+            tuple.setRow(row % 8 + "," + row / 8 % 8 + "," + row / 64);
+            //then
+            assertEquals(plain.eval(tuple, query.getWhere()), eval.eval(tuple, cse.getQuery().getWhere()));
+            for (int i = 0; i < query.getSelect().size(); i++) {
+                ZExp expected = ((ZSelectItem) query.getSelect().get(i)).getExpression();
+                ZExp shared = ((ZSelectItem) cse.getQuery().getSelect().get(i)).getExpression();
+                assertEquals(plain.evalExpValue(tuple, expected), eval.evalExpValue(tuple, shared));
+            }
+        }
+        assertEquals(0, plain.getSavedEvaluations());
+        assertEquals(3L * rows, eval.getSavedEvaluations());
+    }
+
+    @Test
+    public void queriesWithoutRepeatsShouldBeLeftUnchanged() throws ParseException {
+        //given
+        ZQuery query = (ZQuery) new ZqlParser("select a + 1, b from num where a > 1 or b in "
+                + "(select c from other where c + 1 > 2 and c + 1 < 5) order by a + 1;").readStatement();
+        //when
+        ZCommonSubexpressions cse = ZCommonSubexpressions.of(query);
+        //then
+        assertSame(query, cse.getQuery());
+        assertTrue(cse.getShared().isEmpty());
+        assertEquals(0, cse.getSavedEvaluationsPerRow());
+    }
+}
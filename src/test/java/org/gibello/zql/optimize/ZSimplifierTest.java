@@ -0,0 +1,126 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.optimize;
+
+import org.gibello.zql.ParseException;
+import org.gibello.zql.ZqlParser;
+import org.gibello.zql.data.ZEval;
+import org.gibello.zql.data.ZTuple;
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.utils.ZFreezer;
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+public class ZSimplifierTest {
+
+    private static final String[][] REWRITES = {
+            {"a > 1 + 2 * 3", "(a > 7)"},
+            {"a = 7 / 2", "(a = (7 / 2))"},
+            {"a = -(3 - 5)", "(a = 2)"},
+            {"not (not a = 1)", "(a = 1)"},
+            {"not (a = 1 and b < 2)", "((a <> 1) OR (b >= 2))"},
+            {"not (a like 'x%' or b in (1, 2) or c is null)", "((a NOT LIKE 'x%') AND (b NOT IN (1, 2)) AND (c IS NOT NULL))"},
+            {"a = a", "(a = a)"},
+            {"not (a = a)", "(a <> a)"},
+            {"not (a = a or b = 1)", "((a <> a) AND (b <> 1))"},
+            {"a = 1 and (b = 2 and (c = 3 and d = 4))", "((a = 1) AND (b = 2) AND (c = 3) AND (d = 4))"},
+            {"a = 1 and 2 > 1", "(a = 1)"},
+            {"a = 1 and 1 > 2", "(1 = 0)"},
+            {"a = 1 or 3 between 1 and 5", "(1 = 1)"},
+            {"a between 2 and 1 + 1", "(a = 2)"},
+            {"a not in (3)", "(a <> 3)"},
+            {"not (a = 1 or 2 in (1, 3))", "(a <> 1)"},
+            {"a = 'x' and 'y' = 'y'", "(a = 'x')"}};
+
+    private static final String[] CORPUS = {
+            "a > 1 + 2 * 3",
+            "a * 2 = 10 - 2 * 2",
+            "not (not a = 1)",
+            "not (a = 1 and b < 2)",
+            "not (a > 1 or not (b >= 2 and c <= 3))",
+            "not (a between 1 and 3) or not (b not between 2 and 4)",
+            "not (a in (1, 2, 3)) and not (b not in (4, 5))",
+            "not (a <> b) or not (c != d)",
+            "a = a and b >= b and c <= c and 2 <= 2",
+            "a = 1 and (b = 2 and (c = 3 or (d = 4 or e = 5)))",
+            "a = 1 and 2 > 1 or b = 2 and 1 > 2",
+            "(a = 1 or 2 <> 2) and (b = 1 or 1 = 1)",
+            "a between 2 and 1 + 1 or b not between 3 and 3",
+            "a in (2) or b not in (3) or c in (1 + 1, 3 - 1)",
+            "not (5 in (1, 2) or a < 3 - 1)",
+            "a + 0 = 6 / 2 and not (b * 2 > 4 * 2)",
+            "not (not (not (a = 1)))"};
+
+    @Test
+    public void expressionsShouldBeSimplified() throws ParseException {
+        for (String[] rewrite : REWRITES) {
+            //given
+            ZExp exp = new ZqlParser(rewrite[0]).readExpression();
+            //when
+            ZExp simplified = new ZSimplifier().transform(exp);
+            //then
+            assertEquals(rewrite[0], rewrite[1], simplified.toString());
+        }
+    }
+
+    @Test
+    public void simplifiedExpressionsShouldGiveTheSameResults() throws ParseException, SQLException {
+        ZEval eval = new ZEval();
+        ZTuple tuple = new ZTuple("a,b,c,d,e");
+        for (String condition : CORPUS) {
+            //given
+            ZExp exp = new ZqlParser(condition).readExpression();
+            //when
+            ZExp simplified = new ZSimplifier().transform(exp);
+            //then
+            assertNotEquals(condition, exp, simplified);
+            for (int row = 0; row < 7 * 7 * 7; row++) {
+                tuple.setRow(row % 7 + "," + row / 7 % 7 + "," + row / 49 + "," + (row + 1) % 7 + "," + (row + 2) % 5);
+                assertEquals(condition + " on " + row, eval.eval(tuple, exp), eval.eval(tuple, simplified));
+            }
+        }
+    }
+
+    @Test
+    public void simpleTreesShouldBeLeftUnchanged() throws ParseException {
+        //given
+        ZStatement statement = ZFreezer.freeze(new ZqlParser("select a, b + c from num where a = 1 and b like 'x%' or c in "
+                + "(select c from other where d > 1) order by a;").readStatement());
+        //when
+        ZStatement simplified = new ZSimplifier().transform(statement);
+        //then
+        assertSame(statement, simplified);
+    }
+
+    @Test
+    public void allTheClausesOfAStatementShouldBeSimplified() throws ParseException {
+        //given
+        ZStatement statement = ZFreezer.freeze(new ZqlParser("select a + 2 * 3 from num where not (a = 1 and 1 = 1) "
+                + "group by a having not (not count(*) > 1) order by a;").readStatement());
+        String sql = statement.toString();
+        //when
+        ZStatement simplified = new ZSimplifier().transform(statement);
+        //then
+        assertEquals("select (a + 6) from num where (a <> 1) group by a having (COUNT(*) > 1) order by a ASC", simplified.toString());
+        assertEquals(sql, statement.toString());
+    }
+}
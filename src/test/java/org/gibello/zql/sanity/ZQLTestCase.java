@@ -62,7 +62,7 @@ public class ZQLTestCase {
     }
 
     public List<ZStatement> parseSQL(String sqlScript) throws ParseException {
-        return parseSQL(new ByteArrayInputStream(sqlScript.getBytes()));
+        return new ZqlParser(sqlScript).readStatements();
     }
 
     public List<ZStatement> parseSQL(InputStream inputStream) throws ParseException {
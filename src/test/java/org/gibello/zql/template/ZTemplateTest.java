@@ -0,0 +1,112 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.template;
+
+import org.gibello.zql.ParseException;
+import org.gibello.zql.ZqlParser;
+import org.gibello.zql.data.ZEval;
+import org.gibello.zql.data.ZTuple;
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.expression.ZParameter;
+import org.gibello.zql.query.ZQuery;
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+public class ZTemplateTest {
+
+    @Test
+    public void parametersShouldBeIndexedInOrder() throws ParseException {
+        //given
+        ZqlParser parser = new ZqlParser("select * from num where a = ? and b = :name and c = ?;\nupdate num set a = :a;");
+        //when
+        ZTemplate query = parser.readTemplate();
+        ZTemplate update = parser.readTemplate();
+        //then
+        assertEquals(3, query.getParameterCount());
+        assertFalse(query.getParameter(1).isNamed());
+        assertEquals("name", query.getParameter(2).getName());
+        assertEquals(3, query.getParameter(3).getIndex());
+        assertEquals("select * from num where ((a = ?) AND (b = :name) AND (c = ?))", query.toString());
+        assertEquals(1, update.getParameterCount());
+        assertEquals(new ZParameter("a", 1), update.getParameter(1));
+    }
+
+    @Test
+    public void parametersShouldBeLeavesInReversePolish() throws ParseException {
+        //given
+        ZqlParser parser = new ZqlParser("a = :k and b > :n + 1 and c = ?");
+        //when
+        ZExpression expression = (ZExpression) parser.readExpression();
+        //then
+        assertEquals("(AND (= a :k) (> b (+ :n 1)) (= c ?))", expression.toReversePolish());
+        assertEquals(":k", new ZParameter("k", 1).toReversePolish());
+    }
+
+    @Test
+    public void oneTemplateShouldServeManyExecutions() throws ParseException, SQLException {
+        //given
+        ZTemplate template = new ZqlParser("select * from num where a > ? and b = :b;").readTemplate();
+        ZExp where = ((ZQuery) template.getStatement()).getWhere();
+        ZTuple tuple = new ZTuple("a,b");
+        tuple.setAtt("a", 10.0);
+        tuple.setAtt("b", "x");
+        ZBindings bindings = template.newBindings();
+        ZEval eval = new ZEval(bindings);
+        for (int i = 0; i < 20; i++) {
+            //when
+            bindings.clear().set(1, i).set("b", i % 2 == 0 ? "x" : "y");
+            //then
+            assertEquals(i < 10 && i % 2 == 0, eval.eval(tuple, where));
+        }
+    }
+
+    @Test
+    public void namesShouldBindAllTheirParameters() throws ParseException {
+        //given
+        ZTemplate template = new ZqlParser("delete from num where a = :v or b = :v or c = ?;").readTemplate();
+        ZBindings bindings = template.newBindings();
+        //when
+        bindings.set("v", null);
+        //then
+        assertTrue(bindings.isBound(1));
+        assertTrue(bindings.isBound(2));
+        assertNull(bindings.get(2));
+        assertFalse(bindings.isComplete());
+        try {
+            bindings.get(3);
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("Unbound parameter 3"));
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void unboundParametersShouldNotBeEvaluated() throws ParseException, SQLException {
+        //given
+        ZqlParser parser = new ZqlParser("a = ?");
+        ZExp expression = parser.readExpression();
+        ZTuple tuple = new ZTuple("a");
+        tuple.setAtt("a", 1.0);
+        //when
+        new ZEval().eval(tuple, expression);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.unparse;
+
+import org.gibello.zql.ParseException;
+import org.gibello.zql.ZqlParser;
+import org.gibello.zql.statement.ZInsert;
+import org.gibello.zql.statement.ZStatement;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ZUnparserTest {
+
+    private static final String SCRIPT = "select distinct a, b + 1 x, max(c) from num n, app.other where a = 1 and b in (1, 2) "
+            + "group by a having count(*) > 1 order by a desc;\n"
+            + "select * from num where a in (select a from other) and b > any (select b from other) for update;\n"
+            + "select a from num where b not between 1 and 2 and c is not null union select a from other;\n"
+            + "insert into num (a, b) values (1, 'x');\n"
+            + "insert into num select * from other;\n"
+            + "update num n set a = 1, b = b + 1 where c is null;\n"
+            + "delete from num where a = ? or b = :b;\n"
+            + "lock table num, other in row exclusive mode nowait;\n"
+            + "commit work comment 'done';\n"
+            + "set transaction read only;";
+
+    @Test
+    public void statementsShouldBeWrittenLikeTheirToString() throws ParseException, IOException {
+        //given
+        List<ZStatement> statements = new ZqlParser(SCRIPT).readStatements();
+        StringWriter out = new StringWriter();
+        ZUnparser unparser = new ZUnparser(out);
+        StringBuilder expected = new StringBuilder();
+        //when
+        for (ZStatement statement : statements.subList(0, 7)) {
+            unparser.unparse(statement);
+            out.write(";\n");
+            expected.append(statement).append(";\n");
+        }
+        //then
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    @Test
+    public void writtenStatementsShouldBeParsedBackToTheSameStatements() throws ParseException {
+        //given
+        List<ZStatement> statements = new ZqlParser(SCRIPT).readStatements();
+        // The sub-query of an INSERT is written in parenthesis, which the grammar does not accept
+        statements.remove(4);
+        StringBuilder sql = new StringBuilder();
+        //when
+        for (ZStatement statement : statements) {
+            sql.append(ZUnparser.render(statement)).append(";\n");
+        }
+        List<ZStatement> parsed = new ZqlParser(sql.toString()).readStatements();
+        //then
+        assertEquals(statements.size(), parsed.size());
+        for (int i = 0; i < statements.size(); i++) {
+            assertEquals(ZUnparser.render(statements.get(i)), ZUnparser.render(parsed.get(i)));
+        }
+        assertEquals("LOCK TABLE num, other IN ROW EXCLUSIVE MODE NOWAIT", ZUnparser.render(statements.get(6)));
+        assertEquals("COMMIT COMMENT 'done'", ZUnparser.render(statements.get(7)));
+        assertEquals("SET TRANSACTION READ ONLY", ZUnparser.render(statements.get(8)));
+    }
+
+    @Test
+    public void aggregatesShouldBeWrittenLikeBeforeFunctionCallsWereFlagged() throws ParseException {
+        //given
+        ZStatement statement = new ZqlParser("select max(a + b), sum(a), count(*) from num group by c "
+                + "having avg(a - 1) > 1;").readStatement();
+        //when
+        String text = ZUnparser.render(statement);
+        //then
+        assertEquals("select max (a + b), sum(a), COUNT(*) from num group by c having (avg (a - 1) > 1)", text);
+        assertEquals(text, statement.toString());
+    }
+
+    @Test
+    public void aLargeInsertShouldBeWrittenInOnePass() throws ParseException {
+        //given
+        StringBuilder sql = new StringBuilder("insert into num (a, b) values (0");
+        for (int i = 1; i < 50000; i++) {
+            sql.append(", ").append(i);
+        }
+        ZInsert insert = (ZInsert) new ZqlParser(sql.append(");").toString()).readStatement();
+        //when
+        String text = ZUnparser.render(insert);
+        //then
+        assertTrue(text.startsWith("insert into num(a,b) values (0, 1, 2, "));
+        assertTrue(text.endsWith(", 49998, 49999)"));
+    }
+
+    @Test
+    public void outputErrorsShouldBeThrown() throws ParseException {
+        //given
+        final IOException failure = new IOException("disk full");
+        ZStatement statement = new ZqlParser("select a from num where a = 1;").readStatement();
+        ZUnparser unparser = new ZUnparser(new Appendable() {
+            @Override
+            public Appendable append(final CharSequence csq) throws IOException {
+                throw failure;
+            }
+
+            @Override
+            public Appendable append(final CharSequence csq, final int start, final int end) throws IOException {
+                throw failure;
+            }
+
+            @Override
+            public Appendable append(final char c) throws IOException {
+                throw failure;
+            }
+        });
+        //when
+        try {
+            unparser.unparse(statement);
+            fail("IOException expected");
+        } catch (IOException e) {
+            //then
+            assertSame(failure, e);
+        }
+    }
+}
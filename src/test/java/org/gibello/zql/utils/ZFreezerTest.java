@@ -0,0 +1,128 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.utils;
+
+import org.gibello.zql.ParseException;
+import org.gibello.zql.ZqlParser;
+import org.gibello.zql.alias.ZSelectItem;
+import org.gibello.zql.expression.ZConstant;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.fingerprint.ZFingerprinter;
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.statement.ZUpdate;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ZFreezerTest {
+
+    private static final String SCRIPT = "select distinct a, b + 1 x, max(c) from num n, app.other where a = 1 and b in (1, 2) "
+            + "group by a having count(*) > 1 order by a desc;\n"
+            + "select * from num where a in (select a from other) for update;\n"
+            + "insert into num (a, b) values (1, 'x');\n"
+            + "insert into num select * from other;\n"
+            + "update num n set a = 1, b = b + 1 where c is null;\n"
+            + "delete from num where a between 1 and 2;\n"
+            + "lock table num, other in share mode nowait;\n"
+            + "commit work comment 'done';\n"
+            + "set transaction read only;";
+
+    @Test
+    public void frozenStatementsShouldBeEqualToTheParsedOnes() throws ParseException {
+        //given
+        List<ZStatement> parsed = new ZqlParser(SCRIPT).readStatements();
+        List<ZStatement> frozen = new ZqlParser(SCRIPT).readStatements();
+        //when
+        for (ZStatement statement : frozen) {
+            ZFreezer.freeze(statement);
+        }
+        //then
+        ZFingerprinter fingerprinter = new ZFingerprinter();
+        for (int i = 0; i < parsed.size(); i++) {
+            assertEquals(fingerprinter.fingerprint(parsed.get(i)), fingerprinter.fingerprint(frozen.get(i)));
+        }
+        // LOCK and transaction statements have no toString()
+        for (int i = 0; i < 6; i++) {
+            assertEquals(parsed.get(i).toString(), frozen.get(i).toString());
+        }
+        assertEquals(((ZQuery) parsed.get(0)).getWhere(), ((ZQuery) frozen.get(0)).getWhere());
+    }
+
+    @Test
+    public void frozenNodesShouldNotBeChanged() throws ParseException {
+        //given
+        ZQuery query = (ZQuery) new ZqlParser("select a, b from num where a = 1;").readStatement();
+        //when
+        ZFreezer.freeze(query);
+        //then
+        assertTrue(query.isFrozen());
+        assertTrue(((ZExpression) query.getWhere()).isFrozen());
+        assertTrue(((ZSelectItem) query.getSelect().get(0)).isFrozen());
+        try {
+            query.addWhere(null);
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            assertEquals(ZCommonConstants.FROZEN_NODE, e.getMessage());
+        }
+        try {
+            ((ZExpression) query.getWhere()).addOperand(new ZConstant("2", ZConstant.NUMBER));
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            assertEquals(ZCommonConstants.FROZEN_NODE, e.getMessage());
+        }
+        try {
+            query.getSelect().remove(0);
+            fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException e) {
+            assertEquals(2, query.getSelect().size());
+        }
+    }
+
+    @Test
+    public void namesShouldBeSharedBetweenFrozenTrees() throws ParseException {
+        //given
+        String sql = "select * from num where " + new StringBuilder("column").append("_a") + " = 1;";
+        ZQuery first = (ZQuery) new ZqlParser(sql).readStatement();
+        ZQuery second = (ZQuery) new ZqlParser(sql).readStatement();
+        //when
+        ZFreezer.freeze(first);
+        ZFreezer.freeze(second);
+        //then
+        ZConstant a = (ZConstant) ((ZExpression) first.getWhere()).getOperand(0);
+        ZConstant b = (ZConstant) ((ZExpression) second.getWhere()).getOperand(0);
+        assertSame(a.getValue(), b.getValue());
+        assertSame(((ZExpression) first.getWhere()).getOperator(), ((ZExpression) second.getWhere()).getOperator());
+    }
+
+    @Test
+    public void theSetOfAFrozenUpdateShouldBeACopy() throws ParseException {
+        //given
+        ZUpdate update = (ZUpdate) new ZqlParser("update num set a = 1, b = 2;").readStatement();
+        //when
+        ZFreezer.freeze(update);
+        update.getSet().remove("a");
+        //then
+        assertEquals(2, update.getColumnUpdateCount());
+        assertEquals("1", update.getColumnUpdate("a").toString());
+        assertEquals("2", update.getColumnUpdate(1).toString());
+        assertEquals("update num set a=1, b=2", update.toString());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.utils;
+
+import org.gibello.zql.ParseException;
+import org.gibello.zql.ZqlParser;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.statement.ZStatement;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ZFunctionRegistryTest {
+
+    @Test
+    public void functionsShouldBeFoundInAnyCase() {
+        //given
+        ZFunctionRegistry registry = new ZFunctionRegistry(null);
+        //when
+        registry.register("Distance", 2);
+        registry.register("concat_all", ZUtils.VARIABLE_PLIST);
+        registry.register("noparams", -1);
+        //then
+        assertEquals(2, registry.getParameterCount("DISTANCE"));
+        assertEquals(2, registry.getParameterCount(new StringBuilder("distance")));
+        assertEquals(ZUtils.VARIABLE_PLIST, registry.getParameterCount("Concat_All"));
+        assertEquals(1, registry.getParameterCount("noparams"));
+        assertEquals(-1, registry.getParameterCount("dist"));
+        assertEquals(-1, registry.getParameterCount(""));
+        assertEquals(-1, registry.getParameterCount(null));
+    }
+
+    @Test
+    public void aggregatesShouldIncludeTheCustomFunctions() {
+        //given
+        ZFunctionRegistry registry = new ZFunctionRegistry(null);
+        //when
+        registry.register("median", 1);
+        //then
+        assertTrue(registry.isAggregate("sum"));
+        assertTrue(registry.isAggregate(" Count "));
+        assertTrue(registry.isAggregate("MEDIAN "));
+        assertFalse(registry.isAggregate("AND"));
+        assertFalse(registry.isAggregate(" "));
+    }
+
+    @Test
+    public void onlyFunctionCallsShouldBeFlagged() throws ParseException {
+        //given
+        ZFunctionRegistry registry = ZFunctionRegistry.scoped();
+        registry.register("distance", 2);
+        ZqlParser parser = new ZqlParser("max(a + b) + count(*) + sum(distance(a, b))");
+        parser.setFunctionRegistry(registry);
+        //when
+        ZExpression sum = (ZExpression) parser.readExpression();
+        ZExpression max = (ZExpression) ((ZExpression) sum.getOperand(0)).getOperand(0);
+        ZExpression aggregate = (ZExpression) sum.getOperand(1);
+        //then
+        assertFalse(max.isFunction());
+        assertFalse(((ZExpression) ((ZExpression) sum.getOperand(0)).getOperand(1)).isFunction());
+        assertFalse(aggregate.isFunction());
+        assertTrue(((ZExpression) aggregate.getOperand(0)).isFunction());
+    }
+
+    @Test
+    public void scopedRegistriesShouldNotChangeTheirParent() {
+        //given
+        ZFunctionRegistry parent = new ZFunctionRegistry(null);
+        ZFunctionRegistry session = new ZFunctionRegistry(parent);
+        parent.register("shared", 1);
+        //when
+        session.register("private_fct", 3);
+        session.register("shared", 2);
+        //then
+        assertEquals(2, session.getParameterCount("shared"));
+        assertEquals(3, session.getParameterCount("PRIVATE_FCT"));
+        assertEquals(1, parent.getParameterCount("shared"));
+        assertEquals(-1, parent.getParameterCount("private_fct"));
+        assertSame(parent, session.getParent());
+    }
+
+    @Test
+    public void registeredFunctionsShouldSurviveTheGrowthOfTheTable() {
+        //given
+        ZFunctionRegistry registry = new ZFunctionRegistry(null);
+        //when
+        for (int i = 0; i < 1000; i++) {
+            registry.register("fct" + i, i % 5);
+        }
+        //then
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 5, registry.getParameterCount("FCT" + i));
+        }
+    }
+
+    @Test
+    public void aParserShouldOnlyKnowTheFunctionsOfItsRegistry() throws ParseException {
+        //given
+        String sql = "select scopedfct(a, b) from num;";
+        ZqlParser scoped = new ZqlParser(sql);
+        scoped.setFunctionRegistry(ZFunctionRegistry.scoped());
+        scoped.addCustomFunction("scopedfct", 2);
+        //when
+        ZStatement statement = scoped.readStatement();
+        //then
+        assertEquals("select scopedfct(a,b) from num", statement.toString());
+        assertEquals(-1, ZUtils.isCustomFunction("scopedfct"));
+        try {
+            new ZqlParser(sql).readStatement();
+            fail("ParseException expected");
+        } catch (ParseException e) {
+            assertEquals("Undefined function: scopedfct", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * This file is part of Zql.
+ *
+ * Zql is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Zql is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Zql.  If not, see http://www.gnu.org/licenses.
+ */
+
+package org.gibello.zql.visitor;
+
+import org.gibello.zql.ParseException;
+import org.gibello.zql.ZqlParser;
+import org.gibello.zql.expression.ZConstant;
+import org.gibello.zql.expression.ZExp;
+import org.gibello.zql.expression.ZExpression;
+import org.gibello.zql.expression.ZParameter;
+import org.gibello.zql.query.ZQuery;
+import org.gibello.zql.statement.ZDelete;
+import org.gibello.zql.statement.ZInsert;
+import org.gibello.zql.statement.ZLockTable;
+import org.gibello.zql.statement.ZStatement;
+import org.gibello.zql.statement.ZTransactStmt;
+import org.gibello.zql.statement.ZUpdate;
+import org.gibello.zql.utils.ZFreezer;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ZTransformerTest {
+
+    private static final String SCRIPT = "select distinct a, b + 1 x, max(b) from num n where a = 1 and b in (1, 2) "
+            + "group by a having count(*) > b order by b desc;\n"
+            + "select * from num where a in (select b from other) for update;\n"
+            + "insert into num (a, c) values (1, b);\n"
+            + "insert into num select b from other;\n"
+            + "update num n set a = 1, c = b + 1 where c is null;\n"
+            + "delete from num where b between 1 and 2;\n"
+            + "lock table num, other in share mode nowait;\n"
+            + "commit work comment 'done';";
+
+    @Test
+    public void aTransformerChangingNothingShouldReturnTheSameTrees() throws ParseException {
+        //given
+        List<ZStatement> statements = new ZqlParser(SCRIPT).readStatements();
+        ZTransformer transformer = new ZTransformer();
+        //when
+        for (ZStatement statement : statements) {
+            //then
+            assertSame(statement, transformer.transform(statement));
+        }
+    }
+
+    @Test
+    public void aRewrittenLeafShouldOnlyCopyItsPath() throws ParseException {
+        //given
+        ZQuery query = (ZQuery) new ZqlParser("select a, b + 1 from num where a = 1 and b = 2;").readStatement();
+        String before = query.toString();
+        ZExpression where = (ZExpression) query.getWhere();
+        //when
+        ZQuery renamed = new Renamer().transform(query);
+        //then
+        assertEquals("select a, (z + 1) from num where ((a = 1) AND (z = 2))", renamed.toString());
+        assertEquals(before, query.toString());
+        ZExpression newWhere = (ZExpression) renamed.getWhere();
+        assertSame(where.getOperand(0), newWhere.getOperand(0));
+        assertNotSame(where.getOperand(1), newWhere.getOperand(1));
+        assertSame(query.getSelect().get(0), renamed.getSelect().get(0));
+        assertSame(query.getFrom(), renamed.getFrom());
+    }
+
+    @Test
+    public void allTheStatementsShouldBeRewritten() throws ParseException {
+        //given
+        List<ZStatement> statements = new ZqlParser(SCRIPT).readStatements();
+        List<ZStatement> expected = new ZqlParser(SCRIPT.replaceAll("\\bb\\b", "z")).readStatements();
+        Renamer renamer = new Renamer();
+        //when
+        for (int i = 0; i < statements.size(); i++) {
+            ZStatement renamed = renamer.transform(ZFreezer.freeze(statements.get(i)));
+            //then
+            if (i < 6) {
+                assertNotSame(statements.get(i), renamed);
+                assertEquals(expected.get(i).toString(), renamed.toString());
+            } else {
+                assertSame(statements.get(i), renamed);
+            }
+        }
+    }
+
+    @Test
+    public void aVisitorShouldBeCalledForTheTypeOfTheNode() throws ParseException {
+        //given
+        List<ZStatement> statements = new ZqlParser(SCRIPT + "\nset transaction read only;").readStatements();
+        ZExp parameter = new ZqlParser("a = :a").readExpression();
+        NameVisitor visitor = new NameVisitor();
+        //when
+        StringBuilder names = new StringBuilder();
+        for (ZStatement statement : statements) {
+            names.append(statement.accept(visitor)).append(' ');
+        }
+        names.append(parameter.accept(visitor)).append(' ');
+        names.append(((ZExpression) parameter).getOperand(1).accept(visitor));
+        //then
+        assertEquals("query query insert insert update delete lock transaction transaction expression parameter", names.toString());
+    }
+
+    /**
+     * Renames the column "b" to "z".
+     */
+    private static final class Renamer extends ZTransformer {
+
+        @Override
+        protected ZExp transformConstant(final ZConstant constant) {
+            if (constant.getType() == ZConstant.COLUMNNAME && "b".equals(constant.getValue())) {
+                return new ZConstant("z", ZConstant.COLUMNNAME);
+            }
+            return constant;
+        }
+    }
+
+    /**
+     * Names the type of a node.
+     */
+    private static final class NameVisitor implements ZVisitor<String> {
+
+        @Override
+        public String visitConstant(final ZConstant constant) {
+            return "constant";
+        }
+
+        @Override
+        public String visitExpression(final ZExpression expression) {
+            return "expression";
+        }
+
+        @Override
+        public String visitParameter(final ZParameter parameter) {
+            return "parameter";
+        }
+
+        @Override
+        public String visitQuery(final ZQuery query) {
+            return "query";
+        }
+
+        @Override
+        public String visitInsert(final ZInsert insert) {
+            return "insert";
+        }
+
+        @Override
+        public String visitUpdate(final ZUpdate update) {
+            return "update";
+        }
+
+        @Override
+        public String visitDelete(final ZDelete delete) {
+            return "delete";
+        }
+
+        @Override
+        public String visitLockTable(final ZLockTable lock) {
+            return "lock";
+        }
+
+        @Override
+        public String visitTransaction(final ZTransactStmt transaction) {
+            return "transaction";
+        }
+    }
+}